@@ -0,0 +1,106 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.policy.AsyncTemplatePolicy;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Renders a batch of pages, each page interpolates the values of two remote services
+ * simulated by futures completed after a delay.
+ * {@code blocking} renders each page on a small thread pool that joins the futures before rendering,
+ * {@code async} uses the {@link AsyncTemplatePolicy} and only waits for all the pages at the end.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar AsyncBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class AsyncBenchmark {
+  private static final AsyncTemplatePolicy ASYNC = new AsyncTemplatePolicy();
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(CompletableFuture.class, AsyncTemplatePolicy.class, int.class, CompletableFuture.class, CompletableFuture.class),
+      Object[].class,
+      "page ￼ user: ￼ cart: ￼"
+  ).dynamicInvoker();
+
+  // number of pages rendered by one operation
+  @Param({ "100" })
+  int pages;
+
+  // delay of the services in milliseconds
+  @Param({ "1" })
+  int delay;
+
+  // number of threads used by the blocking version
+  private static final int THREADS = 4;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void setup() {
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  // local stand-in of a remote service
+  private CompletableFuture<String> service(String value) {
+    return CompletableFuture.supplyAsync(() -> value, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+  }
+
+  @Benchmark
+  public String[] blocking() {
+    var futures = IntStream.range(0, pages)
+        .mapToObj(page -> CompletableFuture.supplyAsync(() -> {
+          var user = service("user" + page).join();
+          var cart = service("cart" + page).join();
+          return "page " + page + " user: " + user + " cart: " + cart;
+        }, executor))
+        .toList();
+    return futures.stream().map(CompletableFuture::join).toArray(String[]::new);
+  }
+
+  @Benchmark
+  public String[] async() throws Throwable {
+    var futures = new CompletableFuture<?>[pages];
+    for (var page = 0; page < pages; page++) {
+      futures[page] = (CompletableFuture<?>) INDY.invokeExact(ASYNC, page, service("user" + page), service("cart" + page));
+    }
+    return CompletableFuture.allOf(futures).thenApply(__ -> {
+      var texts = new String[pages];
+      for (var page = 0; page < pages; page++) {
+        texts[page] = (String) futures[page].join();
+      }
+      return texts;
+    }).join();
+  }
+}
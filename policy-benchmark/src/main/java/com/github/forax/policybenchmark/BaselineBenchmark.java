@@ -0,0 +1,60 @@
+package com.github.forax.policybenchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// java -jar policy-benchmark/target/benchmarks.jar BaselineBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BaselineBenchmark extends HolesBenchmark {
+  private String[] texts;
+  private String format;
+  private MessageFormat messageFormat;
+
+  @Setup
+  public void setupFormat() {
+    texts = IntStream.range(0, holes).mapToObj(i -> (i == 0? "": ", ") + "hole" + i + ": ").toArray(String[]::new);
+    format = Templates.format(holes, i -> "%s");
+    messageFormat = new MessageFormat(Templates.format(holes, i -> "{" + i + "}"));
+  }
+
+  @Benchmark
+  public String stringBuilder() {
+    var builder = new StringBuilder();
+    if (holes == 0) {
+      return builder.append("no hole").toString();
+    }
+    for (var i = 0; i < holes; i++) {
+      builder.append(texts[i]);
+      if (isPrimitive) {
+        builder.append(primitives[i]);
+      } else {
+        builder.append(references[i]);
+      }
+    }
+    return builder.toString();
+  }
+
+  @Benchmark
+  public String stringFormat() {
+    return String.format(format, arguments);
+  }
+
+  @Benchmark
+  public String messageFormat() {
+    return messageFormat.format(arguments);
+  }
+}
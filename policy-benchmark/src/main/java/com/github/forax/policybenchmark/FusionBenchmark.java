@@ -0,0 +1,77 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.policy.FusedTemplatePolicy;
+import com.github.forax.policyinterface.policy.FusedTemplatePolicy.Assembler;
+import com.github.forax.policyinterface.policy.FusedTemplatePolicy.Encoder;
+import com.github.forax.policyinterface.policy.HtmlTemplatePolicy;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Escapes the holes of an HTML fragment, truncates it then encodes it in UTF-8.
+ * {@code chained} calls the {@link HtmlTemplatePolicy} then truncates and encodes the resulting string,
+ * {@code fused} uses a {@link FusedTemplatePolicy} with the same stages.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar FusionBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class FusionBenchmark {
+  private static final int MAX_LENGTH = 100;
+
+  private static final HtmlTemplatePolicy HTML = new HtmlTemplatePolicy();
+  private static final FusedTemplatePolicy<byte[]> FUSED =
+      FusedTemplatePolicy.of(HtmlTemplatePolicy::escapeTo, Assembler.truncate(MAX_LENGTH), Encoder.utf8());
+
+  private static final String TEMPLATE = "<tr><td class=\"name\">￼</td><td>￼</td><td>￼</td></tr>";
+
+  private static final MethodHandle HTML_INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, HtmlTemplatePolicy.class, String.class, String.class, int.class),
+      Object[].class,
+      TEMPLATE
+  ).dynamicInvoker();
+
+  private static final MethodHandle FUSED_INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(byte[].class, FusedTemplatePolicy.class, String.class, String.class, int.class),
+      Object[].class,
+      TEMPLATE
+  ).dynamicInvoker();
+
+  private final String name = "Alexandre Dumas";
+  private final String comment = "\"One for all\" & \"all for one\", <b>the musketeers</b> of the king's guard";
+  private final int count = 1844;
+
+  @Benchmark
+  public byte[] chained() throws Throwable {
+    var html = (String) HTML_INDY.invokeExact(HTML, name, comment, count);
+    var truncated = html.length() > MAX_LENGTH? html.substring(0, MAX_LENGTH): html;
+    return truncated.getBytes(UTF_8);
+  }
+
+  @Benchmark
+  public byte[] fused() throws Throwable {
+    return (byte[]) FUSED_INDY.invokeExact(FUSED, name, comment, count);
+  }
+}
@@ -0,0 +1,51 @@
+package com.github.forax.policybenchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Shared state of the benchmarks parameterized by the number of holes and the kind of holes,
+ * either references ({@code String}) or primitives ({@code int}).
+ */
+@State(Scope.Benchmark)
+public abstract class HolesBenchmark {
+  static final int[] HOLES = { 0, 1, 8, 64 };
+
+  @Param({ "0", "1", "8", "64" })
+  int holes;
+
+  @Param({ "reference", "primitive" })
+  String kind;
+
+  String[] references;
+  int[] primitives;
+  Object[] arguments;
+  boolean isPrimitive;
+  Class<?> holeType;
+
+  /**
+   * index of the call site to use, the call sites for references first then the call sites for primitives
+   */
+  int variant;
+
+  @Setup
+  public void setup() {
+    references = IntStream.range(0, holes).mapToObj(i -> "value" + i).toArray(String[]::new);
+    primitives = IntStream.range(0, holes).map(i -> 31 * i + 7).toArray();
+    isPrimitive = switch (kind) {
+      case "reference" -> false;
+      case "primitive" -> true;
+      default -> throw new IllegalStateException("unknown kind " + kind);
+    };
+    holeType = isPrimitive? int.class: String.class;
+    arguments = isPrimitive? IntStream.of(primitives).boxed().toArray(): references.clone();
+    var holeIndex = IntStream.range(0, HOLES.length).filter(i -> HOLES[i] == holes).findFirst()
+        .orElseThrow(() -> new IllegalStateException("no call site for " + holes + " holes, only " + Arrays.toString(HOLES)));
+    variant = (isPrimitive? HOLES.length: 0) + holeIndex;
+  }
+}
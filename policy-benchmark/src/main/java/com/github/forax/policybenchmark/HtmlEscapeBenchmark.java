@@ -0,0 +1,95 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.policy.HtmlTemplatePolicy;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Compares {@link HtmlTemplatePolicy} with a {@link StringBuilder} and an escaper
+ * that tests and appends the characters one by one.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar HtmlEscapeBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class HtmlEscapeBenchmark {
+  private static final HtmlTemplatePolicy HTML = new HtmlTemplatePolicy();
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, HtmlTemplatePolicy.class, String.class, String.class, int.class),
+      Object[].class,
+      "<tr><td class=\"name\">￼</td><td>￼</td><td>￼</td></tr>"
+  ).dynamicInvoker();
+
+  // the name is clean, the comment contains some characters to escape
+  @Param({ "clean", "dirty" })
+  String input;
+
+  private String name;
+  private String comment;
+  private int count;
+
+  @Setup
+  public void setup() {
+    name = "Alexandre Dumas";
+    comment = switch (input) {
+      case "clean" -> "One for all, all for one, the musketeers of the guard of the king";
+      case "dirty" -> "\"One for all\" & \"all for one\", <b>the musketeers</b> of the king's guard";
+      default -> throw new AssertionError();
+    };
+    count = 1844;
+  }
+
+  private static void escapeCharByChar(StringBuilder builder, String text) {
+    for (var i = 0; i < text.length(); i++) {
+      var c = text.charAt(i);
+      switch (c) {
+        case '<' -> builder.append("&lt;");
+        case '>' -> builder.append("&gt;");
+        case '&' -> builder.append("&amp;");
+        case '"' -> builder.append("&quot;");
+        case '\'' -> builder.append("&#39;");
+        default -> builder.append(c);
+      }
+    }
+  }
+
+  @Benchmark
+  public String charByChar() {
+    var builder = new StringBuilder();
+    builder.append("<tr><td class=\"name\">");
+    escapeCharByChar(builder, name);
+    builder.append("</td><td>");
+    escapeCharByChar(builder, comment);
+    builder.append("</td><td>");
+    escapeCharByChar(builder, String.valueOf(count));
+    builder.append("</td></tr>");
+    return builder.toString();
+  }
+
+  @Benchmark
+  public String policy() throws Throwable {
+    return (String) INDY.invokeExact(HTML, name, comment, count);
+  }
+}
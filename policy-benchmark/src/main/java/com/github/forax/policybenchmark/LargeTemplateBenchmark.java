@@ -0,0 +1,97 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policybenchmark.PolicyInterfaceBenchmark.StringConcat;
+import com.github.forax.policybenchmark.PolicyInterfaceBenchmark.StringConcatOptimized;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.runtime.TemplateConcatFactory;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Compares the method handle combinators generated by {@link java.lang.invoke.StringConcatFactory}
+ * and the hidden class generated by {@link TemplateConcatFactory} on templates with a lot of holes.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar LargeTemplateBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LargeTemplateBenchmark {
+  static final class StringConcatHiddenClass extends StringConcat {
+    @Override
+    public MethodHandle asMethodHandle(TemplatedString template) {
+      var methodType = methodType(template.returnType(), template.parameters().stream().map(Parameter::type).toArray(Class[]::new));
+      var target = TemplateConcatFactory.makeConcat(template, methodType);
+      return MethodHandles.dropArguments(target, 0, StringConcatHiddenClass.class);
+    }
+  }
+
+  private static final StringConcatOptimized COMBINATORS = new StringConcatOptimized();
+  private static final StringConcatHiddenClass HIDDEN_CLASS = new StringConcatHiddenClass();
+
+  // returns a method handle (Policy, String[])String
+  private static MethodHandle indy(Class<?> policyClass, int holes) {
+    var type = methodType(String.class, policyClass).appendParameterTypes(Collections.<Class<?>>nCopies(holes, String.class));
+    return TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "", type, Object[].class, Templates.template(holes))
+        .dynamicInvoker()
+        .asSpreader(String[].class, holes);
+  }
+
+  private static final MethodHandle COMBINATORS_10 = indy(StringConcatOptimized.class, 10);
+  private static final MethodHandle COMBINATORS_50 = indy(StringConcatOptimized.class, 50);
+  private static final MethodHandle COMBINATORS_200 = indy(StringConcatOptimized.class, 200);
+  private static final MethodHandle HIDDEN_CLASS_10 = indy(StringConcatHiddenClass.class, 10);
+  private static final MethodHandle HIDDEN_CLASS_50 = indy(StringConcatHiddenClass.class, 50);
+  private static final MethodHandle HIDDEN_CLASS_200 = indy(StringConcatHiddenClass.class, 200);
+
+  @Param({ "10", "50", "200" })
+  int holes;
+
+  private String[] references;
+
+  @Setup
+  public void setup() {
+    references = IntStream.range(0, holes).mapToObj(i -> "value" + i).toArray(String[]::new);
+  }
+
+  @Benchmark
+  public String combinators() throws Throwable {
+    return switch (holes) {
+      case 10 -> (String) COMBINATORS_10.invokeExact(COMBINATORS, references);
+      case 50 -> (String) COMBINATORS_50.invokeExact(COMBINATORS, references);
+      case 200 -> (String) COMBINATORS_200.invokeExact(COMBINATORS, references);
+      default -> throw new AssertionError();
+    };
+  }
+
+  @Benchmark
+  public String hiddenClass() throws Throwable {
+    return switch (holes) {
+      case 10 -> (String) HIDDEN_CLASS_10.invokeExact(HIDDEN_CLASS, references);
+      case 50 -> (String) HIDDEN_CLASS_50.invokeExact(HIDDEN_CLASS, references);
+      case 200 -> (String) HIDDEN_CLASS_200.invokeExact(HIDDEN_CLASS, references);
+      default -> throw new AssertionError();
+    };
+  }
+}
@@ -0,0 +1,85 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policybenchmark.PolicyInterfaceBenchmark.StringConcat;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Measures the steps of the linkage of a call site, parsing the templated string,
+ * revealing the policy method handle (policy-method only) and the whole bootstrap method.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar LinkageBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LinkageBenchmark {
+  @Param({ "1", "8", "64" })
+  int holes;
+
+  private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+  private String template;
+  private Class<?>[] parameterTypes;
+  private MethodType interfaceType;
+  private MethodType methodType;
+  private MethodHandle policy;
+
+  @Setup
+  public void setup() throws NoSuchMethodException, IllegalAccessException {
+    template = Templates.template(holes);
+    parameterTypes = Collections.<Class<?>>nCopies(holes, String.class).toArray(Class[]::new);
+    methodType = methodType(String.class, parameterTypes);
+    interfaceType = methodType.insertParameterTypes(0, StringConcat.class);
+    policy = lookup.findStatic(PolicyMethodBenchmark.class, "stringConcat",
+        methodType(TemplatePolicyResult.class, com.github.forax.policymethod.TemplatedString.class, Object[].class));
+  }
+
+  @Benchmark
+  public Object interfaceParse() {
+    return com.github.forax.policyinterface.TemplatedString.parse(template, String.class, Object[].class, parameterTypes);
+  }
+
+  @Benchmark
+  public Object methodParse() {
+    return com.github.forax.policymethod.TemplatedString.parse(template, parameterTypes);
+  }
+
+  @Benchmark
+  public MethodHandleInfo methodRevealDirect() {
+    return lookup.revealDirect(policy);
+  }
+
+  @Benchmark
+  public CallSite interfaceBootstrap() {
+    return TemplatePolicyFactory.boostrap(lookup, "", interfaceType, Object[].class, template);
+  }
+
+  @Benchmark
+  public CallSite methodBootstrap() {
+    return TemplatePolicyMetafactory.boostrap(lookup, "", methodType, policy, template);
+  }
+}
@@ -0,0 +1,135 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policybenchmark.PolicyInterfaceBenchmark.StringConcat;
+import com.github.forax.policybenchmark.PolicyInterfaceBenchmark.StringConcatOptimized;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.TemplatedString;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Links N call sites and reports the time to the first result of all call sites, the number of loaded classes,
+ * of lambda forms and of hidden classes and the growth of the metaspace.
+ * The classes are counted using the JFR event {@code jdk.ClassLoad}.
+ *
+ * The measure should be done in a fresh VM, so only one configuration is measured by run
+ * <pre>
+ *   java -cp policy-benchmark/target/benchmarks.jar com.github.forax.policybenchmark.LinkageFootprint interface default 10000
+ * </pre>
+ */
+public class LinkageFootprint {
+  private interface Linker {
+    void linkAndCall(int callSites) throws Throwable;
+  }
+
+  record Footprint(long timeToFirstResult, int classes, int lambdaForms, int hiddenClasses, long metaspace) {
+    @Override
+    public String toString() {
+      return "time to first result " + timeToFirstResult / 1_000_000 + " ms\n" +
+          "loaded classes " + classes + "\n" +
+          "lambda forms " + lambdaForms + "\n" +
+          "hidden classes " + hiddenClasses + "\n" +
+          "metaspace growth " + metaspace / 1024 + " KB";
+    }
+  }
+
+  private static long metaspaceUsed() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getName().equals("Metaspace"))
+        .mapToLong(pool -> pool.getUsage().getUsed())
+        .sum();
+  }
+
+  static Footprint measure(Linker linker, int callSites) throws Throwable {
+    var thread = Thread.currentThread();
+    var file = Files.createTempFile("linkage", ".jfr");
+    try {
+      long timeToFirstResult;
+      long metaspace;
+      try (var recording = new Recording()) {
+        recording.enable("jdk.ClassLoad");
+        recording.start();
+        var metaspaceBefore = metaspaceUsed();
+        var start = System.nanoTime();
+        linker.linkAndCall(callSites);
+        timeToFirstResult = System.nanoTime() - start;
+        metaspace = metaspaceUsed() - metaspaceBefore;
+        recording.stop();
+        recording.dump(file);
+      }
+      var classes = 0;
+      var lambdaForms = 0;
+      var hiddenClasses = 0;
+      for (var event : RecordingFile.readAllEvents(file)) {
+        if (event.getThread() == null || event.getThread().getJavaThreadId() != thread.getId()) {
+          continue;
+        }
+        RecordedClass loadedClass = event.getValue("loadedClass");
+        classes++;
+        if (loadedClass.getName().startsWith("java.lang.invoke.LambdaForm$")) {
+          lambdaForms++;
+        }
+        if (loadedClass.getBoolean("hidden")) {
+          hiddenClasses++;
+        }
+      }
+      return new Footprint(timeToFirstResult, classes, lambdaForms, hiddenClasses, metaspace);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static Linker interfaceLinker(StringConcat stringConcat) {
+    var type = methodType(String.class, StringConcat.class, int.class);
+    return callSites -> {
+      var lookup = MethodHandles.lookup();
+      for (var i = 0; i < callSites; i++) {
+        var target = TemplatePolicyFactory.boostrap(lookup, "", type, Object[].class, StartupBenchmark.template(i)).dynamicInvoker();
+        var result = (String) target.invokeExact(stringConcat, i);
+      }
+    };
+  }
+
+  private static Linker methodLinker(String policyName) {
+    var type = methodType(String.class, int.class);
+    return callSites -> {
+      var lookup = MethodHandles.lookup();
+      var policy = lookup.findStatic(PolicyMethodBenchmark.class, policyName,
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+      for (var i = 0; i < callSites; i++) {
+        var target = TemplatePolicyMetafactory.boostrap(lookup, "", type, policy, StartupBenchmark.template(i)).dynamicInvoker();
+        var result = (String) target.invokeExact(i);
+      }
+    };
+  }
+
+  public static void main(String[] args) throws Throwable {
+    if (args.length != 3) {
+      System.err.println("LinkageFootprint interface|method default|optimized callSites");
+      System.exit(1);
+      return;
+    }
+    var optimized = switch (args[1]) {
+      case "default" -> false;
+      case "optimized" -> true;
+      default -> throw new IllegalArgumentException("unknown policy " + args[1]);
+    };
+    var linker = switch (args[0]) {
+      case "interface" -> interfaceLinker(optimized? new StringConcatOptimized(): new StringConcat());
+      case "method" -> methodLinker(optimized? "stringConcatOptimized": "stringConcat");
+      default -> throw new IllegalArgumentException("unknown implementation " + args[0]);
+    };
+    var callSites = Integer.parseInt(args[2]);
+    System.out.println(args[0] + " " + args[1] + " " + callSites + " call sites");
+    System.out.println(measure(linker, callSites));
+  }
+}
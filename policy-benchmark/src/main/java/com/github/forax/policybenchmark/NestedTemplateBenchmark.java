@@ -0,0 +1,66 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.policy.Rope;
+import com.github.forax.policyinterface.policy.RopeTemplatePolicy;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Nests a partial into itself {@code depth} times then gets the resulting string.
+ * {@code string} creates a new string at each level (the cost is quadratic in the depth),
+ * {@code rope} uses the {@link RopeTemplatePolicy} and only creates the string at the end.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar NestedTemplateBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class NestedTemplateBenchmark {
+  private static final RopeTemplatePolicy ROPE = new RopeTemplatePolicy();
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(Rope.class, RopeTemplatePolicy.class, int.class, Object.class),
+      Object[].class,
+      "<div class=\"level-￼\">￼</div>"
+  ).dynamicInvoker();
+
+  @Param({ "10", "100", "1000" })
+  int depth;
+
+  @Benchmark
+  public String string() {
+    var text = "content";
+    for (var i = 0; i < depth; i++) {
+      text = "<div class=\"level-" + i + "\">" + text + "</div>";
+    }
+    return text;
+  }
+
+  @Benchmark
+  public String rope() throws Throwable {
+    Object rope = "content";
+    for (var i = 0; i < depth; i++) {
+      rope = (Rope) INDY.invokeExact(ROPE, i, rope);
+    }
+    return rope.toString();
+  }
+}
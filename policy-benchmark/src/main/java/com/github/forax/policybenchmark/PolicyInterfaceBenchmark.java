@@ -0,0 +1,139 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.StringConcatException;
+import java.lang.invoke.StringConcatFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// java -jar policy-benchmark/target/benchmarks.jar PolicyInterfaceBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PolicyInterfaceBenchmark extends HolesBenchmark {
+  static class StringConcat implements TemplatePolicy<String, Object, RuntimeException> {
+    @Override
+    public String apply(TemplatedString template, Object... args) {
+      var builder = new StringBuilder();
+      for(var segment: template.segments()) {
+        if (segment instanceof Text text) {
+          builder.append(text.text());
+        } else {
+          builder.append(args[((Parameter) segment).index()]);
+        }
+      }
+      return builder.toString();
+    }
+  }
+
+  static final class StringConcatOptimized extends StringConcat {
+    @Override
+    public MethodHandle asMethodHandle(TemplatedString template) throws StringConcatException {
+      var recipe = template.template().replace(TemplatedString.OBJECT_REPLACEMENT_CHARACTER, '\u0001');
+      var methodType = methodType(template.returnType(), template.parameters().stream().map(Parameter::type).toArray(Class[]::new));
+      var target = StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", methodType, recipe)
+          .dynamicInvoker();
+      return MethodHandles.dropArguments(target, 0, StringConcatOptimized.class);
+    }
+  }
+
+  private static final StringConcat STRING_CONCAT = new StringConcat();
+  private static final StringConcatOptimized STRING_CONCAT_OPTIMIZED = new StringConcatOptimized();
+
+  // returns a method handle (Policy, String[]|int[])String
+  private static MethodHandle indy(Class<?> policyClass, Class<?> holeType, int holes) {
+    var type = methodType(String.class, policyClass).appendParameterTypes(Collections.<Class<?>>nCopies(holes, holeType));
+    return TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "", type, Object[].class, Templates.template(holes))
+        .dynamicInvoker()
+        .asSpreader(holeType.arrayType(), holes);
+  }
+
+  private static final MethodHandle INDY_REFERENCE_0 = indy(StringConcat.class, String.class, 0);
+  private static final MethodHandle INDY_REFERENCE_1 = indy(StringConcat.class, String.class, 1);
+  private static final MethodHandle INDY_REFERENCE_8 = indy(StringConcat.class, String.class, 8);
+  private static final MethodHandle INDY_REFERENCE_64 = indy(StringConcat.class, String.class, 64);
+  private static final MethodHandle INDY_PRIMITIVE_0 = indy(StringConcat.class, int.class, 0);
+  private static final MethodHandle INDY_PRIMITIVE_1 = indy(StringConcat.class, int.class, 1);
+  private static final MethodHandle INDY_PRIMITIVE_8 = indy(StringConcat.class, int.class, 8);
+  private static final MethodHandle INDY_PRIMITIVE_64 = indy(StringConcat.class, int.class, 64);
+
+  private static final MethodHandle OPTIMIZED_REFERENCE_0 = indy(StringConcatOptimized.class, String.class, 0);
+  private static final MethodHandle OPTIMIZED_REFERENCE_1 = indy(StringConcatOptimized.class, String.class, 1);
+  private static final MethodHandle OPTIMIZED_REFERENCE_8 = indy(StringConcatOptimized.class, String.class, 8);
+  private static final MethodHandle OPTIMIZED_REFERENCE_64 = indy(StringConcatOptimized.class, String.class, 64);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_0 = indy(StringConcatOptimized.class, int.class, 0);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_1 = indy(StringConcatOptimized.class, int.class, 1);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_8 = indy(StringConcatOptimized.class, int.class, 8);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_64 = indy(StringConcatOptimized.class, int.class, 64);
+
+  private TemplatedString template;
+
+  @Setup
+  public void setupTemplate() {
+    template = TemplatedString.parse(Templates.template(holes), String.class, Object[].class,
+        Collections.<Class<?>>nCopies(holes, holeType).toArray(Class[]::new));
+  }
+
+  @Benchmark
+  public String apply() {
+    // like a varargs call, the array is allocated and the primitives are boxed at each call
+    var args = new Object[holes];
+    if (isPrimitive) {
+      for (var i = 0; i < args.length; i++) {
+        args[i] = primitives[i];
+      }
+    } else {
+      System.arraycopy(references, 0, args, 0, args.length);
+    }
+    return STRING_CONCAT.apply(template, args);
+  }
+
+  @Benchmark
+  public String indy() throws Throwable {
+    return switch (variant) {
+      case 0 -> (String) INDY_REFERENCE_0.invokeExact(STRING_CONCAT, references);
+      case 1 -> (String) INDY_REFERENCE_1.invokeExact(STRING_CONCAT, references);
+      case 2 -> (String) INDY_REFERENCE_8.invokeExact(STRING_CONCAT, references);
+      case 3 -> (String) INDY_REFERENCE_64.invokeExact(STRING_CONCAT, references);
+      case 4 -> (String) INDY_PRIMITIVE_0.invokeExact(STRING_CONCAT, primitives);
+      case 5 -> (String) INDY_PRIMITIVE_1.invokeExact(STRING_CONCAT, primitives);
+      case 6 -> (String) INDY_PRIMITIVE_8.invokeExact(STRING_CONCAT, primitives);
+      case 7 -> (String) INDY_PRIMITIVE_64.invokeExact(STRING_CONCAT, primitives);
+      default -> throw new AssertionError();
+    };
+  }
+
+  @Benchmark
+  public String indyOptimized() throws Throwable {
+    return switch (variant) {
+      case 0 -> (String) OPTIMIZED_REFERENCE_0.invokeExact(STRING_CONCAT_OPTIMIZED, references);
+      case 1 -> (String) OPTIMIZED_REFERENCE_1.invokeExact(STRING_CONCAT_OPTIMIZED, references);
+      case 2 -> (String) OPTIMIZED_REFERENCE_8.invokeExact(STRING_CONCAT_OPTIMIZED, references);
+      case 3 -> (String) OPTIMIZED_REFERENCE_64.invokeExact(STRING_CONCAT_OPTIMIZED, references);
+      case 4 -> (String) OPTIMIZED_PRIMITIVE_0.invokeExact(STRING_CONCAT_OPTIMIZED, primitives);
+      case 5 -> (String) OPTIMIZED_PRIMITIVE_1.invokeExact(STRING_CONCAT_OPTIMIZED, primitives);
+      case 6 -> (String) OPTIMIZED_PRIMITIVE_8.invokeExact(STRING_CONCAT_OPTIMIZED, primitives);
+      case 7 -> (String) OPTIMIZED_PRIMITIVE_64.invokeExact(STRING_CONCAT_OPTIMIZED, primitives);
+      default -> throw new AssertionError();
+    };
+  }
+}
@@ -0,0 +1,147 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.TemplatedString;
+import com.github.forax.policymethod.TemplatedString.Parameter;
+import com.github.forax.policymethod.TemplatedString.Text;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.StringConcatException;
+import java.lang.invoke.StringConcatFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// java -jar policy-benchmark/target/benchmarks.jar PolicyMethodBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PolicyMethodBenchmark extends HolesBenchmark {
+  private static String concat(TemplatedString templatedString, Object... args) {
+    var builder = new StringBuilder();
+    for(var segment: templatedString.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+      } else {
+        builder.append(args[((Parameter) segment).index()]);
+      }
+    }
+    return builder.toString();
+  }
+
+  // template-policy
+  public static TemplatePolicyResult<String> stringConcat(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.result(concat(templatedString, args));
+  }
+
+  // template-policy
+  public static TemplatePolicyResult<String> stringConcatOptimized(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.resultAndPolicyFactory(concat(templatedString, args), PolicyMethodBenchmark::stringConcatMetaFactory);
+  }
+
+  private static MethodHandle stringConcatMetaFactory(TemplatedString templatedString, MethodType methodType) throws StringConcatException {
+    var recipe = templatedString.template().replace(TemplatedString.OBJECT_REPLACEMENT_CHARACTER, '\u0001');
+    return StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", methodType, recipe)
+        .dynamicInvoker();
+  }
+
+  // returns a method handle (String[]|int[])String
+  private static MethodHandle indy(String policyName, Class<?> holeType, int holes) {
+    var lookup = MethodHandles.lookup();
+    MethodHandle policy;
+    try {
+      policy = lookup.findStatic(PolicyMethodBenchmark.class, policyName,
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    var type = methodType(String.class, Collections.<Class<?>>nCopies(holes, holeType));
+    return TemplatePolicyMetafactory.boostrap(lookup, "", type, policy, Templates.template(holes))
+        .dynamicInvoker()
+        .asSpreader(holeType.arrayType(), holes);
+  }
+
+  private static final MethodHandle INDY_REFERENCE_0 = indy("stringConcat", String.class, 0);
+  private static final MethodHandle INDY_REFERENCE_1 = indy("stringConcat", String.class, 1);
+  private static final MethodHandle INDY_REFERENCE_8 = indy("stringConcat", String.class, 8);
+  private static final MethodHandle INDY_REFERENCE_64 = indy("stringConcat", String.class, 64);
+  private static final MethodHandle INDY_PRIMITIVE_0 = indy("stringConcat", int.class, 0);
+  private static final MethodHandle INDY_PRIMITIVE_1 = indy("stringConcat", int.class, 1);
+  private static final MethodHandle INDY_PRIMITIVE_8 = indy("stringConcat", int.class, 8);
+  private static final MethodHandle INDY_PRIMITIVE_64 = indy("stringConcat", int.class, 64);
+
+  private static final MethodHandle OPTIMIZED_REFERENCE_0 = indy("stringConcatOptimized", String.class, 0);
+  private static final MethodHandle OPTIMIZED_REFERENCE_1 = indy("stringConcatOptimized", String.class, 1);
+  private static final MethodHandle OPTIMIZED_REFERENCE_8 = indy("stringConcatOptimized", String.class, 8);
+  private static final MethodHandle OPTIMIZED_REFERENCE_64 = indy("stringConcatOptimized", String.class, 64);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_0 = indy("stringConcatOptimized", int.class, 0);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_1 = indy("stringConcatOptimized", int.class, 1);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_8 = indy("stringConcatOptimized", int.class, 8);
+  private static final MethodHandle OPTIMIZED_PRIMITIVE_64 = indy("stringConcatOptimized", int.class, 64);
+
+  private TemplatedString template;
+
+  @Setup
+  public void setupTemplate() {
+    template = TemplatedString.parse(Templates.template(holes),
+        Collections.<Class<?>>nCopies(holes, holeType).toArray(Class[]::new));
+  }
+
+  @Benchmark
+  public String apply() {
+    // like a varargs call, the array is allocated and the primitives are boxed at each call
+    var args = new Object[holes];
+    if (isPrimitive) {
+      for (var i = 0; i < args.length; i++) {
+        args[i] = primitives[i];
+      }
+    } else {
+      System.arraycopy(references, 0, args, 0, args.length);
+    }
+    return stringConcat(template, args).result();
+  }
+
+  @Benchmark
+  public String indy() throws Throwable {
+    return switch (variant) {
+      case 0 -> (String) INDY_REFERENCE_0.invokeExact(references);
+      case 1 -> (String) INDY_REFERENCE_1.invokeExact(references);
+      case 2 -> (String) INDY_REFERENCE_8.invokeExact(references);
+      case 3 -> (String) INDY_REFERENCE_64.invokeExact(references);
+      case 4 -> (String) INDY_PRIMITIVE_0.invokeExact(primitives);
+      case 5 -> (String) INDY_PRIMITIVE_1.invokeExact(primitives);
+      case 6 -> (String) INDY_PRIMITIVE_8.invokeExact(primitives);
+      case 7 -> (String) INDY_PRIMITIVE_64.invokeExact(primitives);
+      default -> throw new AssertionError();
+    };
+  }
+
+  @Benchmark
+  public String indyOptimized() throws Throwable {
+    return switch (variant) {
+      case 0 -> (String) OPTIMIZED_REFERENCE_0.invokeExact(references);
+      case 1 -> (String) OPTIMIZED_REFERENCE_1.invokeExact(references);
+      case 2 -> (String) OPTIMIZED_REFERENCE_8.invokeExact(references);
+      case 3 -> (String) OPTIMIZED_REFERENCE_64.invokeExact(references);
+      case 4 -> (String) OPTIMIZED_PRIMITIVE_0.invokeExact(primitives);
+      case 5 -> (String) OPTIMIZED_PRIMITIVE_1.invokeExact(primitives);
+      case 6 -> (String) OPTIMIZED_PRIMITIVE_8.invokeExact(primitives);
+      case 7 -> (String) OPTIMIZED_PRIMITIVE_64.invokeExact(primitives);
+      default -> throw new AssertionError();
+    };
+  }
+}
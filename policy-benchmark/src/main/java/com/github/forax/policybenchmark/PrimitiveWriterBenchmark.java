@@ -0,0 +1,172 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.runtime.PrimitiveWriters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Compares {@link PrimitiveWriters} with {@link Integer#toString(int)}, {@link Long#toString(long)}
+ * and {@link Double#toString(double)} followed by a copy of the text into the same buffer.
+ * Each operation writes 64 values, use {@code -prof gc} to see the allocation rate.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar PrimitiveWriterBenchmark -prof gc
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PrimitiveWriterBenchmark {
+  private static final int VALUES = 64;
+
+  private final int[] ints = new int[VALUES];
+  private final long[] longs = new long[VALUES];
+  private final double[] prices = new double[VALUES];
+  private final double[] doubles = new double[VALUES];  // any magnitude between 2^-511 and 2^512
+  private final byte[] bytes = new byte[VALUES * 24];
+  private final char[] chars = new char[VALUES * 24];
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(VALUES * 24);
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    for (var i = 0; i < VALUES; i++) {
+      ints[i] = random.nextInt() >> random.nextInt(32);
+      longs[i] = random.nextLong() >> random.nextInt(64);
+      prices[i] = random.nextInt(100_000) / 100.0;
+      doubles[i] = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE >>> 1 | 0x2000_0000_0000_0000L);
+    }
+  }
+
+  @Benchmark
+  public int int_toString_copy() {
+    var offset = 0;
+    for (var value : ints) {
+      var text = Integer.toString(value).getBytes(ISO_8859_1);
+      System.arraycopy(text, 0, bytes, offset, text.length);
+      offset += text.length;
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int int_writer() {
+    var offset = 0;
+    for (var value : ints) {
+      offset = PrimitiveWriters.write(bytes, offset, value);
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int int_toString_getChars() {
+    var offset = 0;
+    for (var value : ints) {
+      var text = Integer.toString(value);
+      text.getChars(0, text.length(), chars, offset);
+      offset += text.length();
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int int_writer_chars() {
+    var offset = 0;
+    for (var value : ints) {
+      offset = PrimitiveWriters.write(chars, offset, value);
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int long_toString_copy() {
+    var offset = 0;
+    for (var value : longs) {
+      var text = Long.toString(value).getBytes(ISO_8859_1);
+      System.arraycopy(text, 0, bytes, offset, text.length);
+      offset += text.length;
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int long_writer() {
+    var offset = 0;
+    for (var value : longs) {
+      offset = PrimitiveWriters.write(bytes, offset, value);
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int long_toString_put_direct() {
+    buffer.clear();
+    for (var value : longs) {
+      buffer.put(Long.toString(value).getBytes(ISO_8859_1));
+    }
+    return buffer.position();
+  }
+
+  @Benchmark
+  public int long_writer_direct() {
+    buffer.clear();
+    for (var value : longs) {
+      PrimitiveWriters.write(buffer, value);
+    }
+    return buffer.position();
+  }
+
+  @Benchmark
+  public int double_toString_copy() {
+    var offset = 0;
+    for (var value : prices) {
+      var text = Double.toString(value).getBytes(ISO_8859_1);
+      System.arraycopy(text, 0, bytes, offset, text.length);
+      offset += text.length;
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int double_writer() {
+    var offset = 0;
+    for (var value : prices) {
+      offset = PrimitiveWriters.write(bytes, offset, value);
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int double_any_toString_copy() {
+    var offset = 0;
+    for (var value : doubles) {
+      var text = Double.toString(value).getBytes(ISO_8859_1);
+      System.arraycopy(text, 0, bytes, offset, text.length);
+      offset += text.length;
+    }
+    return offset;
+  }
+
+  @Benchmark
+  public int double_any_writer() {
+    var offset = 0;
+    for (var value : doubles) {
+      offset = PrimitiveWriters.write(bytes, offset, value);
+    }
+    return offset;
+  }
+}
@@ -0,0 +1,216 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.StringConcatException;
+import java.lang.invoke.StringConcatFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Calls the same call site with receivers of 1 (monomorphic), 2 (polymorphic) or 8 (megamorphic) different classes.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar ReceiverBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ReceiverBenchmark {
+  private static final String TEMPLATE = "name: " + TemplatedString.OBJECT_REPLACEMENT_CHARACTER;
+
+  // policy-interface
+  abstract static class Concat implements TemplatePolicy<String, Object, RuntimeException> {
+    private final boolean optimized;
+
+    Concat(boolean optimized) {
+      this.optimized = optimized;
+    }
+
+    @Override
+    public String apply(TemplatedString template, Object... args) {
+      var builder = new StringBuilder();
+      for(var segment: template.segments()) {
+        if (segment instanceof Text text) {
+          builder.append(text.text());
+        } else {
+          builder.append(args[((Parameter) segment).index()]);
+        }
+      }
+      return builder.toString();
+    }
+
+    @Override
+    public MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
+      if (!optimized) {
+        return TemplatePolicy.super.asMethodHandle(template);
+      }
+      var recipe = template.template().replace(TemplatedString.OBJECT_REPLACEMENT_CHARACTER, '\u0001');
+      var methodType = methodType(template.returnType(), template.parameters().stream().map(Parameter::type).toArray(Class[]::new));
+      var target = StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", methodType, recipe)
+          .dynamicInvoker();
+      return MethodHandles.dropArguments(target, 0, getClass());
+    }
+  }
+  static final class Concat0 extends Concat { Concat0(boolean optimized) { super(optimized); } }
+  static final class Concat1 extends Concat { Concat1(boolean optimized) { super(optimized); } }
+  static final class Concat2 extends Concat { Concat2(boolean optimized) { super(optimized); } }
+  static final class Concat3 extends Concat { Concat3(boolean optimized) { super(optimized); } }
+  static final class Concat4 extends Concat { Concat4(boolean optimized) { super(optimized); } }
+  static final class Concat5 extends Concat { Concat5(boolean optimized) { super(optimized); } }
+  static final class Concat6 extends Concat { Concat6(boolean optimized) { super(optimized); } }
+  static final class Concat7 extends Concat { Concat7(boolean optimized) { super(optimized); } }
+
+  private static final List<Function<Boolean, Concat>> CONCATS = List.of(
+      Concat0::new, Concat1::new, Concat2::new, Concat3::new, Concat4::new, Concat5::new, Concat6::new, Concat7::new);
+
+  // policy-method
+  interface MethodConcat {
+    TemplatePolicyResult<String> templatePolicy(com.github.forax.policymethod.TemplatedString templatedString, Object... args);
+    TemplatePolicyResult<String> templatePolicyOptimized(com.github.forax.policymethod.TemplatedString templatedString, Object... args);
+  }
+  abstract static class AbstractMethodConcat implements MethodConcat {
+    private static String concat(com.github.forax.policymethod.TemplatedString templatedString, Object... args) {
+      var builder = new StringBuilder();
+      for(var segment: templatedString.segments()) {
+        if (segment instanceof com.github.forax.policymethod.TemplatedString.Text text) {
+          builder.append(text.text());
+        } else {
+          builder.append(args[((com.github.forax.policymethod.TemplatedString.Parameter) segment).index()]);
+        }
+      }
+      return builder.toString();
+    }
+
+    @Override
+    public TemplatePolicyResult<String> templatePolicy(com.github.forax.policymethod.TemplatedString templatedString, Object... args) {
+      return TemplatePolicyResult.result(concat(templatedString, args));
+    }
+
+    @Override
+    public TemplatePolicyResult<String> templatePolicyOptimized(com.github.forax.policymethod.TemplatedString templatedString, Object... args) {
+      return TemplatePolicyResult.resultAndPolicyFactory(concat(templatedString, args), AbstractMethodConcat::policyFactory);
+    }
+
+    private static MethodHandle policyFactory(com.github.forax.policymethod.TemplatedString templatedString, MethodType methodType) throws StringConcatException {
+      var recipe = templatedString.template().replace(TemplatedString.OBJECT_REPLACEMENT_CHARACTER, '\u0001');
+      var target = StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", methodType.dropParameterTypes(0, 1), recipe)
+          .dynamicInvoker();
+      return MethodHandles.dropArguments(target, 0, methodType.parameterType(0));
+    }
+  }
+  static final class MethodConcat0 extends AbstractMethodConcat { }
+  static final class MethodConcat1 extends AbstractMethodConcat { }
+  static final class MethodConcat2 extends AbstractMethodConcat { }
+  static final class MethodConcat3 extends AbstractMethodConcat { }
+  static final class MethodConcat4 extends AbstractMethodConcat { }
+  static final class MethodConcat5 extends AbstractMethodConcat { }
+  static final class MethodConcat6 extends AbstractMethodConcat { }
+  static final class MethodConcat7 extends AbstractMethodConcat { }
+
+  private static final List<MethodConcat> METHOD_CONCATS = List.of(
+      new MethodConcat0(), new MethodConcat1(), new MethodConcat2(), new MethodConcat3(),
+      new MethodConcat4(), new MethodConcat5(), new MethodConcat6(), new MethodConcat7());
+
+  private static MethodHandle linkInterface() {
+    return TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "",
+        methodType(String.class, Concat.class, String.class), Object[].class, TEMPLATE).dynamicInvoker();
+  }
+
+  private static MethodHandle linkMethod(String name) {
+    var lookup = MethodHandles.lookup();
+    MethodHandle policy;
+    try {
+      policy = lookup.findVirtual(MethodConcat.class, name,
+          methodType(TemplatePolicyResult.class, com.github.forax.policymethod.TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    return TemplatePolicyMetafactory.boostrap(lookup, "",
+        methodType(String.class, MethodConcat.class, String.class), policy, TEMPLATE).dynamicInvoker();
+  }
+
+  private static final MethodHandle INTERFACE_INDY = linkInterface();
+  private static final MethodHandle INTERFACE_INDY_OPTIMIZED = linkInterface();
+  private static final MethodHandle METHOD_INDY = linkMethod("templatePolicy");
+  private static final MethodHandle METHOD_INDY_OPTIMIZED = linkMethod("templatePolicyOptimized");
+
+  @Param({ "monomorphic", "polymorphic", "megamorphic" })
+  String receivers;
+
+  private Concat[] concats;
+  private Concat[] concatsOptimized;
+  private MethodConcat[] methodConcats;
+  private TemplatedString template;
+  private int mask;
+  private int index;
+  private final String name = "Bob";
+
+  @Setup
+  public void setup() {
+    var count = switch (receivers) {
+      case "monomorphic" -> 1;
+      case "polymorphic" -> 2;
+      case "megamorphic" -> 8;
+      default -> throw new IllegalStateException("unknown receivers " + receivers);
+    };
+    concats = CONCATS.stream().limit(count).map(factory -> factory.apply(false)).toArray(Concat[]::new);
+    concatsOptimized = CONCATS.stream().limit(count).map(factory -> factory.apply(true)).toArray(Concat[]::new);
+    methodConcats = METHOD_CONCATS.stream().limit(count).toArray(MethodConcat[]::new);
+    template = TemplatedString.parse(TEMPLATE, String.class, Object[].class, String.class);
+    mask = count - 1;
+  }
+
+  private int nextIndex() {
+    return index++ & mask;
+  }
+
+  @Benchmark
+  public String interfaceApply() {
+    return concats[nextIndex()].apply(template, name);
+  }
+
+  @Benchmark
+  public String interfaceIndy() throws Throwable {
+    return (String) INTERFACE_INDY.invokeExact(concats[nextIndex()], name);
+  }
+
+  @Benchmark
+  public String interfaceIndyOptimized() throws Throwable {
+    return (String) INTERFACE_INDY_OPTIMIZED.invokeExact(concatsOptimized[nextIndex()], name);
+  }
+
+  @Benchmark
+  public String methodIndy() throws Throwable {
+    return (String) METHOD_INDY.invokeExact(methodConcats[nextIndex()], name);
+  }
+
+  @Benchmark
+  public String methodIndyOptimized() throws Throwable {
+    return (String) METHOD_INDY_OPTIMIZED.invokeExact(methodConcats[nextIndex()], name);
+  }
+}
@@ -0,0 +1,98 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.policy.TemplateScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link TemplateScanner} with the equivalent {@link Pattern}, both extract the path, the status
+ * and the size of 64 access log lines, the status and the size being converted to an int and a long.
+ * The mismatch benchmarks scan lines that only differ from the template near the end (the protocol version).
+ */
+// java -jar policy-benchmark/target/benchmarks.jar ScanBenchmark -prof gc
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+  private static final int LINES = 64;
+
+  private static final TemplateScanner SCANNER = TemplateScanner.of(TemplatedString.parse("GET ￼ HTTP/1.1 ￼ ￼",
+      TemplateScanner.class, Object[].class, String.class, int.class, long.class));
+  private static final Pattern PATTERN = Pattern.compile("GET (.*?) HTTP/1\\.1 (-?[0-9]+) (-?[0-9]+)");
+
+  private final String[] lines = new String[LINES];
+  private final String[] mismatches = new String[LINES];
+  private final Object[] values = new Object[3];
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    for (var i = 0; i < LINES; i++) {
+      var path = "/static/" + Integer.toHexString(random.nextInt()) + "/page" + i + ".html";
+      var status = random.nextBoolean()? 200: 404;
+      var size = random.nextInt(1 << 20);
+      lines[i] = "GET " + path + " HTTP/1.1 " + status + " " + size;
+      mismatches[i] = "GET " + path + " HTTP/1.0 " + status + " " + size;
+    }
+  }
+
+  private int regex(String[] lines) {
+    var matched = 0;
+    var matcher = PATTERN.matcher("");
+    for (var line : lines) {
+      if (matcher.reset(line).matches()) {
+        values[0] = matcher.group(1);
+        values[1] = Integer.parseInt(matcher.group(2));
+        values[2] = Long.parseLong(matcher.group(3));
+        matched++;
+      }
+    }
+    return matched;
+  }
+
+  private int scanner(String[] lines) {
+    var matched = 0;
+    for (var line : lines) {
+      if (SCANNER.scan(line, values)) {
+        matched++;
+      }
+    }
+    return matched;
+  }
+
+  @Benchmark
+  public int regex_match() {
+    return regex(lines);
+  }
+
+  @Benchmark
+  public int scanner_match() {
+    return scanner(lines);
+  }
+
+  @Benchmark
+  public int regex_mismatch() {
+    return regex(mismatches);
+  }
+
+  @Benchmark
+  public int scanner_mismatch() {
+    return scanner(mismatches);
+  }
+}
@@ -0,0 +1,88 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policybenchmark.PolicyInterfaceBenchmark.StringConcat;
+import com.github.forax.policybenchmark.PolicyInterfaceBenchmark.StringConcatOptimized;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.TemplatedString;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Measures the time to link {@code callSites} different call sites and get their first result in a fresh VM.
+ *
+ * @see LinkageFootprint
+ */
+// java -jar policy-benchmark/target/benchmarks.jar StartupBenchmark
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+  private static final MethodType INTERFACE_TYPE = methodType(String.class, StringConcat.class, int.class);
+  private static final MethodType METHOD_TYPE = methodType(String.class, int.class);
+
+  @Param({ "1000", "10000" })
+  int callSites;
+
+  @Param({ "default", "optimized" })
+  String policy;
+
+  private StringConcat stringConcat;
+  private MethodHandle stringConcatMethod;
+
+  @Setup
+  public void setup() throws NoSuchMethodException, IllegalAccessException {
+    var optimized = switch (policy) {
+      case "default" -> false;
+      case "optimized" -> true;
+      default -> throw new IllegalStateException("unknown policy " + policy);
+    };
+    stringConcat = optimized? new StringConcatOptimized(): new StringConcat();
+    stringConcatMethod = MethodHandles.lookup().findStatic(PolicyMethodBenchmark.class,
+        optimized? "stringConcatOptimized": "stringConcat",
+        methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+  }
+
+  static String template(int callSite) {
+    return "call site " + callSite + ": " + TemplatedString.OBJECT_REPLACEMENT_CHARACTER;
+  }
+
+  @Benchmark
+  public void interfaceFirstCall(Blackhole blackhole) throws Throwable {
+    var lookup = MethodHandles.lookup();
+    for (var i = 0; i < callSites; i++) {
+      var target = TemplatePolicyFactory.boostrap(lookup, "", INTERFACE_TYPE, Object[].class, template(i)).dynamicInvoker();
+      blackhole.consume((String) target.invokeExact(stringConcat, i));
+    }
+  }
+
+  @Benchmark
+  public void methodFirstCall(Blackhole blackhole) throws Throwable {
+    var lookup = MethodHandles.lookup();
+    for (var i = 0; i < callSites; i++) {
+      var target = TemplatePolicyMetafactory.boostrap(lookup, "", METHOD_TYPE, stringConcatMethod, template(i)).dynamicInvoker();
+      blackhole.consume((String) target.invokeExact(i));
+    }
+  }
+}
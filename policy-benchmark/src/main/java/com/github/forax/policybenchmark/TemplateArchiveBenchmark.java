@@ -0,0 +1,144 @@
+package com.github.forax.policybenchmark;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplateArchive;
+import com.github.forax.policyinterface.runtime.TemplateArchive.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures the startup of an application with a lot of templates, either parsed from the source strings
+ * with the text of the templates encoded in UTF-8 (what {@code StreamingTemplatePolicy} does when linked)
+ * or loaded from a {@link TemplateArchive} with the encoded text stored as an attachment.
+ * Each fork measures one cold run, the archive is generated by another process
+ * so the code that parses or decodes the templates is not already warm.
+ */
+// java -jar policy-benchmark/target/benchmarks.jar TemplateArchiveBenchmark
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TemplateArchiveBenchmark {
+  private static final int TEMPLATES = 20_000;
+  private static final Class<?>[][] TYPES = {
+      { String.class },
+      { String.class, int.class },
+      { long.class, String.class, double.class },
+      { Object.class, boolean.class, String.class, int.class }
+  };
+
+  private String[] sources;
+  private Path path;
+
+  private static String[] sources() {
+    var sources = new String[TEMPLATES];
+    for (var i = 0; i < TEMPLATES; i++) {
+      var types = TYPES[i % TYPES.length];
+      var builder = new StringBuilder("<div class=\"template").append(i).append("\">");
+      for (var j = 0; j < types.length; j++) {
+        builder.append("<span>field ").append(j).append(" of template ").append(i).append(": ￼</span>");
+      }
+      sources[i] = builder.append("</div>").toString();
+    }
+    return sources;
+  }
+
+  // generates the archive
+  public static final class Generator {
+    public static void main(String[] args) throws IOException {
+      var sources = sources();
+      var entries = new ArrayList<Entry>();
+      for (var i = 0; i < sources.length; i++) {
+        var template = TemplatedString.parse(sources[i], String.class, Object[].class, TYPES[i % TYPES.length]);
+        entries.add(new Entry("template" + i, template, Map.of("utf8", encode(template))));
+      }
+      TemplateArchive.write(Path.of(args[0]), entries);
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    sources = sources();
+    path = Files.createTempFile("templates", ".bin");
+    var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    var process = new ProcessBuilder(java, "--enable-preview",
+          "-cp", System.getProperty("java.class.path"), Generator.class.getName(), path.toString())
+        .inheritIO()
+        .start();
+    if (process.waitFor() != 0) {
+      throw new IllegalStateException("can not generate the archive");
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(path);
+  }
+
+  // the texts of the template encoded in UTF-8
+  private static byte[] encode(TemplatedString template) {
+    var builder = new StringBuilder();
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+      }
+    }
+    return builder.toString().getBytes(UTF_8);
+  }
+
+  @Benchmark
+  public Object parse_all() {
+    // like an application, keep the templates and the encoded texts
+    var templates = new TemplatedString[sources.length];
+    var encodedTexts = new byte[sources.length][];
+    for (var i = 0; i < sources.length; i++) {
+      templates[i] = TemplatedString.parse(sources[i], String.class, Object[].class, TYPES[i % TYPES.length]);
+      encodedTexts[i] = encode(templates[i]);
+    }
+    return new Object[] { templates, encodedTexts };
+  }
+
+  @Benchmark
+  public Object archive_all() throws IOException {
+    var archive = TemplateArchive.open(path, TemplateArchiveBenchmark.class.getClassLoader());
+    var encodedTexts = new ByteBuffer[archive.size()];
+    for (var i = 0; i < archive.size(); i++) {
+      archive.templatedString(i);
+      encodedTexts[i] = archive.attachment(i, "utf8");
+    }
+    return new Object[] { archive, encodedTexts };
+  }
+
+  @Benchmark
+  public int archive_onePercent() throws IOException {
+    var archive = TemplateArchive.open(path, TemplateArchiveBenchmark.class.getClassLoader());
+    var sum = 0;
+    for (var i = 0; i < archive.size(); i += 100) {
+      sum += archive.templatedString(i).parameters().size();
+      sum += archive.attachment(i, "utf8").remaining();
+    }
+    return sum;
+  }
+}
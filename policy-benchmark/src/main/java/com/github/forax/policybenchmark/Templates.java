@@ -0,0 +1,42 @@
+package com.github.forax.policybenchmark;
+
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.github.forax.policyinterface.TemplatedString.OBJECT_REPLACEMENT_CHARACTER;
+
+final class Templates {
+  private Templates() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Returns a templated string with {@code holes} holes, "hole0: ￼, hole1: ￼, ..."
+   * @param holes the number of holes
+   * @return a templated string
+   */
+  static String template(int holes) {
+    if (holes == 0) {
+      return "no hole";
+    }
+    return IntStream.range(0, holes)
+        .mapToObj(i -> "hole" + i + ": " + OBJECT_REPLACEMENT_CHARACTER)
+        .collect(Collectors.joining(", "));
+  }
+
+  /**
+   * Returns the same text as {@link #template(int)} but using a specific format for each hole.
+   * @param holes the number of holes
+   * @param format the format of the n-th hole
+   * @return a format string
+   */
+  static String format(int holes, IntFunction<String> format) {
+    if (holes == 0) {
+      return "no hole";
+    }
+    return IntStream.range(0, holes)
+        .mapToObj(i -> "hole" + i + ": " + format.apply(i))
+        .collect(Collectors.joining(", "));
+  }
+}
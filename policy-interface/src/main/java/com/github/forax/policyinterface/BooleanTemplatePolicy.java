@@ -0,0 +1,22 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+
+import java.lang.invoke.MethodHandle;
+
+// a template policy that computes a boolean, a call site that returns a boolean calls applyAsBoolean() without boxing
+@FunctionalInterface
+public interface BooleanTemplatePolicy<P, E extends Exception> extends TemplatePolicy<Boolean, P, E> {
+  boolean applyAsBoolean(TemplatedString template, P... args) throws E;
+
+  @Override
+  default Boolean apply(TemplatedString template, P... args) throws E {
+    return applyAsBoolean(template, args);
+  }
+
+  // returns a MethodHandle with the signature boolean(BooleanTemplatePolicy, P...)
+  @Override
+  default MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
+    return TemplatePolicyFactory.applyAsBooleanMethodHandle(template);
+  }
+}
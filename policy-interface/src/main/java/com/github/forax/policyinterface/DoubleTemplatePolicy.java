@@ -0,0 +1,22 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+
+import java.lang.invoke.MethodHandle;
+
+// a template policy that computes a double, a call site that returns a double calls applyAsDouble() without boxing
+@FunctionalInterface
+public interface DoubleTemplatePolicy<P, E extends Exception> extends TemplatePolicy<Double, P, E> {
+  double applyAsDouble(TemplatedString template, P... args) throws E;
+
+  @Override
+  default Double apply(TemplatedString template, P... args) throws E {
+    return applyAsDouble(template, args);
+  }
+
+  // returns a MethodHandle with the signature double(DoubleTemplatePolicy, P...)
+  @Override
+  default MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
+    return TemplatePolicyFactory.applyAsDoubleMethodHandle(template);
+  }
+}
@@ -0,0 +1,22 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+
+import java.lang.invoke.MethodHandle;
+
+// a template policy that computes an int, a call site that returns an int calls applyAsInt() without boxing
+@FunctionalInterface
+public interface IntTemplatePolicy<P, E extends Exception> extends TemplatePolicy<Integer, P, E> {
+  int applyAsInt(TemplatedString template, P... args) throws E;
+
+  @Override
+  default Integer apply(TemplatedString template, P... args) throws E {
+    return applyAsInt(template, args);
+  }
+
+  // returns a MethodHandle with the signature int(IntTemplatePolicy, P...)
+  @Override
+  default MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
+    return TemplatePolicyFactory.applyAsIntMethodHandle(template);
+  }
+}
@@ -0,0 +1,22 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+
+import java.lang.invoke.MethodHandle;
+
+// a template policy that computes a long, a call site that returns a long calls applyAsLong() without boxing
+@FunctionalInterface
+public interface LongTemplatePolicy<P, E extends Exception> extends TemplatePolicy<Long, P, E> {
+  long applyAsLong(TemplatedString template, P... args) throws E;
+
+  @Override
+  default Long apply(TemplatedString template, P... args) throws E {
+    return applyAsLong(template, args);
+  }
+
+  // returns a MethodHandle with the signature long(LongTemplatePolicy, P...)
+  @Override
+  default MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
+    return TemplatePolicyFactory.applyAsLongMethodHandle(template);
+  }
+}
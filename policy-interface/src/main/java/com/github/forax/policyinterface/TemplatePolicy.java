@@ -3,6 +3,8 @@ package com.github.forax.policyinterface;
 import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.SwitchPoint;
+import java.util.List;
 
 @FunctionalInterface
 public interface TemplatePolicy<T, P, E extends Exception> {
@@ -12,4 +14,16 @@ public interface TemplatePolicy<T, P, E extends Exception> {
   default MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
     return TemplatePolicyFactory.applyAsMethodHandle(template);
   }
-}
\ No newline at end of file
+
+  // returns true if the result of apply() is immutable and only depends on the template,
+  // in that case a template with no parameter is evaluated once and its result is shared
+  default boolean isConstantFoldable() {
+    return false;
+  }
+
+  // returns the switch points the method handle returned by asMethodHandle() depends on,
+  // this method is called before asMethodHandle(), when a switch point is invalidated the call site is re-linked
+  default List<SwitchPoint> switchPoints() {
+    return List.of();
+  }
+}
@@ -96,4 +96,19 @@ public sealed interface TemplatedString permits TemplatedStringImpl {
   static TemplatedString parse(String template, Class<?> returnType, Class<?> varargsType, Class<?>... parameterTypes) {
     return TemplatedStringImpl.parse(template, returnType, varargsType, parameterTypes);
   }
+
+  /**
+   * Creates a templated string from its fragments, the texts between the parameters,
+   * so the template does not have to be scanned to find the parameters.
+   * @param fragments the texts before, between and after the parameters, some of them may be empty.
+   * @param returnType the return type of the expression
+   * @param varargsType types of the varargs containing the parameter
+   * @param parameterTypes the types of the parameters
+   * @return a new templated string
+   * @throws IllegalArgumentException if the number of fragments is not the number of parameters plus one
+   *   or if a fragment contains {@link #OBJECT_REPLACEMENT_CHARACTER}.
+   */
+  static TemplatedString of(List<String> fragments, Class<?> returnType, Class<?> varargsType, Class<?>... parameterTypes) {
+    return TemplatedStringImpl.of(fragments, returnType, varargsType, parameterTypes);
+  }
 }
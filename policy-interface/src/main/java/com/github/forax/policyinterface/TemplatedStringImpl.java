@@ -24,6 +24,40 @@ record TemplatedStringImpl(String template, Class<?> returnType, Class<?> vararg
     return new TemplatedStringImpl(template, returnType, varargsType, List.of(parameters));
   }
 
+  static TemplatedStringImpl of(List<String> fragments, Class<?> returnType, Class<?> varargsType, Class<?>... parameterTypes) {
+    Objects.requireNonNull(fragments, "fragments is null");
+    Objects.requireNonNull(returnType, "returnType is null");
+    Objects.requireNonNull(varargsType, "varargs is null");
+    Objects.requireNonNull(parameterTypes, "parameterTypes is null");
+    if (fragments.size() != parameterTypes.length + 1) {
+      throw new IllegalArgumentException("invalid number of fragments");
+    }
+    var builder = new StringBuilder();
+    var parameters = new Parameter[parameterTypes.length];
+    for(var i = 0; i < fragments.size(); i++) {
+      var fragment = fragments.get(i);
+      if (fragment.indexOf(OBJECT_REPLACEMENT_CHARACTER) != -1) {
+        throw new IllegalArgumentException("fragment " + i + " contains a parameter");
+      }
+      builder.append(fragment);
+      if (i < parameters.length) {
+        builder.append(OBJECT_REPLACEMENT_CHARACTER);
+        parameters[i] = new Parameter(parameterTypes[i], i);
+      }
+    }
+    return new TemplatedStringImpl(builder.toString(), returnType, varargsType, List.of(parameters));
+  }
+
+  // used by TemplateArchive to decode a template already checked when the archive was written,
+  // the template is not scanned, it must contain one OBJECT_REPLACEMENT_CHARACTER by parameter type
+  static TemplatedStringImpl trusted(String template, Class<?> returnType, Class<?> varargsType, Class<?>[] parameterTypes) {
+    var parameters = new Parameter[parameterTypes.length];
+    for(var i = 0; i < parameters.length; i++) {
+      parameters[i] = new Parameter(parameterTypes[i], i);
+    }
+    return new TemplatedStringImpl(template, returnType, varargsType, List.of(parameters));
+  }
+
   @Override
   public Iterable<Segment> segments() {
     return () -> new Iterator<>() {
@@ -0,0 +1,141 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Segment;
+import com.github.forax.policyinterface.TemplatedString.Text;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A template policy that renders a string asynchronously, the holes that are a {@link CompletionStage}
+ * (or a {@link CompletableFuture}) are replaced by their value when it is available,
+ * the result is a {@link CompletableFuture} of the rendered string.
+ * <pre>
+ *   CompletableFuture&lt;String&gt; page = ASYNC."user: \(userService.find(id)) cart: \(cartService.find(id))";
+ * </pre>
+ *
+ * The rendering never blocks, the text before the first asynchronous hole and the values of the
+ * other holes are rendered eagerly, the rest is rendered once all the asynchronous holes are completed.
+ *
+ * The asynchronous holes are found using the type of the parameters of the templated string,
+ * so {@link #apply(TemplatedString, Object...)} and the linked call site render the same way.
+ */
+public final class AsyncTemplatePolicy implements TemplatePolicy<CompletableFuture<String>, Object, RuntimeException> {
+  private static final MethodHandle RENDER;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      RENDER = lookup.findVirtual(Renderer.class, "render", methodType(CompletableFuture.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<String> apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    return new Renderer(template, async(template)).render(args);
+  }
+
+  // a parameter is asynchronous if its type is a CompletionStage
+  private static boolean[] async(TemplatedString template) {
+    var parameters = template.parameters();
+    var async = new boolean[parameters.size()];
+    for (var i = 0; i < async.length; i++) {
+      async[i] = CompletionStage.class.isAssignableFrom(parameters.get(i).type());
+    }
+    return async;
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+    var async = async(template);
+    var target = RENDER.bindTo(new Renderer(template, async)).asCollector(Object[].class, async.length);
+    return dropArguments(target, 0, AsyncTemplatePolicy.class)
+        .asType(methodType(template.returnType(), parameterTypes).insertParameterTypes(0, AsyncTemplatePolicy.class));
+  }
+
+  /**
+   * Renders a templated string knowing which parameters are asynchronous.
+   */
+  private static final class Renderer {
+    private final List<Segment> segments;
+    private final boolean[] async;
+    private final int asyncCount;
+    private final int firstAsyncSegment;  // index of the first asynchronous segment or segments.size()
+
+    private Renderer(TemplatedString template, boolean[] async) {
+      var segments = new ArrayList<Segment>();
+      template.segments().forEach(segments::add);
+      var asyncCount = 0;
+      var firstAsyncSegment = segments.size();
+      for (var i = segments.size(); --i >= 0;) {
+        if (segments.get(i) instanceof Parameter parameter && async[parameter.index()]) {
+          asyncCount++;
+          firstAsyncSegment = i;
+        }
+      }
+      this.segments = List.copyOf(segments);
+      this.async = async;
+      this.asyncCount = asyncCount;
+      this.firstAsyncSegment = firstAsyncSegment;
+    }
+
+    private CompletableFuture<String> render(Object[] args) {
+      // the values of the synchronous holes are captured now
+      var values = new String[args.length];
+      var futures = new CompletableFuture<?>[asyncCount];
+      var futureIndex = 0;
+      for (var i = 0; i < args.length; i++) {
+        var arg = args[i];
+        if (async[i]) {
+          futures[futureIndex++] = arg == null? CompletableFuture.completedFuture(null): ((CompletionStage<?>) arg).toCompletableFuture();
+        } else {
+          values[i] = String.valueOf(arg);
+        }
+      }
+      var prefix = new StringBuilder();
+      appendSegments(prefix, 0, firstAsyncSegment, values);
+      if (futures.length == 0) {
+        return CompletableFuture.completedFuture(prefix.toString());
+      }
+      var dependency = futures.length == 1? futures[0]: CompletableFuture.allOf(futures);
+      return dependency.thenApply(__ -> {
+        // all the futures are completed, join() does not block
+        var index = 0;
+        for (var i = 0; i < args.length; i++) {
+          if (async[i]) {
+            values[i] = String.valueOf(futures[index++].join());
+          }
+        }
+        var builder = new StringBuilder(prefix);
+        appendSegments(builder, firstAsyncSegment, segments.size(), values);
+        return builder.toString();
+      });
+    }
+
+    private void appendSegments(StringBuilder builder, int from, int to, String[] values) {
+      for (var i = from; i < to; i++) {
+        var segment = segments.get(i);
+        if (segment instanceof Text text) {
+          builder.append(text.text());
+        } else {
+          builder.append(values[((Parameter) segment).index()]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A template policy made of stages fused together, a {@link Transformer} that appends the value of each hole,
+ * an {@link Assembler} that post-processes the assembled text and an {@link Encoder} that creates the result
+ * from the assembled text, by example
+ * <pre>
+ *   FusedTemplatePolicy&lt;byte[]&gt; HTML_UTF8 = FusedTemplatePolicy.of(HtmlTemplatePolicy::escapeTo, Assembler.none(), Encoder.utf8());
+ *   byte[] page = HTML_UTF8."&lt;p&gt;\(text)&lt;/p&gt;";
+ * </pre>
+ *
+ * All the stages work on the same {@link StringBuilder}, so there is no intermediary string between the stages.
+ * When linked, the stages are fused into one method handle, a call site is specialized for one policy,
+ * the other policies use {@link #apply(TemplatedString, Object...)}.
+ *
+ * @param <R> the type of the result.
+ */
+public final class FusedTemplatePolicy<R> implements TemplatePolicy<R, Object, RuntimeException> {
+  /**
+   * The stage that appends the value of a hole to the builder.
+   */
+  @FunctionalInterface
+  public interface Transformer {
+    /**
+     * Appends a transformation of the value to the builder.
+     * @param builder the builder containing the text assembled so far.
+     * @param value the value of a hole.
+     */
+    void transform(StringBuilder builder, Object value);
+
+    /**
+     * Returns a transformer that appends the string representation of the value.
+     * @return a transformer that appends the string representation of the value.
+     */
+    static Transformer identity() {
+      return IDENTITY;
+    }
+  }
+
+  /**
+   * The stage that modifies the builder once all the segments are appended.
+   */
+  @FunctionalInterface
+  public interface Assembler {
+    /**
+     * Modifies the assembled text in place.
+     * @param builder the builder containing the assembled text.
+     */
+    void assemble(StringBuilder builder);
+
+    /**
+     * Returns an assembler that does nothing.
+     * @return an assembler that does nothing.
+     */
+    static Assembler none() {
+      return NONE;
+    }
+
+    /**
+     * Returns an assembler that truncates the text to a maximum length.
+     * A surrogate pair is never split.
+     * @param maxLength the maximum length.
+     * @return an assembler that truncates the text to a maximum length.
+     */
+    static Assembler truncate(int maxLength) {
+      if (maxLength < 0) {
+        throw new IllegalArgumentException("negative max length " + maxLength);
+      }
+      return builder -> {
+        if (builder.length() > maxLength) {
+          var length = maxLength;
+          if (length > 0 && Character.isHighSurrogate(builder.charAt(length - 1))) {
+            length--;
+          }
+          builder.setLength(length);
+        }
+      };
+    }
+  }
+
+  /**
+   * The stage that creates the result from the assembled text.
+   * The assembled text must not be stored, the builder is not reused but may be modified.
+   *
+   * @param <R> the type of the result.
+   */
+  @FunctionalInterface
+  public interface Encoder<R> {
+    /**
+     * Creates the result from the assembled text.
+     * @param text the assembled text.
+     * @return the result.
+     */
+    R encode(CharSequence text);
+
+    /**
+     * Returns an encoder that creates a new encoder that applies a function to the result of this encoder.
+     * @param after the function to apply.
+     * @return a new encoder.
+     * @param <V> the type of the result of the new encoder.
+     */
+    default <V> Encoder<V> andThen(Function<? super R, ? extends V> after) {
+      Objects.requireNonNull(after);
+      return text -> after.apply(encode(text));
+    }
+
+    /**
+     * Returns an encoder that creates a string.
+     * @return an encoder that creates a string.
+     */
+    static Encoder<String> string() {
+      return CharSequence::toString;
+    }
+
+    /**
+     * Returns an encoder that encodes the text in UTF-8, the unpaired surrogates are replaced by {@code '?'}.
+     * @return an encoder that encodes the text in UTF-8.
+     */
+    static Encoder<byte[]> utf8() {
+      return FusedTemplatePolicy::encodeUTF8;
+    }
+  }
+
+  private static final Transformer IDENTITY = StringBuilder::append;
+  private static final Assembler NONE = builder -> {};
+
+  // estimated size of the value of a hole once transformed
+  private static final int HOLE_SIZE_ESTIMATE = 16;
+
+  private static final MethodHandle IS_POLICY, NEW_BUILDER, APPEND_STRING, TRANSFORM, ASSEMBLE, ENCODE;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      IS_POLICY = lookup.findStatic(FusedTemplatePolicy.class, "isPolicy",
+          methodType(boolean.class, FusedTemplatePolicy.class, FusedTemplatePolicy.class));
+      NEW_BUILDER = lookup.findConstructor(StringBuilder.class, methodType(void.class, int.class));
+      APPEND_STRING = lookup.findVirtual(StringBuilder.class, "append", methodType(StringBuilder.class, String.class));
+      TRANSFORM = lookup.findVirtual(Transformer.class, "transform",
+          methodType(void.class, StringBuilder.class, Object.class));
+      ASSEMBLE = lookup.findVirtual(Assembler.class, "assemble", methodType(void.class, StringBuilder.class));
+      ENCODE = lookup.findVirtual(Encoder.class, "encode", methodType(Object.class, CharSequence.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final Transformer transformer;
+  private final Assembler assembler;
+  private final Encoder<? extends R> encoder;
+
+  private FusedTemplatePolicy(Transformer transformer, Assembler assembler, Encoder<? extends R> encoder) {
+    this.transformer = transformer;
+    this.assembler = assembler;
+    this.encoder = encoder;
+  }
+
+  /**
+   * Creates a template policy from its stages.
+   * @param transformer the stage that appends the value of each hole.
+   * @param assembler the stage that post-processes the assembled text.
+   * @param encoder the stage that creates the result.
+   * @return a new template policy.
+   * @param <R> the type of the result.
+   */
+  public static <R> FusedTemplatePolicy<R> of(Transformer transformer, Assembler assembler, Encoder<? extends R> encoder) {
+    Objects.requireNonNull(transformer);
+    Objects.requireNonNull(assembler);
+    Objects.requireNonNull(encoder);
+    return new FusedTemplatePolicy<>(transformer, assembler, encoder);
+  }
+
+  @Override
+  public R apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    var builder = new StringBuilder();
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+      } else {
+        transformer.transform(builder, args[((Parameter) segment).index()]);
+      }
+    }
+    assembler.assemble(builder);
+    return encoder.encode(builder);
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+
+    // create one appender (StringBuilder, P...)void by segment and fold them
+    var appenders = new ArrayList<MethodHandle>();
+    var capacity = 0;
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        var appender = insertArguments(APPEND_STRING, 1, text.text()).asType(methodType(void.class, StringBuilder.class));
+        appenders.add(dropArguments(appender, 1, parameterTypes));
+        capacity += text.text().length();
+        continue;
+      }
+      var parameter = (Parameter) segment;
+      var index = parameter.index();
+      var appender = appender(parameter.type());
+      appender = dropArguments(appender, 2, parameterTypes.subList(index + 1, parameterTypes.size()));
+      appenders.add(dropArguments(appender, 1, parameterTypes.subList(0, index)));
+      capacity += HOLE_SIZE_ESTIMATE;
+    }
+    var target = dropArguments(MethodHandles.identity(StringBuilder.class), 1, parameterTypes);
+    for (var i = appenders.size(); --i >= 0;) {
+      target = foldArguments(target, appenders.get(i));
+    }
+    if (assembler != NONE) {
+      target = filterReturnValue(target,
+          foldArguments(MethodHandles.identity(StringBuilder.class), ASSEMBLE.bindTo(assembler)));
+    }
+    target = filterReturnValue(target, ENCODE.bindTo(encoder).asType(methodType(Object.class, StringBuilder.class)));
+    target = foldArguments(target, insertArguments(NEW_BUILDER, 0, capacity));
+    var type = methodType(template.returnType(), parameterTypes).insertParameterTypes(0, FusedTemplatePolicy.class);
+    target = dropArguments(target, 0, FusedTemplatePolicy.class).asType(type);
+    // the stages are part of the method handle, check it is this policy
+    return guardWithTest(IS_POLICY.bindTo(this), target, TemplatePolicyFactory.applyAsMethodHandle(template).asType(type));
+  }
+
+  private static boolean isPolicy(FusedTemplatePolicy<?> expected, FusedTemplatePolicy<?> policy) {
+    return expected == policy;
+  }
+
+  // returns a method handle (StringBuilder, type)void
+  private MethodHandle appender(Class<?> type) {
+    if (transformer == IDENTITY && type.isPrimitive()) {
+      // avoid boxing
+      var appendType = type == byte.class || type == short.class? int.class: type;
+      MethodHandle append;
+      try {
+        append = MethodHandles.publicLookup().findVirtual(StringBuilder.class, "append",
+            methodType(StringBuilder.class, appendType));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+      return append.asType(methodType(void.class, StringBuilder.class, type));
+    }
+    return TRANSFORM.bindTo(transformer).asType(methodType(void.class, StringBuilder.class, type));
+  }
+
+  private static byte[] encodeUTF8(CharSequence text) {
+    var length = text.length();
+    var bytes = new byte[length];
+    for (var i = 0; i < length; i++) {
+      var c = text.charAt(i);
+      if (c >= 0x80) {
+        return encodeUTF8(text, bytes, i);
+      }
+      bytes[i] = (byte) c;
+    }
+    return bytes;
+  }
+
+  // the characters before from are ASCII and already in bytes
+  private static byte[] encodeUTF8(CharSequence text, byte[] bytes, int from) {
+    var encoder = UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    try {
+      var buffer = encoder.encode(CharBuffer.wrap(text, from, text.length()));
+      var result = Arrays.copyOf(bytes, from + buffer.remaining());
+      buffer.get(result, from, buffer.remaining());
+      return result;
+    } catch (CharacterCodingException e) {
+      throw new AssertionError(e);  // errors are replaced
+    }
+  }
+}
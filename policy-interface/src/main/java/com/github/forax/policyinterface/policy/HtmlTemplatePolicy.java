@@ -0,0 +1,212 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplateRenderer;
+import com.github.forax.policyinterface.runtime.TemplateRenderer.HoleRenderer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.StringConcatException;
+import java.lang.invoke.StringConcatFactory;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A template policy that generates HTML.
+ * The text of the template is trusted and emitted verbatim, the value of each hole is escaped,
+ * the characters {@code <>&"'} are replaced by their character entity.
+ *
+ * When linked, the escaping is specialized using the type of each hole,
+ * the holes typed as a primitive number, a boolean or their wrappers are not escaped.
+ */
+public final class HtmlTemplatePolicy implements TemplatePolicy<String, Object, RuntimeException> {
+  // a bit set of the characters to escape, they are all below 64
+  private static final long ESCAPED = 1L << '<' | 1L << '>' | 1L << '&' | 1L << '"' | 1L << '\'';
+
+  // types that have a toString() that never needs to be escaped
+  private static final Set<Class<?>> NOT_ESCAPED = Set.of(
+      boolean.class, byte.class, short.class, int.class, long.class, float.class, double.class,
+      Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class);
+
+  private static final MethodHandle ESCAPE_STRING, ESCAPE_CHAR, ESCAPE_OBJECT;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      ESCAPE_STRING = lookup.findStatic(HtmlTemplatePolicy.class, "escape", methodType(String.class, String.class));
+      ESCAPE_CHAR = lookup.findStatic(HtmlTemplatePolicy.class, "escape", methodType(String.class, char.class));
+      ESCAPE_OBJECT = lookup.findStatic(HtmlTemplatePolicy.class, "escape", methodType(String.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public String apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    var builder = new StringBuilder();
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+        continue;
+      }
+      var value = args[((Parameter) segment).index()];
+      if (value != null && NOT_ESCAPED.contains(value.getClass())) {
+        builder.append(value);
+      } else {
+        appendEscaped(builder, String.valueOf(value));
+      }
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var recipe = new StringBuilder();
+    var constants = new ArrayList<Object>();
+    var parameterTypes = new ArrayList<Class<?>>();
+    var filters = new ArrayList<MethodHandle>();
+    for (var segment : template.segments()) {
+      if (segment instanceof Parameter parameter) {
+        var type = parameter.type();
+        recipe.append('\u0001');
+        parameterTypes.add(type);
+        filters.add(NOT_ESCAPED.contains(type)? null: escaper(type));
+        continue;
+      }
+      var text = ((Text) segment).text();
+      if (text.indexOf('\u0001') != -1 || text.indexOf('\u0002') != -1) {
+        recipe.append('\u0002');
+        constants.add(text);
+      } else {
+        recipe.append(text);
+      }
+    }
+    var concatType = methodType(String.class, parameterTypes);
+    for (var i = 0; i < filters.size(); i++) {
+      if (filters.get(i) != null) {
+        concatType = concatType.changeParameterType(i, String.class);
+      }
+    }
+    MethodHandle concat;
+    try {
+      concat = StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", concatType,
+          recipe.toString(), constants.toArray()).dynamicInvoker();
+    } catch (StringConcatException e) {
+      throw new LinkageError(e.getMessage(), e);
+    }
+    var target = filterArguments(concat, 0, filters.toArray(MethodHandle[]::new));
+    return dropArguments(target, 0, HtmlTemplatePolicy.class)
+        .asType(methodType(template.returnType(), parameterTypes).insertParameterTypes(0, HtmlTemplatePolicy.class));
+  }
+
+  // returns a method handle (type)String
+  private static MethodHandle escaper(Class<?> type) {
+    if (type == String.class) {
+      return ESCAPE_STRING;
+    }
+    if (type == char.class) {
+      return ESCAPE_CHAR;
+    }
+    return ESCAPE_OBJECT.asType(methodType(String.class, type));
+  }
+
+  private static boolean isEscaped(char c) {
+    return c < 64 && (ESCAPED & 1L << c) != 0;
+  }
+
+  private static String entity(char c) {
+    return switch (c) {
+      case '<' -> "&lt;";
+      case '>' -> "&gt;";
+      case '&' -> "&amp;";
+      case '"' -> "&quot;";
+      case '\'' -> "&#39;";
+      default -> throw new AssertionError();
+    };
+  }
+
+  /**
+   * Escapes a string, the characters {@code <>&"'} are replaced by their character entity.
+   * @param text a string or null.
+   * @return the escaped string or the same string if there is nothing to escape.
+   */
+  public static String escape(String text) {
+    if (text == null) {
+      return "null";
+    }
+    var length = text.length();
+    var index = 0;
+    while (index < length && !isEscaped(text.charAt(index))) {
+      index++;
+    }
+    if (index == length) {  // nothing to escape
+      return text;
+    }
+    var builder = new StringBuilder(length + 16);
+    appendEscaped(builder, text, index);
+    return builder.toString();
+  }
+
+  private static String escape(char c) {
+    return isEscaped(c)? entity(c): String.valueOf(c);
+  }
+
+  /**
+   * Returns a hole renderer that escapes the holes of a templated string like this policy,
+   * to render the templated string with a {@link TemplateRenderer}.
+   * @param template a templated string.
+   * @return a hole renderer that escapes the holes of the templated string.
+   */
+  public HoleRenderer holeRenderer(TemplatedString template) {
+    Objects.requireNonNull(template);
+    return (parameter, value) -> {
+      if (NOT_ESCAPED.contains(parameter.type()) || (value != null && NOT_ESCAPED.contains(value.getClass()))) {
+        return String.valueOf(value);
+      }
+      return escape(String.valueOf(value));
+    };
+  }
+
+  private static String escape(Object value) {
+    return escape(String.valueOf(value));
+  }
+
+  /**
+   * Appends the escaped string representation of a value to a builder.
+   * @param builder a string builder.
+   * @param value a value or null.
+   * @see #escape(String)
+   */
+  public static void escapeTo(StringBuilder builder, Object value) {
+    appendEscaped(builder, String.valueOf(value));
+  }
+
+  private static void appendEscaped(StringBuilder builder, String text) {
+    appendEscaped(builder, text, 0);
+  }
+
+  // the characters before from are known to not need to be escaped
+  private static void appendEscaped(StringBuilder builder, String text, int from) {
+    var start = 0;
+    var length = text.length();
+    for (var i = from; i < length; i++) {
+      var c = text.charAt(i);
+      if (isEscaped(c)) {
+        // copy the clean run in bulk
+        builder.append(text, start, i).append(entity(c));
+        start = i + 1;
+      }
+    }
+    builder.append(text, start, length);
+  }
+}
@@ -0,0 +1,457 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.StringConcatException;
+import java.lang.invoke.StringConcatFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.exactInvoker;
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.permuteArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A template policy that formats the holes using the rules of a {@link Locale}.
+ * <ul>
+ *   <li>integral values (int, long, Integer, etc) are formatted with the grouping separator of the locale,
+ *   <li>floating point values (double, Double, etc) are formatted like {@link NumberFormat#getInstance(Locale)},
+ *   <li>{@link LocalDate}, {@link LocalTime} and other {@link TemporalAccessor} are formatted with a localized
+ *       {@link DateTimeFormatter} of style {@link FormatStyle#MEDIUM},
+ *   <li>other values are formatted with {@link String#valueOf(Object)}.
+ * </ul>
+ *
+ * The text that follows an integral hole can contain a plural choice {@code {one|other}},
+ * by example {@code "\(count) {message|messages}"}, the choice is selected using the plural rules of the locale.
+ *
+ * When linked, the formatting rules of a locale are resolved once and the call site is specialized
+ * for each locale (up to {@link #MAX_LOCALES}) with a guard on the locale,
+ * so the fast path does not look up any resource. After that, the message compiled for each locale
+ * is found in a map, so a message is never compiled twice for the same locale.
+ */
+public final class I18nTemplatePolicy implements TemplatePolicy<String, Object, RuntimeException> {
+  /**
+   * Maximum number of locales specialized by call site, after that the call site looks up
+   * the message compiled for the locale.
+   */
+  static final int MAX_LOCALES = 4;
+
+  private final Locale locale;
+
+  public I18nTemplatePolicy(Locale locale) {
+    this.locale = Objects.requireNonNull(locale);
+  }
+
+  public Locale locale() {
+    return locale;
+  }
+
+  @Override
+  public String apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    var builder = new StringBuilder();
+    for (var piece : Message.compile(template, locale).pieces) {
+      if (piece instanceof TextPiece textPiece) {
+        builder.append(textPiece.text);
+        continue;
+      }
+      var holePiece = (HolePiece) piece;
+      try {
+        builder.append((String) holePiece.formatter.invoke(args[holePiece.index]));
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new AssertionError(t);
+      }
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+    var type = methodType(template.returnType(), parameterTypes).insertParameterTypes(0, I18nTemplatePolicy.class);
+    return new LocaleCache(type, template).dynamicInvoker();
+  }
+
+  /**
+   * A call site specialized for several locales, each specialization is guarded by the locale.
+   * After {@link #MAX_LOCALES} locales, the messages compiled for each locale are looked up in a map.
+   */
+  private static final class LocaleCache extends MutableCallSite {
+    private static final MethodHandle SLOW_PATH, LOOKUP, LOCALE_CHECK;
+    static {
+      var lookup = MethodHandles.lookup();
+      try {
+        SLOW_PATH = lookup.findVirtual(LocaleCache.class, "slowPath",
+            methodType(MethodHandle.class, I18nTemplatePolicy.class));
+        LOOKUP = lookup.findVirtual(LocaleCache.class, "lookup",
+            methodType(MethodHandle.class, I18nTemplatePolicy.class));
+        LOCALE_CHECK = lookup.findStatic(LocaleCache.class, "localeCheck",
+            methodType(boolean.class, Locale.class, I18nTemplatePolicy.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    private final TemplatedString template;
+    // the compiled messages by locale, the number of locales used by an application is small
+    private final ConcurrentHashMap<Locale, MethodHandle> targets = new ConcurrentHashMap<>();
+    private int locales;  // guarded by this
+
+    private LocaleCache(MethodType type, TemplatedString template) {
+      super(type);
+      this.template = template;
+      setTarget(foldArguments(exactInvoker(type), SLOW_PATH.bindTo(this)));
+    }
+
+    private static boolean localeCheck(Locale locale, I18nTemplatePolicy policy) {
+      return locale.equals(policy.locale);
+    }
+
+    private MethodHandle lookup(I18nTemplatePolicy policy) throws StringConcatException {
+      var locale = policy.locale;
+      var target = targets.get(locale);
+      if (target == null) {
+        target = Message.compile(template, locale).asMethodHandle(type());
+        var previous = targets.putIfAbsent(locale, target);
+        if (previous != null) {
+          return previous;
+        }
+      }
+      return target;
+    }
+
+    private MethodHandle slowPath(I18nTemplatePolicy policy) throws StringConcatException {
+      synchronized (this) {
+        if (locales == MAX_LOCALES) {
+          setTarget(foldArguments(exactInvoker(type()), LOOKUP.bindTo(this)));
+          return lookup(policy);
+        }
+        var target = targets.get(policy.locale);
+        if (target != null) {
+          // an equal locale is already guarded, the call was racing with its specialization
+          return target;
+        }
+        target = lookup(policy);
+        locales++;
+        setTarget(guardWithTest(LOCALE_CHECK.bindTo(policy.locale), target, getTarget()));
+        return target;
+      }
+    }
+  }
+
+  private sealed interface Piece { }
+  private record TextPiece(String text) implements Piece { }
+  // a formatter has the type (T)String with T the type of the parameter
+  private record HolePiece(int index, MethodHandle formatter) implements Piece { }
+
+  /**
+   * A templated string compiled for a locale.
+   */
+  private record Message(List<Piece> pieces) {
+    private static final Pattern PLURAL = Pattern.compile("\\{([^|{}]*)\\|([^|{}]*)}");
+
+    static Message compile(TemplatedString template, Locale locale) {
+      var rules = new LocaleRules(locale);
+      var pieces = new ArrayList<Piece>();
+      var previous = (Parameter) null;
+      for (var segment : template.segments()) {
+        if (segment instanceof Parameter parameter) {
+          pieces.add(new HolePiece(parameter.index(), rules.formatter(parameter.type())));
+          previous = parameter;
+          continue;
+        }
+        var text = ((Text) segment).text();
+        if (previous != null && isIntegral(previous.type())) {
+          var matcher = PLURAL.matcher(text);
+          if (matcher.find()) {
+            pieces.add(new TextPiece(text.substring(0, matcher.start())));
+            pieces.add(new HolePiece(previous.index(), rules.plural(previous.type(), matcher.group(1), matcher.group(2))));
+            text = text.substring(matcher.end());
+          }
+        }
+        pieces.add(new TextPiece(text));
+        previous = null;
+      }
+      return new Message(List.copyOf(pieces));
+    }
+
+    // returns a method handle of type (I18nTemplatePolicy, P...)R
+    MethodHandle asMethodHandle(MethodType type) throws StringConcatException {
+      var recipe = new StringBuilder();
+      var holes = new ArrayList<HolePiece>();
+      var constants = new ArrayList<Object>();
+      for (var piece : pieces) {
+        if (piece instanceof HolePiece holePiece) {
+          recipe.append('\u0001');
+          holes.add(holePiece);
+          continue;
+        }
+        var text = ((TextPiece) piece).text;
+        if (text.indexOf('\u0001') != -1 || text.indexOf('\u0002') != -1) {
+          recipe.append('\u0002');
+          constants.add(text);
+        } else {
+          recipe.append(text);
+        }
+      }
+      var concatType = methodType(String.class, holes.stream().<Class<?>>map(__ -> String.class).toList());
+      var concat = StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", concatType,
+          recipe.toString(), constants.toArray()).dynamicInvoker();
+      var filters = new MethodHandle[holes.size()];
+      var reorder = new int[holes.size()];
+      var parameterTypes = type.dropParameterTypes(0, 1);
+      for (var i = 0; i < filters.length; i++) {
+        var hole = holes.get(i);
+        var parameterType = parameterTypes.parameterType(hole.index);
+        filters[i] = hole.formatter.asType(methodType(String.class, parameterType));
+        reorder[i] = hole.index;
+      }
+      var target = filterArguments(concat, 0, filters);
+      target = permuteArguments(target, parameterTypes.changeReturnType(String.class), reorder);
+      return dropArguments(target, 0, I18nTemplatePolicy.class).asType(type);
+    }
+  }
+
+  private static boolean isIntegral(Class<?> type) {
+    return type == int.class || type == long.class || type == short.class || type == byte.class ||
+        type == Integer.class || type == Long.class || type == Short.class || type == Byte.class;
+  }
+
+  private static boolean isFloatingPoint(Class<?> type) {
+    return type == double.class || type == float.class || type == Double.class || type == Float.class;
+  }
+
+  /**
+   * Formatting rules of a locale, resolved once.
+   */
+  private static final class LocaleRules {
+    private static final MethodHandle FORMAT_INTEGRAL, FORMAT_FLOATING_POINT, FORMAT_TEMPORAL, VALUE_OF, SELECT_PLURAL;
+    static {
+      var lookup = MethodHandles.lookup();
+      try {
+        FORMAT_INTEGRAL = lookup.findVirtual(NumberRules.class, "format", methodType(String.class, long.class));
+        FORMAT_FLOATING_POINT = lookup.findVirtual(NumberRules.class, "format", methodType(String.class, double.class));
+        FORMAT_TEMPORAL = lookup.findVirtual(DateTimeFormatter.class, "format", methodType(String.class, TemporalAccessor.class));
+        VALUE_OF = lookup.findStatic(String.class, "valueOf", methodType(String.class, Object.class));
+        SELECT_PLURAL = lookup.findVirtual(PluralRules.class, "select", methodType(String.class, long.class, String.class, String.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    private final Locale locale;
+    private NumberRules integralRules, floatingPointRules;
+
+    private LocaleRules(Locale locale) {
+      this.locale = locale;
+    }
+
+    private NumberRules integralRules() {
+      if (integralRules == null) {
+        integralRules = new NumberRules(NumberFormat.getIntegerInstance(locale), locale);
+      }
+      return integralRules;
+    }
+
+    private NumberRules floatingPointRules() {
+      if (floatingPointRules == null) {
+        floatingPointRules = new NumberRules(NumberFormat.getInstance(locale), locale);
+      }
+      return floatingPointRules;
+    }
+
+    // returns a method handle (type)String
+    MethodHandle formatter(Class<?> type) {
+      if (isIntegral(type)) {
+        return FORMAT_INTEGRAL.bindTo(integralRules());
+      }
+      if (isFloatingPoint(type)) {
+        return FORMAT_FLOATING_POINT.bindTo(floatingPointRules());
+      }
+      if (TemporalAccessor.class.isAssignableFrom(type)) {
+        var style = FormatStyle.MEDIUM;
+        var formatter = LocalDate.class.isAssignableFrom(type)? DateTimeFormatter.ofLocalizedDate(style):
+            LocalTime.class.isAssignableFrom(type)? DateTimeFormatter.ofLocalizedTime(style):
+            DateTimeFormatter.ofLocalizedDateTime(style);
+        return FORMAT_TEMPORAL.bindTo(formatter.withLocale(locale));
+      }
+      return VALUE_OF;
+    }
+
+    // returns a method handle (type)String
+    MethodHandle plural(Class<?> type, String one, String other) {
+      return MethodHandles.insertArguments(SELECT_PLURAL.bindTo(PluralRules.of(locale)), 1, one, other);
+    }
+  }
+
+  /**
+   * Immutable and thread safe version of the rules of a {@link DecimalFormat}.
+   */
+  private static final class NumberRules {
+    private final boolean groupingUsed;
+    private final int groupingSize;
+    private final int maximumFractionDigits;
+    private final long scale;  // 10^maximumFractionDigits or 0 if it does not fit in a long
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+    private final char zeroDigit;
+    private final String minusSign;
+    private final String nan;
+    private final String infinity;
+
+    private NumberRules(NumberFormat numberFormat, Locale locale) {
+      var symbols = numberFormat instanceof DecimalFormat decimalFormat?
+          decimalFormat.getDecimalFormatSymbols():
+          DecimalFormatSymbols.getInstance(locale);
+      groupingUsed = numberFormat.isGroupingUsed();
+      groupingSize = numberFormat instanceof DecimalFormat decimalFormat? decimalFormat.getGroupingSize(): 3;
+      maximumFractionDigits = numberFormat.getMaximumFractionDigits();
+      var scale = 1L;
+      for (var i = 0; i < maximumFractionDigits; i++) {
+        scale *= 10;
+      }
+      this.scale = maximumFractionDigits <= 18? scale: 0;
+      groupingSeparator = symbols.getGroupingSeparator();
+      decimalSeparator = symbols.getDecimalSeparator();
+      zeroDigit = symbols.getZeroDigit();
+      minusSign = String.valueOf(symbols.getMinusSign());
+      nan = symbols.getNaN();
+      infinity = symbols.getInfinity();
+    }
+
+    String format(long value) {
+      var builder = new StringBuilder(24);
+      if (value < 0) {
+        builder.append(minusSign);
+      }
+      appendDigits(builder, value == Long.MIN_VALUE? "9223372036854775808": Long.toString(Math.abs(value)));
+      return builder.toString();
+    }
+
+    String format(double value) {
+      if (Double.isNaN(value)) {
+        return nan;
+      }
+      // like DecimalFormat, -0.0 and the negative values rounded to zero keep their sign
+      var negative = Double.doubleToRawLongBits(value) < 0;
+      if (Double.isInfinite(value)) {
+        return negative? minusSign + infinity: infinity;
+      }
+      var builder = new StringBuilder(32);
+      if (negative) {
+        builder.append(minusSign);
+      }
+      // the scaled value is rounded to the nearest integer, if it is not a tie (that depends on the bits lost
+      // by the multiplication) and the halves are representable, it is the rounding of the exact value
+      var scaled = Math.abs(value) * scale;
+      if (scaled < 0x1p52 && scaled - Math.floor(scaled) != 0.5) {
+        var digits = (long) Math.rint(scaled);
+        appendDigits(builder, Long.toString(digits / scale));
+        var fraction = digits % scale;
+        if (fraction != 0) {
+          builder.append(decimalSeparator);
+          for (var divisor = scale / 10; fraction != 0; divisor /= 10) {
+            var digit = fraction / divisor;
+            builder.append((char) (zeroDigit + digit));
+            fraction -= digit * divisor;
+          }
+        }
+        return builder.toString();
+      }
+      // like DecimalFormat, the digits of Double.toString() are rounded, a tie is rounded using the exact value
+      var abs = Math.abs(value);
+      var decimal = BigDecimal.valueOf(abs).stripTrailingZeros();
+      if (decimal.scale() == maximumFractionDigits + 1 && decimal.unscaledValue().mod(BigInteger.TEN).intValue() == 5) {
+        decimal = new BigDecimal(abs);
+      }
+      var plain = decimal
+          .setScale(maximumFractionDigits, RoundingMode.HALF_EVEN)
+          .stripTrailingZeros()
+          .toPlainString();
+      var dot = plain.indexOf('.');
+      appendDigits(builder, dot == -1? plain: plain.substring(0, dot));
+      if (dot != -1) {
+        builder.append(decimalSeparator);
+        for (var i = dot + 1; i < plain.length(); i++) {
+          builder.append((char) (zeroDigit + plain.charAt(i) - '0'));
+        }
+      }
+      return builder.toString();
+    }
+
+    private void appendDigits(StringBuilder builder, String digits) {
+      var length = digits.length();
+      for (var i = 0; i < length; i++) {
+        if (groupingUsed && groupingSize > 0 && i != 0 && (length - i) % groupingSize == 0) {
+          builder.append(groupingSeparator);
+        }
+        builder.append((char) (zeroDigit + digits.charAt(i) - '0'));
+      }
+    }
+  }
+
+  /**
+   * Plural rules of the cardinal integers, a simplified version of the CLDR rules.
+   */
+  private enum PluralRules {
+    // one if n == 1
+    ONE,
+    // one if n == 0 or n == 1
+    ZERO_OR_ONE,
+    // no plural
+    OTHER;
+
+    private static final Set<String> ZERO_OR_ONE_LANGUAGES = Set.of("fr", "hy", "kab", "pt");
+    private static final Set<String> NO_PLURAL_LANGUAGES = Set.of("ja", "zh", "ko", "vi", "th", "id", "ms", "my", "lo");
+
+    static PluralRules of(Locale locale) {
+      var language = locale.getLanguage();
+      if (ZERO_OR_ONE_LANGUAGES.contains(language) && !locale.equals(new Locale("pt", "PT"))) {
+        return ZERO_OR_ONE;
+      }
+      if (NO_PLURAL_LANGUAGES.contains(language)) {
+        return OTHER;
+      }
+      return ONE;
+    }
+
+    String select(long value, String one, String other) {
+      return switch (this) {
+        case ONE -> value == 1? one: other;
+        case ZERO_OR_ONE -> value == 0 || value == 1? one: other;
+        case OTHER -> other;
+      };
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.StringConcatException;
+import java.lang.invoke.StringConcatFactory;
+import java.lang.invoke.SwitchPoint;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A template policy that logs the formatted template if the level of the log statement is enabled
+ * by the {@link TemplateLogger}.
+ *
+ * When linked, if the level is disabled, the log statement does nothing, the message is not formatted,
+ * the arguments are not boxed. The linked log statement depends on the switch point of the logger
+ * (see {@link #switchPoints()}), so it is re-linked if the level of the logger changes.
+ *
+ * @see TemplateLogger#at(Level)
+ */
+public final class LoggingTemplatePolicy implements TemplatePolicy<Void, Object, RuntimeException> {
+  private static final MethodHandle IS_POLICY, LOG;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      IS_POLICY = lookup.findStatic(LoggingTemplatePolicy.class, "isPolicy",
+          methodType(boolean.class, LoggingTemplatePolicy.class, LoggingTemplatePolicy.class));
+      LOG = lookup.findVirtual(Logger.class, "log", methodType(void.class, Level.class, String.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final TemplateLogger logger;
+  private final Level level;
+
+  LoggingTemplatePolicy(TemplateLogger logger, Level level) {
+    this.logger = logger;
+    this.level = level;
+  }
+
+  public Level level() {
+    return level;
+  }
+
+  @Override
+  public Void apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    if (!logger.isEnabled(level)) {
+      return null;
+    }
+    var builder = new StringBuilder();
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+      } else {
+        builder.append(args[((Parameter) segment).index()]);
+      }
+    }
+    logger.sink().log(level, builder.toString());
+    return null;
+  }
+
+  @Override
+  public List<SwitchPoint> switchPoints() {
+    return List.of(logger.switchPoint());
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) throws StringConcatException {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+    var type = methodType(template.returnType(), parameterTypes).insertParameterTypes(0, LoggingTemplatePolicy.class);
+    var target = logger.isEnabled(level)? formatter(template, type): MethodHandles.empty(type);
+    // the class is final so the call site does not check the receiver, check it is this policy
+    return guardWithTest(IS_POLICY.bindTo(this), target, TemplatePolicyFactory.applyAsMethodHandle(template).asType(type));
+  }
+
+  private static boolean isPolicy(LoggingTemplatePolicy expected, LoggingTemplatePolicy policy) {
+    return expected == policy;
+  }
+
+  private MethodHandle formatter(TemplatedString template, MethodType type) throws StringConcatException {
+    var recipe = new StringBuilder();
+    var constants = new ArrayList<Object>();
+    for (var segment : template.segments()) {
+      if (segment instanceof Parameter) {
+        recipe.append('\u0001');
+        continue;
+      }
+      var text = ((Text) segment).text();
+      if (text.indexOf('\u0001') != -1 || text.indexOf('\u0002') != -1) {
+        recipe.append('\u0002');
+        constants.add(text);
+      } else {
+        recipe.append(text);
+      }
+    }
+    var concatType = type.dropParameterTypes(0, 1).changeReturnType(String.class);
+    var concat = StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", concatType,
+        recipe.toString(), constants.toArray()).dynamicInvoker();
+    var log = insertArguments(LOG, 0, logger.sink(), level);
+    var target = filterReturnValue(concat, log);
+    return dropArguments(target, 0, LoggingTemplatePolicy.class).asType(type);
+  }
+}
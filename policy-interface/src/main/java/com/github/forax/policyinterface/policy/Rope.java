@@ -0,0 +1,158 @@
+package com.github.forax.policyinterface.policy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An immutable {@link CharSequence} made of fragments that are either strings or other ropes,
+ * a rope is shared by reference when it is interpolated into another rope, so nesting templates
+ * does not copy their characters.
+ *
+ * The characters are only copied into a {@link String} when {@link #toString()} is called (the result is cached)
+ * or when the rope is written to an {@link Appendable} with {@link #appendTo(Appendable)}.
+ *
+ * @see RopeTemplatePolicy
+ */
+public final class Rope implements CharSequence {
+  private static final Object[] NO_FRAGMENT = new Object[0];
+  private static final int[] NO_END = new int[0];
+
+  /**
+   * The empty rope.
+   */
+  public static final Rope EMPTY = new Rope(NO_FRAGMENT, NO_END);
+
+  private final Object[] fragments;  // either a non-empty String or a non-empty Rope
+  private final int[] ends;          // the end offset of each fragment
+  private String flat;               // cache of toString(), racy but a String is immutable
+
+  private Rope(Object[] fragments, int[] ends) {
+    this.fragments = fragments;
+    this.ends = ends;
+  }
+
+  /**
+   * Creates a rope from fragments, a fragment that is a rope is shared, a fragment that is another
+   * {@link CharSequence} is copied.
+   * @param fragments the fragments of the rope.
+   * @return a new rope.
+   */
+  public static Rope of(CharSequence... fragments) {
+    var array = new Object[fragments.length];
+    var count = 0;
+    for (var fragment : fragments) {
+      var value = fragment instanceof Rope rope? rope: fragment.toString();
+      if (value.length() != 0) {
+        array[count++] = value;
+      }
+    }
+    return create(array, count);
+  }
+
+  // the array is owned by the rope, the empty fragments are not part of the first count elements
+  static Rope create(Object[] fragments, int count) {
+    if (count == 0) {
+      return EMPTY;
+    }
+    if (count == 1 && fragments[0] instanceof Rope rope) {
+      return rope;
+    }
+    var ends = new int[count];
+    var length = 0;
+    for (var i = 0; i < count; i++) {
+      length = Math.addExact(length, ((CharSequence) fragments[i]).length());
+      ends[i] = length;
+    }
+    return new Rope(count == fragments.length? fragments: Arrays.copyOf(fragments, count), ends);
+  }
+
+  // visible for testing
+  Object fragment(int index) {
+    return fragments[index];
+  }
+
+  @Override
+  public int length() {
+    return ends.length == 0? 0: ends[ends.length - 1];
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return ends.length == 0;
+  }
+
+  @Override
+  public char charAt(int index) {
+    Objects.checkIndex(index, length());
+    var rope = this;
+    for (;;) {
+      var flat = rope.flat;
+      if (flat != null) {
+        return flat.charAt(index);
+      }
+      var i = Arrays.binarySearch(rope.ends, index);
+      i = i < 0? -i - 1: i + 1;  // the first fragment that ends after index
+      var start = i == 0? 0: rope.ends[i - 1];
+      index -= start;
+      var fragment = rope.fragments[i];
+      if (fragment instanceof String string) {
+        return string.charAt(index);
+      }
+      rope = (Rope) fragment;
+    }
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    Objects.checkFromToIndex(start, end, length());
+    return toString().substring(start, end);
+  }
+
+  /**
+   * Appends the characters of the rope to an appendable without creating the string of the whole rope.
+   * @param appendable an appendable.
+   * @return the appendable.
+   * @param <A> the type of the appendable.
+   * @throws IOException if the appendable throws an exception.
+   */
+  public <A extends Appendable> A appendTo(A appendable) throws IOException {
+    Objects.requireNonNull(appendable);
+    // ropes can be deeply nested, use an explicit stack
+    var stack = new ArrayDeque<Object>();
+    stack.push(this);
+    while (!stack.isEmpty()) {
+      var element = stack.pop();
+      if (element instanceof String string) {
+        appendable.append(string);
+        continue;
+      }
+      var rope = (Rope) element;
+      var flat = rope.flat;
+      if (flat != null) {
+        appendable.append(flat);
+        continue;
+      }
+      for (var i = rope.fragments.length; --i >= 0;) {
+        stack.push(rope.fragments[i]);
+      }
+    }
+    return appendable;
+  }
+
+  @Override
+  public String toString() {
+    var flat = this.flat;
+    if (flat != null) {
+      return flat;
+    }
+    try {
+      flat = appendTo(new StringBuilder(length())).toString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);  // a StringBuilder does not throw
+    }
+    return this.flat = flat;
+  }
+}
@@ -0,0 +1,93 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A template policy that concatenates the texts and the values of the holes into a {@link Rope},
+ * a value that is a rope is shared by reference instead of being copied, so the cost of nested templates
+ * is linear in the size of the output instead of quadratic in the nesting depth.
+ * <pre>
+ *   Rope item = ROPE."&lt;li&gt;\(name)&lt;/li&gt;";
+ *   Rope list = ROPE."&lt;ul&gt;\(item)&lt;/ul&gt;";
+ *   list.appendTo(writer);
+ * </pre>
+ *
+ * The other values are converted to a string when the template is evaluated.
+ */
+public final class RopeTemplatePolicy implements TemplatePolicy<Rope, Object, RuntimeException> {
+  private static final MethodHandle CONCAT;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      CONCAT = lookup.findVirtual(Shape.class, "concat", methodType(Rope.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public Rope apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    return new Shape(template).concat(args);
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+    var target = CONCAT.bindTo(new Shape(template)).asCollector(Object[].class, parameterTypes.size());
+    return dropArguments(target, 0, RopeTemplatePolicy.class)
+        .asType(methodType(template.returnType(), parameterTypes).insertParameterTypes(0, RopeTemplatePolicy.class));
+  }
+
+  /**
+   * The non-empty texts and the parameters of a templated string.
+   */
+  private static final class Shape {
+    private final Object[] segments;  // either a String or an Integer (the index of the parameter)
+
+    private Shape(TemplatedString template) {
+      var segments = new ArrayList<>();
+      for (var segment : template.segments()) {
+        if (segment instanceof Text text) {
+          if (!text.text().isEmpty()) {
+            segments.add(text.text());
+          }
+        } else {
+          segments.add(((Parameter) segment).index());
+        }
+      }
+      this.segments = segments.toArray();
+    }
+
+    private Rope concat(Object[] args) {
+      var fragments = new Object[segments.length];
+      var count = 0;
+      for (var segment : segments) {
+        Object fragment;
+        if (segment instanceof String text) {
+          fragment = text;
+        } else {
+          var value = args[(Integer) segment];
+          fragment = value instanceof Rope rope? rope: String.valueOf(value);
+          if (((CharSequence) fragment).length() == 0) {
+            continue;
+          }
+        }
+        fragments[count++] = fragment;
+      }
+      return Rope.create(fragments, count);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A template policy that uses the template as a pattern, it returns a {@link TemplateScanner} that extracts
+ * the values of the holes from a text that is the output of the same template.
+ * <pre>
+ *   String path = null;
+ *   int status = 0;
+ *   TemplateScanner scanner = SCAN."GET \(path) HTTP/1.1 \(status)";
+ *   Object[] values = scanner.scan(line);
+ * </pre>
+ *
+ * The values of the holes are ignored, only their types are used to select how the values are extracted.
+ * The template is compiled once when the call site is linked and the call site always returns the same scanner.
+ */
+public final class ScanTemplatePolicy implements TemplatePolicy<TemplateScanner, Object, RuntimeException> {
+  @Override
+  public TemplateScanner apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    return TemplateScanner.of(template);
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+    var scanner = MethodHandles.constant(TemplateScanner.class, TemplateScanner.of(template));
+    return dropArguments(dropArguments(scanner, 0, parameterTypes), 0, ScanTemplatePolicy.class)
+        .asType(methodType(template.returnType(), parameterTypes).insertParameterTypes(0, ScanTemplatePolicy.class));
+  }
+
+  @Override
+  public boolean isConstantFoldable() {
+    return true;
+  }
+}
@@ -0,0 +1,315 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.PrimitiveWriters;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A template policy that streams the rendered template encoded in UTF-8 as a {@link Flow.Publisher}
+ * of {@link ByteBuffer}s of at most {@link #chunkSize()} bytes.
+ *
+ * The value of a hole that is an {@link Iterable}, an {@link Iterator} or a {@link Stream} is rendered
+ * element by element, so the whole document is never in memory.
+ * The rendering is lazy, a chunk is only rendered when the subscriber requests it.
+ * <pre>
+ *   Flow.Publisher&lt;ByteBuffer&gt; publisher = STREAMING."&lt;table&gt;\(rows)&lt;/table&gt;";
+ * </pre>
+ *
+ * When linked, the text of the template is encoded once.
+ * The value of a hole that is a number (an int, a long, a float, a double, etc) or a boolean is written
+ * by {@link PrimitiveWriters} directly into the chunk, without creating a {@link String}.
+ * A hole typed as an {@link Iterator} or a {@link Stream} can only be rendered by one subscriber.
+ */
+public final class StreamingTemplatePolicy implements TemplatePolicy<Flow.Publisher<ByteBuffer>, Object, RuntimeException> {
+  private static final MethodHandle PUBLISHER;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      PUBLISHER = lookup.findConstructor(TemplatePublisher.class,
+          methodType(void.class, EncodedTemplate.class, StreamingTemplatePolicy.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final int DEFAULT_CHUNK_SIZE = 8_192;
+
+  private final int chunkSize;
+
+  public StreamingTemplatePolicy() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  public StreamingTemplatePolicy(int chunkSize) {
+    if (chunkSize < 4) {  // at least one code point
+      throw new IllegalArgumentException("chunk size too small " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  public int chunkSize() {
+    return chunkSize;
+  }
+
+  @Override
+  public Flow.Publisher<ByteBuffer> apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    return new TemplatePublisher(new EncodedTemplate(template), this, args.clone());
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+    // the chunk size is read from the policy, the call site may be used with several policies
+    var target = PUBLISHER.bindTo(new EncodedTemplate(template)).asCollector(Object[].class, parameterTypes.size());
+    return target.asType(methodType(template.returnType(), parameterTypes).insertParameterTypes(0, StreamingTemplatePolicy.class));
+  }
+
+  /**
+   * The segments of a templated string with the texts encoded in UTF-8.
+   */
+  private static final class EncodedTemplate {
+    private final Object[] segments;  // either a byte[] or an Integer (the index of the parameter)
+
+    private EncodedTemplate(TemplatedString template) {
+      var segments = new ArrayList<>();
+      for (var segment : template.segments()) {
+        if (segment instanceof Text text) {
+          if (!text.text().isEmpty()) {
+            segments.add(text.text().getBytes(UTF_8));
+          }
+        } else {
+          segments.add(((Parameter) segment).index());
+        }
+      }
+      this.segments = segments.toArray();
+    }
+  }
+
+  /**
+   * The state of the rendering of a template, the rendering can be stopped when a chunk is full
+   * and restarted later.
+   */
+  private static final class Cursor {
+    private final EncodedTemplate template;
+    private final int chunkSize;
+    private final Object[] args;
+    private final CharsetEncoder encoder = UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private int segment;
+    private byte[] text;
+    private int textOffset;
+    private int textLength;
+    // the text of a primitive value that does not fit into the remaining bytes of a chunk
+    private final byte[] primitive = new byte[PrimitiveWriters.maxLength(double.class)];
+    private Iterator<?> iterator;
+    private CharBuffer chars;
+
+    private Cursor(EncodedTemplate template, int chunkSize, Object[] args) {
+      this.template = template;
+      this.chunkSize = chunkSize;
+      this.args = args;
+    }
+
+    // returns the next chunk or null if the rendering is finished
+    ByteBuffer next() {
+      var chunk = ByteBuffer.allocate(chunkSize);
+      fill(chunk);
+      if (chunk.position() == 0) {
+        return null;
+      }
+      return chunk.flip();
+    }
+
+    private void fill(ByteBuffer chunk) {
+      while (chunk.hasRemaining()) {
+        if (text != null) {
+          var length = Math.min(chunk.remaining(), textLength - textOffset);
+          chunk.put(text, textOffset, length);
+          textOffset += length;
+          if (textOffset == textLength) {
+            text = null;
+          }
+          continue;
+        }
+        if (chars != null) {
+          var result = encoder.encode(chars, chunk, true);
+          if (result.isOverflow()) {
+            return;
+          }
+          encoder.reset();
+          chars = null;
+          continue;
+        }
+        if (iterator != null) {
+          if (iterator.hasNext()) {
+            chars = CharBuffer.wrap(String.valueOf(iterator.next()));
+          } else {
+            iterator = null;
+          }
+          continue;
+        }
+        if (segment == template.segments.length) {
+          return;
+        }
+        var next = template.segments[segment++];
+        if (next instanceof byte[] bytes) {
+          text = bytes;
+          textOffset = 0;
+          textLength = bytes.length;
+          continue;
+        }
+        var value = args[(Integer) next];
+        if (value instanceof Iterable<?> iterable) {
+          iterator = iterable.iterator();
+        } else if (value instanceof Iterator<?> it) {
+          iterator = it;
+        } else if (value instanceof Stream<?> stream) {
+          iterator = stream.iterator();
+        } else if (isPrimitive(value)) {
+          writePrimitive(value, chunk);
+        } else if (value instanceof CharSequence sequence) {
+          chars = CharBuffer.wrap(sequence);
+        } else {
+          chars = CharBuffer.wrap(String.valueOf(value));
+        }
+      }
+    }
+
+    private static boolean isPrimitive(Object value) {
+      return value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+          || value instanceof Short || value instanceof Byte || value instanceof Boolean;
+    }
+
+    // writes the text into the chunk if there is enough room, otherwise into the array primitive
+    private void writePrimitive(Object value, ByteBuffer chunk) {
+      if (chunk.hasArray() && chunk.remaining() >= primitive.length) {
+        var end = write(value, chunk.array(), chunk.arrayOffset() + chunk.position());
+        chunk.position(end - chunk.arrayOffset());
+        return;
+      }
+      text = primitive;
+      textOffset = 0;
+      textLength = write(value, primitive, 0);
+    }
+
+    private static int write(Object value, byte[] buffer, int offset) {
+      if (value instanceof Integer i) {
+        return PrimitiveWriters.write(buffer, offset, (int) i);
+      }
+      if (value instanceof Long l) {
+        return PrimitiveWriters.write(buffer, offset, (long) l);
+      }
+      if (value instanceof Double d) {
+        return PrimitiveWriters.write(buffer, offset, (double) d);
+      }
+      if (value instanceof Float f) {
+        return PrimitiveWriters.write(buffer, offset, (float) f);
+      }
+      if (value instanceof Boolean b) {
+        return PrimitiveWriters.write(buffer, offset, (boolean) b);
+      }
+      return PrimitiveWriters.write(buffer, offset, ((Number) value).intValue());  // a Short or a Byte
+    }
+  }
+
+  private static final class TemplatePublisher implements Flow.Publisher<ByteBuffer> {
+    private final EncodedTemplate template;
+    private final int chunkSize;
+    private final Object[] args;
+
+    private TemplatePublisher(EncodedTemplate template, StreamingTemplatePolicy policy, Object[] args) {
+      this.template = template;
+      this.chunkSize = policy.chunkSize;
+      this.args = args;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+      var subscription = new TemplateSubscription(subscriber, new Cursor(template, chunkSize, args));
+      subscriber.onSubscribe(subscription);
+    }
+  }
+
+  /**
+   * A subscription that renders the chunks in the thread that calls {@link #request(long)}.
+   */
+  private static final class TemplateSubscription implements Flow.Subscription {
+    private final Flow.Subscriber<? super ByteBuffer> subscriber;
+    private final Cursor cursor;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger workInProgress = new AtomicInteger();
+    private volatile boolean done;
+
+    private TemplateSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, Cursor cursor) {
+      this.subscriber = subscriber;
+      this.cursor = cursor;
+    }
+
+    @Override
+    public void request(long n) {
+      if (done) {
+        return;
+      }
+      if (n <= 0) {
+        done = true;
+        subscriber.onError(new IllegalArgumentException("non positive request " + n));
+        return;
+      }
+      demand.getAndAccumulate(n, (current, add) -> current + add < 0? Long.MAX_VALUE: current + add);
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      done = true;
+    }
+
+    // only one thread renders at a time, a request() done by onNext() is handled by the loop
+    private void drain() {
+      if (workInProgress.getAndIncrement() != 0) {
+        return;
+      }
+      do {
+        while (!done && demand.get() > 0) {
+          ByteBuffer chunk;
+          try {
+            chunk = cursor.next();
+          } catch (RuntimeException e) {
+            done = true;
+            subscriber.onError(e);
+            return;
+          }
+          if (chunk == null) {
+            done = true;
+            subscriber.onComplete();
+            return;
+          }
+          demand.decrementAndGet();
+          subscriber.onNext(chunk);
+        }
+      } while (workInProgress.decrementAndGet() != 0);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.runtime.TemplatePolicySwitch;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.SwitchPoint;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A logger with a level that can be changed at runtime, the log statements are written using
+ * a {@link LoggingTemplatePolicy}, by example
+ * <pre>
+ *   private static final TemplateLogger LOGGER = TemplateLogger.of(System.getLogger("app"), Level.INFO);
+ *   ...
+ *   LOGGER.at(Level.DEBUG)."value \(value)";
+ * </pre>
+ *
+ * The linked log statements are guarded by a {@link SwitchPoint} of a {@link TemplatePolicySwitch}
+ * which is invalidated each time the level changes.
+ */
+public final class TemplateLogger {
+  private final Logger sink;
+  private final LoggingTemplatePolicy[] policies;
+  private volatile Level level;
+  private final TemplatePolicySwitch levelSwitch = new TemplatePolicySwitch();
+
+  private TemplateLogger(Logger sink, Level level) {
+    this.sink = sink;
+    this.level = level;
+    this.policies = Arrays.stream(Level.values())
+        .map(statementLevel -> new LoggingTemplatePolicy(this, statementLevel))
+        .toArray(LoggingTemplatePolicy[]::new);
+  }
+
+  /**
+   * Creates a logger.
+   * @param sink the logger that receives the formatted messages.
+   * @param level the initial level.
+   * @return a new logger.
+   */
+  public static TemplateLogger of(Logger sink, Level level) {
+    Objects.requireNonNull(sink);
+    Objects.requireNonNull(level);
+    return new TemplateLogger(sink, level);
+  }
+
+  Logger sink() {
+    return sink;
+  }
+
+  /**
+   * Returns the template policy used to log at a level.
+   * @param level the level of the log statements.
+   * @return the template policy used to log at a level.
+   */
+  public LoggingTemplatePolicy at(Level level) {
+    return policies[level.ordinal()];
+  }
+
+  public Level level() {
+    return level;
+  }
+
+  /**
+   * Changes the level of the logger, all linked log statements are invalidated.
+   * @param level the new level.
+   */
+  public void setLevel(Level level) {
+    Objects.requireNonNull(level);
+    synchronized (this) {
+      if (this.level == level) {
+        return;
+      }
+      // the level must be changed before the switch point is invalidated
+      this.level = level;
+      levelSwitch.invalidate();
+    }
+  }
+
+  // the switch point must be read before the level
+  SwitchPoint switchPoint() {
+    return levelSwitch.switchPoint();
+  }
+
+  /**
+   * Returns true if a log statement at the level is enabled.
+   * @param statementLevel the level of a log statement.
+   * @return true if a log statement at the level is enabled.
+   */
+  public boolean isEnabled(Level statementLevel) {
+    var level = this.level;
+    return statementLevel != Level.OFF && level != Level.OFF && statementLevel.getSeverity() >= level.getSeverity();
+  }
+}
@@ -0,0 +1,170 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * A templated string used as a pattern to extract the values of the holes from a text that is
+ * the output of the same template.
+ * <pre>
+ *   var scanner = TemplateScanner.of(TemplatedString.parse("GET ￼ HTTP/1.1 ￼", TemplateScanner.class, Object[].class,
+ *       String.class, int.class));
+ *   Object[] values = scanner.scan("GET /index.html HTTP/1.1 200");  // ["/index.html", 200]
+ * </pre>
+ *
+ * The texts of the template must appear as is and the type of a hole selects how its value is extracted:
+ * <ul>
+ *   <li>{@code int} or {@code Integer}, an optional minus sign followed by digits,
+ *   <li>{@code long} or {@code Long}, an optional minus sign followed by digits,
+ *   <li>{@code String}, {@code CharSequence} or {@code Object}, the characters up to the first occurrence
+ *     of the following text or up to the end if the hole is the last one.
+ * </ul>
+ * The matching is deterministic, the text is scanned once from left to right without backtracking,
+ * so a text that does not match fails as soon as a text of the template is not found.
+ * For that, two holes must be separated by a text and a number can not be followed by a text starting with a digit.
+ */
+public final class TemplateScanner {
+  private static final int INT = 0, LONG = 1, STRING = 2;
+
+  private final TemplatedString template;
+  private final String[] fragments;  // the texts before, between and after the holes
+  private final int[] kinds;  // the kind of each hole
+
+  private TemplateScanner(TemplatedString template, String[] fragments, int[] kinds) {
+    this.template = template;
+    this.fragments = fragments;
+    this.kinds = kinds;
+  }
+
+  /**
+   * Compiles a templated string into a scanner.
+   * @param template the templated string.
+   * @return a new scanner.
+   * @throws IllegalArgumentException if the type of a hole is not supported, if two holes are not separated by a text
+   *   or if a text after a number starts with a digit.
+   */
+  public static TemplateScanner of(TemplatedString template) {
+    Objects.requireNonNull(template);
+    var fragments = new ArrayList<String>();
+    var kinds = new int[template.parameters().size()];
+    var builder = new StringBuilder();
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+        continue;
+      }
+      var parameter = (Parameter) segment;
+      fragments.add(builder.toString());
+      builder.setLength(0);
+      kinds[parameter.index()] = kind(parameter.type());
+    }
+    fragments.add(builder.toString());
+    for (var i = 0; i < kinds.length; i++) {
+      var next = fragments.get(i + 1);
+      if (next.isEmpty() && i != kinds.length - 1) {
+        throw new IllegalArgumentException("the holes " + i + " and " + (i + 1) + " are not separated by a text in " + template);
+      }
+      if (kinds[i] != STRING && !next.isEmpty() && isDigit(next.charAt(0))) {
+        throw new IllegalArgumentException("the text after the hole " + i + " starts with a digit in " + template);
+      }
+    }
+    return new TemplateScanner(template, fragments.toArray(String[]::new), kinds);
+  }
+
+  private static int kind(Class<?> type) {
+    if (type == int.class || type == Integer.class) {
+      return INT;
+    }
+    if (type == long.class || type == Long.class) {
+      return LONG;
+    }
+    if (type == String.class || type == CharSequence.class || type == Object.class) {
+      return STRING;
+    }
+    throw new IllegalArgumentException("unsupported hole type " + type.getName());
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Returns the templated string of this scanner.
+   * @return the templated string of this scanner.
+   */
+  public TemplatedString template() {
+    return template;
+  }
+
+  /**
+   * Extracts the values of the holes.
+   * @param input the text to scan.
+   * @return the values of the holes or null if the text does not match.
+   */
+  public Object[] scan(String input) {
+    var values = new Object[kinds.length];
+    return scan(input, values)? values: null;
+  }
+
+  /**
+   * Extracts the values of the holes into an array.
+   * @param input the text to scan.
+   * @param values the array that receives the values of the holes, its content is unspecified if the text does not match.
+   * @return true if the text matches.
+   * @throws IllegalArgumentException if the array is smaller than the number of holes.
+   */
+  public boolean scan(String input, Object[] values) {
+    Objects.requireNonNull(input);
+    if (values.length < kinds.length) {
+      throw new IllegalArgumentException("the array is too small " + values.length + " < " + kinds.length);
+    }
+    var first = fragments[0];
+    if (!input.startsWith(first)) {
+      return false;
+    }
+    var position = first.length();
+    for (var i = 0; i < kinds.length; i++) {
+      var next = fragments[i + 1];
+      int end;
+      if (kinds[i] == STRING) {
+        end = next.isEmpty()? input.length(): input.indexOf(next, position);
+        if (end == -1) {
+          return false;
+        }
+        values[i] = input.substring(position, end);
+      } else {
+        end = scanNumber(input, position);
+        if (end == -1 || !input.startsWith(next, end)) {
+          return false;
+        }
+        try {
+          values[i] = kinds[i] == INT?
+              (Object) Integer.parseInt(input, position, end, 10):
+              (Object) Long.parseLong(input, position, end, 10);
+        } catch (NumberFormatException e) {
+          return false;  // overflow
+        }
+      }
+      position = end + next.length();
+    }
+    return position == input.length();
+  }
+
+  // an optional minus sign followed by at least one digit, returns the end of the number or -1
+  private static int scanNumber(String input, int position) {
+    var index = position;
+    var length = input.length();
+    if (index < length && input.charAt(index) == '-') {
+      index++;
+    }
+    var start = index;
+    while (index < length && isDigit(input.charAt(index))) {
+      index++;
+    }
+    return index == start? -1: index;
+  }
+}
@@ -0,0 +1,275 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplateRenderer;
+import com.github.forax.policyinterface.runtime.TemplateRenderer.HoleRenderer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A template policy that builds a URI, the value of each hole is percent-encoded (RFC 3986)
+ * depending on its position in the URI, a path segment, a query parameter name, a query parameter value
+ * or the fragment.
+ * <pre>
+ *   "https://example.com/users/\(name)/posts?tag=\(tag)&amp;page=\(page)#\(anchor)"
+ * </pre>
+ *
+ * The context of each hole is computed once from the text of the template and when linked,
+ * each hole is encoded by a table-driven encoder that appends directly to a single buffer.
+ */
+public final class UriTemplatePolicy implements TemplatePolicy<String, Object, RuntimeException> {
+  /**
+   * The syntactic context of a hole.
+   */
+  enum Context {
+    PATH("!$&'()*+,;=:@"),
+    QUERY_NAME("!$'()*,;:@/?"),
+    QUERY_VALUE("!$'()*,;:@/?="),
+    FRAGMENT("!$&'()*+,;=:@/?");
+
+    private final PercentEncoder encoder;
+
+    Context(String allowed) {
+      this.encoder = new PercentEncoder(allowed);
+    }
+
+    Context next(char c) {
+      if (c == '#') {
+        return FRAGMENT;
+      }
+      return switch (this) {
+        case PATH -> c == '?'? QUERY_NAME: PATH;
+        case QUERY_NAME -> c == '='? QUERY_VALUE: QUERY_NAME;
+        case QUERY_VALUE -> c == '&'? QUERY_NAME: QUERY_VALUE;
+        case FRAGMENT -> FRAGMENT;
+      };
+    }
+  }
+
+  // estimated size of the value of a hole once encoded
+  private static final int HOLE_SIZE_ESTIMATE = 16;
+
+  private static final MethodHandle NEW_BUILDER, TO_STRING, APPEND_STRING, ENCODE, ENCODE_CHAR, ENCODE_OBJECT;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      NEW_BUILDER = lookup.findConstructor(StringBuilder.class, methodType(void.class, int.class));
+      TO_STRING = lookup.findVirtual(StringBuilder.class, "toString", methodType(String.class));
+      APPEND_STRING = lookup.findVirtual(StringBuilder.class, "append", methodType(StringBuilder.class, String.class));
+      ENCODE = lookup.findVirtual(PercentEncoder.class, "encode",
+          methodType(void.class, StringBuilder.class, CharSequence.class));
+      ENCODE_CHAR = lookup.findVirtual(PercentEncoder.class, "encode",
+          methodType(void.class, StringBuilder.class, char.class));
+      ENCODE_OBJECT = lookup.findVirtual(PercentEncoder.class, "encode",
+          methodType(void.class, StringBuilder.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // computes the context of each parameter of the template
+  static List<Context> contexts(TemplatedString template) {
+    var contexts = new ArrayList<Context>();
+    var context = Context.PATH;
+    for (var segment : template.segments()) {
+      if (segment instanceof Parameter) {
+        contexts.add(context);
+        continue;
+      }
+      var text = ((Text) segment).text();
+      for (var i = 0; i < text.length(); i++) {
+        context = context.next(text.charAt(i));
+      }
+    }
+    return List.copyOf(contexts);
+  }
+
+  @Override
+  public String apply(TemplatedString template, Object... args) {
+    if (template.parameters().size() != args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    var contexts = contexts(template);
+    var builder = new StringBuilder();
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+        continue;
+      }
+      var index = ((Parameter) segment).index();
+      contexts.get(index).encoder.encode(builder, args[index]);
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    var contexts = contexts(template);
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+
+    // create one appender (StringBuilder, P...)void by segment and fold them
+    var appenders = new ArrayList<MethodHandle>();
+    var capacity = 0;
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        var appender = insertArguments(APPEND_STRING, 1, text.text()).asType(methodType(void.class, StringBuilder.class));
+        appenders.add(dropArguments(appender, 1, parameterTypes));
+        capacity += text.text().length();
+        continue;
+      }
+      var parameter = (Parameter) segment;
+      var index = parameter.index();
+      var appender = appender(contexts.get(index), parameter.type());
+      appender = dropArguments(appender, 2, parameterTypes.subList(index + 1, parameterTypes.size()));
+      appenders.add(dropArguments(appender, 1, parameterTypes.subList(0, index)));
+      capacity += HOLE_SIZE_ESTIMATE;
+    }
+    var target = dropArguments(MethodHandles.identity(StringBuilder.class), 1, parameterTypes);
+    for (var i = appenders.size(); --i >= 0;) {
+      target = foldArguments(target, appenders.get(i));
+    }
+    target = filterReturnValue(target, TO_STRING);
+    target = foldArguments(target, insertArguments(NEW_BUILDER, 0, capacity));
+    return dropArguments(target, 0, UriTemplatePolicy.class)
+        .asType(methodType(template.returnType(), parameterTypes).insertParameterTypes(0, UriTemplatePolicy.class));
+  }
+
+  /**
+   * Returns a hole renderer that encodes the holes of a templated string like this policy,
+   * depending on their position in the URI, to render the templated string with a {@link TemplateRenderer}.
+   * @param template a templated string.
+   * @return a hole renderer that encodes the holes of the templated string.
+   */
+  public HoleRenderer holeRenderer(TemplatedString template) {
+    var contexts = contexts(template);
+    return (parameter, value) -> {
+      var builder = new StringBuilder();
+      contexts.get(parameter.index()).encoder.encode(builder, value);
+      return builder.toString();
+    };
+  }
+
+  // returns a method handle (StringBuilder, type)void
+  private static MethodHandle appender(Context context, Class<?> type) {
+    if (type.isPrimitive() && type != char.class) {
+      // numbers and booleans only contain unreserved characters
+      var appendType = type == byte.class || type == short.class? int.class: type;
+      MethodHandle append;
+      try {
+        append = MethodHandles.publicLookup().findVirtual(StringBuilder.class, "append",
+            methodType(StringBuilder.class, appendType));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+      return append.asType(methodType(void.class, StringBuilder.class, type));
+    }
+    if (type == char.class) {
+      return ENCODE_CHAR.bindTo(context.encoder);
+    }
+    if (CharSequence.class.isAssignableFrom(type)) {
+      return ENCODE.bindTo(context.encoder).asType(methodType(void.class, StringBuilder.class, type));
+    }
+    return ENCODE_OBJECT.bindTo(context.encoder).asType(methodType(void.class, StringBuilder.class, type));
+  }
+
+  /**
+   * A percent encoder that uses a table of the allowed ASCII characters, the other characters
+   * are encoded in UTF-8.
+   */
+  static final class PercentEncoder {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final boolean[] allowed = new boolean[128];
+
+    PercentEncoder(String allowedCharacters) {
+      for (var c = 'a'; c <= 'z'; c++) {
+        allowed[c] = true;
+      }
+      for (var c = 'A'; c <= 'Z'; c++) {
+        allowed[c] = true;
+      }
+      for (var c = '0'; c <= '9'; c++) {
+        allowed[c] = true;
+      }
+      for (var c : "-._~".toCharArray()) {
+        allowed[c] = true;
+      }
+      for (var c : allowedCharacters.toCharArray()) {
+        allowed[c] = true;
+      }
+    }
+
+    void encode(StringBuilder builder, Object value) {
+      if (value instanceof CharSequence sequence) {
+        encode(builder, sequence);
+        return;
+      }
+      encode(builder, (CharSequence) String.valueOf(value));
+    }
+
+    void encode(StringBuilder builder, char c) {
+      if (c < 128 && allowed[c]) {
+        builder.append(c);
+        return;
+      }
+      encodeCodePoint(builder, Character.isSurrogate(c)? '\uFFFD': c);
+    }
+
+    void encode(StringBuilder builder, CharSequence sequence) {
+      if (sequence == null) {
+        builder.append("null");
+        return;
+      }
+      var length = sequence.length();
+      for (var i = 0; i < length; i++) {
+        var c = sequence.charAt(i);
+        if (c < 128 && allowed[c]) {
+          builder.append(c);
+          continue;
+        }
+        int codePoint = c;
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(sequence.charAt(i + 1))) {
+          codePoint = Character.toCodePoint(c, sequence.charAt(++i));
+        } else if (Character.isSurrogate(c)) {
+          codePoint = '\uFFFD';  // unpaired surrogate
+        }
+        encodeCodePoint(builder, codePoint);
+      }
+    }
+
+    // encode the code point in UTF-8
+    private static void encodeCodePoint(StringBuilder builder, int codePoint) {
+      if (codePoint < 0x80) {
+        appendByte(builder, codePoint);
+      } else if (codePoint < 0x800) {
+        appendByte(builder, 0xC0 | codePoint >> 6);
+        appendByte(builder, 0x80 | codePoint & 0x3F);
+      } else if (codePoint < 0x10000) {
+        appendByte(builder, 0xE0 | codePoint >> 12);
+        appendByte(builder, 0x80 | codePoint >> 6 & 0x3F);
+        appendByte(builder, 0x80 | codePoint & 0x3F);
+      } else {
+        appendByte(builder, 0xF0 | codePoint >> 18);
+        appendByte(builder, 0x80 | codePoint >> 12 & 0x3F);
+        appendByte(builder, 0x80 | codePoint >> 6 & 0x3F);
+        appendByte(builder, 0x80 | codePoint & 0x3F);
+      }
+    }
+
+    private static void appendByte(StringBuilder builder, int value) {
+      builder.append('%').append(HEX[value >> 4]).append(HEX[value & 0xF]);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.github.forax.policyinterface.runtime;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A snapshot of the state of a live template call site.
+ *
+ * @param callerClass the name of the class containing the call site.
+ * @param template the template of the call site.
+ * @param policy the name of the class of the policy, the declared type of the receiver if the call site is not linked.
+ * @param state the link state of the call site.
+ * @param receiverClasses the names of the classes of the receivers checked by the call site.
+ * @param templateBytes the estimated size in bytes of the templated string.
+ * @param methodHandleBytes the estimated size in bytes of the method handle tree of the call site,
+ *                          computed from the method handles created by the call site and one method handle
+ *                          by segment of the template for the method handle created by the policy.
+ * @param cacheBytes the estimated size in bytes of the caches of the call site (counters, sampler, etc).
+ *
+ * @see TemplateCallSiteRegistry
+ */
+public record CallSiteInfo(String callerClass, String template, String policy, State state, List<String> receiverClasses,
+                           long templateBytes, long methodHandleBytes, long cacheBytes) {
+  /**
+   * The link state of a call site.
+   * The inline cache of a call site is monomorphic, there is no polymorphic state.
+   */
+  public enum State {
+    /**
+     * The call site has never been called or must be re-linked.
+     */
+    UNLINKED,
+    /**
+     * The call site is specialized for one class of policy.
+     */
+    MONOMORPHIC,
+    /**
+     * The call site has seen several classes of policy and calls {@code TemplatePolicy.apply()}.
+     */
+    MEGAMORPHIC,
+    /**
+     * The class of the policy may be unloaded before the call site, the call site looks up
+     * the target specialized for the class of the policy at each call.
+     */
+    INDIRECT,
+    /**
+     * The call site returns a constant.
+     */
+    CONSTANT
+  }
+
+  public CallSiteInfo {
+    requireNonNull(callerClass, "callerClass is null");
+    requireNonNull(template, "template is null");
+    requireNonNull(policy, "policy is null");
+    requireNonNull(state, "state is null");
+    receiverClasses = List.copyOf(receiverClasses);
+  }
+
+  /**
+   * Returns the estimated size in bytes retained by the call site.
+   * @return the estimated size in bytes retained by the call site.
+   */
+  public long estimatedBytes() {
+    return templateBytes + methodHandleBytes + cacheBytes;
+  }
+
+  @Override
+  public String toString() {
+    return callerClass + " \"" + template + "\" " + state + " policy: " + policy + " receivers: " + receiverClasses
+        + " bytes: " + estimatedBytes() + " (template: " + templateBytes + " method handle: " + methodHandleBytes
+        + " caches: " + cacheBytes + ")";
+  }
+}
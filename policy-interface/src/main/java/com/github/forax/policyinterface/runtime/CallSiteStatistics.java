@@ -0,0 +1,93 @@
+package com.github.forax.policyinterface.runtime;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * A snapshot of the counters of an instrumented call site.
+ *
+ * @see TemplateCallSitesMXBean
+ */
+public final class CallSiteStatistics {
+  private final String id;
+  private final String template;
+  private final long invocations;
+  private final long slowPaths;
+  private final long relinks;
+  private final long guardMisses;
+
+  public CallSiteStatistics(String id, String template, long invocations, long slowPaths, long relinks, long guardMisses) {
+    this.id = id;
+    this.template = template;
+    this.invocations = invocations;
+    this.slowPaths = slowPaths;
+    this.relinks = relinks;
+    this.guardMisses = guardMisses;
+  }
+
+  /**
+   * Returns the id of the call site, the name of the class containing the call site followed by a hash
+   * of the template and of the type of the call site, the id is the same from one run to another.
+   * @return the id of the call site.
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the template of the call site.
+   * @return the template of the call site.
+   */
+  public String getTemplate() {
+    return template;
+  }
+
+  /**
+   * Returns the number of calls of the call site.
+   * @return the number of calls of the call site.
+   */
+  public long getInvocations() {
+    return invocations;
+  }
+
+  /**
+   * Returns the number of times the call site has been linked.
+   * @return the number of times the call site has been linked.
+   */
+  public long getSlowPaths() {
+    return slowPaths;
+  }
+
+  /**
+   * Returns the number of times the call site has been linked again after the first time.
+   * @return the number of times the call site has been linked again.
+   */
+  public long getRelinks() {
+    return relinks;
+  }
+
+  /**
+   * Returns the number of calls that have failed a guard of the call site,
+   * either the check of the class of the policy or an invalidated switch point.
+   * @return the number of calls that have failed a guard.
+   */
+  public long getGuardMisses() {
+    return guardMisses;
+  }
+
+  /**
+   * Creates the statistics from their JMX representation.
+   * @param data the JMX representation.
+   * @return new statistics.
+   */
+  public static CallSiteStatistics from(CompositeData data) {
+    return new CallSiteStatistics((String) data.get("id"), (String) data.get("template"),
+        (Long) data.get("invocations"), (Long) data.get("slowPaths"),
+        (Long) data.get("relinks"), (Long) data.get("guardMisses"));
+  }
+
+  @Override
+  public String toString() {
+    return id + " " + template + " invocations: " + invocations + " slowPaths: " + slowPaths
+        + " relinks: " + relinks + " guardMisses: " + guardMisses;
+  }
+}
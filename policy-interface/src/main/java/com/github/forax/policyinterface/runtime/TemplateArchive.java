@@ -0,0 +1,441 @@
+package com.github.forax.policyinterface.runtime;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Text;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.github.forax.policyinterface.TemplatedString.OBJECT_REPLACEMENT_CHARACTER;
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A file of precompiled templated strings, so an application with a lot of templates does not have to parse them
+ * at startup.
+ *
+ * Each templated string of the archive has a name and is stored with its fragments (the texts between the holes)
+ * and the types of its holes, the fragments and the type names are stored once in a table of strings shared
+ * by all the templated strings. A templated string can also store attachments, data precomputed by a policy
+ * (by example the fragments already encoded) indexed by a key.
+ * <pre>
+ *   TemplateArchive.write(path, List.of(new Entry("hello", TemplatedString.parse("hello ￼", ...))));
+ *   ...
+ *   var archive = TemplateArchive.open(path, classLoader);
+ *   TemplatedString template = archive.templatedString(archive.index("hello"));
+ * </pre>
+ *
+ * The file is memory-mapped when opened and a templated string is only decoded the first time it is requested,
+ * the types of the holes are loaded with the class loader of the archive.
+ * The fragments are checked when the archive is written, a templated string is decoded from the UTF-8 bytes
+ * of its fragments without scanning its text for the holes again, so an archive should only be created by
+ * {@link #write(Path, List)}.
+ * An archive is thread-safe.
+ *
+ * The format of the file is
+ * <pre>
+ *   header:    magic (int) version (int) stringCount (int) templateCount (int)
+ *   strings:   stringCount x (offset (int) length (int)), the offset is from the start of the file
+ *   templates: templateCount x offset (int), sorted by name
+ *   the templates: name (int) returnType (int) varargsType (int) holeCount (int)
+ *                  (holeCount + 1) x fragment (int)  holeCount x type (int)
+ *                  attachmentCount (int)  attachmentCount x (key (int) length (int) bytes padded to 4 bytes)
+ *   the UTF-8 bytes of the strings
+ * </pre>
+ * where the names, the types, the fragments and the keys are indexes in the table of strings, all numbers are big endian.
+ * The tables and the templates are aligned on 4 bytes, so they are read as ints in bulk, the two tables
+ * are copied when the archive is opened.
+ */
+public final class TemplateArchive {
+  /**
+   * A templated string and its attachments to write in an archive.
+   *
+   * @param name the name of the templated string in the archive.
+   * @param template a templated string.
+   * @param attachments the data precomputed by a policy indexed by a key.
+   */
+  public record Entry(String name, TemplatedString template, Map<String, byte[]> attachments) {
+    public Entry {
+      Objects.requireNonNull(name);
+      Objects.requireNonNull(template);
+      attachments = Map.copyOf(attachments);
+    }
+
+    /**
+     * Creates an entry with no attachment.
+     *
+     * @param name the name of the templated string in the archive.
+     * @param template a templated string.
+     */
+    public Entry(String name, TemplatedString template) {
+      this(name, template, Map.of());
+    }
+  }
+
+  private static final int MAGIC = 0x54504C41;  // TPLA
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final byte[] HOLE = String.valueOf(OBJECT_REPLACEMENT_CHARACTER).getBytes(UTF_8);
+
+  private static final MethodHandle TRUSTED_TEMPLATED_STRING;
+
+  static {
+    // the factory of TemplatedStringImpl that does not scan the template, it is package-private
+    try {
+      var lookup = MethodHandles.privateLookupIn(TemplatedString.class, MethodHandles.lookup());
+      var implClass = lookup.findClass(TemplatedString.class.getPackageName() + ".TemplatedStringImpl");
+      TRUSTED_TEMPLATED_STRING = lookup.findStatic(implClass, "trusted",
+              methodType(implClass, String.class, Class.class, Class.class, Class[].class))
+          .asType(methodType(TemplatedString.class, String.class, Class.class, Class.class, Class[].class));
+    } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final ByteBuffer buffer;
+  private final IntBuffer ints;
+  private final ClassLoader loader;
+  private final int templateCount;
+  private final int[] stringTable;    // offset and length of each string
+  private final int[] templateTable;  // offset of each template
+  // lazily decoded, the races are benign, the values are immutable
+  private final String[] strings;
+  private final Class<?>[] types;
+  private final TemplatedString[] templates;
+
+  private TemplateArchive(ByteBuffer buffer, ClassLoader loader) throws IOException {
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("not a template archive");
+    }
+    var version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("unsupported template archive version " + version);
+    }
+    var stringCount = buffer.getInt(8);
+    var templateCount = buffer.getInt(12);
+    if (stringCount < 0 || templateCount < 0 || HEADER_SIZE + 8L * stringCount + 4L * templateCount > buffer.limit()) {
+      throw new IOException("truncated template archive");
+    }
+    this.buffer = buffer;
+    this.ints = buffer.asIntBuffer();
+    this.loader = loader;
+    this.templateCount = templateCount;
+    this.stringTable = new int[2 * stringCount];
+    ints.get(HEADER_SIZE / 4, stringTable);
+    this.templateTable = new int[templateCount];
+    ints.get(HEADER_SIZE / 4 + stringTable.length, templateTable);
+    this.strings = new String[stringCount];
+    this.types = new Class<?>[stringCount];
+    this.templates = new TemplatedString[templateCount];
+  }
+
+  /**
+   * Opens an archive, the file is memory-mapped and the templated strings are decoded lazily.
+   *
+   * @param path the path of the archive.
+   * @param loader the class loader used to load the types of the holes.
+   * @return a new archive.
+   * @throws IOException if the file can not be read or is not an archive.
+   */
+  public static TemplateArchive open(Path path, ClassLoader loader) throws IOException {
+    Objects.requireNonNull(loader);
+    try (var channel = FileChannel.open(path, READ)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new TemplateArchive(buffer, loader);
+    }
+  }
+
+  /**
+   * Returns the number of templated strings of the archive.
+   * @return the number of templated strings of the archive.
+   */
+  public int size() {
+    return templateCount;
+  }
+
+  /**
+   * Returns the index of a templated string from its name.
+   *
+   * @param name the name of a templated string.
+   * @return the index of the templated string or -1 if there is no templated string with that name.
+   */
+  public int index(String name) {
+    Objects.requireNonNull(name);
+    var low = 0;
+    var high = templateCount - 1;
+    while (low <= high) {
+      var middle = (low + high) >>> 1;
+      var compare = name(middle).compareTo(name);
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the name of a templated string.
+   *
+   * @param index the index of a templated string.
+   * @return the name of the templated string.
+   * @throws IndexOutOfBoundsException if the index is not valid.
+   */
+  public String name(int index) {
+    return string(ints.get(template(index) / 4));
+  }
+
+  /**
+   * Returns a templated string, the templated string is decoded the first time it is requested.
+   *
+   * @param index the index of a templated string.
+   * @return the templated string.
+   * @throws IndexOutOfBoundsException if the index is not valid.
+   * @throws TypeNotPresentException if the type of a hole can not be loaded.
+   */
+  public TemplatedString templatedString(int index) {
+    var template = templates[Objects.checkIndex(index, templateCount)];
+    if (template != null) {
+      return template;
+    }
+    return templates[index] = decode(template(index));
+  }
+
+  /**
+   * Returns an attachment of a templated string.
+   *
+   * @param index the index of a templated string.
+   * @param key the key of the attachment.
+   * @return a read-only view of the bytes of the attachment in the archive or null if there is no attachment.
+   * @throws IndexOutOfBoundsException if the index is not valid.
+   */
+  public ByteBuffer attachment(int index, String key) {
+    Objects.requireNonNull(key);
+    var offset = template(index);
+    var holeCount = ints.get(offset / 4 + 3);
+    offset += 16 + 4 * (2 * holeCount + 1);
+    var attachmentCount = ints.get(offset / 4);
+    offset += 4;
+    for (var i = 0; i < attachmentCount; i++) {
+      var length = ints.get(offset / 4 + 1);
+      if (string(ints.get(offset / 4)).equals(key)) {
+        return buffer.slice(offset + 8, length).asReadOnlyBuffer();
+      }
+      offset += 8 + padded(length);
+    }
+    return null;
+  }
+
+  // the offset of a templated string
+  private int template(int index) {
+    return templateTable[index];
+  }
+
+  private String string(int index) {
+    var string = strings[index];
+    if (string != null) {
+      return string;
+    }
+    var bytes = new byte[stringTable[2 * index + 1]];
+    buffer.get(stringTable[2 * index], bytes);
+    return strings[index] = new String(bytes, UTF_8);
+  }
+
+  private Class<?> type(int index) {
+    var type = types[index];
+    if (type != null) {
+      return type;
+    }
+    var name = string(index);
+    type = switch (name) {
+      case "boolean" -> boolean.class;
+      case "byte" -> byte.class;
+      case "char" -> char.class;
+      case "short" -> short.class;
+      case "int" -> int.class;
+      case "long" -> long.class;
+      case "float" -> float.class;
+      case "double" -> double.class;
+      case "void" -> void.class;
+      default -> {
+        try {
+          yield Class.forName(name, false, loader);
+        } catch (ClassNotFoundException e) {
+          throw new TypeNotPresentException(name, e);
+        }
+      }
+    };
+    return types[index] = type;
+  }
+
+  private TemplatedString decode(int offset) {
+    var holeCount = ints.get(offset / 4 + 3);
+    var record = new int[4 + 2 * holeCount + 1];
+    ints.get(offset / 4, record);
+    var returnType = type(record[1]);
+    var varargsType = type(record[2]);
+    var parameterTypes = new Class<?>[holeCount];
+    for (var i = 0; i < parameterTypes.length; i++) {
+      parameterTypes[i] = type(record[4 + holeCount + 1 + i]);
+    }
+
+    // the template is decoded at once from the bytes of the fragments separated by the bytes of the holes
+    var length = HOLE.length * holeCount;
+    for (var i = 0; i <= holeCount; i++) {
+      length += stringTable[2 * record[4 + i] + 1];
+    }
+    var bytes = new byte[length];
+    var position = 0;
+    for (var i = 0; i <= holeCount; i++) {
+      if (i != 0) {
+        System.arraycopy(HOLE, 0, bytes, position, HOLE.length);
+        position += HOLE.length;
+      }
+      var fragment = record[4 + i];
+      var fragmentLength = stringTable[2 * fragment + 1];
+      buffer.get(stringTable[2 * fragment], bytes, position, fragmentLength);
+      position += fragmentLength;
+    }
+    var template = new String(bytes, UTF_8);
+    try {
+      return (TemplatedString) TRUSTED_TEMPLATED_STRING.invokeExact(template, returnType, varargsType, parameterTypes);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new AssertionError(t);
+    }
+  }
+
+  /**
+   * Writes the templated strings and their attachments into an archive.
+   *
+   * @param path the path of the archive.
+   * @param entries the templated strings with their names and their attachments.
+   * @throws IOException if the file can not be written.
+   * @throws IllegalArgumentException if two entries have the same name or if a fragment of a templated string
+   *   contains {@link TemplatedString#OBJECT_REPLACEMENT_CHARACTER}.
+   */
+  public static void write(Path path, List<Entry> entries) throws IOException {
+    Files.write(path, encode(entries));
+  }
+
+  private static byte[] encode(List<Entry> entries) {
+    var names = new HashSet<String>();
+    for (var entry : entries) {
+      if (!names.add(entry.name)) {
+        throw new IllegalArgumentException("duplicate name " + entry.name);
+      }
+    }
+    var sortedEntries = entries.stream().sorted(Comparator.comparing(Entry::name)).toList();
+
+    var stringTable = new StringTable();
+
+    // the templates, the offsets are relative to the start of the templates
+    var templates = new ByteArrayOutputStream();
+    var templateOffsets = new int[sortedEntries.size()];
+    try (var output = new DataOutputStream(templates)) {
+      for (var i = 0; i < sortedEntries.size(); i++) {
+        var entry = sortedEntries.get(i);
+        var template = entry.template;
+        templateOffsets[i] = output.size();
+        output.writeInt(stringTable.index(entry.name));
+        output.writeInt(stringTable.index(template.returnType().getName()));
+        output.writeInt(stringTable.index(template.varargsType().getName()));
+        output.writeInt(template.parameters().size());
+        for (var fragment : fragments(template)) {
+          // checked once here, the fragments are not scanned when the archive is decoded
+          if (fragment.indexOf(OBJECT_REPLACEMENT_CHARACTER) != -1) {
+            throw new IllegalArgumentException("a fragment of " + entry.name + " contains a hole");
+          }
+          output.writeInt(stringTable.index(fragment));
+        }
+        for (var parameter : template.parameters()) {
+          output.writeInt(stringTable.index(parameter.type().getName()));
+        }
+        var attachments = entry.attachments.entrySet().stream().sorted(Map.Entry.comparingByKey()).toList();
+        output.writeInt(attachments.size());
+        for (var attachment : attachments) {
+          output.writeInt(stringTable.index(attachment.getKey()));
+          output.writeInt(attachment.getValue().length);
+          output.write(attachment.getValue());
+          output.write(new byte[padded(attachment.getValue().length) - attachment.getValue().length]);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);  // a ByteArrayOutputStream does not throw IOException
+    }
+
+    var strings = stringTable.strings;
+    var templateStart = HEADER_SIZE + 8 * strings.size() + 4 * sortedEntries.size();
+    var stringStart = templateStart + templates.size();
+    var buffer = ByteBuffer.allocate(stringStart + strings.stream().mapToInt(bytes -> bytes.length).sum());
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(strings.size()).putInt(sortedEntries.size());
+    var stringOffset = stringStart;
+    for (var bytes : strings) {
+      buffer.putInt(stringOffset).putInt(bytes.length);
+      stringOffset += bytes.length;
+    }
+    for (var templateOffset : templateOffsets) {
+      buffer.putInt(templateStart + templateOffset);
+    }
+    buffer.put(templates.toByteArray());
+    for (var bytes : strings) {
+      buffer.put(bytes);
+    }
+    return buffer.array();
+  }
+
+  // the length rounded to a multiple of 4
+  private static int padded(int length) {
+    return (length + 3) & ~3;
+  }
+
+  // the strings of an archive, each string is stored once
+  private static final class StringTable {
+    private final HashMap<String, Integer> indexes = new HashMap<>();
+    private final ArrayList<byte[]> strings = new ArrayList<>();
+
+    private int index(String string) {
+      return indexes.computeIfAbsent(string, s -> {
+        strings.add(s.getBytes(UTF_8));
+        return strings.size() - 1;
+      });
+    }
+  }
+
+  // the texts before, between and after the holes
+  private static List<String> fragments(TemplatedString template) {
+    var fragments = new ArrayList<String>();
+    var builder = new StringBuilder();
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        builder.append(text.text());
+      } else {
+        fragments.add(builder.toString());
+        builder.setLength(0);
+      }
+    }
+    fragments.add(builder.toString());
+    return fragments;
+  }
+}
@@ -0,0 +1,186 @@
+package com.github.forax.policyinterface.runtime;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.permuteArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Renders the same templated string with a policy for many rows of arguments.
+ * The arguments are provided by column, a column is either an array (of primitive or not) or a {@link List},
+ * the row {@code i} is rendered with the element {@code i} of each column.
+ *
+ * The method handle of the policy is linked once and the rows are rendered in parallel
+ * by chunks using the {@link ForkJoinPool#commonPool() common fork/join pool},
+ * the output is in the order of the rows.
+ */
+public final class TemplateBatch {
+  private static final MethodHandle LIST_GET;
+  static {
+    var lookup = MethodHandles.publicLookup();
+    try {
+      LIST_GET = lookup.findVirtual(List.class, "get", methodType(Object.class, int.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // minimum number of rows of a chunk rendered by a thread
+  static final int MIN_CHUNK_SIZE = 1_024;
+
+  private TemplateBatch() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Renders each row of arguments with the template policy and returns the concatenation of the results.
+   *
+   * @param policy a template policy.
+   * @param template a templated string.
+   * @param columns the arguments of the templated string, one column by parameter.
+   * @return the concatenation of the result of each row.
+   * @param <E> the type of the exception of the policy.
+   * @throws E if the template policy throws an exception.
+   * @throws IllegalArgumentException if the columns do not match the parameters of the templated string.
+   */
+  public static <E extends Exception> String render(TemplatePolicy<?, ?, E> policy, TemplatedString template, Object... columns) throws E {
+    var parameters = template.parameters();
+    if (parameters.size() != columns.length) {
+      throw new IllegalArgumentException(template + " requires " + parameters.size() + " columns");
+    }
+    if (columns.length == 0) {
+      throw new IllegalArgumentException("no column");
+    }
+    var rows = -1;
+    for (var column : columns) {
+      var length = length(column);
+      if (rows != -1 && rows != length) {
+        throw new IllegalArgumentException("all columns should have the same length " + rows + " != " + length);
+      }
+      rows = length;
+    }
+    if (rows == 0) {
+      return "";
+    }
+    var renderer = rowRenderer(policy, template, columns);
+
+    var chunkSize = Math.max(MIN_CHUNK_SIZE, rows / (4 * ForkJoinPool.getCommonPoolParallelism()));
+    var chunks = new String[(rows + chunkSize - 1) / chunkSize];
+    var task = new RenderTask(renderer, rows, chunkSize, chunks, 0, chunks.length);
+    try {
+      if (chunks.length == 1) {
+        task.compute();
+      } else {
+        ForkJoinPool.commonPool().invoke(task);
+      }
+    } catch (CompletionException e) {
+      var cause = e.getCause();
+      while (cause instanceof CompletionException) {  // the fork/join pool may have wrapped the exception
+        cause = cause.getCause();
+      }
+      @SuppressWarnings("unchecked")
+      var exception = (E) cause;  // the only checked exception a policy can throw is E
+      throw exception;
+    }
+    var builder = new StringBuilder(Arrays.stream(chunks).mapToInt(String::length).sum());
+    for (var chunk : chunks) {
+      builder.append(chunk);
+    }
+    return builder.toString();
+  }
+
+  private static int length(Object column) {
+    if (column instanceof List<?> list) {
+      return list.size();
+    }
+    if (column != null && column.getClass().isArray()) {
+      return Array.getLength(column);
+    }
+    throw new IllegalArgumentException("a column should be an array or a list " + column);
+  }
+
+  // returns a method handle (int)Object that renders a row
+  private static MethodHandle rowRenderer(TemplatePolicy<?, ?, ?> policy, TemplatedString template, Object[] columns) {
+    var parameterTypes = template.parameters().stream().map(Parameter::type).toList();
+    MethodHandle target;
+    try {
+      target = policy.asMethodHandle(template);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new LinkageError("error while linking " + template, t);
+    }
+    target = target.asType(methodType(Object.class, parameterTypes).insertParameterTypes(0, policy.getClass()));
+    target = insertArguments(target, 0, policy);
+
+    var getters = new MethodHandle[columns.length];
+    for (var i = 0; i < columns.length; i++) {
+      var column = columns[i];
+      var getter = column instanceof List<?>?
+          LIST_GET.bindTo(column):
+          MethodHandles.arrayElementGetter(column.getClass()).bindTo(column);
+      try {
+        getters[i] = getter.asType(methodType(parameterTypes.get(i), int.class));
+      } catch (WrongMethodTypeException e) {
+        throw new IllegalArgumentException("column " + i + " is not compatible with " + parameterTypes.get(i), e);
+      }
+    }
+    target = filterArguments(target, 0, getters);
+    return permuteArguments(target, methodType(Object.class, int.class), new int[columns.length]);
+  }
+
+  @SuppressWarnings("serial")
+  private static final class RenderTask extends RecursiveAction {
+    private final MethodHandle renderer;
+    private final int rows;
+    private final int chunkSize;
+    private final String[] chunks;
+    private final int start;
+    private final int end;
+
+    private RenderTask(MethodHandle renderer, int rows, int chunkSize, String[] chunks, int start, int end) {
+      this.renderer = renderer;
+      this.rows = rows;
+      this.chunkSize = chunkSize;
+      this.chunks = chunks;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > 1) {
+        var middle = (start + end) >>> 1;
+        invokeAll(new RenderTask(renderer, rows, chunkSize, chunks, start, middle),
+            new RenderTask(renderer, rows, chunkSize, chunks, middle, end));
+        return;
+      }
+      var builder = new StringBuilder();
+      var to = Math.min(rows, (start + 1) * chunkSize);
+      for (var row = start * chunkSize; row < to; row++) {
+        try {
+          builder.append((Object) renderer.invokeExact(row));
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable t) {
+          throw new CompletionException(t);
+        }
+      }
+      chunks[start] = builder.toString();
+    }
+  }
+}
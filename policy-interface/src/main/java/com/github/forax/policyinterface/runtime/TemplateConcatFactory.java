@@ -0,0 +1,351 @@
+package com.github.forax.policyinterface.runtime;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Segment;
+import com.github.forax.policyinterface.TemplatedString.Text;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Alternative to {@link java.lang.invoke.StringConcatFactory} that generates a hidden class
+ * with straight-line bytecode appending the segments of a templated string to a {@link StringBuilder}.
+ *
+ * Unlike a tree of method handle combinators, the generated code does not grow in depth with the number of holes,
+ * the segments are split in chunks of {@link #CHUNK_SIZE} segments, each chunk being a method small enough
+ * to be inlined by the JIT.
+ */
+public class TemplateConcatFactory {
+  private TemplateConcatFactory() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Number of segments appended by one generated method.
+   */
+  static final int CHUNK_SIZE = 32;
+
+  // a constant string in the class file is encoded in modified UTF-8 on at most 65535 bytes
+  private static final int MAX_TEXT_LENGTH = 65535 / 3;
+
+  /**
+   * Returns a method handle that concatenates the segments of the templated string.
+   *
+   * @param template a templated string
+   * @param type the type of the method handle, the parameter types must be the types of the parameters
+   *             of the templated string and the return type a super type of {@code String}.
+   * @return a method handle of type {@code type}
+   */
+  public static MethodHandle makeConcat(TemplatedString template, MethodType type) {
+    var parameters = template.parameters();
+    if (type.parameterCount() != parameters.size()) {
+      throw new IllegalArgumentException("invalid number of parameters " + type + " for " + template);
+    }
+    var erasedType = methodType(String.class, type.parameterList().stream().map(TemplateConcatFactory::erase).toList());
+    var bytecode = new ConcatClassGenerator(erasedType).generate(template.segments());
+    try {
+      var lookup = MethodHandles.lookup().defineHiddenClass(bytecode, true);
+      return lookup.findStatic(lookup.lookupClass(), "concat", erasedType).asType(type);
+    } catch (IllegalAccessException | NoSuchMethodException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // the generated class only references types of java.lang
+  private static Class<?> erase(Class<?> type) {
+    if (type.isPrimitive() || type == String.class || type == CharSequence.class) {
+      return type;
+    }
+    return Object.class;
+  }
+
+  private static String appendDescriptor(Class<?> type) {
+    if (type == byte.class || type == short.class) {
+      return "(I)Ljava/lang/StringBuilder;";
+    }
+    return "(" + type.descriptorString() + ")Ljava/lang/StringBuilder;";
+  }
+
+  private static int loadOpcode(Class<?> type) {
+    if (!type.isPrimitive()) {
+      return ALOAD;
+    }
+    if (type == long.class) {
+      return LLOAD;
+    }
+    if (type == float.class) {
+      return FLOAD;
+    }
+    if (type == double.class) {
+      return DLOAD;
+    }
+    return ILOAD;
+  }
+
+  private static int slots(Class<?> type) {
+    return type == long.class || type == double.class ? 2 : 1;
+  }
+
+  // opcodes
+  private static final int ILOAD = 0x15, LLOAD = 0x16, FLOAD = 0x17, DLOAD = 0x18, ALOAD = 0x19,
+      SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13, DUP = 0x59, ARETURN = 0xB0,
+      INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, INVOKESTATIC = 0xB8, NEW = 0xBB;
+
+  // constant pool tags
+  private static final int CONSTANT_UTF8 = 1, CONSTANT_INTEGER = 3, CONSTANT_CLASS = 7, CONSTANT_STRING = 8,
+      CONSTANT_METHODREF = 10, CONSTANT_NAME_AND_TYPE = 12;
+
+  private static final int ACC_STATIC = 0x0008, ACC_PRIVATE = 0x0002, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+  private static final String CLASS_NAME = TemplateConcatFactory.class.getName().replace('.', '/') + "$Concat";
+  private static final String STRING_BUILDER = "java/lang/StringBuilder";
+  private static final String CHUNK_DESCRIPTOR_PREFIX = "(Ljava/lang/StringBuilder;";
+
+  private record Method(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {}
+
+  private static final class ConcatClassGenerator {
+    private final MethodType type;
+    private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+    private final HashMap<List<Object>, Integer> constants = new HashMap<>();
+    private int constantCount = 1;
+    private final ArrayList<Method> methods = new ArrayList<>();
+
+    private ConcatClassGenerator(MethodType type) {
+      this.type = type;
+    }
+
+    private int constant(List<Object> key, DataOutputWriter writer) {
+      var index = constants.get(key);
+      if (index != null) {
+        return index;
+      }
+      try {
+        writer.write(constantPool);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      var newIndex = constantCount++;
+      constants.put(key, newIndex);
+      return newIndex;
+    }
+
+    private interface DataOutputWriter {
+      void write(DataOutputStream output) throws IOException;
+    }
+
+    private int utf8(String value) {
+      return constant(List.of(CONSTANT_UTF8, value), output -> {
+        output.writeByte(CONSTANT_UTF8);
+        output.writeUTF(value);
+      });
+    }
+
+    private int integer(int value) {
+      return constant(List.of(CONSTANT_INTEGER, value), output -> {
+        output.writeByte(CONSTANT_INTEGER);
+        output.writeInt(value);
+      });
+    }
+
+    private int classRef(String internalName) {
+      var name = utf8(internalName);
+      return constant(List.of(CONSTANT_CLASS, internalName), output -> {
+        output.writeByte(CONSTANT_CLASS);
+        output.writeShort(name);
+      });
+    }
+
+    private int string(String value) {
+      var utf8 = utf8(value);
+      return constant(List.of(CONSTANT_STRING, value), output -> {
+        output.writeByte(CONSTANT_STRING);
+        output.writeShort(utf8);
+      });
+    }
+
+    private int methodRef(String owner, String name, String descriptor) {
+      var classRef = classRef(owner);
+      var nameIndex = utf8(name);
+      var descriptorIndex = utf8(descriptor);
+      var nameAndType = constant(List.of(CONSTANT_NAME_AND_TYPE, name, descriptor), output -> {
+        output.writeByte(CONSTANT_NAME_AND_TYPE);
+        output.writeShort(nameIndex);
+        output.writeShort(descriptorIndex);
+      });
+      return constant(List.of(CONSTANT_METHODREF, owner, name, descriptor), output -> {
+        output.writeByte(CONSTANT_METHODREF);
+        output.writeShort(classRef);
+        output.writeShort(nameAndType);
+      });
+    }
+
+    private static final class Code {
+      private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      private void u1(int opcode) {
+        bytes.write(opcode);
+      }
+
+      private void u2(int opcode, int index) {
+        bytes.write(opcode);
+        bytes.write(index >>> 8);
+        bytes.write(index);
+      }
+
+      private void u1(int opcode, int index) {
+        bytes.write(opcode);
+        bytes.write(index);
+      }
+    }
+
+    private void ldc(Code code, int index) {
+      if (index < 256) {
+        code.u1(LDC, index);
+      } else {
+        code.u2(LDC_W, index);
+      }
+    }
+
+    // stack: StringBuilder -> StringBuilder
+    private void appendSegment(Code code, Segment segment, int[] slotOfParameter) {
+      if (segment instanceof Text text) {
+        var value = text.text();
+        for (var start = 0; start < value.length(); start += MAX_TEXT_LENGTH) {
+          ldc(code, string(value.substring(start, Math.min(value.length(), start + MAX_TEXT_LENGTH))));
+          code.u2(INVOKEVIRTUAL, methodRef(STRING_BUILDER, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;"));
+        }
+        return;
+      }
+      var index = ((Parameter) segment).index();
+      var parameterType = type.parameterType(index);
+      code.u1(loadOpcode(parameterType), slotOfParameter[index]);
+      code.u2(INVOKEVIRTUAL, methodRef(STRING_BUILDER, "append", appendDescriptor(parameterType)));
+    }
+
+    private void generateChunk(int chunkIndex, List<Segment> chunk, Code caller, int[] slotOfParameter) {
+      var code = new Code();
+      var chunkSlots = new int[type.parameterCount()];
+      var descriptor = new StringBuilder(CHUNK_DESCRIPTOR_PREFIX);
+      var slot = 1;
+      for (var segment : chunk) {
+        if (segment instanceof Parameter parameter) {
+          var parameterType = type.parameterType(parameter.index());
+          descriptor.append(parameterType.descriptorString());
+          caller.u1(loadOpcode(parameterType), slotOfParameter[parameter.index()]);
+          chunkSlots[parameter.index()] = slot;
+          slot += slots(parameterType);
+        }
+      }
+      descriptor.append(")Ljava/lang/StringBuilder;");
+      var name = "chunk" + chunkIndex;
+      caller.u2(INVOKESTATIC, methodRef(CLASS_NAME, name, descriptor.toString()));
+
+      code.u1(ALOAD, 0);
+      for (var segment : chunk) {
+        appendSegment(code, segment, chunkSlots);
+      }
+      code.u1(ARETURN);
+      methods.add(new Method(ACC_PRIVATE | ACC_STATIC, name, descriptor.toString(), 3, slot, code.bytes.toByteArray()));
+    }
+
+    private byte[] generate(Iterable<Segment> segmentIterable) {
+      var segments = new ArrayList<Segment>();
+      segmentIterable.forEach(segments::add);
+
+      var slotOfParameter = new int[type.parameterCount()];
+      var slot = 0;
+      for (var i = 0; i < type.parameterCount(); i++) {
+        slotOfParameter[i] = slot;
+        slot += slots(type.parameterType(i));
+      }
+      var capacity = 16 * type.parameterCount() + segments.stream()
+          .mapToInt(segment -> segment instanceof Text text ? text.text().length() : 0)
+          .sum();
+
+      var code = new Code();
+      code.u2(NEW, classRef(STRING_BUILDER));
+      code.u1(DUP);
+      if (capacity <= Short.MAX_VALUE) {
+        code.u2(SIPUSH, capacity);
+      } else {
+        ldc(code, integer(capacity));
+      }
+      code.u2(INVOKESPECIAL, methodRef(STRING_BUILDER, "<init>", "(I)V"));
+      var maxStack = 3;
+      if (segments.size() <= CHUNK_SIZE) {
+        for (var segment : segments) {
+          appendSegment(code, segment, slotOfParameter);
+        }
+      } else {
+        for (var start = 0; start < segments.size(); start += CHUNK_SIZE) {
+          var chunk = segments.subList(start, Math.min(segments.size(), start + CHUNK_SIZE));
+          var chunkSlots = chunk.stream()
+              .mapToInt(segment -> segment instanceof Parameter parameter ? slots(type.parameterType(parameter.index())) : 0)
+              .sum();
+          maxStack = Math.max(maxStack, 1 + chunkSlots);
+          generateChunk(start / CHUNK_SIZE, chunk, code, slotOfParameter);
+        }
+      }
+      code.u2(INVOKEVIRTUAL, methodRef(STRING_BUILDER, "toString", "()Ljava/lang/String;"));
+      code.u1(ARETURN);
+      methods.add(0, new Method(ACC_STATIC, "concat", type.toMethodDescriptorString(), maxStack, slot, code.bytes.toByteArray()));
+
+      return classFile();
+    }
+
+    private byte[] classFile() {
+      var thisClass = classRef(CLASS_NAME);
+      var superClass = classRef("java/lang/Object");
+      var codeName = utf8("Code");
+      var methodNames = methods.stream().mapToInt(method -> utf8(method.name)).toArray();
+      var methodDescriptors = methods.stream().mapToInt(method -> utf8(method.descriptor)).toArray();
+
+      var bytes = new ByteArrayOutputStream();
+      var output = new DataOutputStream(bytes);
+      try {
+        output.writeInt(0xCAFEBABE);
+        output.writeShort(0);   // minor version
+        output.writeShort(61);  // major version, Java 17
+        output.writeShort(constantCount);
+        constantPoolBytes.writeTo(output);
+        output.writeShort(ACC_FINAL | ACC_SUPER);
+        output.writeShort(thisClass);
+        output.writeShort(superClass);
+        output.writeShort(0);  // interfaces
+        output.writeShort(0);  // fields
+        output.writeShort(methods.size());
+        for (var i = 0; i < methods.size(); i++) {
+          var method = methods.get(i);
+          output.writeShort(method.access);
+          output.writeShort(methodNames[i]);
+          output.writeShort(methodDescriptors[i]);
+          output.writeShort(1);  // attributes
+          output.writeShort(codeName);
+          output.writeInt(12 + method.code.length);
+          output.writeShort(method.maxStack);
+          output.writeShort(method.maxLocals);
+          output.writeInt(method.code.length);
+          output.write(method.code);
+          output.writeShort(0);  // exception table
+          output.writeShort(0);  // attributes
+        }
+        output.writeShort(0);  // attributes
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+    }
+  }
+}
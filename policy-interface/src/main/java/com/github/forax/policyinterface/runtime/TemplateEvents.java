@@ -0,0 +1,294 @@
+package com.github.forax.policyinterface.runtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
+
+import static java.lang.invoke.MethodHandles.collectArguments;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * The JDK Flight Recorder events of the template call sites.
+ *
+ * The render event is only available if the system property {@value #RENDER_SAMPLING_PERIOD_PROPERTY} is set
+ * to a sampling period, it is disabled by default, when a recording enables it, all the call sites are re-linked
+ * so one invocation every sampling period is timed.
+ */
+final class TemplateEvents {
+  private TemplateEvents() {
+    throw new AssertionError();
+  }
+
+  @Name("com.github.forax.policyinterface.Bootstrap")
+  @Label("Template Bootstrap")
+  @Category({ "Java Interpolation", "Policy Interface" })
+  @Description("Bootstrap of a template call site")
+  static final class BootstrapEvent extends Event {
+    @Label("Caller Class")
+    Class<?> callerClass;
+
+    @Label("Template")
+    String template;
+
+    @Label("Call Site Type")
+    String callSiteType;
+  }
+
+  @Name("com.github.forax.policyinterface.Link")
+  @Label("Template Link")
+  @Category({ "Java Interpolation", "Policy Interface" })
+  @Description("Creation of the method handle of a template call site by a policy")
+  static final class LinkEvent extends Event {
+    @Label("Template")
+    String template;
+
+    @Label("Policy Class")
+    Class<?> policyClass;
+
+    @Label("Method Handle Size")
+    @Description("Estimated number of method handles of the tree of the call site")
+    int methodHandleSize;
+  }
+
+  @Name("com.github.forax.policyinterface.Relink")
+  @Label("Template Relink")
+  @Category({ "Java Interpolation", "Policy Interface" })
+  @Description("A template call site changes its target after the first link")
+  static final class RelinkEvent extends Event {
+    @Label("Template")
+    String template;
+
+    @Label("Policy Class")
+    Class<?> policyClass;
+
+    @Label("Reason")
+    String reason;
+  }
+
+  @Name("com.github.forax.policyinterface.Render")
+  @Label("Template Render")
+  @Category({ "Java Interpolation", "Policy Interface" })
+  @Description("Sampled evaluation of a template")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class RenderEvent extends Event {
+    @Label("Template")
+    String template;
+
+    @Label("Policy Class")
+    Class<?> policyClass;
+  }
+
+  /**
+   * The name of the system property of the sampling period of the render event.
+   */
+  static final String RENDER_SAMPLING_PERIOD_PROPERTY = "com.github.forax.policyinterface.renderSamplingPeriod";
+
+  private static final int RENDER_SAMPLING_PERIOD = Integer.getInteger(RENDER_SAMPLING_PERIOD_PROPERTY, 0);  // 0 if not available
+
+  private static final MethodHandle SAMPLE, START_RENDER, COMMIT_RENDER, COMMIT_RENDER_VOID;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      SAMPLE = lookup.findVirtual(Sampler.class, "sample", methodType(boolean.class));
+      START_RENDER = lookup.findVirtual(Sampler.class, "start", methodType(RenderEvent.class));
+      COMMIT_RENDER = lookup.findStatic(TemplateEvents.class, "commit",
+          methodType(Object.class, RenderEvent.class, Object.class));
+      COMMIT_RENDER_VOID = lookup.findStatic(TemplateEvents.class, "commit", methodType(void.class, RenderEvent.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final EventType RENDER_EVENT_TYPE = EventType.getEventType(RenderEvent.class);
+  private static final TemplatePolicySwitch RENDER_SWITCH = new TemplatePolicySwitch();
+  private static boolean renderEnabled = RENDER_EVENT_TYPE.isEnabled();  // guarded by the class lock
+  static {
+    // a listener pins the class loader of this library, so it is only registered if the render event is available
+    if (RENDER_SAMPLING_PERIOD > 0) {
+      FlightRecorder.addListener(new FlightRecorderListener() {
+        @Override
+        public void recordingStateChanged(Recording recording) {
+          updateRenderEnabled();
+        }
+      });
+    }
+  }
+
+  // re-link all the call sites when a recording enables or disables the render event
+  private static synchronized void updateRenderEnabled() {
+    var enabled = RENDER_EVENT_TYPE.isEnabled();
+    if (enabled != renderEnabled) {
+      renderEnabled = enabled;
+      RENDER_SWITCH.invalidate();
+    }
+  }
+
+  /**
+   * Returns the switch point invalidated when the render event is enabled or disabled,
+   * must be called before {@link #sampleRender(MethodHandle, String, Class)}.
+   * @return the switch point invalidated when the render event is enabled or disabled.
+   */
+  static SwitchPoint renderSwitchPoint() {
+    return RENDER_SWITCH.switchPoint();
+  }
+
+  /**
+   * Guards the target by the render switch point, or returns the target itself if the render event
+   * is not available, in that case the switch point is never invalidated.
+   * @param renderSwitchPoint the switch point returned by {@link #renderSwitchPoint()}.
+   * @param target the method handle of a call site.
+   * @param fallback the method handle called when the switch point is invalidated.
+   * @return the guarded target or the target itself.
+   */
+  static MethodHandle guardRender(SwitchPoint renderSwitchPoint, MethodHandle target, MethodHandle fallback) {
+    if (RENDER_SAMPLING_PERIOD <= 0) {
+      return target;
+    }
+    return renderSwitchPoint.guardWithTest(target, fallback);
+  }
+
+  /**
+   * Emits a bootstrap event.
+   * @param callerClass the class containing the call site.
+   * @param type the type of the call site.
+   * @param template the template of the call site.
+   */
+  static void bootstrap(Class<?> callerClass, MethodType type, String template) {
+    var event = new BootstrapEvent();
+    if (event.shouldCommit()) {
+      event.callerClass = callerClass;
+      event.callSiteType = type.toString();
+      event.template = template;
+      event.commit();
+    }
+  }
+
+  /**
+   * Emits a relink event.
+   * @param template the template of the call site.
+   * @param policyClass the class of the policy.
+   * @param reason the reason of the relink.
+   */
+  static void relink(String template, Class<?> policyClass, String reason) {
+    var event = new RelinkEvent();
+    if (event.shouldCommit()) {
+      event.template = template;
+      event.policyClass = policyClass;
+      event.reason = reason;
+      event.commit();
+    }
+  }
+
+  /**
+   * Starts a link event, must be called before the policy creates the method handle.
+   * @return a started link event.
+   */
+  static LinkEvent startLink() {
+    var event = new LinkEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Ends a link event, must be called after the policy has created the method handle.
+   * @param event the started link event.
+   */
+  static void endLink(LinkEvent event) {
+    event.end();
+  }
+
+  /**
+   * Emits a link event, the event must have been ended with {@link #endLink(LinkEvent)}.
+   * @param event the ended link event.
+   * @param template the template of the call site.
+   * @param policyClass the class of the policy.
+   * @param methodHandleSize the estimated number of method handles of the tree of the call site.
+   */
+  static void link(LinkEvent event, String template, Class<?> policyClass, int methodHandleSize) {
+    if (event.shouldCommit()) {
+      event.template = template;
+      event.policyClass = policyClass;
+      event.methodHandleSize = methodHandleSize;
+      event.commit();
+    }
+  }
+
+  /**
+   * Returns a method handle that emits a render event for some invocations of the target,
+   * or the target itself if the render event is not available or not enabled.
+   * @param target the method handle of a call site.
+   * @param template the template of the call site.
+   * @param policyClass the class of the policy.
+   * @return a method handle that emits render events or the target.
+   */
+  static MethodHandle sampleRender(MethodHandle target, String template, Class<?> policyClass) {
+    if (RENDER_SAMPLING_PERIOD <= 0 || !RENDER_EVENT_TYPE.isEnabled()) {
+      return target;
+    }
+    var type = target.type();
+    var sampler = new Sampler(template, policyClass);
+    var returnType = type.returnType();
+    MethodHandle timed;
+    if (returnType == void.class) {
+      timed = foldArguments(dropArguments(COMMIT_RENDER_VOID, 1, type.parameterList()), 1, target);
+    } else {
+      var commit = COMMIT_RENDER.asType(methodType(returnType, RenderEvent.class, returnType));
+      timed = collectArguments(commit, 1, target);
+    }
+    timed = foldArguments(timed, START_RENDER.bindTo(sampler));
+    return guardWithTest(dropArguments(SAMPLE.bindTo(sampler), 0, type.parameterList()), timed, target);
+  }
+
+  private static Object commit(RenderEvent event, Object result) {
+    event.commit();
+    return result;
+  }
+
+  private static void commit(RenderEvent event) {
+    event.commit();
+  }
+
+  /**
+   * Selects one invocation every {@link #RENDER_SAMPLING_PERIOD}, the counter is not thread-safe,
+   * a lost update only changes which invocation is sampled.
+   */
+  private static final class Sampler {
+    private final String template;
+    private final Class<?> policyClass;
+    private int counter;
+
+    private Sampler(String template, Class<?> policyClass) {
+      this.template = template;
+      this.policyClass = policyClass;
+    }
+
+    private boolean sample() {
+      return ++counter % RENDER_SAMPLING_PERIOD == 0;
+    }
+
+    private RenderEvent start() {
+      var event = new RenderEvent();
+      event.template = template;
+      event.policyClass = policyClass;
+      event.begin();
+      return event;
+    }
+  }
+}
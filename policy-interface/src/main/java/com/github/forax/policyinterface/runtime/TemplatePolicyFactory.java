@@ -1,5 +1,9 @@
 package com.github.forax.policyinterface.runtime;
 
+import com.github.forax.policyinterface.BooleanTemplatePolicy;
+import com.github.forax.policyinterface.DoubleTemplatePolicy;
+import com.github.forax.policyinterface.IntTemplatePolicy;
+import com.github.forax.policyinterface.LongTemplatePolicy;
 import com.github.forax.policyinterface.TemplatePolicy;
 import com.github.forax.policyinterface.TemplatedString;
 
@@ -9,9 +13,14 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
 import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static java.lang.invoke.MethodHandles.dropArguments;
 import static java.lang.invoke.MethodHandles.exactInvoker;
 import static java.lang.invoke.MethodHandles.foldArguments;
 import static java.lang.invoke.MethodHandles.guardWithTest;
@@ -19,12 +28,22 @@ import static java.lang.invoke.MethodHandles.insertArguments;
 import static java.lang.invoke.MethodType.methodType;
 
 public class TemplatePolicyFactory {
-  private static final MethodHandle TEMPLATE_POLICY_APPLY;
+  private static final MethodHandle TEMPLATE_POLICY_APPLY, INT_TEMPLATE_POLICY_APPLY, LONG_TEMPLATE_POLICY_APPLY,
+      DOUBLE_TEMPLATE_POLICY_APPLY, BOOLEAN_TEMPLATE_POLICY_APPLY, IS_INSTANCE;
   static {
     var lookup = MethodHandles.publicLookup();
     try {
       TEMPLATE_POLICY_APPLY = lookup.findVirtual(TemplatePolicy.class, "apply",
           methodType(Object.class, TemplatedString.class, Object[].class));
+      INT_TEMPLATE_POLICY_APPLY = lookup.findVirtual(IntTemplatePolicy.class, "applyAsInt",
+          methodType(int.class, TemplatedString.class, Object[].class));
+      LONG_TEMPLATE_POLICY_APPLY = lookup.findVirtual(LongTemplatePolicy.class, "applyAsLong",
+          methodType(long.class, TemplatedString.class, Object[].class));
+      DOUBLE_TEMPLATE_POLICY_APPLY = lookup.findVirtual(DoubleTemplatePolicy.class, "applyAsDouble",
+          methodType(double.class, TemplatedString.class, Object[].class));
+      BOOLEAN_TEMPLATE_POLICY_APPLY = lookup.findVirtual(BooleanTemplatePolicy.class, "applyAsBoolean",
+          methodType(boolean.class, TemplatedString.class, Object[].class));
+      IS_INSTANCE = lookup.findVirtual(Class.class, "isInstance", methodType(boolean.class, Object.class));
     } catch (NoSuchMethodException | IllegalAccessException e) {
       throw new AssertionError(e);
     }
@@ -34,15 +53,68 @@ public class TemplatePolicyFactory {
     return insertArguments(TEMPLATE_POLICY_APPLY, 1, template).asVarargsCollector(template.varargsType());
   }
 
-  private static final class InliningCache extends MutableCallSite {
-    private static final MethodHandle SLOW_PATH, SET_TARGET, TYPE_CHECK;
+  public static MethodHandle applyAsIntMethodHandle(TemplatedString template) {
+    return insertArguments(INT_TEMPLATE_POLICY_APPLY, 1, template).asVarargsCollector(template.varargsType());
+  }
+
+  public static MethodHandle applyAsLongMethodHandle(TemplatedString template) {
+    return insertArguments(LONG_TEMPLATE_POLICY_APPLY, 1, template).asVarargsCollector(template.varargsType());
+  }
+
+  public static MethodHandle applyAsDoubleMethodHandle(TemplatedString template) {
+    return insertArguments(DOUBLE_TEMPLATE_POLICY_APPLY, 1, template).asVarargsCollector(template.varargsType());
+  }
+
+  public static MethodHandle applyAsBooleanMethodHandle(TemplatedString template) {
+    return insertArguments(BOOLEAN_TEMPLATE_POLICY_APPLY, 1, template).asVarargsCollector(template.varargsType());
+  }
+
+  // calls apply() with the type of the call site, if the call site returns an int (resp. a long, a double or a boolean)
+  // and the policy is an IntTemplatePolicy (resp. Long, Double or Boolean), calls applyAsInt() (resp. ...) without boxing
+  private static MethodHandle genericApplyAsMethodHandle(TemplatedString template, MethodType type) {
+    var apply = applyAsMethodHandle(template).asType(type);
+    var returnType = type.returnType();
+    Class<?> primitivePolicy;
+    MethodHandle applyAsPrimitive;
+    if (returnType == int.class) {
+      primitivePolicy = IntTemplatePolicy.class;
+      applyAsPrimitive = applyAsIntMethodHandle(template);
+    } else if (returnType == long.class) {
+      primitivePolicy = LongTemplatePolicy.class;
+      applyAsPrimitive = applyAsLongMethodHandle(template);
+    } else if (returnType == double.class) {
+      primitivePolicy = DoubleTemplatePolicy.class;
+      applyAsPrimitive = applyAsDoubleMethodHandle(template);
+    } else if (returnType == boolean.class) {
+      primitivePolicy = BooleanTemplatePolicy.class;
+      applyAsPrimitive = applyAsBooleanMethodHandle(template);
+    } else {
+      return apply;
+    }
+    var declaredReceiver = type.parameterType(0);
+    if (primitivePolicy.isAssignableFrom(declaredReceiver)) {
+      return applyAsPrimitive.asType(type);
+    }
+    if (Modifier.isFinal(declaredReceiver.getModifiers())) {
+      return apply;  // the receiver can not be a primitive policy
+    }
+    return guardWithTest(
+        IS_INSTANCE.bindTo(primitivePolicy).asType(methodType(boolean.class, declaredReceiver)),
+        applyAsPrimitive.asType(type),
+        apply);
+  }
+
+  private static final class InliningCache extends MutableCallSite implements TemplateCallSiteRegistry.Inspectable {
+    private static final MethodHandle SLOW_PATH, SPECIALIZE, SET_GENERIC_TARGET, TYPE_CHECK;
     static {
       var lookup = MethodHandles.lookup();
       try {
         SLOW_PATH = lookup.findVirtual(InliningCache.class, "slowPath",
             methodType(MethodHandle.class, TemplatePolicy.class));
-        SET_TARGET = lookup.findVirtual(InliningCache.class, "setTarget",
-            methodType(void.class, MethodHandle.class));
+        SPECIALIZE = lookup.findVirtual(InliningCache.class, "specialize",
+            methodType(MethodHandle.class, TemplatePolicy.class));
+        SET_GENERIC_TARGET = lookup.findVirtual(InliningCache.class, "setGenericTarget",
+            methodType(void.class, MethodHandle.class, TemplatePolicy.class));
         TYPE_CHECK = lookup.findStatic(InliningCache.class, "typeCheck",
             methodType(boolean.class, Class.class, TemplatePolicy.class));
 
@@ -51,48 +123,238 @@ public class TemplatePolicyFactory {
       }
     }
 
+    // the state of the last link, the policy class is checked by the call site if checked is true,
+    // methodHandleCount is the estimated number of method handles of the target of the call site
+    private record Link(CallSiteInfo.State state, Class<?> policyClass, boolean checked, List<SwitchPoint> switchPoints,
+                        int methodHandleCount) {}
+
+    // the number of method handles added by the call site, a fold with an invoker of the method handle
+    // returned by a bound method, a type check guard with its generic fallback, and a render sampler
+    private static final int INVOKER_METHOD_HANDLES = 3, TYPE_CHECK_METHOD_HANDLES = 3, SAMPLER_METHOD_HANDLES = 2;
+
+    // a target specialized for a policy class and the switch points that invalidate it
+    private record Specialization(MethodHandle target, List<SwitchPoint> switchPoints) {
+      boolean isValid() {
+        for (var switchPoint : switchPoints) {
+          if (switchPoint.hasBeenInvalidated()) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+
+    // the specializations of the call sites for a policy class that may be unloaded before the call sites,
+    // they are stored in the policy class, so a call site does not pin the class loader of the policy
+    private static final ClassValue<ConcurrentHashMap<InliningCache, Specialization>> SPECIALIZATIONS = new ClassValue<>() {
+      @Override
+      protected ConcurrentHashMap<InliningCache, Specialization> computeValue(Class<?> type) {
+        return new ConcurrentHashMap<>();
+      }
+    };
+
+    private final String callerClass;
+    private final ClassLoader callerLoader;
     private final TemplatedString template;
+    private final MethodHandle relink;
+    private final TemplateCallSites.Counters counters;  // null if not instrumented
+    private SwitchPoint linkedRenderSwitchPoint;  // null if not linked, only used to find the reason of a relink
+    private volatile Link link;
 
-    public InliningCache(MethodType type, TemplatedString template) {
+    public InliningCache(MethodType type, Class<?> callerClass, TemplatedString template, TemplateCallSites.Counters counters) {
       super(type);
+      this.callerClass = callerClass.getName();
+      this.callerLoader = callerClass.getClassLoader();
       this.template = template;
-      setTarget(foldArguments(exactInvoker(type), SLOW_PATH.bindTo(this).asType(MethodType.methodType(MethodHandle.class, type.parameterType(0)))));
+      this.counters = counters;
+      this.relink = foldArguments(exactInvoker(type), SLOW_PATH.bindTo(this).asType(MethodType.methodType(MethodHandle.class, type.parameterType(0))));
+      this.link = new Link(CallSiteInfo.State.UNLINKED, type.parameterType(0), false, List.of(), instrumented(INVOKER_METHOD_HANDLES));
+      setTarget(instrument(relink));
+      TemplateCallSiteRegistry.register(this);
+    }
+
+    @Override
+    public CallSiteInfo inspect() {
+      var link = this.link;
+      var invalidated = link.switchPoints.stream().anyMatch(SwitchPoint::hasBeenInvalidated);
+      return new CallSiteInfo(callerClass, template.template(), link.policyClass.getName(),
+          invalidated? CallSiteInfo.State.UNLINKED: link.state,
+          link.checked? List.of(link.policyClass.getName()): List.of(),
+          TemplateCallSiteRegistry.sizeOf(template), TemplateCallSiteRegistry.sizeOfMethodHandles(link.methodHandleCount),
+          counters == null? 0: TemplateCallSiteRegistry.sizeOfCounters());
+    }
+
+    // if the call site is instrumented, count the invocations
+    private MethodHandle instrument(MethodHandle target) {
+      return counters == null? target: counters.countInvocations(target);
+    }
+
+    // the number of method handles of a target once instrumented
+    private int instrumented(int methodHandleCount) {
+      return counters == null? methodHandleCount: methodHandleCount + 1;
+    }
+
+    private MethodHandle instrumentGuardMiss(MethodHandle fallback) {
+      return counters == null? fallback: counters.countGuardMisses(fallback);
     }
 
     private static boolean typeCheck(Class<?> clazz, TemplatePolicy<?,?,?> policy) {
       return policy.getClass() == clazz;
     }
 
+    // true if the class of the policy lives at least as long as the call site,
+    // the class loader of the policy class is the class loader of the caller class or one of its parents
+    private boolean isCacheSafe(Class<?> policyClass) {
+      var policyLoader = policyClass.getClassLoader();
+      if (policyLoader == null) {
+        return true;
+      }
+      for (var loader = callerLoader; loader != null; loader = loader.getParent()) {
+        if (loader == policyLoader) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // the receiver class is not the one of the first call, the call site becomes generic
+    private void setGenericTarget(MethodHandle target, TemplatePolicy<?,?,?> policy) {
+      TemplateEvents.relink(template.template(), policy.getClass(), "receiver class changed");
+      link = new Link(CallSiteInfo.State.MEGAMORPHIC, type().parameterType(0), false, List.of(),
+          instrumented(TYPE_CHECK_METHOD_HANDLES));
+      setTarget(target);
+    }
+
     private MethodHandle slowPath(TemplatePolicy<?,?,?> policy) throws Throwable {
+      if (counters != null) {
+        counters.slowPath();
+      }
       var receiver = policy.getClass();
+      if (linkedRenderSwitchPoint != null) {
+        TemplateEvents.relink(template.template(), receiver, linkedRenderSwitchPoint.hasBeenInvalidated()?
+            "render event setting changed": "policy switch point invalidated");
+      }
       var type = type();
-      var target = policy.asMethodHandle(template);
-      if (target == null) {
-        throw new LinkageError("return value of " + receiver.getName() + " is null");
+      if (!isCacheSafe(receiver)) {
+        // the method handle of the policy would pin the class loader of the policy,
+        // the call site looks up the target specialized for the class of the policy at each call
+        TemplateEvents.relink(template.template(), receiver, "policy class not visible from the caller class");
+        var indirect = foldArguments(exactInvoker(type), SPECIALIZE.bindTo(this).asType(methodType(MethodHandle.class, type.parameterType(0))));
+        link = new Link(CallSiteInfo.State.INDIRECT, type.parameterType(0), false, List.of(),
+            instrumented(INVOKER_METHOD_HANDLES));
+        setTarget(instrument(indirect));
+        return specialize(policy);
       }
-      try {
-        target = target.asType(type);
-      } catch(WrongMethodTypeException e) {
-        throw new LinkageError( target + " from template " + receiver.getName() + " is incompatible with " + type, e);
+      var renderSwitchPoint = TemplateEvents.renderSwitchPoint();  // must be called before sampleRender()
+      var switchPoints = policy.switchPoints();  // must be called before asMethodHandle()
+      var constant = template.parameters().isEmpty() && policy.isConstantFoldable();
+      var linkEvent = TemplateEvents.startLink();
+      var policyTarget = linkTarget(policy, constant);
+      TemplateEvents.endLink(linkEvent);
+      var target = TemplateEvents.sampleRender(policyTarget, template.template(), receiver);
+      var methodHandleCount = methodHandleCount(constant, target != policyTarget);
+      var invalidableTarget = target;
+      for (var switchPoint : switchPoints) {
+        invalidableTarget = switchPoint.guardWithTest(invalidableTarget, instrumentGuardMiss(relink));
+        methodHandleCount++;
       }
+      var renderGuardedTarget = TemplateEvents.guardRender(renderSwitchPoint, invalidableTarget, instrumentGuardMiss(relink));
+      methodHandleCount += renderGuardedTarget == invalidableTarget? 0: 1;
+      invalidableTarget = renderGuardedTarget;
+      linkedRenderSwitchPoint = renderSwitchPoint;
+      var state = constant? CallSiteInfo.State.CONSTANT: CallSiteInfo.State.MONOMORPHIC;
+      var linkedSwitchPoints = new ArrayList<>(switchPoints);
+      linkedSwitchPoints.add(renderSwitchPoint);
 
       var declaredReceiver = type.parameterType(0);
       if (Modifier.isFinal(declaredReceiver.getModifiers())) {
-        setTarget(target);  // avoid a class check, maybe not necessary
+        methodHandleCount = instrumented(methodHandleCount);
+        TemplateEvents.link(linkEvent, template.template(), receiver, methodHandleCount);
+        link = new Link(state, receiver, false, List.copyOf(linkedSwitchPoints), methodHandleCount);
+        setTarget(instrument(invalidableTarget));  // avoid a class check, maybe not necessary
         return target;
       }
-      var apply = applyAsMethodHandle(template).asType(type);
+      methodHandleCount = instrumented(methodHandleCount + TYPE_CHECK_METHOD_HANDLES);
+      TemplateEvents.link(linkEvent, template.template(), receiver, methodHandleCount);
+      link = new Link(state, receiver, true, List.copyOf(linkedSwitchPoints), methodHandleCount);
+      var apply = genericApplyAsMethodHandle(template, type);
       var guard = guardWithTest(
           TYPE_CHECK.bindTo(receiver).asType(MethodType.methodType(boolean.class, type.parameterType(0))),
-          target,
-          foldArguments(apply, insertArguments(SET_TARGET, 0, this, apply)));
-      setTarget(guard);
+          invalidableTarget,
+          instrumentGuardMiss(foldArguments(apply, insertArguments(SET_GENERIC_TARGET, 0, this, instrument(apply)).asType(methodType(void.class, type.parameterType(0))))));
+      setTarget(instrument(guard));
+      return target;
+    }
+
+    // finds the target specialized for the class of the policy, creates it if it does not exist or is invalidated
+    private MethodHandle specialize(TemplatePolicy<?,?,?> policy) throws Throwable {
+      var specializations = SPECIALIZATIONS.get(policy.getClass());
+      var specialization = specializations.get(this);
+      if (specialization != null && specialization.isValid()) {
+        return specialization.target;
+      }
+      if (counters != null) {
+        counters.slowPath();
+      }
+      var renderSwitchPoint = TemplateEvents.renderSwitchPoint();  // must be called before sampleRender()
+      var switchPoints = new ArrayList<>(policy.switchPoints());  // must be called before asMethodHandle()
+      switchPoints.add(renderSwitchPoint);
+      var linkEvent = TemplateEvents.startLink();
+      var policyTarget = linkTarget(policy, false);
+      TemplateEvents.endLink(linkEvent);
+      var target = TemplateEvents.sampleRender(policyTarget, template.template(), policy.getClass());
+      TemplateEvents.link(linkEvent, template.template(), policy.getClass(), methodHandleCount(false, target != policyTarget));
+      specialization = new Specialization(target, List.copyOf(switchPoints));
+      specializations.put(this, specialization);
+      return target;
+    }
+
+    // the estimated number of method handles of the target of the policy adapted to the type of the call site
+    // and maybe sampled, a constant is a constant method handle with a dropped argument
+    private int methodHandleCount(boolean constant, boolean sampled) {
+      var policyCount = constant? 2: TemplateCallSiteRegistry.methodHandleCount(template);
+      return policyCount + 1 + (sampled? SAMPLER_METHOD_HANDLES: 0);
+    }
+
+    // calls the policy to get the target, checks it and adapts it to the type of the call site
+    private MethodHandle linkTarget(TemplatePolicy<?,?,?> policy, boolean constant) throws Throwable {
+      var receiver = policy.getClass();
+      var type = type();
+      var target = constant?
+          constantFold(policy, type.parameterType(0)):
+          policy.asMethodHandle(template);
+      if (target == null) {
+        throw new LinkageError("return value of " + receiver.getName() + " is null");
+      }
+      try {
+        target = target.asType(type);
+      } catch(WrongMethodTypeException e) {
+        throw new LinkageError( target + " from template " + receiver.getName() + " is incompatible with " + type, e);
+      }
       return target;
     }
+
+    private MethodHandle constantFold(TemplatePolicy<?,?,?> policy, Class<?> declaredReceiver) throws Throwable {
+      var result = applyAsMethodHandle(template).invoke(policy);
+      return dropArguments(MethodHandles.constant(Object.class, result), 0, declaredReceiver);
+    }
   }
 
   public static CallSite boostrap(Lookup lookup, String name, MethodType type, Class<?> varargsType, String template) {
     var templatedString = TemplatedString.parse(template, type.returnType(), varargsType, type.dropParameterTypes(0, 1).parameterArray());
-    return new InliningCache(type, templatedString);
+    var counters = TemplateCallSites.isEnabled()?
+        TemplateCallSites.register(lookup.lookupClass(), type, template):
+        null;
+    TemplateEvents.bootstrap(lookup.lookupClass(), type, template);
+    return new InliningCache(type, lookup.lookupClass(), templatedString, counters);
+  }
+
+  // constant dynamic bootstrap method, the policy must be constant foldable and the template has no parameter
+  public static Object constant(Lookup lookup, String name, Class<?> type, TemplatePolicy<?,?,?> policy, Class<?> varargsType, String template) throws Throwable {
+    if (!policy.isConstantFoldable()) {
+      throw new IllegalArgumentException("policy " + policy.getClass().getName() + " is not constant foldable");
+    }
+    var templatedString = TemplatedString.parse(template, type, varargsType);
+    return applyAsMethodHandle(templatedString).invoke(policy);
   }
 }
@@ -0,0 +1,48 @@
+package com.github.forax.policyinterface.runtime;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+
+import java.lang.invoke.SwitchPoint;
+
+/**
+ * A switch used by a template policy that depends on a mutable configuration.
+ * The policy returns the current {@link #switchPoint()} in {@link TemplatePolicy#switchPoints()},
+ * so the call sites linked with it are guarded by the switch point. When the configuration changes,
+ * the policy calls {@link #invalidate()} and all the dependent call sites are re-linked on their next call.
+ *
+ * The configuration must be changed before calling {@link #invalidate()}.
+ */
+public final class TemplatePolicySwitch {
+  private volatile SwitchPoint switchPoint = new SwitchPoint();
+
+  /**
+   * Returns the current switch point.
+   * @return the current switch point.
+   */
+  public SwitchPoint switchPoint() {
+    return switchPoint;
+  }
+
+  /**
+   * Invalidates the current switch point and replaces it with a new one.
+   */
+  public void invalidate() {
+    invalidateAll(this);
+  }
+
+  /**
+   * Invalidates the current switch point of several switches at once.
+   * @param switches the switches to invalidate.
+   */
+  public static void invalidateAll(TemplatePolicySwitch... switches) {
+    var switchPoints = new SwitchPoint[switches.length];
+    for (var i = 0; i < switches.length; i++) {
+      var policySwitch = switches[i];
+      synchronized (policySwitch) {
+        switchPoints[i] = policySwitch.switchPoint;
+        policySwitch.switchPoint = new SwitchPoint();
+      }
+    }
+    SwitchPoint.invalidateAll(switchPoints);
+  }
+}
@@ -0,0 +1,317 @@
+package com.github.forax.policyinterface.runtime;
+
+import com.github.forax.policyinterface.TemplatePolicy;
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Renders the same templated string again and again, remembering the arguments and the fragments
+ * of the previous output, so only the holes whose argument has changed are rendered again.
+ * Each call to {@link #render(Object...)} returns the list of {@link Change}s from the previous output
+ * to the new one, that can be sent over the wire instead of the whole output.
+ * <pre>
+ *   var renderer = TemplateRenderer.of(policy, template);
+ *   ...
+ *   List&lt;Change&gt; changes = renderer.render(cpu, memory);
+ *   String output = renderer.output();
+ * </pre>
+ *
+ * The value of each hole is rendered by a {@link HoleRenderer}, {@link #of(TemplatePolicy, TemplatedString)}
+ * links the policy on each hole alone, {@link #of(TemplatedString)} uses {@link String#valueOf(Object)}
+ * so the output is not escaped. A policy that renders a hole depending on the text around it provides
+ * its own hole renderer, by example {@code TemplateRenderer.of(template, URI.holeRenderer(template))}.
+ *
+ * The arguments are compared with {@link Object#equals(Object)}, an argument mutated in place
+ * is not detected as changed. A renderer is not thread-safe.
+ */
+public final class TemplateRenderer {
+  /**
+   * A change of the output, the characters between {@code start} (inclusive) and {@code end} (exclusive)
+   * of the previous output are replaced by {@code text}.
+   * The changes returned by {@link #render(Object...)} are sorted and do not overlap,
+   * their offsets are relative to the previous output.
+   *
+   * @param start the start offset in the previous output.
+   * @param end the end offset in the previous output.
+   * @param text the replacement text.
+   */
+  public record Change(int start, int end, String text) {
+    public Change {
+      Objects.requireNonNull(text);
+      if (start < 0 || end < start) {
+        throw new IllegalArgumentException("invalid range " + start + " " + end);
+      }
+    }
+
+    /**
+     * Applies a list of changes to the previous output.
+     * @param output the previous output.
+     * @param changes the changes from the previous output.
+     * @return the new output.
+     */
+    public static String apply(String output, List<Change> changes) {
+      var builder = new StringBuilder(output.length());
+      var offset = 0;
+      for (var change : changes) {
+        builder.append(output, offset, change.start).append(change.text);
+        offset = change.end;
+      }
+      return builder.append(output, offset, output.length()).toString();
+    }
+  }
+
+  /**
+   * Renders the value of a hole.
+   */
+  @FunctionalInterface
+  public interface HoleRenderer {
+    /**
+     * Renders the value of a hole.
+     * @param parameter the parameter of the hole.
+     * @param value the value of the hole.
+     * @return the text of the hole.
+     */
+    String render(Parameter parameter, Object value);
+  }
+
+  private static final HoleRenderer VALUE_OF = (parameter, value) -> String.valueOf(value);
+
+  private final TemplatedString template;
+  private final HoleRenderer holeRenderer;
+  private final List<Parameter> parameters;
+  private final String[] fragments;      // the texts and the rendered holes, in order
+  private final int[] holeFragments;     // index of the fragment of each parameter
+  private final Object[] args;           // the previous arguments
+  private int length;                    // the length of the output
+  private String output;                 // cache of the output or null
+  private boolean rendered;
+
+  private TemplateRenderer(TemplatedString template, HoleRenderer holeRenderer, String[] fragments, int[] holeFragments) {
+    this.template = template;
+    this.holeRenderer = holeRenderer;
+    this.parameters = template.parameters();
+    this.fragments = fragments;
+    this.holeFragments = holeFragments;
+    this.args = new Object[holeFragments.length];
+  }
+
+  /**
+   * Creates a renderer of a templated string that renders the holes with {@link String#valueOf(Object)}.
+   * @param template a templated string.
+   * @return a new renderer.
+   */
+  public static TemplateRenderer of(TemplatedString template) {
+    return of(template, VALUE_OF);
+  }
+
+  /**
+   * Creates a renderer of a templated string that renders the holes with a template policy.
+   * The policy is linked once for each hole, using {@link TemplatePolicy#asMethodHandle(TemplatedString)}
+   * on a templated string made of the hole alone, so the text of a hole is the one of the policy
+   * if the policy does not depend on the text around the hole.
+   * The result of the policy is converted to a string using {@link String#valueOf(Object)}.
+   *
+   * @param policy a template policy.
+   * @param template a templated string.
+   * @return a new renderer.
+   * @throws LinkageError if the policy can not be linked.
+   */
+  public static TemplateRenderer of(TemplatePolicy<?, ?, ? extends RuntimeException> policy, TemplatedString template) {
+    Objects.requireNonNull(policy);
+    Objects.requireNonNull(template);
+    var holes = template.parameters().stream()
+        .map(parameter -> holeMethodHandle(policy, template, parameter))
+        .toArray(MethodHandle[]::new);
+    return of(template, (parameter, value) -> {
+      try {
+        return String.valueOf((Object) holes[parameter.index()].invokeExact(value));
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new AssertionError(t);
+      }
+    });
+  }
+
+  // returns a method handle (Object)Object that renders the parameter with the policy
+  private static MethodHandle holeMethodHandle(TemplatePolicy<?, ?, ?> policy, TemplatedString template, Parameter parameter) {
+    var type = parameter.type();
+    var hole = TemplatedString.parse(String.valueOf(TemplatedString.OBJECT_REPLACEMENT_CHARACTER),
+        template.returnType(), template.varargsType(), type);
+    MethodHandle target;
+    try {
+      target = policy.asMethodHandle(hole);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new LinkageError("error while linking " + hole, t);
+    }
+    target = target.asType(methodType(Object.class, policy.getClass(), type));
+    return insertArguments(target, 0, policy).asType(methodType(Object.class, Object.class));
+  }
+
+  /**
+   * Creates a renderer of a templated string that renders the holes with a hole renderer.
+   * @param template a templated string.
+   * @param holeRenderer the renderer of the value of the holes.
+   * @return a new renderer.
+   */
+  public static TemplateRenderer of(TemplatedString template, HoleRenderer holeRenderer) {
+    Objects.requireNonNull(template);
+    Objects.requireNonNull(holeRenderer);
+    var fragments = new ArrayList<String>();
+    var holeFragments = new int[template.parameters().size()];
+    for (var segment : template.segments()) {
+      if (segment instanceof Text text) {
+        fragments.add(text.text());
+      } else {
+        holeFragments[((Parameter) segment).index()] = fragments.size();
+        fragments.add("");
+      }
+    }
+    return new TemplateRenderer(template, holeRenderer, fragments.toArray(String[]::new), holeFragments);
+  }
+
+  /**
+   * Returns the templated string.
+   * @return the templated string.
+   */
+  public TemplatedString template() {
+    return template;
+  }
+
+  /**
+   * Renders the templated string with the arguments and returns the changes from the previous output.
+   * The first call returns a change that inserts the whole output.
+   *
+   * @param args the arguments of the templated string.
+   * @return the list of changes from the previous output.
+   * @throws IllegalArgumentException if the number of arguments is not the number of parameters.
+   */
+  public List<Change> render(Object... args) {
+    if (args.length != this.args.length) {
+      throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+    }
+    if (!rendered) {
+      rendered = true;
+      for (var i = 0; i < args.length; i++) {
+        fragments[holeFragments[i]] = holeRenderer.render(parameters.get(i), args[i]);
+        this.args[i] = args[i];
+      }
+      length = 0;
+      for (var fragment : fragments) {
+        length += fragment.length();
+      }
+      output = null;
+      return List.of(new Change(0, 0, output()));
+    }
+
+    // find the changed holes in the order of the fragments
+    var changed = new boolean[fragments.length];
+    var newFragments = new String[fragments.length];
+    var hasChanged = false;
+    for (var i = 0; i < args.length; i++) {
+      var arg = args[i];
+      if (Objects.equals(arg, this.args[i])) {
+        continue;
+      }
+      this.args[i] = arg;
+      var fragment = holeFragments[i];
+      var text = holeRenderer.render(parameters.get(i), arg);
+      if (!text.equals(fragments[fragment])) {
+        changed[fragment] = true;
+        newFragments[fragment] = text;
+        hasChanged = true;
+      }
+    }
+    if (!hasChanged) {
+      return List.of();
+    }
+
+    var changes = new ArrayList<Change>();
+    var offset = 0;
+    for (var i = 0; i < fragments.length; i++) {
+      var oldText = fragments[i];
+      if (changed[i]) {
+        var newText = newFragments[i];
+        addChange(changes, offset, oldText, newText);
+        length += newText.length() - oldText.length();
+        fragments[i] = newText;
+      }
+      offset += oldText.length();
+    }
+    output = null;
+    return List.copyOf(changes);
+  }
+
+  // only the characters between the common prefix and the common suffix are changed
+  private static void addChange(ArrayList<Change> changes, int offset, String oldText, String newText) {
+    var max = Math.min(oldText.length(), newText.length());
+    var prefix = 0;
+    while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) {
+      prefix++;
+    }
+    var suffix = 0;
+    while (suffix < max - prefix
+        && oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+      suffix++;
+    }
+    // do not split a surrogate pair
+    if (prefix > 0 && Character.isHighSurrogate(oldText.charAt(prefix - 1))) {
+      prefix--;
+    }
+    if (suffix > 0 && Character.isLowSurrogate(oldText.charAt(oldText.length() - suffix))) {
+      suffix--;
+    }
+    var start = offset + prefix;
+    var end = offset + oldText.length() - suffix;
+    var text = newText.substring(prefix, newText.length() - suffix);
+
+    // merge with the previous change if they are contiguous
+    if (!changes.isEmpty()) {
+      var last = changes.get(changes.size() - 1);
+      if (last.end == start) {
+        changes.set(changes.size() - 1, new Change(last.start, end, last.text + text));
+        return;
+      }
+    }
+    changes.add(new Change(start, end, text));
+  }
+
+  /**
+   * Returns the current output.
+   * @return the current output.
+   * @throws IllegalStateException if the template has not been rendered yet.
+   */
+  public String output() {
+    if (!rendered) {
+      throw new IllegalStateException("not rendered yet");
+    }
+    var output = this.output;
+    if (output != null) {
+      return output;
+    }
+    var builder = new StringBuilder(length);
+    for (var fragment : fragments) {
+      builder.append(fragment);
+    }
+    return this.output = builder.toString();
+  }
+
+  /**
+   * Returns the length of the current output without building it.
+   * @return the length of the current output.
+   */
+  public int length() {
+    return length;
+  }
+}
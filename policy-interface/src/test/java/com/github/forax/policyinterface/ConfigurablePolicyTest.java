@@ -0,0 +1,91 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import com.github.forax.policyinterface.runtime.TemplatePolicySwitch;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.SwitchPoint;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConfigurablePolicyTest {
+  // a policy that depends on a mutable configuration, the prefix
+  static final class Prefix implements TemplatePolicy<String, Object, RuntimeException> {
+    private static final TemplatePolicySwitch PREFIX_SWITCH = new TemplatePolicySwitch();
+    private static volatile String prefix = "";
+    private static int links;
+
+    static void setPrefix(String prefix) {
+      Prefix.prefix = prefix;
+      PREFIX_SWITCH.invalidate();
+    }
+
+    @Override
+    public String apply(TemplatedString template, Object... args) {
+      return prefix + template.template();
+    }
+
+    @Override
+    public List<SwitchPoint> switchPoints() {
+      return List.of(PREFIX_SWITCH.switchPoint());
+    }
+
+    @Override
+    public MethodHandle asMethodHandle(TemplatedString template) {
+      links++;
+      var text = prefix + template.template();
+      return MethodHandles.dropArguments(MethodHandles.constant(String.class, text), 0, Prefix.class);
+    }
+  }
+
+  private static final Prefix PREFIX = new Prefix();
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, Prefix.class),
+      Object[].class,
+      "hello"
+  ).dynamicInvoker();
+
+  @Test
+  public void testInvalidation() throws Throwable {
+    Prefix.setPrefix("");
+    var links = Prefix.links;
+    var text1 = (String) INDY.invokeExact(PREFIX);
+    var text2 = (String) INDY.invokeExact(PREFIX);
+    Prefix.setPrefix("> ");
+    var text3 = (String) INDY.invokeExact(PREFIX);
+    var text4 = (String) INDY.invokeExact(PREFIX);
+    var linkCount = Prefix.links - links;
+    assertAll(
+        () -> assertEquals("hello", text1),
+        () -> assertEquals("hello", text2),
+        () -> assertEquals("> hello", text3),
+        () -> assertEquals("> hello", text4),
+        () -> assertEquals(2, linkCount)
+    );
+  }
+
+  @Test
+  public void testInvalidateAll() {
+    var switch1 = new TemplatePolicySwitch();
+    var switch2 = new TemplatePolicySwitch();
+    var switchPoint1 = switch1.switchPoint();
+    var switchPoint2 = switch2.switchPoint();
+    TemplatePolicySwitch.invalidateAll(switch1, switch2);
+    assertAll(
+        () -> assertTrue(switchPoint1.hasBeenInvalidated()),
+        () -> assertTrue(switchPoint2.hasBeenInvalidated()),
+        () -> assertFalse(switch1.switchPoint().hasBeenInvalidated()),
+        () -> assertFalse(switch2.switchPoint().hasBeenInvalidated())
+    );
+  }
+}
@@ -38,6 +38,7 @@ import static java.util.stream.IntStream.rangeClosed;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class JSONLiteralPolicyTest {
   static final class ToyJSONParser {
@@ -352,12 +353,8 @@ public class JSONLiteralPolicyTest {
     }
 
     @Override
-    public MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
-      if (template.parameters().isEmpty()) {
-        var result = apply(template);
-        return MethodHandles.dropArguments(MethodHandles.constant(result.getClass(), result), 0, getClass());
-      }
-      return TemplatePolicy.super.asMethodHandle(template);
+    public boolean isConstantFoldable() {
+      return true;
     }
   }
 
@@ -473,4 +470,29 @@ public class JSONLiteralPolicyTest {
         () -> assertSame(constArray(), constArray())
     );
   }
+
+  @Test
+  public void testCondyObjectConst() throws Throwable {
+    var jsonObject = (JSONObject) TemplatePolicyFactory.constant(
+        MethodHandles.lookup(),
+        "",
+        JSONObject.class,
+        new JSONLiteralTemplatePolicy(),
+        Object[].class,
+        """
+          {
+            "x": 35.2,
+            "y": 42.9
+          }
+          """
+    );
+    assertEquals(Map.of("x", 35.2, "y", 42.9), jsonObject.map());
+  }
+
+  @Test
+  public void testCondyNotConstantFoldable() {
+    TemplatePolicy<Object, Object, RuntimeException> policy = (template, args) -> new Object();
+    assertThrows(IllegalArgumentException.class, () -> TemplatePolicyFactory.constant(
+        MethodHandles.lookup(), "", Object.class, policy, Object[].class, "[]"));
+  }
 }
\ No newline at end of file
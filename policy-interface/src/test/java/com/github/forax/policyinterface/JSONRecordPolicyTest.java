@@ -0,0 +1,429 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.JSONLiteralPolicyTest.ToyJSONParser;
+import com.github.forax.policyinterface.JSONLiteralPolicyTest.ToyJSONParser.JSONVisitor;
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodHandles.collectArguments;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.permuteArguments;
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JSONRecordPolicyTest {
+  // the JSON template as a tree, the holes are numbered in the order of the template
+  private sealed interface Node {}
+  private record Value(Object value) implements Node {}
+  private record Hole(int index) implements Node {}
+  private record ObjectNode(Map<String, Node> members) implements Node {}
+  private record ArrayNode(List<Node> elements) implements Node {}
+
+  private static Node parse(String template) {
+    var visitor = new JSONVisitor() {
+      private final ArrayDeque<Node> stack = new ArrayDeque<>();
+      private Node root;
+      private int holeIndex;
+
+      private void add(String key, Node node) {
+        var container = stack.peek();
+        if (container == null) {
+          root = node;
+          return;
+        }
+        switch (container) {
+          case ObjectNode object -> {
+            if (object.members.putIfAbsent(key, node) != null) {
+              throw new IllegalArgumentException("duplicate key " + key);
+            }
+          }
+          case ArrayNode array -> array.elements.add(node);
+          default -> throw new AssertionError();
+        }
+      }
+
+      @Override
+      public void value(String key, Object value) {
+        add(key, new Value(value));
+      }
+
+      @Override
+      public void hole(String key) {
+        add(key, new Hole(holeIndex++));
+      }
+
+      @Override
+      public void startObject(String key) {
+        var object = new ObjectNode(new LinkedHashMap<>());
+        add(key, object);
+        stack.push(object);
+      }
+
+      @Override
+      public void endObject(String key) {
+        stack.pop();
+      }
+
+      @Override
+      public void startArray(String key) {
+        var array = new ArrayNode(new ArrayList<>());
+        add(key, array);
+        stack.push(array);
+      }
+
+      @Override
+      public void endArray(String key) {
+        stack.pop();
+      }
+    };
+    ToyJSONParser.parse(template, visitor);
+    return visitor.root;
+  }
+
+  // binds the JSON template to the canonical constructor of the record returned by the call site,
+  // the keys and the types of the holes are checked when the call site is linked,
+  // then each call directly calls the constructors without creating a map
+  public static final class JSONRecordTemplatePolicy implements TemplatePolicy<Record, Object, RuntimeException> {
+    private static final MethodHandle LIST;
+    static {
+      try {
+        LIST = MethodHandles.lookup().findStatic(JSONRecordTemplatePolicy.class, "list",
+            methodType(List.class, Object[].class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    private static final List<Class<?>> WIDENING = List.of(byte.class, short.class, int.class, long.class, float.class, double.class);
+
+    private final Lookup lookup;
+    private final ConcurrentHashMap<TemplatedString, MethodHandle> spreaders = new ConcurrentHashMap<>();  // used by apply()
+
+    // the lookup must have access to the canonical constructors of the records
+    public JSONRecordTemplatePolicy(Lookup lookup) {
+      this.lookup = requireNonNull(lookup);
+    }
+
+    private static List<Object> list(Object... elements) {
+      return Collections.unmodifiableList(Arrays.asList(elements));
+    }
+
+    @Override
+    public Record apply(TemplatedString template, Object... args) {
+      if (template.parameters().size() != args.length) {
+        throw new IllegalArgumentException(template + " does not accept " + args.length + " arguments");
+      }
+      var spreader = spreaders.computeIfAbsent(template,
+          t -> bind(t).asSpreader(Object[].class, args.length).asType(methodType(Record.class, Object[].class)));
+      try {
+        return (Record) spreader.invokeExact(args);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new AssertionError(t);
+      }
+    }
+
+    @Override
+    public MethodHandle asMethodHandle(TemplatedString template) {
+      return dropArguments(bind(template), 0, JSONRecordTemplatePolicy.class);
+    }
+
+    // a method handle that takes some holes, in that order
+    private record Bound(MethodHandle target, List<Integer> holes) {}
+
+    // returns a method handle that takes the holes and returns the record
+    private MethodHandle bind(TemplatedString template) {
+      var holeTypes = template.parameters().stream().map(Parameter::type).toArray(Class<?>[]::new);
+      var root = parse(template.template());
+      if (!(root instanceof ObjectNode)) {
+        throw new IllegalArgumentException("the template is not a JSON object " + template);
+      }
+      var bound = compile(root, template.returnType(), holeTypes);
+      // each hole appears once in the template, so the holes of the tree are a permutation of the holes
+      var reorder = bound.holes.stream().mapToInt(hole -> hole).toArray();
+      return permuteArguments(bound.target, methodType(template.returnType(), holeTypes), reorder);
+    }
+
+    private Bound compile(Node node, Class<?> type, Class<?>[] holeTypes) {
+      return switch (node) {
+        case Value value -> new Bound(constant(value.value, type), List.of());
+        case Hole hole -> new Bound(hole(hole.index, type, holeTypes), List.of(hole.index));
+        case ObjectNode object -> construct(object, type, holeTypes);
+        case ArrayNode array -> list(array, type, holeTypes);
+      };
+    }
+
+    private static MethodHandle constant(Object value, Class<?> type) {
+      if (value == null && type.isPrimitive()) {
+        throw new IllegalArgumentException("null is not a " + type.getName());
+      }
+      try {
+        return MethodHandles.constant(type, value);
+      } catch (ClassCastException e) {
+        throw new IllegalArgumentException(value + " is not a " + type.getName(), e);
+      }
+    }
+
+    private static MethodHandle hole(int index, Class<?> type, Class<?>[] holeTypes) {
+      var holeType = holeTypes[index];
+      if (!isConvertible(holeType, type)) {
+        throw new IllegalArgumentException("hole " + index + " of type " + holeType.getName() + " is not a " + type.getName());
+      }
+      return MethodHandles.identity(holeType).asType(methodType(type, holeType));
+    }
+
+    private Bound construct(ObjectNode object, Class<?> type, Class<?>[] holeTypes) {
+      if (!type.isRecord()) {
+        throw new IllegalArgumentException(type.getName() + " is not a record");
+      }
+      var components = type.getRecordComponents();
+      var names = Arrays.stream(components).map(RecordComponent::getName).toList();
+      for (var key : object.members.keySet()) {
+        if (!names.contains(key)) {
+          throw new IllegalArgumentException("unknown key " + key + " for " + type.getName());
+        }
+      }
+      var filters = new ArrayList<Bound>();
+      for (var component : components) {
+        var member = object.members.get(component.getName());
+        if (member == null) {
+          throw new IllegalArgumentException("no key " + component.getName() + " for " + type.getName());
+        }
+        filters.add(compile(member, component.getType(), holeTypes));
+      }
+      var componentTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+      MethodHandle constructor;
+      try {
+        constructor = lookup.findConstructor(type, methodType(void.class, componentTypes));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new IllegalArgumentException("the canonical constructor of " + type.getName() + " is not accessible", e);
+      }
+      return combine(constructor, filters);
+    }
+
+    private Bound list(ArrayNode array, Class<?> type, Class<?>[] holeTypes) {
+      if (!type.isAssignableFrom(List.class)) {
+        throw new IllegalArgumentException(type.getName() + " is not a list");
+      }
+      var filters = array.elements.stream().map(element -> compile(element, Object.class, holeTypes)).toList();
+      var list = LIST.asCollector(Object[].class, filters.size()).asType(methodType(type, Collections.nCopies(filters.size(), Object.class)));
+      return combine(list, filters);
+    }
+
+    // calls the target with the results of the filters, each filter only takes the holes it uses,
+    // so each hole is passed once
+    private static Bound combine(MethodHandle target, List<Bound> filters) {
+      var combined = target;
+      for (var i = filters.size(); --i >= 0;) {
+        combined = collectArguments(combined, i, filters.get(i).target);
+      }
+      var holes = filters.stream().flatMap(filter -> filter.holes.stream()).toList();
+      return new Bound(combined, holes);
+    }
+
+    // identity, widening primitive, widening reference or boxing, a hole is never unboxed nor narrowed
+    private static boolean isConvertible(Class<?> from, Class<?> to) {
+      if (to.isAssignableFrom(from)) {
+        return true;
+      }
+      if (from.isPrimitive() && to.isPrimitive()) {
+        var fromIndex = WIDENING.indexOf(from == char.class? short.class: from);
+        return fromIndex != -1 && WIDENING.indexOf(to) > fromIndex;
+      }
+      return from.isPrimitive() && to.isAssignableFrom(methodType(from).wrap().returnType());
+    }
+  }
+
+  record Person(String name, int age, boolean sex) {}
+  record Point(double x, double y) {}
+  record Line(Point start, Point end) {}
+  record Tagged(String name, List<Object> tags) {}
+  record Empty() {}
+  // a record with 20 components, 10 ints, 6 longs and 4 doubles
+  record Sample(int f0, int f1, int f2, int f3, int f4, int f5, int f6, int f7, int f8, int f9, long f10, long f11, long f12, long f13, long f14, long f15, double f16, double f17, double f18, double f19) {}
+
+  @Test
+  public void testApplyRecord() {
+    var template = TemplatedString.parse("""
+        {
+          "name": ￼,
+          "age": ￼,
+          "sex": true
+        }
+        """,
+        Person.class, Object[].class, String.class, int.class);
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    assertEquals(new Person("Bob", 77, true), policy.apply(template, "Bob", 77));
+  }
+
+  @Test
+  public void testApplyKeysInAnyOrder() {
+    var template = TemplatedString.parse("""
+        { "sex": false, "age": ￼, "name": "Ana" }
+        """,
+        Person.class, Object[].class, long.class);
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    assertThrows(IllegalArgumentException.class, () -> policy.apply(template, 42L));  // long is not an int
+    var template2 = TemplatedString.parse("""
+        { "sex": false, "age": ￼, "name": "Ana" }
+        """,
+        Person.class, Object[].class, short.class);
+    assertEquals(new Person("Ana", 42, false), policy.apply(template2, (short) 42));
+  }
+
+  @Test
+  public void testApplyErrors() {
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("{ \"name\": \"Bob\", \"age\": 3 }", Person.class, Object[].class))),
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("{ \"name\": \"Bob\", \"age\": 3, \"sex\": true, \"city\": \"Paris\" }", Person.class, Object[].class))),
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("{ \"name\": \"Bob\", \"age\": \"3\", \"sex\": true }", Person.class, Object[].class))),
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("{ \"name\": \"Bob\", \"age\": null, \"sex\": true }", Person.class, Object[].class))),
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("{ \"name\": ￼, \"age\": 3, \"sex\": true }", Person.class, Object[].class, int.class))),
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("{ \"name\": \"Bob\", \"age\": ￼, \"sex\": true }", Person.class, Object[].class, Integer.class))),
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("{ \"name\": \"Bob\" }", String.class, Object[].class))),
+        () -> assertThrows(IllegalArgumentException.class, () -> policy.asMethodHandle(
+            TemplatedString.parse("[ 1, 2 ]", Person.class, Object[].class)))
+    );
+  }
+
+  @Test
+  public void testApplyEmpty() {
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    assertEquals(new Empty(), policy.apply(TemplatedString.parse("{}", Empty.class, Object[].class)));
+  }
+
+  private static final MethodHandle INDY_RECORD = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(Person.class, JSONRecordTemplatePolicy.class, String.class, int.class),
+      Object[].class,
+      """
+        {
+          "name": ￼,
+          "age": ￼,
+          "sex": true
+        }
+        """
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyRecord() throws Throwable {
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    for (var i = 0; i < 3; i++) {
+      assertEquals(new Person("Bob", i, true), (Person) INDY_RECORD.invokeExact(policy, "Bob", i));
+    }
+  }
+
+  private static final MethodHandle INDY_NESTED = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(Line.class, JSONRecordTemplatePolicy.class, double.class, int.class),
+      Object[].class,
+      """
+        {
+          "start": { "x": ￼, "y": 0.5 },
+          "end": { "x": 3, "y": ￼ }
+        }
+        """
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyNested() throws Throwable {
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    assertEquals(new Line(new Point(1.5, 0.5), new Point(3, 7)), (Line) INDY_NESTED.invokeExact(policy, 1.5, 7));
+  }
+
+  private static final MethodHandle INDY_LIST = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(Tagged.class, JSONRecordTemplatePolicy.class, String.class, int.class),
+      Object[].class,
+      """
+        { "name": ￼, "tags": [ "a", ￼, null, 42 ] }
+        """
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyList() throws Throwable {
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    var tagged = (Tagged) INDY_LIST.invokeExact(policy, "Ana", 7);
+    assertAll(
+        () -> assertEquals("Ana", tagged.name()),
+        () -> assertEquals(Arrays.asList("a", 7, null, 42), tagged.tags()),
+        () -> assertThrows(UnsupportedOperationException.class, () -> tagged.tags().add("b"))
+    );
+  }
+
+  // a template with a hole for each of the 20 components, in reverse order
+  private static final String SAMPLE_TEMPLATE = IntStream.range(0, 20)
+      .mapToObj(i -> "\"f" + (19 - i) + "\": ￼")
+      .collect(Collectors.joining(", ", "{ ", " }"));
+
+  private static Class<?> sampleType(int hole) {
+    return Sample.class.getRecordComponents()[19 - hole].getType();
+  }
+
+  private static Object sampleValue(int hole) {
+    var value = 19 - hole;
+    var type = sampleType(hole);
+    return type == int.class? (Object) value: type == long.class? (Object) (long) value: (Object) (double) value;
+  }
+
+  private static final Sample SAMPLE = new Sample(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10L, 11L, 12L, 13L, 14L, 15L, 16.0, 17.0, 18.0, 19.0);
+
+  @Test
+  public void testApplyManyComponents() {
+    var holeTypes = IntStream.range(0, 20).mapToObj(JSONRecordPolicyTest::sampleType).toArray(Class<?>[]::new);
+    var template = TemplatedString.parse(SAMPLE_TEMPLATE, Sample.class, Object[].class, holeTypes);
+    var policy = new JSONRecordTemplatePolicy(MethodHandles.lookup());
+    var args = IntStream.range(0, 20).mapToObj(JSONRecordPolicyTest::sampleValue).toArray();
+    assertAll(
+        () -> assertEquals(SAMPLE, policy.apply(template, args)),
+        () -> assertEquals(SAMPLE, policy.apply(template, args))
+    );
+  }
+
+  @Test
+  public void testIndyManyComponents() throws Throwable {
+    var holeTypes = IntStream.range(0, 20).mapToObj(JSONRecordPolicyTest::sampleType).toList();
+    var indy = TemplatePolicyFactory.boostrap(
+        MethodHandles.lookup(),
+        "",
+        methodType(Sample.class, holeTypes).insertParameterTypes(0, JSONRecordTemplatePolicy.class),
+        Object[].class,
+        SAMPLE_TEMPLATE
+    ).dynamicInvoker();
+    var arguments = new ArrayList<Object>();
+    arguments.add(new JSONRecordTemplatePolicy(MethodHandles.lookup()));
+    IntStream.range(0, 20).mapToObj(JSONRecordPolicyTest::sampleValue).forEach(arguments::add);
+    assertEquals(SAMPLE, indy.invokeWithArguments(arguments));
+  }
+}
@@ -0,0 +1,194 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrimitiveTemplatePolicyTest {
+  private static String render(TemplatedString template, Object... args) {
+    var builder = new StringBuilder();
+    for(var segment: template.segments()) {
+      switch(segment) {
+        case Text text -> builder.append(text.text());
+        case Parameter parameter -> builder.append(args[parameter.index()]);
+      }
+    }
+    return builder.toString();
+  }
+
+  // the hash of the rendered text, apply() is never called by a call site that returns an int
+  static final class HashPolicy implements IntTemplatePolicy<Object, RuntimeException> {
+    @Override
+    public int applyAsInt(TemplatedString template, Object... args) {
+      return render(template, args).hashCode();
+    }
+
+    @Override
+    public Integer apply(TemplatedString template, Object... args) {
+      throw new AssertionError("boxing");
+    }
+  }
+
+  // the length of the rendered text
+  static final class LengthPolicy implements LongTemplatePolicy<Object, RuntimeException> {
+    @Override
+    public long applyAsLong(TemplatedString template, Object... args) {
+      return render(template, args).length();
+    }
+  }
+
+  // the CRC32 of the rendered text encoded in UTF-8
+  static final class ChecksumPolicy implements LongTemplatePolicy<Object, RuntimeException> {
+    @Override
+    public long applyAsLong(TemplatedString template, Object... args) {
+      var crc32 = new CRC32();
+      crc32.update(render(template, args).getBytes(UTF_8));
+      return crc32.getValue();
+    }
+  }
+
+  // the sum of the holes
+  static final class SumPolicy implements DoubleTemplatePolicy<Number, RuntimeException> {
+    @Override
+    public double applyAsDouble(TemplatedString template, Number... args) {
+      var sum = 0.0;
+      for(var arg: args) {
+        sum += arg.doubleValue();
+      }
+      return sum;
+    }
+  }
+
+  // true if the rendered text is blank
+  static final class BlankPolicy implements BooleanTemplatePolicy<Object, RuntimeException> {
+    @Override
+    public boolean applyAsBoolean(TemplatedString template, Object... args) {
+      return render(template, args).isBlank();
+    }
+  }
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("hello ￼", Object.class, Object[].class, String.class);
+    assertAll(
+        () -> assertEquals("hello bob".hashCode(), new HashPolicy().applyAsInt(template, "bob")),
+        () -> assertEquals(9L, new LengthPolicy().applyAsLong(template, "bob")),
+        () -> assertEquals(9L, new LengthPolicy().apply(template, "bob")),
+        () -> assertEquals(false, new BlankPolicy().apply(template, "bob")),
+        () -> assertThrows(AssertionError.class, () -> new HashPolicy().apply(template, "bob"))
+    );
+  }
+
+  @Test
+  public void testApplySum() {
+    var template = TemplatedString.parse("￼ + ￼", double.class, Number[].class, int.class, double.class);
+    assertEquals(4.5, new SumPolicy().applyAsDouble(template, 3, 1.5));
+  }
+
+  private static final MethodHandle INDY_HASH = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(int.class, HashPolicy.class, String.class),
+      Object[].class,
+      "hello ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyHash() throws Throwable {
+    var policy = new HashPolicy();
+    for(var i = 0; i < 3; i++) {
+      assertEquals(("hello " + i).hashCode(), (int) INDY_HASH.invokeExact(policy, "" + i));
+    }
+  }
+
+  private static final MethodHandle INDY_SUM = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(double.class, SumPolicy.class, int.class, double.class),
+      Number[].class,
+      "￼ + ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndySum() throws Throwable {
+    var policy = new SumPolicy();
+    assertEquals(4.5, (double) INDY_SUM.invokeExact(policy, 3, 1.5));
+    assertEquals(-1.0, (double) INDY_SUM.invokeExact(policy, -2, 1.0));
+  }
+
+  private static final MethodHandle INDY_BLANK = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(boolean.class, BlankPolicy.class, String.class),
+      Object[].class,
+      " ￼ "
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyBlank() throws Throwable {
+    var policy = new BlankPolicy();
+    assertTrue((boolean) INDY_BLANK.invokeExact(policy, ""));
+    assertFalse((boolean) INDY_BLANK.invokeExact(policy, "x"));
+  }
+
+  private static final MethodHandle INDY_MEGAMORPHIC = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(long.class, LongTemplatePolicy.class, String.class),
+      Object[].class,
+      "hello ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyMegamorphic() throws Throwable {
+    var policies = List.<LongTemplatePolicy<Object, RuntimeException>>of(new LengthPolicy(), new ChecksumPolicy());
+    var crc32 = new CRC32();
+    crc32.update("hello bob".getBytes(UTF_8));
+    for(var i = 0; i < 3; i++) {
+      assertEquals(9L, (long) INDY_MEGAMORPHIC.invokeExact((LongTemplatePolicy<?,?>) policies.get(0), "bob"));
+      assertEquals(crc32.getValue(), (long) INDY_MEGAMORPHIC.invokeExact((LongTemplatePolicy<?,?>) policies.get(1), "bob"));
+    }
+  }
+
+  private static final MethodHandle INDY_GENERIC = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(int.class, TemplatePolicy.class, String.class),
+      Object[].class,
+      "hello ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyGenericReceiver() throws Throwable {
+    // the call site becomes megamorphic, HashPolicy is still called without boxing, the other policy is unboxed
+    TemplatePolicy<Integer, Object, RuntimeException> length = (template, args) -> render(template, args).length();
+    var hash = new HashPolicy();
+    for(var i = 0; i < 3; i++) {
+      assertEquals(9, (int) INDY_GENERIC.invokeExact((TemplatePolicy<?,?,?>) length, "bob"));
+      assertEquals("hello bob".hashCode(), (int) INDY_GENERIC.invokeExact((TemplatePolicy<?,?,?>) hash, "bob"));
+    }
+  }
+
+  private static final MethodHandle INDY_BOXED = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(Object.class, LengthPolicy.class, String.class),
+      Object[].class,
+      "hello ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyBoxed() throws Throwable {
+    assertEquals(9L, (Object) INDY_BOXED.invokeExact(new LengthPolicy(), "bob"));
+  }
+}
@@ -0,0 +1,173 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.runtime.CallSiteInfo.State;
+import com.github.forax.policyinterface.runtime.TemplateCallSiteRegistry;
+import com.github.forax.policyinterface.runtime.TemplateCallSites;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedeployTest {
+  // a call site of a long-lived class (a library shared by the applications)
+  private static final MethodHandle SHARED = TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "",
+      methodType(String.class, TemplatePolicy.class, int.class), Object[].class, "shared ￼").dynamicInvoker();
+
+  // a class loader that loads the application classes itself (child first)
+  private static final class AppClassLoader extends ClassLoader {
+    private static final List<String> APP_CLASSES = List.of(RedeployApp.class.getName(), RedeployAppPolicy.class.getName());
+
+    private AppClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!APP_CLASSES.contains(name)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        var loadedClass = findLoadedClass(name);
+        if (loadedClass != null) {
+          return loadedClass;
+        }
+        try (var input = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+          var bytecode = input.readAllBytes();
+          return defineClass(name, bytecode, 0, bytecode.length);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  // deploys the application, runs it and returns a weak reference on its class loader
+  @SuppressWarnings("unchecked")
+  private static WeakReference<ClassLoader> deployAndRun() throws ReflectiveOperationException {
+    var loader = new AppClassLoader(RedeployTest.class.getClassLoader());
+    var appClass = loader.loadClass(RedeployApp.class.getName());
+    assertEquals(loader, appClass.getClassLoader());
+    var constructor = appClass.getDeclaredConstructor();
+    constructor.setAccessible(true);  // the class is not public
+    var app = (Function<MethodHandle, String>) constructor.newInstance();
+    System.setProperty(TemplateCallSites.PROPERTY, "true");
+    String result;
+    try {
+      result = app.apply(SHARED);
+    } finally {
+      System.clearProperty(TemplateCallSites.PROPERTY);
+    }
+    assertEquals("redeploy 0, redeploy 1, redeploy 2, shared 42", result);
+    return new WeakReference<>(loader);
+  }
+
+  private static void collect(List<WeakReference<ClassLoader>> references) throws InterruptedException {
+    for (var i = 0; i < 100 && references.stream().anyMatch(reference -> reference.get() != null); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+  }
+
+  private static long metaspaceUsed() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.NON_HEAP && pool.getName().equals("Metaspace"))
+        .mapToLong(pool -> pool.getUsage().getUsed())
+        .sum();
+  }
+
+  @Test
+  public void testRedeployLoop() throws ReflectiveOperationException, InterruptedException {
+    // the shared call site is only called by the first application, it must not pin its class loader
+    var first = deployAndRun();
+    collect(List.of(first));
+    assertNull(first.get());
+
+    var references = new ArrayList<WeakReference<ClassLoader>>();
+    for (var i = 0; i < 10; i++) {  // warmup
+      references.add(deployAndRun());
+    }
+    collect(references);
+    var metaspaceBefore = metaspaceUsed();
+    for (var i = 0; i < 100; i++) {
+      references.add(deployAndRun());
+    }
+    collect(references);
+    var metaspaceAfter = metaspaceUsed();
+
+    var shared = TemplateCallSiteRegistry.callSites().stream()
+        .filter(info -> info.template().equals("shared ￼"))
+        .findFirst()
+        .orElseThrow();
+    assertAll(
+        () -> assertTrue(references.stream().allMatch(reference -> reference.get() == null)),
+        () -> assertTrue(metaspaceAfter - metaspaceBefore < 1 << 20,
+            "metaspace before " + metaspaceBefore + " after " + metaspaceAfter),
+        () -> assertEquals(State.INDIRECT, shared.state()),  // the shared call site doesn't cache AppPolicy
+        () -> assertTrue(TemplateCallSites.callSites().getCallSites().stream()
+            .noneMatch(statistics -> statistics.getTemplate().equals("redeploy ￼"))),
+        () -> assertTrue(TemplateCallSiteRegistry.callSites().stream()
+            .noneMatch(info -> info.template().equals("redeploy ￼")))
+    );
+  }
+}
+
+// a policy of the application, loaded by the class loader of the application
+final class RedeployAppPolicy implements TemplatePolicy<String, Object, RuntimeException> {
+  public static String render(String template, int value) {
+    return template.replace("￼", "" + value);
+  }
+
+  @Override
+  public String apply(TemplatedString template, Object... args) {
+    return render(template.template(), (Integer) args[0]);
+  }
+
+  @Override
+  public MethodHandle asMethodHandle(TemplatedString template) {
+    try {
+      var render = MethodHandles.lookup().findStatic(RedeployAppPolicy.class, "render", methodType(String.class, String.class, int.class));
+      return dropArguments(insertArguments(render, 0, template.template()), 0, RedeployAppPolicy.class);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
+
+// the code of the application, loaded by the class loader of the application
+final class RedeployApp implements Function<MethodHandle, String> {
+  @Override
+  public String apply(MethodHandle shared) {
+    var callSite = TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "",
+        methodType(String.class, RedeployAppPolicy.class, int.class), Object[].class, "redeploy ￼");
+    var indy = callSite.dynamicInvoker();
+    var policy = new RedeployAppPolicy();
+    try {
+      var builder = new StringBuilder();
+      for (var i = 0; i < 3; i++) {
+        builder.append((String) indy.invokeExact(policy, i)).append(", ");
+      }
+      return builder.append((String) shared.invokeExact((TemplatePolicy<?,?,?>) policy, 42)).toString();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+}
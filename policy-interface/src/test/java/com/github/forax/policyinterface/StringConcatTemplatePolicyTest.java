@@ -2,6 +2,7 @@ package com.github.forax.policyinterface;
 
 import com.github.forax.policyinterface.TemplatedString.Parameter;
 import com.github.forax.policyinterface.TemplatedString.Text;
+import com.github.forax.policyinterface.runtime.TemplateConcatFactory;
 import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
 import org.junit.jupiter.api.Test;
 
@@ -10,8 +11,10 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.StringConcatException;
 import java.lang.invoke.StringConcatFactory;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 import static java.lang.invoke.MethodType.methodType;
+import static java.util.stream.Collectors.joining;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -99,4 +102,57 @@ public class StringConcatTemplatePolicyTest {
     var text = (String) INDY_OPTIMIZED.invokeExact(FMT_OPTIMIZED, "Bob", 24);
     assertEquals("name: Bob age: 24", text);
   }
+
+  static final class StringConcatHiddenClass implements TemplatePolicy<String, Object, RuntimeException> {
+    @Override
+    public String apply(TemplatedString template, Object... args) {
+      return FMT.apply(template, args);
+    }
+
+    @Override
+    public MethodHandle asMethodHandle(TemplatedString template) {
+      var methodType = methodType(template.returnType(), template.parameters().stream().map(Parameter::type).toArray(Class[]::new));
+      var target = TemplateConcatFactory.makeConcat(template, methodType);
+      return MethodHandles.dropArguments(target, 0, StringConcatHiddenClass.class);
+    }
+  }
+
+  private static final StringConcatHiddenClass FMT_HIDDEN_CLASS = new StringConcatHiddenClass();
+
+  private static final MethodHandle INDY_HIDDEN_CLASS = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, StringConcatHiddenClass.class, String.class, int.class),
+      Object[].class,
+      "name: \uFFFC age: \uFFFC"
+  ).dynamicInvoker();
+
+  @Test
+  public void testStringConcatHiddenClassIndy() throws Throwable {
+    var text = (String) INDY_HIDDEN_CLASS.invokeExact(FMT_HIDDEN_CLASS, "Bob", 24);
+    assertEquals("name: Bob age: 24", text);
+  }
+
+  @Test
+  public void testStringConcatHiddenClassAllTypes() throws Throwable {
+    var template = TemplatedString.parse("\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC\uFFFC", String.class, Object[].class,
+        boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class,
+        String.class, CharSequence.class, Object.class, Integer.class);
+    var target = TemplateConcatFactory.makeConcat(template,
+        methodType(String.class, boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class,
+            String.class, CharSequence.class, Object.class, Integer.class));
+    var text = (String) target.invokeExact(true, (byte) 1, (short) 2, 'c', 3, 4L, 5f, 6.0, "s", (CharSequence) new StringBuilder("cs"), (Object) null, (Integer) 7);
+    assertEquals("true12c345.06.0scsnull7", text);
+  }
+
+  @Test
+  public void testStringConcatHiddenClassLargeTemplate() throws Throwable {
+    var holes = 200;
+    var recipe = IntStream.range(0, holes).mapToObj(i -> "hole" + i + ": \uFFFC").collect(joining(", "));
+    var parameterTypes = IntStream.range(0, holes).mapToObj(i -> i % 4 == 0? long.class: i % 4 == 1? int.class: String.class).toArray(Class<?>[]::new);
+    var template = TemplatedString.parse(recipe, String.class, Object[].class, parameterTypes);
+    var args = IntStream.range(0, holes).mapToObj(i -> i % 4 == 0? (Object) (long) i: i % 4 == 1? (Object) i: "s" + i).toArray();
+    var target = TemplateConcatFactory.makeConcat(template, methodType(String.class, parameterTypes));
+    assertEquals(FMT.apply(template, args), target.invokeWithArguments(args));
+  }
 }
\ No newline at end of file
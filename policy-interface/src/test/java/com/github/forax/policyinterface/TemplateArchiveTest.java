@@ -0,0 +1,135 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.StringConcatTemplatePolicyTest.StringConcat;
+import com.github.forax.policyinterface.runtime.TemplateArchive;
+import com.github.forax.policyinterface.runtime.TemplateArchive.Entry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TemplateArchiveTest {
+  private static TemplateArchive archive(Path directory, List<Entry> entries) throws IOException {
+    var path = directory.resolve("templates.bin");
+    TemplateArchive.write(path, entries);
+    return TemplateArchive.open(path, TemplateArchiveTest.class.getClassLoader());
+  }
+
+  @Test
+  public void testRoundTrip(@TempDir Path directory) throws IOException {
+    var hello = TemplatedString.parse("hello ￼, you are ￼ years old", String.class, Object[].class, String.class, int.class);
+    var holes = TemplatedString.parse("￼￼", String.class, Object[].class, StringConcat.class, long[].class);
+    var empty = TemplatedString.parse("", int.class, Object[].class);
+    var archive = archive(directory, List.of(new Entry("hello", hello), new Entry("holes", holes), new Entry("empty", empty)));
+    assertAll(
+        () -> assertEquals(3, archive.size()),
+        () -> assertAll(List.of(hello, holes, empty).stream().map(template -> () -> {
+          var index = IntStream.range(0, archive.size())
+              .filter(i -> archive.templatedString(i).template().equals(template.template()))
+              .findFirst()
+              .orElseThrow();
+          assertEquals(template, archive.templatedString(index));
+        })),
+        () -> assertEquals("hello Bob, you are 42 years old",
+            new StringConcat().apply(archive.templatedString(archive.index("hello")), "Bob", 42))
+    );
+  }
+
+  @Test
+  public void testNonAsciiRoundTrip(@TempDir Path directory) throws IOException {
+    var template = TemplatedString.parse("élève ￼ → ￼ 日本", String.class, Object[].class, String.class, int.class);
+    var archive = archive(directory, List.of(new Entry("non ascii", template)));
+    var decoded = archive.templatedString(0);
+    assertAll(
+        () -> assertEquals(template, decoded),
+        () -> assertEquals("élève Ana → 7 日本", new StringConcat().apply(decoded, "Ana", 7))
+    );
+  }
+
+  @Test
+  public void testIndexAndName(@TempDir Path directory) throws IOException {
+    var entries = IntStream.range(0, 100)
+        .mapToObj(i -> new Entry("template" + i, TemplatedString.parse(i + " ￼", String.class, Object[].class, int.class)))
+        .toList();
+    var archive = archive(directory, entries);
+    assertAll(
+        () -> assertAll(IntStream.range(0, 100).mapToObj(i -> () -> {
+          var index = archive.index("template" + i);
+          assertEquals("template" + i, archive.name(index));
+          assertEquals(i + " ￼", archive.templatedString(index).template());
+        })),
+        () -> assertEquals(-1, archive.index("unknown")),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> archive.templatedString(100)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> archive.name(-1))
+    );
+  }
+
+  @Test
+  public void testDecodedOnce(@TempDir Path directory) throws IOException {
+    var template = TemplatedString.parse("once ￼", String.class, Object[].class, String.class);
+    var archive = archive(directory, List.of(new Entry("once", template)));
+    assertSame(archive.templatedString(0), archive.templatedString(0));
+  }
+
+  @Test
+  public void testAttachment(@TempDir Path directory) throws IOException {
+    var template = TemplatedString.parse("<b>￼</b>", String.class, Object[].class, String.class);
+    var archive = archive(directory, List.of(
+        new Entry("bold", template, Map.of("utf8", "<b></b>".getBytes(UTF_8), "empty", new byte[0]))));
+    var attachment = archive.attachment(0, "utf8");
+    assertAll(
+        () -> assertEquals(ByteBuffer.wrap("<b></b>".getBytes(UTF_8)), attachment),
+        () -> assertEquals(0, archive.attachment(0, "empty").remaining()),
+        () -> assertNull(archive.attachment(0, "unknown")),
+        () -> assertThrows(UnsupportedOperationException.class, () -> attachment.array())
+    );
+  }
+
+  @Test
+  public void testDuplicateName(@TempDir Path directory) {
+    var template = TemplatedString.parse("duplicate", String.class, Object[].class);
+    assertThrows(IllegalArgumentException.class,
+        () -> TemplateArchive.write(directory.resolve("templates.bin"), List.of(new Entry("a", template), new Entry("a", template))));
+  }
+
+  @Test
+  public void testNotAnArchive(@TempDir Path directory) throws IOException {
+    var path = directory.resolve("text.txt");
+    Files.writeString(path, "this is not an archive");
+    assertThrows(IOException.class, () -> TemplateArchive.open(path, TemplateArchiveTest.class.getClassLoader()));
+  }
+
+  @Test
+  public void testTypeNotPresent(@TempDir Path directory) throws IOException {
+    var template = TemplatedString.parse("￼", String.class, Object[].class, StringConcat.class);
+    var path = directory.resolve("templates.bin");
+    TemplateArchive.write(path, List.of(new Entry("concat", template)));
+    var archive = TemplateArchive.open(path, ClassLoader.getPlatformClassLoader());
+    assertThrows(TypeNotPresentException.class, () -> archive.templatedString(0));
+  }
+
+  @Test
+  public void testTemplatedStringOf() {
+    assertAll(
+        () -> assertEquals(TemplatedString.parse("a￼b￼", String.class, Object[].class, int.class, long.class),
+            TemplatedString.of(List.of("a", "b", ""), String.class, Object[].class, int.class, long.class)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> TemplatedString.of(List.of("a"), String.class, Object[].class, int.class)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> TemplatedString.of(List.of("a￼", ""), String.class, Object[].class, int.class))
+    );
+  }
+}
@@ -0,0 +1,72 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.StringConcatTemplatePolicyTest.StringConcat;
+import com.github.forax.policyinterface.StringConcatTemplatePolicyTest.StringConcatOptimized;
+import com.github.forax.policyinterface.runtime.TemplateBatch;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TemplateBatchTest {
+  private static final TemplatedString TEMPLATE = TemplatedString.parse("name: ￼ age: ￼\n",
+      String.class, Object[].class, String.class, int.class);
+
+  @Test
+  public void testRender() {
+    var names = List.of("Bob", "Ana", "Elvis");
+    var ages = new int[] { 24, 42, 86 };
+    assertAll(
+        () -> assertEquals("name: Bob age: 24\nname: Ana age: 42\nname: Elvis age: 86\n",
+            TemplateBatch.render(new StringConcat(), TEMPLATE, names, ages)),
+        () -> assertEquals("name: Bob age: 24\nname: Ana age: 42\nname: Elvis age: 86\n",
+            TemplateBatch.render(new StringConcatOptimized(), TEMPLATE, names.toArray(String[]::new), ages))
+    );
+  }
+
+  @Test
+  public void testRenderManyRowsPreserveOrder() {
+    var rows = 100_000;
+    var names = IntStream.range(0, rows).mapToObj(i -> "name" + i).toList();
+    var ages = IntStream.range(0, rows).toArray();
+    var expected = IntStream.range(0, rows).mapToObj(i -> "name: name" + i + " age: " + i + "\n").collect(joining());
+    assertEquals(expected, TemplateBatch.render(new StringConcatOptimized(), TEMPLATE, names, ages));
+  }
+
+  @Test
+  public void testRenderNoRow() {
+    assertEquals("", TemplateBatch.render(new StringConcatOptimized(), TEMPLATE, List.of(), new int[0]));
+  }
+
+  @Test
+  public void testRenderInvalidColumns() {
+    var policy = new StringConcatOptimized();
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> TemplateBatch.render(policy, TEMPLATE, List.of("Bob"))),
+        () -> assertThrows(IllegalArgumentException.class, () -> TemplateBatch.render(policy, TEMPLATE, List.of("Bob"), new int[2])),
+        () -> assertThrows(IllegalArgumentException.class, () -> TemplateBatch.render(policy, TEMPLATE, List.of("Bob"), "not a column")),
+        () -> assertThrows(IllegalArgumentException.class, () -> TemplateBatch.render(policy, TEMPLATE, List.of("Bob"), new double[1]))
+    );
+  }
+
+  @Test
+  public void testRenderPolicyException() {
+    TemplatePolicy<String, Object, IOException> policy = (template, args) -> {
+      if ((int) args[1] == 5_000) {
+        throw new IOException("row 5000");
+      }
+      return "";
+    };
+    var rows = 10_000;
+    var names = IntStream.range(0, rows).mapToObj(i -> "name" + i).toList();
+    var ages = IntStream.range(0, rows).toArray();
+    var exception = assertThrows(IOException.class, () -> TemplateBatch.render(policy, TEMPLATE, names, ages));
+    assertEquals("row 5000", exception.getMessage());
+  }
+}
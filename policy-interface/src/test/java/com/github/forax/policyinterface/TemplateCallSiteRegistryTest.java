@@ -0,0 +1,191 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.ConfigurablePolicyTest.Prefix;
+import com.github.forax.policyinterface.StringConcatTemplatePolicyTest.StringConcat;
+import com.github.forax.policyinterface.runtime.CallSiteInfo;
+import com.github.forax.policyinterface.runtime.CallSiteInfo.State;
+import com.github.forax.policyinterface.runtime.TemplateCallSiteRegistry;
+import com.github.forax.policyinterface.runtime.TemplateCallSites;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateCallSiteRegistryTest {
+  static final class Constant implements TemplatePolicy<String, Object, RuntimeException> {
+    @Override
+    public String apply(TemplatedString template, Object... args) {
+      return template.template().toUpperCase();
+    }
+
+    @Override
+    public boolean isConstantFoldable() {
+      return true;
+    }
+  }
+
+  private static CallSite callSite(MethodType type, String template) {
+    return TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "", type, Object[].class, template);
+  }
+
+  private static CallSiteInfo info(String template) {
+    return TemplateCallSiteRegistry.callSites().stream()
+        .filter(info -> info.template().equals(template))
+        .reduce((info1, info2) -> { throw new AssertionError("several call sites " + info1 + " " + info2); })
+        .orElseThrow();
+  }
+
+  @Test
+  public void testUnlinked() {
+    var callSite = callSite(methodType(String.class, TemplatePolicy.class, int.class), "unlinked ￼");
+    var info = info("unlinked ￼");
+    assertAll(
+        () -> assertEquals(TemplateCallSiteRegistryTest.class.getName(), info.callerClass()),
+        () -> assertEquals(TemplatePolicy.class.getName(), info.policy()),
+        () -> assertEquals(State.UNLINKED, info.state()),
+        () -> assertEquals(List.of(), info.receiverClasses()),
+        () -> assertTrue(info.templateBytes() > 0),
+        () -> assertTrue(info.methodHandleBytes() > 0),
+        () -> assertEquals(0, info.cacheBytes())
+    );
+    assertTrue(callSite.type().parameterCount() > 0);  // keep the call site alive
+  }
+
+  @Test
+  public void testMonomorphic() throws Throwable {
+    var callSite = callSite(methodType(String.class, TemplatePolicy.class, int.class), "monomorphic ￼");
+    assertEquals("monomorphic 1", (String) callSite.dynamicInvoker().invokeExact((TemplatePolicy<?,?,?>) new StringConcat(), 1));
+    var info = info("monomorphic ￼");
+    assertAll(
+        () -> assertEquals(StringConcat.class.getName(), info.policy()),
+        () -> assertEquals(State.MONOMORPHIC, info.state()),
+        () -> assertEquals(List.of(StringConcat.class.getName()), info.receiverClasses())
+    );
+  }
+
+  @Test
+  public void testMonomorphicFinalReceiver() throws Throwable {
+    var callSite = callSite(methodType(String.class, StringConcat.class, int.class), "final receiver ￼");
+    assertEquals("final receiver 1", (String) callSite.dynamicInvoker().invokeExact(new StringConcat(), 1));
+    var info = info("final receiver ￼");
+    assertAll(
+        () -> assertEquals(StringConcat.class.getName(), info.policy()),
+        () -> assertEquals(State.MONOMORPHIC, info.state()),
+        () -> assertEquals(List.of(), info.receiverClasses())
+    );
+  }
+
+  @Test
+  public void testMegamorphic() throws Throwable {
+    var callSite = callSite(methodType(String.class, TemplatePolicy.class, int.class), "megamorphic ￼");
+    var indy = callSite.dynamicInvoker();
+    TemplatePolicy<?, ?, ?> policy1 = new StringConcat();
+    TemplatePolicy<String, Object, RuntimeException> policy2 = (template, args) -> "megamorphic " + args[0];
+    assertEquals("megamorphic 1", (String) indy.invokeExact(policy1, 1));
+    assertEquals("megamorphic 2", (String) indy.invokeExact(policy2, 2));
+    var info = info("megamorphic ￼");
+    assertAll(
+        () -> assertEquals(TemplatePolicy.class.getName(), info.policy()),
+        () -> assertEquals(State.MEGAMORPHIC, info.state()),
+        () -> assertEquals(List.of(), info.receiverClasses())
+    );
+  }
+
+  @Test
+  public void testConstant() throws Throwable {
+    var callSite = callSite(methodType(String.class, Constant.class), "constant");
+    assertEquals("CONSTANT", (String) callSite.dynamicInvoker().invokeExact(new Constant()));
+    var info = info("constant");
+    assertAll(
+        () -> assertEquals(Constant.class.getName(), info.policy()),
+        () -> assertEquals(State.CONSTANT, info.state())
+    );
+  }
+
+  @Test
+  public void testUnlinkedAfterInvalidation() throws Throwable {
+    Prefix.setPrefix("");
+    var callSite = callSite(methodType(String.class, Prefix.class), "invalidated");
+    var text = (String) callSite.dynamicInvoker().invokeExact(new Prefix());
+    var linked = info("invalidated");
+    Prefix.setPrefix("");
+    var invalidated = info("invalidated");
+    assertAll(
+        () -> assertEquals("invalidated", text),
+        () -> assertEquals(State.MONOMORPHIC, linked.state()),
+        () -> assertEquals(State.UNLINKED, invalidated.state())
+    );
+  }
+
+  @Test
+  public void testInstrumentedCaches() {
+    System.setProperty(TemplateCallSites.PROPERTY, "true");
+    CallSite callSite;
+    try {
+      callSite = callSite(methodType(String.class, StringConcat.class), "instrumented");
+    } finally {
+      System.clearProperty(TemplateCallSites.PROPERTY);
+    }
+    var info = info("instrumented");
+    assertAll(
+        () -> assertTrue(info.cacheBytes() > 0),
+        () -> assertEquals(info.templateBytes() + info.methodHandleBytes() + info.cacheBytes(), info.estimatedBytes())
+    );
+    assertTrue(callSite.type().parameterCount() > 0);  // keep the call site alive
+  }
+
+  private static WeakReference<CallSite> unreachableCallSite(String template) {
+    return new WeakReference<>(callSite(methodType(String.class, StringConcat.class), template));
+  }
+
+  @Test
+  public void testCallSitesAreNotPinned() throws InterruptedException {
+    var reference = unreachableCallSite("not pinned");
+    for (var i = 0; i < 100 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertAll(
+        () -> assertNull(reference.get()),
+        () -> assertTrue(TemplateCallSiteRegistry.callSites().stream().noneMatch(info -> info.template().equals("not pinned")))
+    );
+  }
+
+  @Test
+  public void testDump() throws Throwable {
+    var callSite = callSite(methodType(String.class, StringConcat.class, int.class), "dump ￼");
+    assertEquals("dump 42", (String) callSite.dynamicInvoker().invokeExact(new StringConcat(), 42));
+    var dump = TemplateCallSiteRegistry.dump();
+    var lines = dump.lines().toList();
+    assertAll(
+        () -> assertTrue(lines.stream().anyMatch(line ->
+            line.startsWith(TemplateCallSiteRegistryTest.class.getName() + " \"dump ￼\" MONOMORPHIC"))),
+        () -> assertTrue(lines.get(lines.size() - 1).matches("\\d+ call sites, \\d+ bytes"))
+    );
+  }
+
+  @Test
+  public void testDumpMXBean() throws Exception {
+    var callSite = callSite(methodType(String.class, StringConcat.class), "dump mxbean");
+    TemplateCallSites.callSites();  // registers the MXBean
+    var server = ManagementFactory.getPlatformMBeanServer();
+    var dump = (String) server.invoke(new ObjectName(TemplateCallSites.OBJECT_NAME), "dumpCallSites", null, null);
+    assertAll(
+        () -> assertTrue(dump.contains("\"dump mxbean\" UNLINKED")),
+        () -> assertFalse(callSite.type().parameterList().isEmpty())
+    );
+  }
+}
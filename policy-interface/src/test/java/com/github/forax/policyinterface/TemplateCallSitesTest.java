@@ -0,0 +1,147 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.ConfigurablePolicyTest.Prefix;
+import com.github.forax.policyinterface.StringConcatTemplatePolicyTest.StringConcat;
+import com.github.forax.policyinterface.StringConcatTemplatePolicyTest.StringConcatOptimized;
+import com.github.forax.policyinterface.runtime.CallSiteStatistics;
+import com.github.forax.policyinterface.runtime.TemplateCallSites;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateCallSitesTest {
+  private static MethodHandle indy(boolean instrumented, MethodType type, String template) {
+    if (instrumented) {
+      System.setProperty(TemplateCallSites.PROPERTY, "true");
+    }
+    try {
+      return TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "", type, Object[].class, template).dynamicInvoker();
+    } finally {
+      System.clearProperty(TemplateCallSites.PROPERTY);
+    }
+  }
+
+  private static CallSiteStatistics statistics(String template) {
+    return TemplateCallSites.callSites().getCallSites().stream()
+        .filter(statistics -> statistics.getTemplate().equals(template))
+        .reduce((s1, s2) -> { throw new AssertionError("several call sites " + s1 + " " + s2); })
+        .orElseThrow();
+  }
+
+  @Test
+  public void testNotInstrumented() throws Throwable {
+    var count = TemplateCallSites.callSites().getCallSiteCount();
+    var indy = indy(false, methodType(String.class, StringConcat.class, int.class), "not instrumented ￼");
+    assertAll(
+        () -> assertEquals("not instrumented 1", (String) indy.invokeExact(new StringConcat(), 1)),
+        () -> assertEquals(count, TemplateCallSites.callSites().getCallSiteCount())
+    );
+  }
+
+  @Test
+  public void testInvocations() throws Throwable {
+    var indy = indy(true, methodType(String.class, StringConcatOptimized.class, int.class), "invocations ￼");
+    var policy = new StringConcatOptimized();
+    for (var i = 0; i < 10; i++) {
+      assertEquals("invocations " + i, (String) indy.invokeExact(policy, i));
+    }
+    var statistics = statistics("invocations ￼");
+    assertAll(
+        () -> assertTrue(statistics.getId().startsWith(TemplateCallSitesTest.class.getName() + ":")),
+        () -> assertEquals(10, statistics.getInvocations()),
+        () -> assertEquals(1, statistics.getSlowPaths()),
+        () -> assertEquals(0, statistics.getRelinks()),
+        () -> assertEquals(0, statistics.getGuardMisses())
+    );
+  }
+
+  @Test
+  public void testGuardMisses() throws Throwable {
+    var indy = indy(true, methodType(String.class, TemplatePolicy.class, int.class), "guard misses ￼");
+    TemplatePolicy<?, ?, ?> policy1 = new StringConcat();
+    TemplatePolicy<String, Object, RuntimeException> policy2 = (template, args) -> "guard misses " + args[0];
+    var text1 = (String) indy.invokeExact(policy1, 1);
+    var text2 = (String) indy.invokeExact(policy1, 2);
+    var text3 = (String) indy.invokeExact(policy2, 3);  // the call site is now generic
+    var text4 = (String) indy.invokeExact(policy2, 4);
+    var text5 = (String) indy.invokeExact(policy1, 5);
+    var statistics = statistics("guard misses ￼");
+    assertAll(
+        () -> assertEquals(List.of("guard misses 1", "guard misses 2", "guard misses 3", "guard misses 4", "guard misses 5"),
+            List.of(text1, text2, text3, text4, text5)),
+        () -> assertEquals(5, statistics.getInvocations()),
+        () -> assertEquals(1, statistics.getSlowPaths()),
+        () -> assertEquals(1, statistics.getGuardMisses())
+    );
+  }
+
+  @Test
+  public void testRelinks() throws Throwable {
+    var indy = indy(true, methodType(String.class, Prefix.class), "relinks");
+    var policy = new Prefix();
+    Prefix.setPrefix("");
+    var text1 = (String) indy.invokeExact(policy);
+    Prefix.setPrefix("> ");
+    var text2 = (String) indy.invokeExact(policy);
+    var text3 = (String) indy.invokeExact(policy);
+    Prefix.setPrefix("");
+    var statistics = statistics("relinks");
+    assertAll(
+        () -> assertEquals("relinks", text1),
+        () -> assertEquals("> relinks", text2),
+        () -> assertEquals("> relinks", text3),
+        () -> assertEquals(3, statistics.getInvocations()),
+        () -> assertEquals(2, statistics.getSlowPaths()),
+        () -> assertEquals(1, statistics.getRelinks()),
+        () -> assertEquals(1, statistics.getGuardMisses())
+    );
+  }
+
+  @Test
+  public void testStableIds() {
+    var type = methodType(String.class, StringConcat.class);
+    indy(true, type, "same template");
+    indy(true, type, "same template");
+    var ids = TemplateCallSites.callSites().getCallSites().stream()
+        .filter(statistics -> statistics.getTemplate().equals("same template"))
+        .map(CallSiteStatistics::getId)
+        .toList();
+    var id = TemplateCallSitesTest.class.getName() + ":" + Integer.toHexString((type + "same template").hashCode());
+    assertEquals(List.of(id, id + "-2"), ids);
+  }
+
+  @Test
+  public void testMXBean() throws Throwable {
+    var indy = indy(true, methodType(String.class, StringConcat.class), "mxbean");
+    var text = (String) indy.invokeExact(new StringConcat());
+    var server = ManagementFactory.getPlatformMBeanServer();
+    var name = new ObjectName(TemplateCallSites.OBJECT_NAME);
+    var count = (Integer) server.getAttribute(name, "CallSiteCount");
+    var callSites = (CompositeData[]) server.getAttribute(name, "CallSites");
+    var mxbean = Arrays.stream(callSites)
+        .map(CallSiteStatistics::from)
+        .filter(statistics -> statistics.getTemplate().equals("mxbean"))
+        .findFirst()
+        .orElseThrow();
+    assertAll(
+        () -> assertEquals("mxbean", text),
+        () -> assertEquals(TemplateCallSites.callSites().getCallSiteCount(), count),
+        () -> assertEquals(1, mxbean.getInvocations()),
+        () -> assertFalse(mxbean.getId().isEmpty())
+    );
+  }
+}
@@ -0,0 +1,181 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.ConfigurablePolicyTest.Prefix;
+import com.github.forax.policyinterface.StringConcatTemplatePolicyTest.StringConcat;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateEventsTest {
+  private static final String BOOTSTRAP = "com.github.forax.policyinterface.Bootstrap";
+  private static final String LINK = "com.github.forax.policyinterface.Link";
+  private static final String RELINK = "com.github.forax.policyinterface.Relink";
+  private static final String RENDER = "com.github.forax.policyinterface.Render";
+
+  private static MethodHandle indy(MethodType type, String template) {
+    return TemplatePolicyFactory.boostrap(MethodHandles.lookup(), "", type, Object[].class, template).dynamicInvoker();
+  }
+
+  private static Recording record(String... eventNames) {
+    var recording = new Recording();
+    for (var eventName : eventNames) {
+      recording.enable(eventName);
+    }
+    recording.start();
+    return recording;
+  }
+
+  private static List<RecordedEvent> events(Recording recording, String eventName, String template) throws IOException {
+    recording.stop();
+    var file = Files.createTempFile("template-events", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(event -> event.getEventType().getName().equals(eventName))
+          .filter(event -> event.getString("template").equals(template))
+          .toList();
+    } finally {
+      recording.close();
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testBootstrap() throws Throwable {
+    var recording = record(BOOTSTRAP);
+    var indy = indy(methodType(String.class, StringConcat.class, int.class), "bootstrap ￼");
+    assertEquals("bootstrap 1", (String) indy.invokeExact(new StringConcat(), 1));
+    var events = events(recording, BOOTSTRAP, "bootstrap ￼");
+    assertAll(
+        () -> assertEquals(1, events.size()),
+        () -> assertEquals(TemplateEventsTest.class.getName(), events.get(0).getClass("callerClass").getName()),
+        () -> assertEquals("(StringConcat,int)String", events.get(0).getString("callSiteType"))
+    );
+  }
+
+  @Test
+  public void testLink() throws Throwable {
+    var recording = record(LINK);
+    var indy = indy(methodType(String.class, StringConcat.class, int.class), "link ￼");
+    var policy = new StringConcat();
+    assertEquals("link 1", (String) indy.invokeExact(policy, 1));
+    assertEquals("link 2", (String) indy.invokeExact(policy, 2));
+    var events = events(recording, LINK, "link ￼");
+    assertAll(
+        () -> assertEquals(1, events.size()),
+        () -> assertEquals(StringConcat.class.getName(), events.get(0).getClass("policyClass").getName()),
+        () -> assertTrue(events.get(0).getInt("methodHandleSize") > 0),
+        () -> assertTrue(!events.get(0).getDuration().isNegative())
+    );
+  }
+
+  @Test
+  public void testRelinkSwitchPoint() throws Throwable {
+    var recording = record(RELINK);
+    var indy = indy(methodType(String.class, Prefix.class), "relink switch point");
+    var policy = new Prefix();
+    Prefix.setPrefix("");
+    var text1 = (String) indy.invokeExact(policy);
+    Prefix.setPrefix("> ");
+    var text2 = (String) indy.invokeExact(policy);
+    Prefix.setPrefix("");
+    var events = events(recording, RELINK, "relink switch point");
+    assertAll(
+        () -> assertEquals("relink switch point", text1),
+        () -> assertEquals("> relink switch point", text2),
+        () -> assertEquals(1, events.size()),
+        () -> assertEquals("policy switch point invalidated", events.get(0).getString("reason")),
+        () -> assertEquals(Prefix.class.getName(), events.get(0).getClass("policyClass").getName())
+    );
+  }
+
+  @Test
+  public void testRelinkReceiverClass() throws Throwable {
+    var recording = record(RELINK);
+    var indy = indy(methodType(String.class, TemplatePolicy.class, int.class), "relink receiver ￼");
+    TemplatePolicy<?, ?, ?> policy1 = new StringConcat();
+    TemplatePolicy<String, Object, RuntimeException> policy2 = (template, args) -> "relink receiver " + args[0];
+    var text1 = (String) indy.invokeExact(policy1, 1);
+    var text2 = (String) indy.invokeExact(policy2, 2);
+    var events = events(recording, RELINK, "relink receiver ￼");
+    assertAll(
+        () -> assertEquals("relink receiver 1", text1),
+        () -> assertEquals("relink receiver 2", text2),
+        () -> assertEquals(1, events.size()),
+        () -> assertEquals("receiver class changed", events.get(0).getString("reason")),
+        () -> assertTrue(events.get(0).getClass("policyClass").getName().startsWith(TemplateEventsTest.class.getName()))
+    );
+  }
+
+  @Test
+  public void testRenderDisabledByDefault() throws Throwable {
+    var recording = record(BOOTSTRAP);
+    var indy = indy(methodType(String.class, StringConcat.class, int.class), "render disabled ￼");
+    var policy = new StringConcat();
+    for (var i = 0; i < 1_000; i++) {
+      assertEquals("render disabled " + i, (String) indy.invokeExact(policy, i));
+    }
+    assertEquals(List.of(), events(recording, RENDER, "render disabled ￼"));
+  }
+
+  @Test
+  public void testRenderSampled() throws Throwable {
+    var indy = indy(methodType(String.class, StringConcat.class, int.class), "render ￼");
+    var policy = new StringConcat();
+    assertEquals("render -1", (String) indy.invokeExact(policy, -1));  // linked without the render event
+
+    var recording = record(RENDER, RELINK);
+    for (var i = 0; i < 128; i++) {
+      assertEquals("render " + i, (String) indy.invokeExact(policy, i));
+    }
+    var renders = events(recording, RENDER, "render ￼");
+    assertAll(
+        () -> assertEquals(2, renders.size()),
+        () -> assertEquals(StringConcat.class.getName(), renders.get(0).getClass("policyClass").getName())
+    );
+  }
+
+  @Test
+  public void testRenderRelink() throws Throwable {
+    var indy = indy(methodType(void.class, StringConcat.class, int.class), "render relink ￼");
+    var policy = new StringConcat();
+    indy.invokeExact(policy, -1);
+    var recording = record(RENDER, RELINK);
+    for (var i = 0; i < 64; i++) {
+      indy.invokeExact(policy, i);
+    }
+    recording.stop();
+    var file = Files.createTempFile("template-events", ".jfr");
+    List<RecordedEvent> events;
+    try {
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file).stream()
+          .filter(event -> List.of(RELINK, RENDER).contains(event.getEventType().getName()))
+          .filter(event -> event.getString("template").equals("render relink ￼"))
+          .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+          .toList();
+    } finally {
+      recording.close();
+      Files.delete(file);
+    }
+    assertAll(
+        () -> assertEquals(List.of(RELINK, RENDER), events.stream().map(event -> event.getEventType().getName()).toList()),
+        () -> assertEquals("render event setting changed", events.get(0).getString("reason"))
+    );
+  }
+}
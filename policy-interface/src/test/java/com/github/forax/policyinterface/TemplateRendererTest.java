@@ -0,0 +1,151 @@
+package com.github.forax.policyinterface;
+
+import com.github.forax.policyinterface.TemplatedString.Parameter;
+import com.github.forax.policyinterface.policy.HtmlTemplatePolicy;
+import com.github.forax.policyinterface.policy.UriTemplatePolicy;
+import com.github.forax.policyinterface.runtime.TemplateRenderer;
+import com.github.forax.policyinterface.runtime.TemplateRenderer.Change;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TemplateRendererTest {
+  private static final TemplatedString TEMPLATE = TemplatedString.parse("cpu: ￼% memory: ￼MB\n",
+      String.class, Object[].class, int.class, int.class);
+
+  @Test
+  public void testFirstRender() {
+    var renderer = TemplateRenderer.of(TEMPLATE);
+    var changes = renderer.render(12, 512);
+    assertAll(
+        () -> assertEquals(List.of(new Change(0, 0, "cpu: 12% memory: 512MB\n")), changes),
+        () -> assertEquals("cpu: 12% memory: 512MB\n", renderer.output()),
+        () -> assertEquals(23, renderer.length())
+    );
+  }
+
+  @Test
+  public void testRenderSameArguments() {
+    var renderer = TemplateRenderer.of(TEMPLATE);
+    renderer.render(12, 512);
+    assertAll(
+        () -> assertEquals(List.of(), renderer.render(12, 512)),
+        () -> assertEquals("cpu: 12% memory: 512MB\n", renderer.output())
+    );
+  }
+
+  @Test
+  public void testRenderMinimalChanges() {
+    var renderer = TemplateRenderer.of(TEMPLATE);
+    renderer.render(12, 512);
+    var changes = renderer.render(13, 1024);
+    assertAll(
+        () -> assertEquals(List.of(new Change(6, 7, "3"), new Change(17, 20, "1024")), changes),
+        () -> assertEquals("cpu: 13% memory: 1024MB\n", renderer.output()),
+        () -> assertEquals(24, renderer.length())
+    );
+  }
+
+  @Test
+  public void testRenderChangesApply() {
+    var template = TemplatedString.parse("<p>￼￼</p><p>￼</p>",
+        String.class, Object[].class, String.class, String.class, String.class);
+    var renderer = TemplateRenderer.of(template);
+    var previous = Change.apply("", renderer.render("hello", " world", "😀"));
+    var rounds = List.of(
+        new String[] { "hello", " world", "😁" },
+        new String[] { "bye", " world!", "😁" },
+        new String[] { "", "", "" },
+        new String[] { "a", "b", "c" }
+    );
+    for (var args : rounds) {
+      var changes = renderer.render((Object[]) args);
+      previous = Change.apply(previous, changes);
+      assertEquals(renderer.output(), previous);
+    }
+  }
+
+  @Test
+  public void testRenderMergesContiguousChanges() {
+    var template = TemplatedString.parse("￼￼", String.class, Object[].class, String.class, String.class);
+    var renderer = TemplateRenderer.of(template);
+    renderer.render("ab", "cd");
+    assertEquals(List.of(new Change(1, 3, "xy")), renderer.render("ax", "yd"));
+  }
+
+  @Test
+  public void testRenderHtmlEscaped() {
+    var template = TemplatedString.parse("<p>￼ (￼)</p>", String.class, Object[].class, String.class, int.class);
+    var renderer = TemplateRenderer.of(template, new HtmlTemplatePolicy().holeRenderer(template));
+    renderer.render("Bob", 1);
+    assertAll(
+        () -> assertEquals(List.of(new Change(3, 6, "&lt;b&gt;")), renderer.render("<b>", 1)),
+        () -> assertEquals("<p>&lt;b&gt; (1)</p>", renderer.output())
+    );
+  }
+
+  @Test
+  public void testRenderWithPolicy() {
+    var template = TemplatedString.parse("<p>￼ (￼)</p>", String.class, Object[].class, String.class, int.class);
+    var policy = new HtmlTemplatePolicy();
+    var renderer = TemplateRenderer.of(policy, template);
+    renderer.render("Bob", 1);
+    assertAll(
+        () -> assertEquals(List.of(new Change(3, 6, "&lt;b&gt;")), renderer.render("<b>", 1)),
+        () -> assertEquals(policy.apply(template, "<b>", 1), renderer.output())
+    );
+  }
+
+  @Test
+  public void testRenderWithPolicyLinkedOnce() {
+    var linked = new ArrayList<TemplatedString>();
+    var policy = new TemplatePolicy<String, Object, RuntimeException>() {
+      @Override
+      public String apply(TemplatedString template, Object... args) {
+        return "[" + args[0] + "]";
+      }
+
+      @Override
+      public MethodHandle asMethodHandle(TemplatedString template) throws Throwable {
+        linked.add(template);
+        return TemplatePolicy.super.asMethodHandle(template);
+      }
+    };
+    var renderer = TemplateRenderer.of(policy, TEMPLATE);
+    renderer.render(12, 512);
+    renderer.render(13, 512);
+    assertAll(
+        () -> assertEquals("cpu: [13]% memory: [512]MB\n", renderer.output()),
+        () -> assertEquals(2, linked.size()),
+        () -> assertEquals(List.of(int.class), linked.get(0).parameters().stream().map(Parameter::type).toList())
+    );
+  }
+
+  @Test
+  public void testRenderUriEncoded() {
+    var template = TemplatedString.parse("/users/￼?tag=￼", String.class, Object[].class, String.class, String.class);
+    var policy = new UriTemplatePolicy();
+    var renderer = TemplateRenderer.of(template, policy.holeRenderer(template));
+    var output = Change.apply("", renderer.render("a/b", "x&y"));
+    assertEquals("/users/a%2Fb?tag=x%26y", output);
+    output = Change.apply(output, renderer.render("é", "#"));
+    assertEquals(policy.apply(template, "é", "#"), output);
+  }
+
+  @Test
+  public void testRenderInvalid() {
+    var renderer = TemplateRenderer.of(TEMPLATE);
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, renderer::output),
+        () -> assertThrows(IllegalArgumentException.class, () -> renderer.render(12)),
+        () -> assertThrows(IllegalArgumentException.class, () -> new Change(3, 2, "")),
+        () -> assertThrows(NullPointerException.class, () -> TemplateRenderer.of(null, TEMPLATE))
+    );
+  }
+}
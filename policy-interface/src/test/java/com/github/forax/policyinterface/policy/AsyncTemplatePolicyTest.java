@@ -0,0 +1,111 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncTemplatePolicyTest {
+  private static final AsyncTemplatePolicy ASYNC = new AsyncTemplatePolicy();
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("user: ￼ id: ￼", CompletableFuture.class, Object[].class, CompletableFuture.class, int.class);
+    var user = new CompletableFuture<String>();
+    var result = ASYNC.apply(template, user, 42);
+    assertFalse(result.isDone());
+    user.complete("Bob");
+    assertEquals("user: Bob id: 42", result.join());
+  }
+
+  @Test
+  public void testApplyFutureTypedAsObject() {
+    // like the linked call site, a hole is asynchronous only if its type is a CompletionStage
+    var template = TemplatedString.parse("user: ￼", CompletableFuture.class, Object[].class, Object.class);
+    var user = CompletableFuture.completedFuture("Bob");
+    assertEquals("user: " + user, ASYNC.apply(template, user).getNow(null));
+  }
+
+  @Test
+  public void testApplyNoFuture() {
+    var template = TemplatedString.parse("id: ￼", CompletableFuture.class, Object[].class, int.class);
+    assertEquals("id: 42", ASYNC.apply(template, 42).getNow(null));
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("id: ￼", CompletableFuture.class, Object[].class, int.class);
+    assertThrows(IllegalArgumentException.class, () -> ASYNC.apply(template));
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(CompletableFuture.class, AsyncTemplatePolicy.class, String.class, CompletableFuture.class, int.class, CompletionStage.class),
+      Object[].class,
+      "name: ￼ user: ￼ id: ￼ cart: ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndy() throws Throwable {
+    var user = new CompletableFuture<String>();
+    var cart = new CompletableFuture<Integer>();
+    var result = (CompletableFuture<?>) INDY.invokeExact(ASYNC, "home", user, 42, (CompletionStage) cart);
+    assertFalse(result.isDone());
+    cart.complete(3);
+    assertFalse(result.isDone());
+    user.complete("Bob");
+    assertEquals("name: home user: Bob id: 42 cart: 3", result.join());
+  }
+
+  @Test
+  public void testIndyCompletedFutures() throws Throwable {
+    var result = (CompletableFuture<?>) INDY.invokeExact(ASYNC, "home",
+        CompletableFuture.completedFuture("Ana"), 7, (CompletionStage) CompletableFuture.completedFuture(0));
+    assertAll(
+        () -> assertTrue(result.isDone()),
+        () -> assertEquals("name: home user: Ana id: 7 cart: 0", result.join())
+    );
+  }
+
+  @Test
+  public void testIndyFailure() throws Throwable {
+    var user = new CompletableFuture<String>();
+    var result = (CompletableFuture<?>) INDY.invokeExact(ASYNC, "home", user, 42,
+        (CompletionStage) CompletableFuture.completedFuture(0));
+    user.completeExceptionally(new IllegalStateException("user not found"));
+    var exception = assertThrows(CompletionException.class, result::join);
+    assertInstanceOf(IllegalStateException.class, exception.getCause());
+  }
+
+  private static final MethodHandle INDY_OBJECT = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(CompletableFuture.class, AsyncTemplatePolicy.class, CompletableFuture.class, Object.class),
+      Object[].class,
+      "user: ￼ name: ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndySynchronousValuesAreCapturedEagerly() throws Throwable {
+    var name = new StringBuilder("home");
+    var user = new CompletableFuture<String>();
+    var result = (CompletableFuture<?>) INDY_OBJECT.invokeExact(ASYNC, user, (Object) name);
+    name.append(" modified");
+    user.complete("Bob");
+    assertEquals("user: Bob name: home", result.join());
+  }
+}
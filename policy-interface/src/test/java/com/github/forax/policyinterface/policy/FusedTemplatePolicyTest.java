@@ -0,0 +1,77 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.policy.FusedTemplatePolicy.Assembler;
+import com.github.forax.policyinterface.policy.FusedTemplatePolicy.Encoder;
+import com.github.forax.policyinterface.policy.FusedTemplatePolicy.Transformer;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FusedTemplatePolicyTest {
+  private static final FusedTemplatePolicy<byte[]> HTML_UTF8 =
+      FusedTemplatePolicy.of(HtmlTemplatePolicy::escapeTo, Assembler.none(), Encoder.utf8());
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("<p>￼ ￼</p>", byte[].class, Object[].class, String.class, int.class);
+    assertArrayEquals("<p>&lt;b&gt;café&lt;/b&gt; 42</p>".getBytes(UTF_8), HTML_UTF8.apply(template, "<b>café</b>", 42));
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("<p>￼</p>", byte[].class, Object[].class, String.class);
+    assertThrows(IllegalArgumentException.class, () -> HTML_UTF8.apply(template));
+  }
+
+  @Test
+  public void testStages() {
+    var template = TemplatedString.parse("value: ￼", String.class, Object[].class, String.class);
+    assertAll(
+        () -> assertEquals("value: 😀", FusedTemplatePolicy.of(Transformer.identity(), Assembler.truncate(9), Encoder.string())
+            .apply(template, "😀😀")),
+        () -> assertEquals("value: ", FusedTemplatePolicy.of(Transformer.identity(), Assembler.truncate(8), Encoder.string())
+            .apply(template, "😀😀")),
+        () -> assertEquals(9, FusedTemplatePolicy.of(Transformer.identity(), Assembler.none(), Encoder.utf8().andThen(bytes -> bytes.length))
+            .apply(template, "ab")),
+        () -> assertArrayEquals(new byte[] { 'v', 'a', 'l', 'u', 'e', ':', ' ', '?' },
+            FusedTemplatePolicy.of(Transformer.identity(), Assembler.none(), Encoder.utf8()).apply(template, "\uD800")),
+        () -> assertThrows(IllegalArgumentException.class, () -> Assembler.truncate(-1))
+    );
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(byte[].class, FusedTemplatePolicy.class, String.class, int.class),
+      Object[].class,
+      "<li>￼: ￼</li>"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndy() throws Throwable {
+    assertAll(
+        () -> assertArrayEquals("<li>&quot;été&quot;: 3</li>".getBytes(UTF_8), (byte[]) INDY.invokeExact(HTML_UTF8, "\"été\"", 3)),
+        () -> assertArrayEquals("<li>null: -1</li>".getBytes(UTF_8), (byte[]) INDY.invokeExact(HTML_UTF8, (String) null, -1))
+    );
+  }
+
+  @Test
+  public void testIndySeveralPolicies() throws Throwable {
+    var raw = FusedTemplatePolicy.of(Transformer.identity(), Assembler.truncate(10), Encoder.utf8());
+    assertAll(
+        () -> assertArrayEquals("<li>&lt;: 1</li>".getBytes(UTF_8), (byte[]) INDY.invokeExact(HTML_UTF8, "<", 1)),
+        () -> assertArrayEquals("<li><: 1</".getBytes(UTF_8), (byte[]) INDY.invokeExact(raw, "<", 1)),
+        () -> assertArrayEquals("<li>&lt;: 2</li>".getBytes(UTF_8), (byte[]) INDY.invokeExact(HTML_UTF8, "<", 2))
+    );
+  }
+}
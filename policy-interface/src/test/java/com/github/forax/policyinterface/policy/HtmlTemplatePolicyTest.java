@@ -0,0 +1,86 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HtmlTemplatePolicyTest {
+  private static final HtmlTemplatePolicy HTML = new HtmlTemplatePolicy();
+
+  @Test
+  public void testEscape() {
+    assertAll(
+        () -> assertEquals("&lt;a href=&quot;x&quot;&gt;Tom &amp; Jerry&#39;s&lt;/a&gt;",
+            HtmlTemplatePolicy.escape("<a href=\"x\">Tom & Jerry's</a>")),
+        () -> assertEquals("&amp;&amp;", HtmlTemplatePolicy.escape("&&")),
+        () -> assertEquals("", HtmlTemplatePolicy.escape("")),
+        () -> assertEquals("null", HtmlTemplatePolicy.escape(null))
+    );
+  }
+
+  @Test
+  public void testEscapeNothingToEscape() {
+    var text = "nothing to escape here, 1 + 2 = 3";
+    assertSame(text, HtmlTemplatePolicy.escape(text));
+  }
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("<p class=\"name\">￼</p><p>￼</p>",
+        String.class, Object[].class, String.class, int.class);
+    assertEquals("<p class=\"name\">Bob &lt;script&gt;</p><p>42</p>",
+        HTML.apply(template, "Bob <script>", 42));
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("<p>￼</p>", String.class, Object[].class, String.class);
+    assertThrows(IllegalArgumentException.class, () -> HTML.apply(template));
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, HtmlTemplatePolicy.class, String.class, int.class, double.class, char.class, Object.class),
+      Object[].class,
+      "<li title='￼'>￼ ￼ ￼ ￼</li>"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndy() throws Throwable {
+    assertAll(
+        () -> assertEquals("<li title='O&#39;Neil'>3 2.5 &amp; [&lt;b&gt;]</li>",
+            (String) INDY.invokeExact(HTML, "O'Neil", 3, 2.5, '&', (Object) List.of("<b>"))),
+        () -> assertEquals("<li title='null'>-1 NaN a null</li>",
+            (String) INDY.invokeExact(HTML, (String) null, -1, Double.NaN, 'a', (Object) null))
+    );
+  }
+
+  private static final MethodHandle INDY_BOXED = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, HtmlTemplatePolicy.class, Integer.class, Character.class, StringBuilder.class),
+      Object[].class,
+      "￼￼￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyBoxed() throws Throwable {
+    assertAll(
+        () -> assertEquals("12&gt;&lt;&gt;",
+            (String) INDY_BOXED.invokeExact(HTML, (Integer) 12, (Character) '>', new StringBuilder("<>"))),
+        () -> assertEquals("nullnullnull",
+            (String) INDY_BOXED.invokeExact(HTML, (Integer) null, (Character) null, (StringBuilder) null))
+    );
+  }
+}
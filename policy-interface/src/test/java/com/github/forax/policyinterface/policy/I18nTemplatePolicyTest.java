@@ -0,0 +1,151 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.Locale;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class I18nTemplatePolicyTest {
+  private static final I18nTemplatePolicy US = new I18nTemplatePolicy(Locale.US);
+  private static final I18nTemplatePolicy FRANCE = new I18nTemplatePolicy(Locale.FRANCE);
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("￼ has ￼", String.class, Object[].class, String.class, long.class);
+    assertAll(
+        () -> assertEquals("Bob has 1,234,567", US.apply(template, "Bob", 1_234_567L)),
+        () -> assertEquals("Bob has " + NumberFormat.getIntegerInstance(Locale.FRANCE).format(1_234_567L),
+            FRANCE.apply(template, "Bob", 1_234_567L))
+    );
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("￼", String.class, Object[].class, int.class);
+    assertThrows(IllegalArgumentException.class, () -> US.apply(template));
+  }
+
+  @Test
+  public void testApplyPlural() {
+    var template = TemplatedString.parse("￼ {message|messages}", String.class, Object[].class, int.class);
+    assertAll(
+        () -> assertEquals("0 messages", US.apply(template, 0)),
+        () -> assertEquals("1 message", US.apply(template, 1)),
+        () -> assertEquals("2 messages", US.apply(template, 2)),
+        () -> assertEquals("0 message", FRANCE.apply(template, 0)),
+        () -> assertEquals("1 message", FRANCE.apply(template, 1)),
+        () -> assertEquals("2 messages", FRANCE.apply(template, 2))
+    );
+  }
+
+  @Test
+  public void testApplyDouble() {
+    var template = TemplatedString.parse("￼", String.class, Object[].class, double.class);
+    for (var locale : List.of(Locale.US, Locale.FRANCE)) {
+      var policy = new I18nTemplatePolicy(locale);
+      var numberFormat = NumberFormat.getInstance(locale);
+      for (var value : new double[] { 0.0, 1.5, 0.0005, 0.0015, 2.675, -1_234.5678, 1e-10, 1e20, Double.MAX_VALUE,
+          Double.NaN, Double.NEGATIVE_INFINITY }) {
+        assertEquals(numberFormat.format(value), policy.apply(template, value), "" + value);
+      }
+    }
+  }
+
+  @Test
+  public void testApplyNegativeZero() {
+    var template = TemplatedString.parse("￼", String.class, Object[].class, double.class);
+    var numberFormat = NumberFormat.getInstance(Locale.US);
+    assertAll(
+        () -> assertEquals("-0", US.apply(template, -0.0)),
+        () -> assertEquals(numberFormat.format(-0.0), US.apply(template, -0.0)),
+        () -> assertEquals(numberFormat.format(-0.0001), US.apply(template, -0.0001)),
+        () -> assertEquals(numberFormat.format(-0.0005), US.apply(template, -0.0005))
+    );
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, I18nTemplatePolicy.class, int.class, double.class, LocalDate.class),
+      Object[].class,
+      "￼ {file|files} of ￼ MB, last modified ￼"
+  ).dynamicInvoker();
+
+  private static String expected(Locale locale, int count, double size, LocalDate date) {
+    var plural = count == 1 || (count == 0 && locale.getLanguage().equals("fr"))? "file": "files";
+    return NumberFormat.getIntegerInstance(locale).format(count) + " " + plural +
+        " of " + NumberFormat.getInstance(locale).format(size) +
+        " MB, last modified " + DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale).format(date);
+  }
+
+  @Test
+  public void testIndy() throws Throwable {
+    var date = LocalDate.of(2021, 10, 30);
+    assertAll(
+        () -> assertEquals(expected(Locale.US, 1, 1.5, date), (String) INDY.invokeExact(US, 1, 1.5, date)),
+        () -> assertEquals(expected(Locale.FRANCE, 0, 1234.5678, date), (String) INDY.invokeExact(FRANCE, 0, 1234.5678, date)),
+        () -> assertEquals(expected(Locale.US, 12_345, -0.125, date), (String) INDY.invokeExact(US, 12_345, -0.125, date)),
+        () -> assertEquals(expected(Locale.FRANCE, 2, 1e9, date), (String) INDY.invokeExact(FRANCE, 2, 1e9, date))
+    );
+  }
+
+  private static final MethodHandle INDY_MANY_LOCALES = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, I18nTemplatePolicy.class, long.class, double.class),
+      Object[].class,
+      "￼/￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyMoreLocalesThanTheCache() throws Throwable {
+    var locales = List.of(Locale.US, Locale.FRANCE, Locale.GERMANY, Locale.ITALY, Locale.JAPAN,
+        Locale.CHINA, new Locale("es", "ES"), new Locale("de", "CH"));
+    for (var i = 0; i < 3; i++) {
+      for (var locale : locales) {
+        var text = (String) INDY_MANY_LOCALES.invokeExact(new I18nTemplatePolicy(locale), -9_876_543L, 3.14159);
+        assertEquals(NumberFormat.getIntegerInstance(locale).format(-9_876_543L) + "/" +
+            NumberFormat.getInstance(locale).format(3.14159), text);
+      }
+    }
+  }
+
+  private static final MethodHandle INDY_EQUAL_LOCALES = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, I18nTemplatePolicy.class, long.class),
+      Object[].class,
+      "total: ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyEqualLocales() throws Throwable {
+    // equal locales share the same specialization
+    for (var i = 0; i < I18nTemplatePolicy.MAX_LOCALES * 2; i++) {
+      var text = (String) INDY_EQUAL_LOCALES.invokeExact(new I18nTemplatePolicy(new Locale("fr", "FR")), 1_234L);
+      assertEquals("total: " + NumberFormat.getIntegerInstance(Locale.FRANCE).format(1_234L), text);
+    }
+    for (var locale : List.of(Locale.US, Locale.GERMANY, Locale.JAPAN)) {
+      var text = (String) INDY_EQUAL_LOCALES.invokeExact(new I18nTemplatePolicy(locale), 1_234L);
+      assertEquals("total: " + NumberFormat.getIntegerInstance(locale).format(1_234L), text);
+    }
+  }
+
+  @Test
+  public void testLocaleNonNull() {
+    assertThrows(NullPointerException.class, () -> new I18nTemplatePolicy(null));
+  }
+}
@@ -0,0 +1,142 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoggingTemplatePolicyTest {
+  static final class RecordingLogger implements Logger {
+    final List<String> messages = new ArrayList<>();
+
+    @Override
+    public String getName() {
+      return "recording";
+    }
+
+    @Override
+    public boolean isLoggable(Level level) {
+      return true;
+    }
+
+    @Override
+    public void log(Level level, ResourceBundle bundle, String msg, Throwable thrown) {
+      messages.add(level + " " + msg);
+    }
+
+    @Override
+    public void log(Level level, ResourceBundle bundle, String format, Object... params) {
+      messages.add(level + " " + (params == null? format: MessageFormat.format(format, params)));
+    }
+  }
+
+  // count the number of calls to toString()
+  static final class Counter {
+    int count;
+
+    @Override
+    public String toString() {
+      return "counter" + ++count;
+    }
+  }
+
+  @Test
+  public void testIsEnabled() {
+    var logger = TemplateLogger.of(new RecordingLogger(), Level.INFO);
+    assertAll(
+        () -> assertFalse(logger.isEnabled(Level.DEBUG)),
+        () -> assertTrue(logger.isEnabled(Level.INFO)),
+        () -> assertTrue(logger.isEnabled(Level.ERROR)),
+        () -> assertFalse(logger.isEnabled(Level.OFF))
+    );
+  }
+
+  @Test
+  public void testApply() {
+    var sink = new RecordingLogger();
+    var logger = TemplateLogger.of(sink, Level.INFO);
+    var template = TemplatedString.parse("value ￼", Void.class, Object[].class, int.class);
+    logger.at(Level.DEBUG).apply(template, 1);
+    logger.at(Level.INFO).apply(template, 2);
+    logger.setLevel(Level.DEBUG);
+    logger.at(Level.DEBUG).apply(template, 3);
+    assertEquals(List.of("INFO value 2", "DEBUG value 3"), sink.messages);
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var logger = TemplateLogger.of(new RecordingLogger(), Level.INFO);
+    var template = TemplatedString.parse("value ￼", Void.class, Object[].class, int.class);
+    assertThrows(IllegalArgumentException.class, () -> logger.at(Level.INFO).apply(template));
+  }
+
+  private static MethodHandle indy() {
+    return TemplatePolicyFactory.boostrap(
+        MethodHandles.lookup(),
+        "",
+        methodType(void.class, LoggingTemplatePolicy.class, Object.class, int.class),
+        Object[].class,
+        "object ￼ value ￼"
+    ).dynamicInvoker();
+  }
+
+  @Test
+  public void testIndyDisabledDoesNotFormat() throws Throwable {
+    var indy = indy();
+    var sink = new RecordingLogger();
+    var logger = TemplateLogger.of(sink, Level.INFO);
+    var counter = new Counter();
+    for (var i = 0; i < 10; i++) {
+      indy.invokeExact(logger.at(Level.DEBUG), (Object) counter, i);
+    }
+    assertAll(
+        () -> assertEquals(0, counter.count),
+        () -> assertEquals(List.of(), sink.messages)
+    );
+  }
+
+  @Test
+  public void testIndyLevelChange() throws Throwable {
+    var indy = indy();
+    var sink = new RecordingLogger();
+    var logger = TemplateLogger.of(sink, Level.INFO);
+    var counter = new Counter();
+    indy.invokeExact(logger.at(Level.DEBUG), (Object) counter, 1);
+    logger.setLevel(Level.DEBUG);
+    indy.invokeExact(logger.at(Level.DEBUG), (Object) counter, 2);
+    indy.invokeExact(logger.at(Level.DEBUG), (Object) counter, 3);
+    logger.setLevel(Level.WARNING);
+    indy.invokeExact(logger.at(Level.DEBUG), (Object) counter, 4);
+    logger.setLevel(Level.ALL);
+    indy.invokeExact(logger.at(Level.DEBUG), (Object) counter, 5);
+    assertEquals(List.of("DEBUG object counter1 value 2", "DEBUG object counter2 value 3", "DEBUG object counter3 value 5"),
+        sink.messages);
+  }
+
+  @Test
+  public void testIndySeveralPolicies() throws Throwable {
+    var indy = indy();
+    var sink = new RecordingLogger();
+    var logger = TemplateLogger.of(sink, Level.INFO);
+    var counter = new Counter();
+    indy.invokeExact(logger.at(Level.INFO), (Object) counter, 1);
+    indy.invokeExact(logger.at(Level.DEBUG), (Object) counter, 2);
+    indy.invokeExact(logger.at(Level.ERROR), (Object) counter, 3);
+    assertEquals(List.of("INFO object counter1 value 1", "ERROR object counter2 value 3"), sink.messages);
+  }
+}
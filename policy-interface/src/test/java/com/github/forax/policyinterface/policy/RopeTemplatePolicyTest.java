@@ -0,0 +1,99 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RopeTemplatePolicyTest {
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("name: ￼ age: ￼", Rope.class, Object[].class, String.class, int.class);
+    var rope = new RopeTemplatePolicy().apply(template, "Bob", 24);
+    assertAll(
+        () -> assertEquals("name: Bob age: 24", rope.toString()),
+        () -> assertEquals(17, rope.length()),
+        () -> assertEquals('B', rope.charAt(6)),
+        () -> assertEquals("age", rope.subSequence(10, 13))
+    );
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("name: ￼", Rope.class, Object[].class, String.class);
+    assertThrows(IllegalArgumentException.class, () -> new RopeTemplatePolicy().apply(template));
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(Rope.class, RopeTemplatePolicy.class, Object.class),
+      Object[].class,
+      "<div>￼</div>"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndySharesNestedRope() throws Throwable {
+    var policy = new RopeTemplatePolicy();
+    var inner = (Rope) INDY.invokeExact(policy, (Object) "hello");
+    var outer = (Rope) INDY.invokeExact(policy, (Object) inner);
+    assertAll(
+        () -> assertEquals("<div><div>hello</div></div>", outer.toString()),
+        () -> assertSame(inner, outer.fragment(1))
+    );
+  }
+
+  @Test
+  public void testIndyDeepNesting() throws Throwable {
+    var policy = new RopeTemplatePolicy();
+    var depth = 100_000;
+    var rope = (Rope) INDY.invokeExact(policy, (Object) "x");
+    for (var i = 1; i < depth; i++) {
+      rope = (Rope) INDY.invokeExact(policy, (Object) rope);
+    }
+    var expected = "<div>".repeat(depth) + "x" + "</div>".repeat(depth);
+    var result = rope;
+    assertAll(
+        () -> assertEquals(expected.length(), result.length()),
+        () -> assertEquals('x', result.charAt(5 * depth)),
+        () -> assertEquals(expected, result.toString())
+    );
+  }
+
+  @Test
+  public void testIndyNonRopeValue() throws Throwable {
+    var policy = new RopeTemplatePolicy();
+    var builder = new StringBuilder("before");
+    var rope = (Rope) INDY.invokeExact(policy, (Object) builder);
+    builder.append(" after");
+    assertAll(
+        () -> assertEquals("<div>before</div>", rope.toString()),
+        () -> assertEquals("<div>null</div>", ((Rope) INDY.invokeExact(policy, (Object) null)).toString()),
+        () -> assertEquals("<div>42</div>", ((Rope) INDY.invokeExact(policy, (Object) 42)).toString())
+    );
+  }
+
+  @Test
+  public void testAppendTo() throws IOException {
+    var rope = Rope.of("a", Rope.of("b", "", Rope.of("c")), new StringBuilder("d"));
+    var writer = rope.appendTo(new StringWriter());
+    assertAll(
+        () -> assertEquals("abcd", writer.toString()),
+        () -> assertEquals("abcd", rope.toString()),
+        () -> assertTrue(Rope.of("", "").isEmpty()),
+        () -> assertSame(Rope.EMPTY, Rope.of()),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> rope.charAt(4))
+    );
+  }
+}
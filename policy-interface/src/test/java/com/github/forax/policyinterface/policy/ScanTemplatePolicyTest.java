@@ -0,0 +1,126 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScanTemplatePolicyTest {
+  private static TemplateScanner scanner(String template, Class<?>... parameterTypes) {
+    return TemplateScanner.of(TemplatedString.parse(template, TemplateScanner.class, Object[].class, parameterTypes));
+  }
+
+  @Test
+  public void testScan() {
+    var scanner = scanner("GET ￼ HTTP/1.1 ￼ ￼", String.class, int.class, long.class);
+    assertAll(
+        () -> assertArrayEquals(new Object[] { "/index.html", 200, 5123L }, scanner.scan("GET /index.html HTTP/1.1 200 5123")),
+        () -> assertArrayEquals(new Object[] { "", -1, 0L }, scanner.scan("GET  HTTP/1.1 -1 0")),
+        () -> assertNull(scanner.scan("POST /index.html HTTP/1.1 200 5123")),
+        () -> assertNull(scanner.scan("GET /index.html HTTP/1.0 200 5123")),
+        () -> assertNull(scanner.scan("GET /index.html HTTP/1.1 200 5123 ")),
+        () -> assertNull(scanner.scan("GET /index.html HTTP/1.1 2OO 5123")),
+        () -> assertNull(scanner.scan("GET /index.html HTTP/1.1 - 5123")),
+        () -> assertNull(scanner.scan("GET /index.html HTTP/1.1 200"))
+    );
+  }
+
+  @Test
+  public void testScanLastString() {
+    var scanner = scanner("user ￼ said ￼", int.class, String.class);
+    assertAll(
+        () -> assertArrayEquals(new Object[] { 42, "hello said bob" }, scanner.scan("user 42 said hello said bob")),
+        () -> assertArrayEquals(new Object[] { 42, "" }, scanner.scan("user 42 said "))
+    );
+  }
+
+  @Test
+  public void testScanFirstOccurrence() {
+    // no backtracking, the string stops at the first occurrence of the text that follows
+    var scanner = scanner("￼: ￼", String.class, String.class);
+    assertArrayEquals(new Object[] { "a", "b: c" }, scanner.scan("a: b: c"));
+  }
+
+  @Test
+  public void testScanOverflow() {
+    var scanner = scanner("￼/￼", Integer.class, Long.class);
+    assertAll(
+        () -> assertArrayEquals(new Object[] { Integer.MIN_VALUE, Long.MAX_VALUE }, scanner.scan(Integer.MIN_VALUE + "/" + Long.MAX_VALUE)),
+        () -> assertNull(scanner.scan("2147483648/0")),
+        () -> assertNull(scanner.scan("0/9223372036854775808"))
+    );
+  }
+
+  @Test
+  public void testScanIntoArray() {
+    var scanner = scanner("x=￼", int.class);
+    var values = new Object[1];
+    assertAll(
+        () -> assertTrue(scanner.scan("x=3", values)),
+        () -> assertArrayEquals(new Object[] { 3 }, values),
+        () -> assertFalse(scanner.scan("y=3", values)),
+        () -> assertThrows(IllegalArgumentException.class, () -> scanner.scan("x=3", new Object[0]))
+    );
+  }
+
+  @Test
+  public void testNoHole() {
+    var scanner = scanner("hello");
+    assertAll(
+        () -> assertArrayEquals(new Object[0], scanner.scan("hello")),
+        () -> assertNull(scanner.scan("hello!"))
+    );
+  }
+
+  @Test
+  public void testInvalidTemplates() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> scanner("￼￼", String.class, int.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> scanner("￼1", int.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> scanner("￼", double.class))
+    );
+  }
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("id: ￼", TemplateScanner.class, Object[].class, long.class);
+    var scanner = new ScanTemplatePolicy().apply(template, 0L);
+    assertArrayEquals(new Object[] { 12L }, scanner.scan("id: 12"));
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("id: ￼", TemplateScanner.class, Object[].class, long.class);
+    assertThrows(IllegalArgumentException.class, () -> new ScanTemplatePolicy().apply(template));
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(TemplateScanner.class, ScanTemplatePolicy.class, String.class, int.class),
+      Object[].class,
+      "user ￼ logged in ￼ times"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndy() throws Throwable {
+    var policy = new ScanTemplatePolicy();
+    var scanner = (TemplateScanner) INDY.invokeExact(policy, (String) null, 0);
+    assertAll(
+        () -> assertArrayEquals(new Object[] { "bob", 3 }, scanner.scan("user bob logged in 3 times")),
+        () -> assertNull(scanner.scan("user bob logged out")),
+        () -> assertSame(scanner, (TemplateScanner) INDY.invokeExact(policy, "ana", 1))
+    );
+  }
+}
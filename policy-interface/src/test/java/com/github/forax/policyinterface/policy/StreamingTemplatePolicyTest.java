@@ -0,0 +1,238 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingTemplatePolicyTest {
+  // a subscriber that requests one chunk at a time
+  static final class Collector implements Flow.Subscriber<ByteBuffer> {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final List<Integer> chunkSizes = new ArrayList<>();
+    Flow.Subscription subscription;
+    boolean completed;
+    Throwable error;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+      chunkSizes.add(item.remaining());
+      var bytes = new byte[item.remaining()];
+      item.get(bytes);
+      output.writeBytes(bytes);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+
+    String text() {
+      return output.toString(UTF_8);
+    }
+  }
+
+  private static Collector collect(Flow.Publisher<ByteBuffer> publisher) {
+    var collector = new Collector();
+    publisher.subscribe(collector);
+    collector.subscription.request(Long.MAX_VALUE);
+    return collector;
+  }
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("name: ￼ age: ￼", Flow.Publisher.class, Object[].class, String.class, int.class);
+    var collector = collect(new StreamingTemplatePolicy().apply(template, "Bob", 24));
+    assertAll(
+        () -> assertEquals("name: Bob age: 24", collector.text()),
+        () -> assertTrue(collector.completed)
+    );
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("name: ￼", Flow.Publisher.class, Object[].class, String.class);
+    assertThrows(IllegalArgumentException.class, () -> new StreamingTemplatePolicy().apply(template));
+  }
+
+  @Test
+  public void testApplyPrimitives() {
+    var template = TemplatedString.parse("￼ ￼ ￼ ￼ ￼ ￼ ￼", Flow.Publisher.class, Object[].class,
+        int.class, long.class, double.class, float.class, short.class, byte.class, boolean.class);
+    var args = new Object[] { Integer.MIN_VALUE, Long.MAX_VALUE, -0.125, 1.5f, (short) -7, (byte) 42, true };
+    var expected = "-2147483648 9223372036854775807 -0.125 1.5 -7 42 true";
+    // with a small chunk size, the numbers are split between chunks
+    var collector = collect(new StreamingTemplatePolicy(5).apply(template, args));
+    assertAll(
+        () -> assertEquals(expected, collector.text()),
+        () -> assertEquals(expected, collect(new StreamingTemplatePolicy().apply(template, args)).text()),
+        () -> assertTrue(collector.chunkSizes.stream().allMatch(size -> size <= 5))
+    );
+  }
+
+  @Test
+  public void testChunkSizeTooSmall() {
+    assertThrows(IllegalArgumentException.class, () -> new StreamingTemplatePolicy(3));
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(Flow.Publisher.class, StreamingTemplatePolicy.class, String.class, List.class),
+      Object[].class,
+      "<h1>￼</h1><ul>￼</ul>"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndyChunks() throws Throwable {
+    var rows = IntStream.range(0, 1_000).mapToObj(i -> "<li>élément " + i + "</li>").toList();
+    var publisher = (Flow.Publisher<ByteBuffer>) INDY.invokeExact(new StreamingTemplatePolicy(64), "titre €", (List<?>) rows);
+    var collector = collect(publisher);
+    var expected = "<h1>titre €</h1><ul>" + String.join("", rows) + "</ul>";
+    assertAll(
+        () -> assertEquals(expected, collector.text()),
+        () -> assertTrue(collector.completed),
+        () -> assertTrue(collector.chunkSizes.stream().allMatch(size -> size > 0 && size <= 64))
+    );
+  }
+
+  @Test
+  public void testIndyBackPressure() throws Throwable {
+    var rows = IntStream.range(0, 1_000).mapToObj(i -> "row" + i).toList();
+    var publisher = (Flow.Publisher<ByteBuffer>) INDY.invokeExact(new StreamingTemplatePolicy(16), "title", (List<?>) rows);
+    var collector = new Collector();
+    publisher.subscribe(collector);
+    collector.subscription.request(2);
+    assertEquals(2, collector.chunkSizes.size());
+    collector.subscription.request(3);
+    assertEquals(5, collector.chunkSizes.size());
+    collector.subscription.cancel();
+    collector.subscription.request(10);
+    assertAll(
+        () -> assertEquals(5, collector.chunkSizes.size()),
+        () -> assertEquals(("<h1>title</h1><ul>" + String.join("", rows)).substring(0, 16 * 5), collector.text())
+    );
+  }
+
+  @Test
+  public void testIndySeveralSubscribers() throws Throwable {
+    var publisher = (Flow.Publisher<ByteBuffer>) INDY.invokeExact(new StreamingTemplatePolicy(), "title", (List<?>) List.of(1, 2, 3));
+    assertAll(
+        () -> assertEquals("<h1>title</h1><ul>123</ul>", collect(publisher).text()),
+        () -> assertEquals("<h1>title</h1><ul>123</ul>", collect(publisher).text())
+    );
+  }
+
+  @Test
+  public void testIndyInvalidRequest() throws Throwable {
+    var publisher = (Flow.Publisher<ByteBuffer>) INDY.invokeExact(new StreamingTemplatePolicy(), "title", (List<?>) List.of());
+    var collector = new Collector();
+    publisher.subscribe(collector);
+    collector.subscription.request(0);
+    assertInstanceOf(IllegalArgumentException.class, collector.error);
+  }
+
+  @Test
+  public void testIndyRenderingError() throws Throwable {
+    var rows = Stream.of("a", "b").map(s -> {
+      if (s.equals("b")) {
+        throw new IllegalStateException();
+      }
+      return s;
+    });
+    var template = TemplatedString.parse("<ul>￼</ul>", Flow.Publisher.class, Object[].class, Stream.class);
+    var collector = collect(new StreamingTemplatePolicy().apply(template, rows));
+    assertAll(
+        () -> assertInstanceOf(IllegalStateException.class, collector.error),
+        () -> assertEquals("", collector.text()),
+        () -> assertFalse(collector.completed)
+    );
+  }
+
+  // renders 64 MiB (8 times the heap) with a small heap, run in another VM
+  public static final class LargeDocument {
+    private static final long ROW_COUNT = 1L << 20;
+    private static final int ROW_SIZE = 64;
+
+    public static void main(String[] args) {
+      // a row is exactly 64 bytes
+      var rows = Stream.iterate(0L, i -> i < ROW_COUNT, i -> i + 1)
+          .map(i -> String.format("<tr><td>%010d</td><td>%034d</td></tr>", i, i).substring(0, ROW_SIZE - 1) + "\n");
+      var template = TemplatedString.parse("￼", Flow.Publisher.class, Object[].class, Stream.class);
+      var publisher = new StreamingTemplatePolicy().apply(template, rows);
+      var total = new long[1];
+      publisher.subscribe(new Flow.Subscriber<>() {
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+          this.subscription = subscription;
+          subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+          total[0] += item.remaining();
+          subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          throwable.printStackTrace();
+          System.exit(1);
+        }
+
+        @Override
+        public void onComplete() {
+          System.out.println(total[0]);
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testLargeDocumentWithSmallHeap() throws IOException, InterruptedException {
+    var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    var process = new ProcessBuilder(java, "--enable-preview", "-Xmx8m",
+          "-cp", System.getProperty("java.class.path"), LargeDocument.class.getName())
+        .redirectErrorStream(true)
+        .start();
+    var output = new String(process.getInputStream().readAllBytes(), UTF_8).trim();
+    assertTrue(process.waitFor(5, TimeUnit.MINUTES));
+    assertAll(
+        () -> assertEquals(0, process.exitValue(), output),
+        () -> assertEquals(String.valueOf(1L << 26), output)
+    );
+  }
+}
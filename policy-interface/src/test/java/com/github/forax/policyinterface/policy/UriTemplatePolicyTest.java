@@ -0,0 +1,73 @@
+package com.github.forax.policyinterface.policy;
+
+import com.github.forax.policyinterface.TemplatedString;
+import com.github.forax.policyinterface.policy.UriTemplatePolicy.Context;
+import com.github.forax.policyinterface.runtime.TemplatePolicyFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class UriTemplatePolicyTest {
+  private static final UriTemplatePolicy URI_POLICY = new UriTemplatePolicy();
+
+  @Test
+  public void testContexts() {
+    var template = TemplatedString.parse("https://￼/users/￼?￼=￼&page=￼#￼",
+        String.class, Object[].class, String.class, String.class, String.class, String.class, int.class, String.class);
+    assertEquals(
+        List.of(Context.PATH, Context.PATH, Context.QUERY_NAME, Context.QUERY_VALUE, Context.QUERY_VALUE, Context.FRAGMENT),
+        UriTemplatePolicy.contexts(template));
+  }
+
+  @Test
+  public void testApply() {
+    var template = TemplatedString.parse("/users/￼?q=￼#￼",
+        String.class, Object[].class, String.class, String.class, String.class);
+    assertEquals("/users/a%2Fb%20c?q=x%26y=z%2B1#top/1?",
+        URI_POLICY.apply(template, "a/b c", "x&y=z+1", "top/1?"));
+  }
+
+  @Test
+  public void testApplyWrongNumberOfArguments() {
+    var template = TemplatedString.parse("/￼", String.class, Object[].class, String.class);
+    assertThrows(IllegalArgumentException.class, () -> URI_POLICY.apply(template));
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyFactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, UriTemplatePolicy.class, String.class, char.class, String.class, String.class, long.class, Object.class),
+      Object[].class,
+      "https://example.com/￼/￼?￼=￼&page=￼#￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testIndy() throws Throwable {
+    assertAll(
+        () -> assertEquals("https://example.com/caf%C3%A9/%23?tag%3D=%F0%9F%98%80%20%26&page=-42#null",
+            (String) INDY.invokeExact(URI_POLICY, "café", '#', "tag=", "😀 &", -42L, (Object) null)),
+        () -> assertEquals("https://example.com/a:b@c/~?x=a=b&page=0#List(1,%202)",
+            (String) INDY.invokeExact(URI_POLICY, "a:b@c", '~', "x", "a=b", 0L, (Object) "List(1, 2)"))
+    );
+  }
+
+  @Test
+  public void testIndyIsAValidURI() throws Throwable {
+    var text = (String) INDY.invokeExact(URI_POLICY, "<%>", '\\', "[a]", "{ }", 1L, (Object) "\"|^`");
+    assertEquals("/%3C%25%3E/%5C", URI.create(text).getRawPath());
+  }
+
+  @Test
+  public void testIndyUnpairedSurrogate() throws Throwable {
+    var text = (String) INDY.invokeExact(URI_POLICY, "\uD83D", '\uDE00', "", "", 1L, (Object) "");
+    assertEquals("https://example.com/%EF%BF%BD/%EF%BF%BD?=&page=1#", text);
+  }
+}
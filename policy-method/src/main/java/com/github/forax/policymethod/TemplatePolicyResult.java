@@ -2,34 +2,147 @@ package com.github.forax.policymethod;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
+import java.util.List;
 
 public final class TemplatePolicyResult<T> {
   private final T result;
+  private final Class<?> primitiveType;  // null if the result is not a primitive
+  private final long primitiveValue;  // the value of a primitive result, the bits of a double
   private final PolicyFactory policyFactory;
+  private final boolean constant;
+  private final List<SwitchPoint> switchPoints;
 
   @FunctionalInterface
   public interface PolicyFactory {
     MethodHandle asMethodHandle(TemplatedString templatedString, MethodType callsiteType) throws Throwable;
   }
 
-  private TemplatePolicyResult(T result, PolicyFactory policyFactory) {
+  private TemplatePolicyResult(T result, PolicyFactory policyFactory, boolean constant, List<SwitchPoint> switchPoints) {
+    this(result, null, 0, policyFactory, constant, switchPoints);
+  }
+
+  private TemplatePolicyResult(T result, Class<?> primitiveType, long primitiveValue,
+                               PolicyFactory policyFactory, boolean constant, List<SwitchPoint> switchPoints) {
     this.result = result;
+    this.primitiveType = primitiveType;
+    this.primitiveValue = primitiveValue;
     this.policyFactory = policyFactory;
+    this.constant = constant;
+    this.switchPoints = switchPoints;
   }
 
+  // a primitive result is boxed
+  @SuppressWarnings("unchecked")
   public T result() {
-    return result;
+    if (primitiveType == null) {
+      return result;
+    }
+    if (primitiveType == int.class) {
+      return (T) (Integer) resultAsInt();
+    }
+    if (primitiveType == long.class) {
+      return (T) (Long) resultAsLong();
+    }
+    if (primitiveType == double.class) {
+      return (T) (Double) resultAsDouble();
+    }
+    return (T) (Boolean) resultAsBoolean();
+  }
+
+  // the primitive type of the result or null if the result is not a primitive
+  public Class<?> primitiveType() {
+    return primitiveType;
+  }
+
+  public int resultAsInt() {
+    checkPrimitiveType(int.class);
+    return (int) primitiveValue;
+  }
+
+  public long resultAsLong() {
+    checkPrimitiveType(long.class);
+    return primitiveValue;
+  }
+
+  public double resultAsDouble() {
+    checkPrimitiveType(double.class);
+    return Double.longBitsToDouble(primitiveValue);
+  }
+
+  public boolean resultAsBoolean() {
+    checkPrimitiveType(boolean.class);
+    return primitiveValue != 0;
+  }
+
+  private void checkPrimitiveType(Class<?> type) {
+    if (primitiveType != type) {
+      throw new IllegalStateException("the result is not a " + type.getName());
+    }
   }
 
   public PolicyFactory policyFactory() {
     return policyFactory;
   }
 
+  public boolean isConstant() {
+    return constant;
+  }
+
+  public List<SwitchPoint> switchPoints() {
+    return switchPoints;
+  }
+
   public static <T> TemplatePolicyResult<T> result(T result) {
-    return new TemplatePolicyResult<>(result, null);
+    return new TemplatePolicyResult<>(result, null, false, List.of());
   }
 
   public static <T> TemplatePolicyResult<T> resultAndPolicyFactory(T result, PolicyFactory policyFactory) {
-    return new TemplatePolicyResult<>(result, policyFactory);
+    return new TemplatePolicyResult<>(result, policyFactory, false, List.of());
+  }
+
+  // the method handle returned by the policy factory depends on the switch points,
+  // the switch points must be read before computing the result, when one is invalidated the call site is re-linked
+  public static <T> TemplatePolicyResult<T> resultAndPolicyFactory(T result, PolicyFactory policyFactory, SwitchPoint... switchPoints) {
+    return new TemplatePolicyResult<>(result, policyFactory, false, List.of(switchPoints));
+  }
+
+  // a primitive result is not boxed if the return type of the call site is the same primitive type
+  public static TemplatePolicyResult<Integer> intResult(int result) {
+    return new TemplatePolicyResult<>(null, int.class, result, null, false, List.of());
+  }
+
+  public static TemplatePolicyResult<Integer> intResultAndPolicyFactory(int result, PolicyFactory policyFactory, SwitchPoint... switchPoints) {
+    return new TemplatePolicyResult<>(null, int.class, result, policyFactory, false, List.of(switchPoints));
+  }
+
+  public static TemplatePolicyResult<Long> longResult(long result) {
+    return new TemplatePolicyResult<>(null, long.class, result, null, false, List.of());
+  }
+
+  public static TemplatePolicyResult<Long> longResultAndPolicyFactory(long result, PolicyFactory policyFactory, SwitchPoint... switchPoints) {
+    return new TemplatePolicyResult<>(null, long.class, result, policyFactory, false, List.of(switchPoints));
+  }
+
+  public static TemplatePolicyResult<Double> doubleResult(double result) {
+    return new TemplatePolicyResult<>(null, double.class, Double.doubleToRawLongBits(result), null, false, List.of());
+  }
+
+  public static TemplatePolicyResult<Double> doubleResultAndPolicyFactory(double result, PolicyFactory policyFactory, SwitchPoint... switchPoints) {
+    return new TemplatePolicyResult<>(null, double.class, Double.doubleToRawLongBits(result), policyFactory, false, List.of(switchPoints));
+  }
+
+  public static TemplatePolicyResult<Boolean> booleanResult(boolean result) {
+    return new TemplatePolicyResult<>(null, boolean.class, result? 1: 0, null, false, List.of());
+  }
+
+  public static TemplatePolicyResult<Boolean> booleanResultAndPolicyFactory(boolean result, PolicyFactory policyFactory, SwitchPoint... switchPoints) {
+    return new TemplatePolicyResult<>(null, boolean.class, result? 1: 0, policyFactory, false, List.of(switchPoints));
+  }
+
+  // the result is immutable and only depends on the templated string,
+  // so a templated string with no parameter is evaluated once and its result is shared
+  public static <T> TemplatePolicyResult<T> constantResult(T result) {
+    return new TemplatePolicyResult<>(result, null, true, List.of());
   }
 }
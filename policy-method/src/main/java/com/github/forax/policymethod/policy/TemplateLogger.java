@@ -0,0 +1,183 @@
+package com.github.forax.policymethod.policy;
+
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.TemplatedString;
+import com.github.forax.policymethod.TemplatedString.Parameter;
+import com.github.forax.policymethod.TemplatedString.Text;
+import com.github.forax.policymethod.runtime.TemplatePolicySwitch;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.StringConcatException;
+import java.lang.invoke.StringConcatFactory;
+import java.lang.invoke.SwitchPoint;
+import java.util.ArrayList;
+import java.util.Objects;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A logger with a level that can be changed at runtime, the template-policy methods
+ * {@link #debug(TemplatedString, Object...)}, {@link #info(TemplatedString, Object...)},
+ * {@link #warning(TemplatedString, Object...)} and {@link #error(TemplatedString, Object...)}
+ * log the formatted template if their level is enabled, by example
+ * <pre>
+ *   private static final TemplateLogger LOGGER = TemplateLogger.of(System.getLogger("app"), Level.INFO);
+ *   ...
+ *   LOGGER.debug."value \(value)";
+ * </pre>
+ *
+ * When linked, if the level is disabled, the log statement does nothing, the message is not formatted,
+ * the arguments are not boxed. The linked log statements are guarded by a {@link SwitchPoint}
+ * of a {@link TemplatePolicySwitch} which is invalidated each time the level changes.
+ */
+public final class TemplateLogger {
+  private static final MethodHandle IS_LOGGER, LOG, LOG_TEMPLATE;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      IS_LOGGER = lookup.findStatic(TemplateLogger.class, "isLogger",
+          methodType(boolean.class, TemplateLogger.class, TemplateLogger.class));
+      LOG = lookup.findVirtual(Logger.class, "log", methodType(void.class, Level.class, String.class));
+      LOG_TEMPLATE = lookup.findVirtual(TemplateLogger.class, "log",
+          methodType(TemplatePolicyResult.class, Level.class, TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final Logger sink;
+  private volatile Level level;
+  private final TemplatePolicySwitch levelSwitch = new TemplatePolicySwitch();
+
+  private TemplateLogger(Logger sink, Level level) {
+    this.sink = sink;
+    this.level = level;
+  }
+
+  /**
+   * Creates a logger.
+   * @param sink the logger that receives the formatted messages.
+   * @param level the initial level.
+   * @return a new logger.
+   */
+  public static TemplateLogger of(Logger sink, Level level) {
+    Objects.requireNonNull(sink);
+    Objects.requireNonNull(level);
+    return new TemplateLogger(sink, level);
+  }
+
+  public Level level() {
+    return level;
+  }
+
+  /**
+   * Changes the level of the logger, all linked log statements are invalidated.
+   * @param level the new level.
+   */
+  public void setLevel(Level level) {
+    Objects.requireNonNull(level);
+    synchronized (this) {
+      if (this.level == level) {
+        return;
+      }
+      // the level must be changed before the switch point is invalidated
+      this.level = level;
+      levelSwitch.invalidate();
+    }
+  }
+
+  /**
+   * Returns true if a log statement at the level is enabled.
+   * @param statementLevel the level of a log statement.
+   * @return true if a log statement at the level is enabled.
+   */
+  public boolean isEnabled(Level statementLevel) {
+    var level = this.level;
+    return statementLevel != Level.OFF && level != Level.OFF && statementLevel.getSeverity() >= level.getSeverity();
+  }
+
+  // template-policy
+  public TemplatePolicyResult<Void> debug(TemplatedString templatedString, Object... args) {
+    return log(Level.DEBUG, templatedString, args);
+  }
+
+  // template-policy
+  public TemplatePolicyResult<Void> info(TemplatedString templatedString, Object... args) {
+    return log(Level.INFO, templatedString, args);
+  }
+
+  // template-policy
+  public TemplatePolicyResult<Void> warning(TemplatedString templatedString, Object... args) {
+    return log(Level.WARNING, templatedString, args);
+  }
+
+  // template-policy
+  public TemplatePolicyResult<Void> error(TemplatedString templatedString, Object... args) {
+    return log(Level.ERROR, templatedString, args);
+  }
+
+  private TemplatePolicyResult<Void> log(Level level, TemplatedString templatedString, Object... args) {
+    if (templatedString.parameters().size() != args.length) {
+      throw new IllegalArgumentException(templatedString + " does not accept " + args.length + " arguments");
+    }
+    var switchPoint = levelSwitch.switchPoint();  // must be read before the level
+    if (isEnabled(level)) {
+      var builder = new StringBuilder();
+      for (var segment : templatedString.segments()) {
+        if (segment instanceof Text text) {
+          builder.append(text.text());
+        } else {
+          builder.append(args[((Parameter) segment).index()]);
+        }
+      }
+      sink.log(level, builder.toString());
+    }
+    return TemplatePolicyResult.resultAndPolicyFactory(null,
+        (template, callsiteType) -> policyFactory(level, template, callsiteType), switchPoint);
+  }
+
+  private static boolean isLogger(TemplateLogger expected, TemplateLogger logger) {
+    return expected == logger;
+  }
+
+  private MethodHandle policyFactory(Level level, TemplatedString templatedString, MethodType type) throws StringConcatException {
+    var target = isEnabled(level)? formatter(level, templatedString, type): MethodHandles.empty(type);
+    // several loggers can be used with the same call site, check it is this logger
+    var generic = insertArguments(LOG_TEMPLATE, 1, level, templatedString);
+    generic = filterReturnValue(generic, MethodHandles.empty(methodType(void.class, TemplatePolicyResult.class)));
+    generic = generic.asCollector(Object[].class, type.parameterCount() - 1).asType(type);
+    return guardWithTest(IS_LOGGER.bindTo(this), target, generic);
+  }
+
+  private MethodHandle formatter(Level level, TemplatedString templatedString, MethodType type) throws StringConcatException {
+    var recipe = new StringBuilder();
+    var constants = new ArrayList<Object>();
+    for (var segment : templatedString.segments()) {
+      if (segment instanceof Parameter) {
+        recipe.append('\u0001');
+        continue;
+      }
+      var text = ((Text) segment).text();
+      if (text.indexOf('\u0001') != -1 || text.indexOf('\u0002') != -1) {
+        recipe.append('\u0002');
+        constants.add(text);
+      } else {
+        recipe.append(text);
+      }
+    }
+    var concatType = type.dropParameterTypes(0, 1).changeReturnType(String.class);
+    var concat = StringConcatFactory.makeConcatWithConstants(MethodHandles.lookup(), "concat", concatType,
+        recipe.toString(), constants.toArray()).dynamicInvoker();
+    var log = insertArguments(LOG, 0, sink, level);
+    var target = filterReturnValue(concat, log);
+    return dropArguments(target, 0, TemplateLogger.class).asType(type);
+  }
+}
@@ -0,0 +1,140 @@
+package com.github.forax.policymethod.runtime;
+
+import com.github.forax.policymethod.TemplatedString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of all the live call sites created by {@link TemplatePolicyMetafactory#boostrap}.
+ *
+ * The call sites are held through weak references, a call site is removed from the registry
+ * when it is garbage collected (usually with the class that contains it).
+ *
+ * The sizes are estimations for a 64-bit VM with compressed pointers, the lambda forms of the method handles
+ * are shared between the call sites so the size of a method handle tree is an upper bound.
+ */
+public final class TemplateCallSiteRegistry {
+  private TemplateCallSiteRegistry() {
+    throw new AssertionError();
+  }
+
+  /**
+   * A call site that can be inspected.
+   */
+  interface Inspectable {
+    CallSiteInfo inspect();
+  }
+
+  private static final Set<Reference<Inspectable>> CALL_SITES = ConcurrentHashMap.newKeySet();
+  private static final ReferenceQueue<Inspectable> QUEUE = new ReferenceQueue<>();
+
+  // registers a new call site
+  static void register(Inspectable callSite) {
+    expunge();
+    CALL_SITES.add(new WeakReference<>(callSite, QUEUE));
+  }
+
+  private static void expunge() {
+    Reference<?> reference;
+    while ((reference = QUEUE.poll()) != null) {
+      CALL_SITES.remove(reference);
+    }
+  }
+
+  /**
+   * Returns a snapshot of all the live call sites sorted by caller class and template.
+   * @return a snapshot of all the live call sites.
+   */
+  public static List<CallSiteInfo> callSites() {
+    expunge();
+    return CALL_SITES.stream()
+        .map(Reference::get)
+        .filter(Objects::nonNull)
+        .map(Inspectable::inspect)
+        .sorted(Comparator.comparing(CallSiteInfo::callerClass).thenComparing(CallSiteInfo::template))
+        .toList();
+  }
+
+  /**
+   * Writes the live call sites, one per line, biggest first, followed by the total.
+   * @param appendable the output.
+   * @throws IOException if an I/O error occurs.
+   */
+  public static void dump(Appendable appendable) throws IOException {
+    var callSites = callSites().stream()
+        .sorted(Comparator.comparingLong(CallSiteInfo::estimatedBytes).reversed())
+        .toList();
+    var total = 0L;
+    for (var callSite : callSites) {
+      appendable.append(callSite.toString()).append('\n');
+      total += callSite.estimatedBytes();
+    }
+    appendable.append(callSites.size() + " call sites, " + total + " bytes\n");
+  }
+
+  /**
+   * Returns the dump of the live call sites.
+   * @return the dump of the live call sites.
+   *
+   * @see #dump(Appendable)
+   */
+  public static String dump() {
+    var builder = new StringBuilder();
+    try {
+      dump(builder);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);  // a StringBuilder doesn't throw IOException
+    }
+    return builder.toString();
+  }
+
+  // an object header, a field or an array slot
+  private static final int HEADER = 12, REFERENCE = 4;
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  // the size of a String and of its array of bytes (LATIN1 or UTF16)
+  static long sizeOf(String text) {
+    var latin1 = text.chars().allMatch(c -> c < 256);
+    return align(HEADER + 12) + align(HEADER + 4 + (latin1? 1L: 2L) * text.length());
+  }
+
+  // the size of a templated string (the record, the template, the list of parameters and the parameters)
+  static long sizeOf(TemplatedString template) {
+    var parameterCount = template.parameters().size();
+    return align(HEADER + 2L * REFERENCE) + sizeOf(template.template())
+        + align(HEADER + 4 + (long) REFERENCE * parameterCount) + parameterCount * align(HEADER + REFERENCE + 4);
+  }
+
+  // the number of method handles of the target created by a policy, there is no public API to walk
+  // a method handle tree, so it is estimated as one method handle by segment of the template
+  static int methodHandleCount(TemplatedString template) {
+    var count = 0;
+    for (var segment : template.segments()) {
+      count++;
+    }
+    return Math.max(1, count);
+  }
+
+  // the size of a method handle tree, one method handle is about the size of a bound method handle
+  // and of its share of a lambda form
+  static long sizeOfMethodHandles(int count) {
+    return count * (align(HEADER + 4L * REFERENCE) + align(HEADER + 4 + 2L * REFERENCE));
+  }
+
+  // the size of the counters of an instrumented call site (7 fields, 4 LongAdders and an AtomicBoolean)
+  static long sizeOfCounters() {
+    return align(HEADER + 7L * REFERENCE) + 4 * align(HEADER + 8 + REFERENCE + 4) + align(HEADER + 4);
+  }
+}
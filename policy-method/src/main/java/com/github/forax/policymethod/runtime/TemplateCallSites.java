@@ -0,0 +1,196 @@
+package com.github.forax.policymethod.runtime;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * The counters of the template call sites, the instrumentation is enabled by setting the system property
+ * {@value #PROPERTY} to {@code true}, only the call sites linked while the property is set are instrumented.
+ *
+ * For each instrumented call site, the number of invocations, of slow paths, of relinks and of guard misses
+ * are counted using {@link LongAdder}s, the counters are available using {@link #callSites()} or
+ * through JMX under the name {@value #OBJECT_NAME}.
+ * The JMX interface can also dump all the live call sites, see {@link TemplateCallSiteRegistry}.
+ *
+ * If the instrumentation is not enabled, the call sites are linked exactly as before.
+ *
+ * The counters are only weakly referenced, they are removed when their call site is garbage collected,
+ * so the call sites of an unloaded class loader are not counted anymore.
+ */
+public final class TemplateCallSites implements TemplateCallSitesMXBean {
+  /**
+   * The name of the system property that enables the instrumentation.
+   */
+  public static final String PROPERTY = "com.github.forax.policymethod.instrumentation";
+
+  /**
+   * The JMX name of the MXBean.
+   */
+  public static final String OBJECT_NAME = "com.github.forax.policymethod:type=TemplateCallSites";
+
+  private static final TemplateCallSites INSTANCE = new TemplateCallSites();
+
+  private final ConcurrentHashMap<String, CountersReference> countersMap = new ConcurrentHashMap<>();
+  private final ReferenceQueue<Counters> queue = new ReferenceQueue<>();
+  private final AtomicBoolean registered = new AtomicBoolean();
+
+  private TemplateCallSites() {}
+
+  /**
+   * Returns true if the call sites linked now are instrumented.
+   * @return true if the call sites linked now are instrumented.
+   */
+  public static boolean isEnabled() {
+    return Boolean.getBoolean(PROPERTY);
+  }
+
+  /**
+   * Returns the management interface of the instrumented call sites,
+   * the interface is registered in the platform MBean server if it was not already.
+   * @return the management interface of the instrumented call sites.
+   */
+  public static TemplateCallSitesMXBean callSites() {
+    INSTANCE.registerMBean();
+    return INSTANCE;
+  }
+
+  // the counters are referenced by their call site
+  private static final class CountersReference extends WeakReference<Counters> {
+    private final String id;
+
+    private CountersReference(Counters counters, ReferenceQueue<Counters> queue) {
+      super(counters, queue);
+      this.id = counters.id;
+    }
+  }
+
+  private void expunge() {
+    Reference<?> reference;
+    while ((reference = queue.poll()) != null) {
+      var countersReference = (CountersReference) reference;
+      countersMap.remove(countersReference.id, countersReference);
+    }
+  }
+
+  @Override
+  public int getCallSiteCount() {
+    expunge();
+    return (int) countersMap.values().stream().filter(reference -> !reference.refersTo(null)).count();
+  }
+
+  @Override
+  public List<CallSiteStatistics> getCallSites() {
+    expunge();
+    return countersMap.values().stream()
+        .map(Reference::get)
+        .filter(Objects::nonNull)
+        .map(Counters::statistics)
+        .sorted(Comparator.comparing(CallSiteStatistics::getId))
+        .toList();
+  }
+
+  @Override
+  public String dumpCallSites() {
+    return TemplateCallSiteRegistry.dump();
+  }
+
+  // creates the counters of a new call site, the id is derived from the class, the template and the type
+  static Counters register(Class<?> callerClass, MethodType type, String template) {
+    INSTANCE.expunge();
+    var prefix = callerClass.getName() + ":" + Integer.toHexString((type + template).hashCode());
+    var id = prefix;
+    for (var i = 2; ; i++) {
+      var counters = new Counters(id, template);
+      if (INSTANCE.countersMap.putIfAbsent(id, new CountersReference(counters, INSTANCE.queue)) == null) {
+        INSTANCE.registerMBean();
+        return counters;
+      }
+      id = prefix + "-" + i;  // same template and same type in the same class
+    }
+  }
+
+  private void registerMBean() {
+    if (registered.get() || !registered.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch (InstanceAlreadyExistsException e) {
+      // another copy of the library is already registered
+    } catch (JMException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * The counters of a call site.
+   */
+  static final class Counters {
+    private static final MethodHandle INCREMENT;
+    static {
+      var lookup = MethodHandles.publicLookup();
+      try {
+        INCREMENT = lookup.findVirtual(LongAdder.class, "increment", methodType(void.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    private final String id;
+    private final String template;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder slowPaths = new LongAdder();
+    private final LongAdder relinks = new LongAdder();
+    private final LongAdder guardMisses = new LongAdder();
+    private final AtomicBoolean linked = new AtomicBoolean();
+
+    private Counters(String id, String template) {
+      this.id = id;
+      this.template = template;
+    }
+
+    private static MethodHandle count(LongAdder adder, MethodHandle target) {
+      return foldArguments(target, dropArguments(INCREMENT.bindTo(adder), 0, target.type().parameterList()));
+    }
+
+    // returns a method handle that counts the calls to the target
+    MethodHandle countInvocations(MethodHandle target) {
+      return count(invocations, target);
+    }
+
+    // returns a method handle that counts the calls to the fallback of a guard
+    MethodHandle countGuardMisses(MethodHandle fallback) {
+      return count(guardMisses, fallback);
+    }
+
+    void slowPath() {
+      slowPaths.increment();
+      if (!linked.compareAndSet(false, true)) {
+        relinks.increment();
+      }
+    }
+
+    CallSiteStatistics statistics() {
+      return new CallSiteStatistics(id, template,
+          invocations.sum(), slowPaths.sum(), relinks.sum(), guardMisses.sum());
+    }
+  }
+}
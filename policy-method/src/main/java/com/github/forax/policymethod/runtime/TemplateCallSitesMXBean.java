@@ -0,0 +1,31 @@
+package com.github.forax.policymethod.runtime;
+
+import java.util.List;
+
+/**
+ * The management interface of the instrumented template call sites,
+ * registered in the platform MBean server under the name {@value TemplateCallSites#OBJECT_NAME}.
+ *
+ * @see TemplateCallSites
+ */
+public interface TemplateCallSitesMXBean {
+  /**
+   * Returns the number of instrumented call sites.
+   * @return the number of instrumented call sites.
+   */
+  int getCallSiteCount();
+
+  /**
+   * Returns the statistics of all instrumented call sites.
+   * @return the statistics of all instrumented call sites.
+   */
+  List<CallSiteStatistics> getCallSites();
+
+  /**
+   * Returns the dump of all the live call sites, instrumented or not.
+   * @return the dump of all the live call sites.
+   *
+   * @see TemplateCallSiteRegistry#dump()
+   */
+  String dumpCallSites();
+}
@@ -10,38 +10,141 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.exactInvoker;
 import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
 import static java.lang.invoke.MethodHandles.insertArguments;
 import static java.lang.invoke.MethodType.methodType;
 
 public class TemplatePolicyMetafactory {
-  private static final class InliningCache extends MutableCallSite {
-    private static final MethodHandle SLOW_PATH, RESULT_VALUE;
+  private static final class InliningCache extends MutableCallSite implements TemplateCallSiteRegistry.Inspectable {
+    private static final MethodHandle SLOW_PATH, SPECIALIZE, SPECIALIZE_SLOW_PATH, RESULT_VALUE, RESULT_AS_INT, RESULT_AS_LONG, RESULT_AS_DOUBLE,
+        RESULT_AS_BOOLEAN, IS_PRIMITIVE_RESULT;
     static{
       var lookup = MethodHandles.lookup();
       try {
-        SLOW_PATH = lookup.findVirtual(InliningCache.class, "slowPath", methodType(Object.class, TemplatePolicyResult.class));
+        SLOW_PATH = lookup.findVirtual(InliningCache.class, "slowPath",
+            methodType(Object.class, TemplatePolicyResult.class, Object.class));
+        SPECIALIZE = lookup.findVirtual(InliningCache.class, "specialize", methodType(MethodHandle.class, Object.class));
+        SPECIALIZE_SLOW_PATH = lookup.findVirtual(InliningCache.class, "specializeSlowPath",
+            methodType(Object.class, TemplatePolicyResult.class, Object.class));
         RESULT_VALUE = lookup.findVirtual(TemplatePolicyResult.class, "result", methodType(Object.class));
+        RESULT_AS_INT = lookup.findVirtual(TemplatePolicyResult.class, "resultAsInt", methodType(int.class));
+        RESULT_AS_LONG = lookup.findVirtual(TemplatePolicyResult.class, "resultAsLong", methodType(long.class));
+        RESULT_AS_DOUBLE = lookup.findVirtual(TemplatePolicyResult.class, "resultAsDouble", methodType(double.class));
+        RESULT_AS_BOOLEAN = lookup.findVirtual(TemplatePolicyResult.class, "resultAsBoolean", methodType(boolean.class));
+        IS_PRIMITIVE_RESULT = lookup.findStatic(InliningCache.class, "isPrimitiveResult",
+            methodType(boolean.class, Class.class, TemplatePolicyResult.class));
       } catch (NoSuchMethodException | IllegalAccessException e) {
         throw new AssertionError(e);
       }
     }
 
+    // the state of the last link, methodHandleCount is the estimated number of method handles of the target of the call site
+    private record Link(CallSiteInfo.State state, List<SwitchPoint> switchPoints, int methodHandleCount) {}
+
+    // the number of method handles added by the call site, a call to the template method with a bound templated string
+    // followed by a filter and a type adaptation, a fold with an invoker of the method handle returned by a bound method,
+    // a constant with a type adaptation, and a render sampler
+    private static final int STUB_METHOD_HANDLES = 4, INVOKER_METHOD_HANDLES = 3, CONSTANT_METHOD_HANDLES = 2,
+        SAMPLER_METHOD_HANDLES = 2;
+
+    // the targets of the call sites specialized for a receiver class that may be unloaded before the call sites,
+    // they are stored in the receiver class, so a call site does not pin the class loader of the receiver
+    private static final ClassValue<ConcurrentHashMap<InliningCache, MethodHandle>> SPECIALIZATIONS = new ClassValue<>() {
+      @Override
+      protected ConcurrentHashMap<InliningCache, MethodHandle> computeValue(Class<?> type) {
+        return new ConcurrentHashMap<>();
+      }
+    };
+
+    private final String callerClass;
+    private final ClassLoader callerLoader;
     private final TemplatedString templatedString;
     private final boolean isVirtual;
     private final MethodHandle templatePolicy;
+    private final MethodHandle relink;
+    private final MethodHandle indirectRelink;  // null if the template method is static
+    private final Class<?> policyClass;
+    private final String policy;
+    private final TemplateCallSites.Counters counters;  // null if not instrumented
+    private SwitchPoint linkedRenderSwitchPoint;  // null if not linked, only used to find the reason of a relink
+    private volatile Link link;
 
-    private InliningCache(MethodType type, TemplatedString templatedString, boolean isVirtual, MethodHandle templatePolicy) {
+    private InliningCache(MethodType type, Class<?> callerClass, TemplatedString templatedString, boolean isVirtual,
+                          MethodHandle templatePolicy, MethodHandleInfo templatePolicyInfo, TemplateCallSites.Counters counters) {
       super(type);
+      this.callerClass = callerClass.getName();
+      this.callerLoader = callerClass.getClassLoader();
       this.templatedString = templatedString;
       this.isVirtual = isVirtual;
       this.templatePolicy = templatePolicy;
+      this.policyClass = templatePolicyInfo.getDeclaringClass();
+      this.policy = policyClass.getName() + "::" + templatePolicyInfo.getName();
+      this.counters = counters;
+
+      relink = linkStub(SLOW_PATH.bindTo(this));
+      indirectRelink = isVirtual? linkStub(SPECIALIZE_SLOW_PATH.bindTo(this)): null;
+      link = new Link(CallSiteInfo.State.UNLINKED, List.of(), instrumented(STUB_METHOD_HANDLES));
+      setTarget(instrument(relink));
+    }
+
+    @Override
+    public CallSiteInfo inspect() {
+      var link = this.link;
+      var invalidated = link.switchPoints.stream().anyMatch(SwitchPoint::hasBeenInvalidated);
+      return new CallSiteInfo(callerClass, templatedString.template(), policy,
+          invalidated? CallSiteInfo.State.UNLINKED: link.state, List.of(),
+          TemplateCallSiteRegistry.sizeOf(templatedString), TemplateCallSiteRegistry.sizeOfMethodHandles(link.methodHandleCount),
+          counters == null? 0: TemplateCallSiteRegistry.sizeOfCounters());
+    }
 
+    // if the call site is instrumented, count the invocations
+    private MethodHandle instrument(MethodHandle target) {
+      return counters == null? target: counters.countInvocations(target);
+    }
+
+    // the number of method handles of a target once instrumented
+    private int instrumented(int methodHandleCount) {
+      return counters == null? methodHandleCount: methodHandleCount + 1;
+    }
+
+    private MethodHandle instrumentGuardMiss(MethodHandle fallback) {
+      return counters == null? fallback: counters.countGuardMisses(fallback);
+    }
+
+    // calls the template method then the stub (TemplatePolicyResult, Object)Object with the result and the receiver,
+    // the receiver is null if the template method is static
+    private MethodHandle linkStub(MethodHandle stub) {
+      var type = type();
       var templateMethod = insertArguments(templatePolicy, isVirtual? 1: 0, templatedString);
-      var target = stubTemplateMethod(templateMethod, SLOW_PATH.bindTo(this), type.returnType());
-      target = asVarargs(target, templatePolicy);
-      setTarget(target.asType(type));
+      MethodHandle target;
+      if (isVirtual) {
+        var templateMethodType = templateMethod.type();
+        var filter = stub.asType(methodType(type.returnType(), TemplatePolicyResult.class, templateMethodType.parameterType(0)));
+        filter = dropArguments(filter, 2, templateMethodType.dropParameterTypes(0, 1).parameterList());
+        target = foldArguments(filter, templateMethod);
+      } else {
+        target = stubTemplateMethod(templateMethod, insertArguments(stub, 1, (Object) null), type.returnType());
+      }
+      return asVarargs(target, templatePolicy).asType(type);
     }
 
     private static MethodHandle stubTemplateMethod(MethodHandle templatePolicy, MethodHandle stub, Class<?> returnType) {
@@ -49,6 +152,29 @@ public class TemplatePolicyMetafactory {
       return filterReturnValue(templatePolicy, filter);
     }
 
+    private static boolean isPrimitiveResult(Class<?> primitiveType, TemplatePolicyResult<?> result) {
+      return result.primitiveType() == primitiveType;
+    }
+
+    // the value of the result, a primitive result of the same type as the return type of the call site is not boxed
+    private static MethodHandle resultValue(Class<?> returnType) {
+      MethodHandle resultAsPrimitive;
+      if (returnType == int.class) {
+        resultAsPrimitive = RESULT_AS_INT;
+      } else if (returnType == long.class) {
+        resultAsPrimitive = RESULT_AS_LONG;
+      } else if (returnType == double.class) {
+        resultAsPrimitive = RESULT_AS_DOUBLE;
+      } else if (returnType == boolean.class) {
+        resultAsPrimitive = RESULT_AS_BOOLEAN;
+      } else {
+        return RESULT_VALUE;
+      }
+      return guardWithTest(IS_PRIMITIVE_RESULT.bindTo(returnType),
+          resultAsPrimitive,
+          RESULT_VALUE.asType(methodType(returnType, TemplatePolicyResult.class)));
+    }
+
     private static MethodHandle asVarargs(MethodHandle target, MethodHandle original) {
       if (!original.isVarargsCollector()) {
         return target;
@@ -57,31 +183,129 @@ public class TemplatePolicyMetafactory {
       return target.asVarargsCollector(originalMethodType.parameterType(originalMethodType.parameterCount() - 1));
     }
 
-    private Object slowPath(TemplatePolicyResult<?> result) throws Throwable {
+    // true if the class lives at least as long as the call site,
+    // the class loader of the class is the class loader of the caller class or one of its parents
+    private boolean isCacheSafe(Class<?> clazz) {
+      var loader = clazz.getClassLoader();
+      if (loader == null) {
+        return true;
+      }
+      for (var callerLoader = this.callerLoader; callerLoader != null; callerLoader = callerLoader.getParent()) {
+        if (callerLoader == loader) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private Object slowPath(TemplatePolicyResult<?> result, Object receiver) throws Throwable {
+      link(result, receiver);
+      return result.result();
+    }
+
+    // finds the target specialized for the class of the receiver or relinks
+    private MethodHandle specialize(Object receiver) {
+      var target = SPECIALIZATIONS.get(receiver.getClass()).get(this);
+      return target != null? target: indirectRelink;
+    }
+
+    private Object specializeSlowPath(TemplatePolicyResult<?> result, Object receiver) throws Throwable {
+      if (counters != null) {
+        counters.slowPath();
+      }
+      var linkage = linkage(result, indirectRelink);
+      SPECIALIZATIONS.get(receiver.getClass()).put(this, linkage.target);
+      return result.result();
+    }
+
+    private void link(TemplatePolicyResult<?> result, Object receiver) throws Throwable {
+      if (counters != null) {
+        counters.slowPath();
+      }
+      var template = templatedString.template();
+      if (linkedRenderSwitchPoint != null) {
+        TemplateEvents.relink(template, policyClass, linkedRenderSwitchPoint.hasBeenInvalidated()?
+            "render event setting changed": "policy switch point invalidated");
+      }
+      var type = type();
+      if (result.isConstant() && !isVirtual && templatedString.parameters().isEmpty()) {
+        link = new Link(CallSiteInfo.State.CONSTANT, List.of(), instrumented(CONSTANT_METHOD_HANDLES));
+        setTarget(instrument(MethodHandles.constant(Object.class, result.result()).asType(type)));
+        return;
+      }
+      if (receiver != null && !isCacheSafe(receiver.getClass())) {
+        // the target would pin the class loader of the receiver,
+        // the call site looks up the target specialized for the class of the receiver at each call
+        TemplateEvents.relink(template, receiver.getClass(), "receiver class not visible from the caller class");
+        var linkage = linkage(result, indirectRelink);
+        SPECIALIZATIONS.get(receiver.getClass()).put(this, linkage.target);
+        link = new Link(CallSiteInfo.State.INDIRECT, List.of(), instrumented(INVOKER_METHOD_HANDLES));
+        setTarget(instrument(foldArguments(exactInvoker(type),
+            SPECIALIZE.bindTo(this).asType(methodType(MethodHandle.class, type.parameterType(0))))));
+        return;
+      }
+      var linkage = linkage(result, relink);
+      linkedRenderSwitchPoint = linkage.renderSwitchPoint;
+      link = new Link(linkage.state, linkage.switchPoints, instrumented(linkage.methodHandleCount));
+      setTarget(instrument(linkage.target));
+    }
+
+    // a target guarded by its switch points, the state of the call site, the switch points
+    // and the estimated number of method handles of the target
+    private record Linkage(MethodHandle target, CallSiteInfo.State state, List<SwitchPoint> switchPoints, SwitchPoint renderSwitchPoint,
+                           int methodHandleCount) {}
+
+    // creates the target from the policy factory of the result, the fallback is called if a switch point is invalidated
+    private Linkage linkage(TemplatePolicyResult<?> result, MethodHandle fallback) throws Throwable {
+      var template = templatedString.template();
       var metaFactory = result.policyFactory();
       var type = type();
-      if (metaFactory == null) {
+      var renderSwitchPoint = TemplateEvents.renderSwitchPoint();  // must be called before sampleRender()
+      MethodHandle target;
+      CallSiteInfo.State state;
+      List<SwitchPoint> switchPoints;
+      int methodHandleCount;
+      TemplateEvents.LinkEvent linkEvent = null;
+      if (metaFactory == null || !isCacheSafe(metaFactory.getClass())) {
+        // no policy factory or the policy factory would pin its class loader, the call site calls the template method
+        state = CallSiteInfo.State.GENERIC;
+        switchPoints = List.of(renderSwitchPoint);
         var templateMethod = insertArguments(templatePolicy, isVirtual? 1: 0, templatedString);
-        var target = stubTemplateMethod(templateMethod, RESULT_VALUE, type.returnType());
-        target = asVarargs(target, templatePolicy);
-        setTarget(target.asType(type));
-        return result.result();
+        target = stubTemplateMethod(templateMethod, resultValue(type.returnType()), type.returnType());
+        target = asVarargs(target, templatePolicy).asType(type);
+        methodHandleCount = STUB_METHOD_HANDLES;
+      } else {
+        state = CallSiteInfo.State.MONOMORPHIC;
+        switchPoints = new ArrayList<>(result.switchPoints());
+        switchPoints.add(renderSwitchPoint);
+        linkEvent = TemplateEvents.startLink();
+        target = metaFactory.asMethodHandle(templatedString, type);
+        TemplateEvents.endLink(linkEvent);
+        if (target == null || !target.type().equals(type)) {
+          throw new LinkageError("invalid meta factory method handle " + target);
+        }
+        methodHandleCount = TemplateCallSiteRegistry.methodHandleCount(templatedString);
+        for (var switchPoint : result.switchPoints()) {
+          target = switchPoint.guardWithTest(target, instrumentGuardMiss(fallback));
+          methodHandleCount++;
+        }
       }
-      var target = metaFactory.asMethodHandle(templatedString, type);
-      if (target == null || !target.type().equals(type)) {
-        throw new LinkageError("invalid meta factory method handle " + target);
+      var sampledTarget = TemplateEvents.sampleRender(target, template, policyClass);
+      methodHandleCount += sampledTarget == target? 0: SAMPLER_METHOD_HANDLES;
+      target = TemplateEvents.guardRender(renderSwitchPoint, sampledTarget, instrumentGuardMiss(fallback));
+      methodHandleCount += target == sampledTarget? 0: 1;
+      if (linkEvent != null) {
+        TemplateEvents.link(linkEvent, template, policyClass, instrumented(methodHandleCount));
       }
-      setTarget(target);
-      return result.result();
+      return new Linkage(target, state, List.copyOf(switchPoints), renderSwitchPoint, methodHandleCount);
     }
   }
 
-  public static CallSite boostrap(Lookup lookup, String name, MethodType callsiteType, MethodHandle templatePolicy, String template) {
+  private static boolean isVirtual(MethodHandleInfo methodHandleInfo, MethodHandle templatePolicy) {
     var templatePolicyMethodType = templatePolicy.type();
     if (templatePolicyMethodType.returnType() != TemplatePolicyResult.class) {
       throw new IllegalArgumentException("template method should return a template method result " + templatePolicy);
     }
-    var methodHandleInfo = lookup.revealDirect(templatePolicy);
     var referenceKind = methodHandleInfo.getReferenceKind();
     switch (referenceKind) {
       case MethodHandleInfo.REF_getField, MethodHandleInfo.REF_putField,
@@ -89,9 +313,280 @@ public class TemplatePolicyMetafactory {
           MethodHandleInfo.REF_newInvokeSpecial -> throw new IllegalArgumentException("unsupported method handle " + methodHandleInfo);
       default -> {}
     }
-    var isVirtual = referenceKind != MethodHandleInfo.REF_invokeStatic;
+    return referenceKind != MethodHandleInfo.REF_invokeStatic;
+  }
+
+  public static CallSite boostrap(Lookup lookup, String name, MethodType callsiteType, MethodHandle templatePolicy, String template) {
+    var methodHandleInfo = lookup.revealDirect(templatePolicy);
+    var isVirtual = isVirtual(methodHandleInfo, templatePolicy);
     var parameterTypes = (isVirtual? callsiteType.dropParameterTypes(0, 1): callsiteType).parameterArray();
     var templatedString = TemplatedString.parse(template, parameterTypes);
-    return new InliningCache(callsiteType, templatedString, isVirtual, templatePolicy);
+    var counters = TemplateCallSites.isEnabled()?
+        TemplateCallSites.register(lookup.lookupClass(), callsiteType, template):
+        null;
+    TemplateEvents.bootstrap(lookup.lookupClass(), callsiteType, template);
+    var inliningCache = new InliningCache(callsiteType, lookup.lookupClass(), templatedString, isVirtual, templatePolicy,
+        methodHandleInfo, counters);
+    // the template method is not called when linking, a constant result is installed by the first call
+    TemplateCallSiteRegistry.register(inliningCache);
+    return inliningCache;
+  }
+
+  // an overload of a template method, the parameter types include the receiver if the method is not static
+  // and do not include the templated string, the result type is the type argument of TemplatePolicyResult
+  private record Overload(Method method, List<Class<?>> parameterTypes, Class<?> resultType) {
+    private boolean isVarArgs() {
+      return method.isVarArgs();
+    }
+  }
+
+  /**
+   * Bootstrap method that selects the template method among the overloads of a class.
+   * The name of the template methods is the name of the invokedynamic, a template method can be static or not,
+   * its first parameter (after the receiver) is a {@link TemplatedString} and it returns a {@link TemplatePolicyResult}.
+   *
+   * The overload is selected when the call site is linked using the rules of Java, first the overloads
+   * applicable without boxing, then with boxing, then the varargs overloads, and among them the most specific one.
+   * The type argument of the {@link TemplatePolicyResult} of an overload has to be convertible to the return type
+   * of the call site (a type variable or a wildcard is considered as Object which is convertible to any type),
+   * so the return type can also be used to select an overload.
+   * An overload with exactly the parameters of the call site is called without creating an array
+   * and without boxing the arguments.
+   *
+   * @param lookup the lookup of the caller class.
+   * @param name the name of the template methods.
+   * @param callsiteType the type of the call site.
+   * @param policyClass the class declaring the template methods.
+   * @param template the templated string.
+   * @return a call site.
+   * @throws IllegalArgumentException if no overload is applicable or if several overloads are the most specific.
+   */
+  public static CallSite boostrapOverloads(Lookup lookup, String name, MethodType callsiteType, Class<?> policyClass, String template) {
+    var method = selectOverload(lookup, policyClass, name, callsiteType).method;
+    MethodHandle templatePolicy;
+    try {
+      templatePolicy = lookup.unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw new AssertionError(e);  // the overloads are accessible
+    }
+    return boostrap(lookup, name, callsiteType, templatePolicy, template);
+  }
+
+  private static Overload selectOverload(Lookup lookup, Class<?> policyClass, String name, MethodType callsiteType) {
+    var overloads = overloads(lookup, policyClass, name);
+    var argumentTypes = callsiteType.parameterList();
+    var returnType = callsiteType.returnType();
+    // the three phases of the overload resolution
+    var variableArity = false;
+    var applicables = overloads.stream()
+        .filter(overload -> isApplicableByStrictInvocation(overload, argumentTypes, returnType))
+        .toList();
+    if (applicables.isEmpty()) {
+      applicables = overloads.stream()
+          .filter(overload -> isApplicableByLooseInvocation(overload, argumentTypes, returnType))
+          .toList();
+    }
+    if (applicables.isEmpty()) {
+      variableArity = true;
+      applicables = overloads.stream()
+          .filter(overload -> isApplicableByVariableArityInvocation(overload, argumentTypes, returnType))
+          .toList();
+    }
+    if (applicables.isEmpty()) {
+      throw new IllegalArgumentException("no overload of " + policyClass.getName() + "::" + name + " applicable to " + callsiteType);
+    }
+    var mostSpecifics = mostSpecifics(applicables, argumentTypes.size(), variableArity);
+    if (mostSpecifics.size() != 1) {
+      throw new IllegalArgumentException("ambiguous overloads of " + policyClass.getName() + "::" + name
+          + " for " + callsiteType + " " + applicables.stream().map(Overload::method).toList());
+    }
+    return mostSpecifics.get(0);
+  }
+
+  private static List<Overload> mostSpecifics(List<Overload> applicables, int arity, boolean variableArity) {
+    return applicables.stream()
+        .filter(overload -> applicables.stream()
+            .allMatch(other -> other == overload || isMoreSpecific(overload, other, arity, variableArity)))
+        .toList();
+  }
+
+  // the accessible template methods with that name
+  private static List<Overload> overloads(Lookup lookup, Class<?> policyClass, String name) {
+    var methods = new LinkedHashSet<Method>();
+    methods.addAll(Arrays.asList(policyClass.getDeclaredMethods()));
+    methods.addAll(Arrays.asList(policyClass.getMethods()));
+    return methods.stream()
+        .filter(method -> method.getName().equals(name) && !method.isBridge() && !method.isSynthetic())
+        .filter(method -> method.getReturnType() == TemplatePolicyResult.class)
+        .filter(method -> method.getParameterCount() != 0 && method.getParameterTypes()[0] == TemplatedString.class)
+        .filter(method -> isAccessible(lookup, method))
+        .map(method -> {
+          var holeTypes = Arrays.asList(method.getParameterTypes()).subList(1, method.getParameterCount());
+          var parameterTypes = Modifier.isStatic(method.getModifiers())?
+              holeTypes:
+              Stream.concat(Stream.of(method.getDeclaringClass()), holeTypes.stream()).toList();
+          return new Overload(method, List.copyOf(parameterTypes), resultType(method));
+        })
+        .toList();
+  }
+
+  private static boolean isAccessible(Lookup lookup, Method method) {
+    try {
+      lookup.unreflect(method);
+      return true;
+    } catch (IllegalAccessException e) {
+      return false;
+    }
+  }
+
+  // the type argument of TemplatePolicyResult
+  private static Class<?> resultType(Method method) {
+    if (method.getGenericReturnType() instanceof ParameterizedType parameterizedType) {
+      return erase(parameterizedType.getActualTypeArguments()[0]);
+    }
+    return Object.class;  // raw type
+  }
+
+  private static Class<?> erase(Type type) {
+    if (type instanceof Class<?> clazz) {
+      return clazz;
+    }
+    if (type instanceof ParameterizedType parameterizedType) {
+      return (Class<?>) parameterizedType.getRawType();
+    }
+    if (type instanceof GenericArrayType genericArrayType) {
+      return erase(genericArrayType.getGenericComponentType()).arrayType();
+    }
+    // a type variable or a wildcard is considered as Object, it can be converted to any type
+    assert type instanceof TypeVariable<?> || type instanceof WildcardType;
+    return Object.class;
+  }
+
+  private static boolean isApplicableByStrictInvocation(Overload overload, List<Class<?>> argumentTypes, Class<?> returnType) {
+    var parameterTypes = overload.parameterTypes;
+    if (parameterTypes.size() != argumentTypes.size() || !isReturnConvertible(overload.resultType, returnType)) {
+      return false;
+    }
+    for (var i = 0; i < argumentTypes.size(); i++) {
+      if (!isStrictlyConvertible(argumentTypes.get(i), parameterTypes.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isApplicableByLooseInvocation(Overload overload, List<Class<?>> argumentTypes, Class<?> returnType) {
+    var parameterTypes = overload.parameterTypes;
+    if (parameterTypes.size() != argumentTypes.size() || !isReturnConvertible(overload.resultType, returnType)) {
+      return false;
+    }
+    for (var i = 0; i < argumentTypes.size(); i++) {
+      if (!isLooselyConvertible(argumentTypes.get(i), parameterTypes.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isApplicableByVariableArityInvocation(Overload overload, List<Class<?>> argumentTypes, Class<?> returnType) {
+    if (!overload.isVarArgs() || !isReturnConvertible(overload.resultType, returnType)) {
+      return false;
+    }
+    var parameterTypes = overload.parameterTypes;
+    var fixedArity = parameterTypes.size() - 1;
+    if (argumentTypes.size() < fixedArity) {
+      return false;
+    }
+    var componentType = parameterTypes.get(fixedArity).componentType();
+    for (var i = 0; i < argumentTypes.size(); i++) {
+      var parameterType = i < fixedArity? parameterTypes.get(i): componentType;
+      if (!isLooselyConvertible(argumentTypes.get(i), parameterType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // the type of a parameter of an overload, with a variable arity the last parameter is expanded
+  private static Class<?> parameterType(Overload overload, int index, boolean variableArity) {
+    var parameterTypes = overload.parameterTypes;
+    var lastIndex = parameterTypes.size() - 1;
+    if (variableArity && index >= lastIndex) {
+      return parameterTypes.get(lastIndex).componentType();
+    }
+    return parameterTypes.get(index);
+  }
+
+  private static boolean isMoreSpecific(Overload overload, Overload other, int arity, boolean variableArity) {
+    // with a variable arity, the parameters that have no argument are also compared
+    var count = variableArity?
+        Math.max(arity, Math.max(overload.parameterTypes.size(), other.parameterTypes.size())):
+        arity;
+    for (var i = 0; i < count; i++) {
+      if (!isStrictlyConvertible(parameterType(overload, i, variableArity), parameterType(other, i, variableArity))) {
+        return false;
+      }
+    }
+    return isStrictlyConvertible(overload.resultType, other.resultType);
+  }
+
+  private static boolean isReturnConvertible(Class<?> resultType, Class<?> returnType) {
+    return returnType == void.class || resultType == Object.class || isLooselyConvertible(resultType, returnType);
+  }
+
+  // identity, widening primitive or widening reference conversion
+  private static boolean isStrictlyConvertible(Class<?> from, Class<?> to) {
+    if (from == to) {
+      return true;
+    }
+    if (from.isPrimitive() || to.isPrimitive()) {
+      return from.isPrimitive() && to.isPrimitive() && isWideningPrimitive(from, to);
+    }
+    return to.isAssignableFrom(from);
+  }
+
+  // a strict conversion, a boxing followed by a widening reference or an unboxing followed by a widening primitive
+  private static boolean isLooselyConvertible(Class<?> from, Class<?> to) {
+    if (isStrictlyConvertible(from, to)) {
+      return true;
+    }
+    if (from.isPrimitive() && !to.isPrimitive()) {
+      return from != void.class && to.isAssignableFrom(methodType(from).wrap().returnType());
+    }
+    if (!from.isPrimitive() && to.isPrimitive()) {
+      var primitive = methodType(from).unwrap().returnType();
+      return primitive.isPrimitive() && isStrictlyConvertible(primitive, to);
+    }
+    return false;
+  }
+
+  private static boolean isWideningPrimitive(Class<?> from, Class<?> to) {
+    if (from == byte.class) {
+      return to == short.class || to == int.class || to == long.class || to == float.class || to == double.class;
+    }
+    if (from == short.class || from == char.class) {
+      return to == int.class || to == long.class || to == float.class || to == double.class;
+    }
+    if (from == int.class) {
+      return to == long.class || to == float.class || to == double.class;
+    }
+    if (from == long.class) {
+      return to == float.class || to == double.class;
+    }
+    return from == float.class && to == double.class;
+  }
+
+  // constant dynamic bootstrap method, the template policy must be static, the template has no parameter
+  // and the result must be a constant result
+  public static Object constant(Lookup lookup, String name, Class<?> type, MethodHandle templatePolicy, String template) throws Throwable {
+    if (isVirtual(lookup.revealDirect(templatePolicy), templatePolicy)) {
+      throw new IllegalArgumentException("template method should be static " + templatePolicy);
+    }
+    var templatedString = TemplatedString.parse(template);
+    var result = (TemplatePolicyResult<?>) templatePolicy.invokeWithArguments(templatedString);
+    if (!result.isConstant()) {
+      throw new IllegalArgumentException("template method should return a constant result " + templatePolicy);
+    }
+    return result.result();
   }
 }
@@ -0,0 +1,49 @@
+package com.github.forax.policymethod.runtime;
+
+import com.github.forax.policymethod.TemplatePolicyResult;
+
+import java.lang.invoke.SwitchPoint;
+
+/**
+ * A switch used by a template-policy method that depends on a mutable configuration.
+ * The template-policy method reads the current {@link #switchPoint()} before computing its result and returns it
+ * with {@link TemplatePolicyResult#resultAndPolicyFactory(Object, TemplatePolicyResult.PolicyFactory, SwitchPoint...)},
+ * so the call sites linked with it are guarded by the switch point. When the configuration changes,
+ * {@link #invalidate()} is called and all the dependent call sites are re-linked on their next call.
+ *
+ * The configuration must be changed before calling {@link #invalidate()}.
+ */
+public final class TemplatePolicySwitch {
+  private volatile SwitchPoint switchPoint = new SwitchPoint();
+
+  /**
+   * Returns the current switch point.
+   * @return the current switch point.
+   */
+  public SwitchPoint switchPoint() {
+    return switchPoint;
+  }
+
+  /**
+   * Invalidates the current switch point and replaces it with a new one.
+   */
+  public void invalidate() {
+    invalidateAll(this);
+  }
+
+  /**
+   * Invalidates the current switch point of several switches at once.
+   * @param switches the switches to invalidate.
+   */
+  public static void invalidateAll(TemplatePolicySwitch... switches) {
+    var switchPoints = new SwitchPoint[switches.length];
+    for (var i = 0; i < switches.length; i++) {
+      var policySwitch = switches[i];
+      synchronized (policySwitch) {
+        switchPoints[i] = policySwitch.switchPoint;
+        policySwitch.switchPoint = new SwitchPoint();
+      }
+    }
+    SwitchPoint.invalidateAll(switchPoints);
+  }
+}
@@ -0,0 +1,90 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import com.github.forax.policymethod.runtime.TemplatePolicySwitch;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConfigurablePolicyTest {
+  // a policy that depends on a mutable configuration, the prefix
+  private static final TemplatePolicySwitch PREFIX_SWITCH = new TemplatePolicySwitch();
+  private static volatile String prefix = "";
+  private static int calls;
+
+  static void setPrefix(String prefix) {
+    ConfigurablePolicyTest.prefix = prefix;
+    PREFIX_SWITCH.invalidate();
+  }
+
+  // template-policy
+  public static TemplatePolicyResult<String> prefix(TemplatedString templatedString, Object... args) {
+    calls++;
+    var switchPoint = PREFIX_SWITCH.switchPoint();
+    var text = prefix + templatedString.template();
+    return TemplatePolicyResult.resultAndPolicyFactory(text, ConfigurablePolicyTest::policyFactory, switchPoint);
+  }
+
+  private static MethodHandle policyFactory(TemplatedString templatedString, MethodType methodType) {
+    var text = prefix + templatedString.template();
+    return MethodHandles.dropArguments(MethodHandles.constant(String.class, text), 0, methodType.parameterList());
+  }
+
+  private static MethodHandle findPolicyMethod(String name, Class<?> returnType, Class<?>... parameterTypes) {
+    try {
+      return MethodHandles.lookup().findStatic(ConfigurablePolicyTest.class, name, methodType(returnType, parameterTypes));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final MethodHandle INDY = TemplatePolicyMetafactory.boostrap(
+      MethodHandles.lookup(),
+      "",
+      methodType(String.class, int.class),
+      findPolicyMethod("prefix", TemplatePolicyResult.class, TemplatedString.class, Object[].class),
+      "hello ￼"
+  ).dynamicInvoker();
+
+  @Test
+  public void testInvalidation() throws Throwable {
+    setPrefix("");
+    var calls = ConfigurablePolicyTest.calls;
+    var text1 = (String) INDY.invokeExact(1);
+    var text2 = (String) INDY.invokeExact(2);
+    setPrefix("> ");
+    var text3 = (String) INDY.invokeExact(3);
+    var text4 = (String) INDY.invokeExact(4);
+    var callCount = ConfigurablePolicyTest.calls - calls;
+    assertAll(
+        () -> assertEquals("hello ￼", text1),
+        () -> assertEquals("hello ￼", text2),
+        () -> assertEquals("> hello ￼", text3),
+        () -> assertEquals("> hello ￼", text4),
+        () -> assertEquals(2, callCount)
+    );
+  }
+
+  @Test
+  public void testInvalidateAll() {
+    var switch1 = new TemplatePolicySwitch();
+    var switch2 = new TemplatePolicySwitch();
+    var switchPoint1 = switch1.switchPoint();
+    var switchPoint2 = switch2.switchPoint();
+    TemplatePolicySwitch.invalidateAll(switch1, switch2);
+    assertAll(
+        () -> assertTrue(switchPoint1.hasBeenInvalidated()),
+        () -> assertTrue(switchPoint2.hasBeenInvalidated()),
+        () -> assertFalse(switch1.switchPoint().hasBeenInvalidated()),
+        () -> assertFalse(switch2.switchPoint().hasBeenInvalidated())
+    );
+  }
+}
@@ -25,6 +25,7 @@ import static java.util.stream.IntStream.rangeClosed;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class JSONLiteralPolicyTest {
   static final class ToyJSONParser {
@@ -336,10 +337,10 @@ public class JSONLiteralPolicyTest {
     };
     ToyJSONParser.parse(templatedString.template(), visitor);
     var result = visitor.root;
-    TemplatePolicyResult.PolicyFactory factory = templatedString.parameters().isEmpty()?
-        (__, methodType) -> MethodHandles.constant(methodType.returnType(), result)
-        : null;
-    return TemplatePolicyResult.resultAndPolicyFactory(result, factory);
+    if (templatedString.parameters().isEmpty()) {
+      return TemplatePolicyResult.constantResult(result);
+    }
+    return TemplatePolicyResult.result(result);
   }
 
 
@@ -457,4 +458,71 @@ public class JSONLiteralPolicyTest {
         () -> assertSame(constArray(), constArray())
     );
   }
+
+  private static int countingCalls;
+
+  public static TemplatePolicyResult<String> countingPolicy(TemplatedString templatedString, Object... args) {
+    countingCalls++;
+    return TemplatePolicyResult.result(templatedString.template());
+  }
+
+  @Test
+  public void testIndyNotCalledAtLinkTime() throws Throwable {
+    countingCalls = 0;
+    var callSite = TemplatePolicyMetafactory.boostrap(
+        MethodHandles.lookup(),
+        "",
+        methodType(String.class),
+        findPolicyMethod("countingPolicy", TemplatePolicyResult.class, TemplatedString.class, Object[].class),
+        "no hole"
+    );
+    assertEquals(0, countingCalls);
+    assertEquals("no hole", (String) callSite.dynamicInvoker().invokeExact());
+    assertEquals(1, countingCalls);
+  }
+
+  @Test
+  public void testIndyInvalidConstantThrowsAtEachCall() {
+    var callSite = TemplatePolicyMetafactory.boostrap(
+        MethodHandles.lookup(),
+        "",
+        methodType(JSONArray.class),
+        findPolicyMethod("jsonLiteralPolicy", TemplatePolicyResult.class, TemplatedString.class, Object[].class),
+        "[ 3.24, "
+    );
+    var invoker = callSite.dynamicInvoker();
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> { var array = (JSONArray) invoker.invokeExact(); }),
+        () -> assertThrows(IllegalStateException.class, () -> { var array = (JSONArray) invoker.invokeExact(); })
+    );
+  }
+
+  @Test
+  public void testCondyObjectConst() throws Throwable {
+    var jsonObject = (JSONObject) TemplatePolicyMetafactory.constant(
+        MethodHandles.lookup(),
+        "",
+        JSONObject.class,
+        findPolicyMethod("jsonLiteralPolicy", TemplatePolicyResult.class, TemplatedString.class, Object[].class),
+        """
+          {
+            "x": 35.2,
+            "y": 42.9
+          }
+          """
+    );
+    assertEquals(Map.of("x", 35.2, "y", 42.9), jsonObject.map());
+  }
+
+  @Test
+  public void testCondyNotConstant() {
+    assertThrows(IllegalArgumentException.class, () -> TemplatePolicyMetafactory.constant(
+        MethodHandles.lookup(),
+        "",
+        String.class,
+        MethodHandles.lookup().findStatic(StringConcatTemplatePolicyTest.class, "stringConcat",
+            methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class)),
+        "hello"
+    ));
+  }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OverloadPolicyTest {
+  // template-policies, the result says which overload was called
+  public static TemplatePolicyResult<String> format(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.result("varargs " + Arrays.toString(args));
+  }
+
+  public static TemplatePolicyResult<String> format(TemplatedString templatedString, String name, int age) {
+    return TemplatePolicyResult.result("exact " + name + " " + age);
+  }
+
+  public static TemplatePolicyResult<String> format(TemplatedString templatedString, int value) {
+    return TemplatePolicyResult.result("int " + value);
+  }
+
+  public static TemplatePolicyResult<String> format(TemplatedString templatedString, long value) {
+    return TemplatePolicyResult.result("long " + value);
+  }
+
+  public static TemplatePolicyResult<String> format(TemplatedString templatedString, Object value) {
+    return TemplatePolicyResult.result("object " + value);
+  }
+
+  public static TemplatePolicyResult<Integer> format(TemplatedString templatedString, int value1, int value2) {
+    return TemplatePolicyResult.result(value1 + value2);
+  }
+
+  public static TemplatePolicyResult<String> ambiguous(TemplatedString templatedString, int value1, long value2) {
+    return TemplatePolicyResult.result("int long");
+  }
+
+  public static TemplatePolicyResult<String> ambiguous(TemplatedString templatedString, long value1, int value2) {
+    return TemplatePolicyResult.result("long int");
+  }
+
+  public static TemplatePolicyResult<String> notATemplateMethod(String text, int value) {
+    return TemplatePolicyResult.result(text + value);
+  }
+
+  private final String prefix = "instance";
+
+  // a template-policy that is not static
+  public TemplatePolicyResult<String> prefix(TemplatedString templatedString, int value) {
+    return TemplatePolicyResult.result(prefix + " " + value);
+  }
+
+  private static MethodHandle indy(String name, MethodType type, String template) {
+    return TemplatePolicyMetafactory.boostrapOverloads(MethodHandles.lookup(), name, type, OverloadPolicyTest.class, template)
+        .dynamicInvoker();
+  }
+
+  @Test
+  public void testExactArity() throws Throwable {
+    var indy = indy("format", methodType(String.class, String.class, int.class), "￼ ￼");
+    assertAll(
+        () -> assertEquals("exact Bob 24", (String) indy.invokeExact("Bob", 24)),
+        () -> assertEquals("exact Ana 42", (String) indy.invokeExact("Ana", 42))
+    );
+  }
+
+  @Test
+  public void testPrimitive() throws Throwable {
+    var intIndy = indy("format", methodType(String.class, int.class), "￼");
+    var longIndy = indy("format", methodType(String.class, long.class), "￼");
+    var shortIndy = indy("format", methodType(String.class, short.class), "￼");
+    assertAll(
+        () -> assertEquals("int 42", (String) intIndy.invokeExact(42)),
+        () -> assertEquals("long 42", (String) longIndy.invokeExact(42L)),
+        () -> assertEquals("int 42", (String) shortIndy.invokeExact((short) 42))  // widening to the most specific
+    );
+  }
+
+  @Test
+  public void testBoxing() throws Throwable {
+    var integerIndy = indy("format", methodType(String.class, Integer.class), "￼");
+    var stringIndy = indy("format", methodType(String.class, String.class), "￼");
+    assertAll(
+        () -> assertEquals("object 42", (String) integerIndy.invokeExact((Integer) 42)),  // widening before unboxing
+        () -> assertEquals("object Bob", (String) stringIndy.invokeExact("Bob"))
+    );
+  }
+
+  @Test
+  public void testVarargs() throws Throwable {
+    var indy = indy("format", methodType(String.class, String.class, String.class, String.class), "￼￼￼");
+    var emptyIndy = indy("format", methodType(String.class), "empty");
+    assertAll(
+        () -> assertEquals("varargs [a, b, c]", (String) indy.invokeExact("a", "b", "c")),
+        () -> assertEquals("varargs []", (String) emptyIndy.invokeExact())
+    );
+  }
+
+  @Test
+  public void testReturnType() throws Throwable {
+    // the overload (int, int) returns an Integer, so with a String return type the varargs overload is selected
+    var intIndy = indy("format", methodType(int.class, int.class, int.class), "￼ + ￼");
+    var stringIndy = indy("format", methodType(String.class, int.class, int.class), "￼ + ￼");
+    assertAll(
+        () -> assertEquals(3, (int) intIndy.invokeExact(1, 2)),
+        () -> assertEquals("varargs [1, 2]", (String) stringIndy.invokeExact(1, 2))
+    );
+  }
+
+  @Test
+  public void testInstanceMethod() throws Throwable {
+    var indy = indy("prefix", methodType(String.class, OverloadPolicyTest.class, int.class), "￼");
+    assertEquals("instance 42", (String) indy.invokeExact(new OverloadPolicyTest(), 42));
+  }
+
+  @Test
+  public void testAmbiguous() {
+    assertThrows(IllegalArgumentException.class,
+        () -> indy("ambiguous", methodType(String.class, int.class, int.class), "￼￼"));
+  }
+
+  @Test
+  public void testNoApplicableOverload() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> indy("ambiguous", methodType(String.class, String.class), "￼")),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> indy("notATemplateMethod", methodType(String.class, int.class), "￼")),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> indy("unknown", methodType(String.class), "unknown"))
+    );
+  }
+}
@@ -0,0 +1,167 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrimitiveResultPolicyTest {
+  private static String render(TemplatedString templatedString, Object... args) {
+    var template = templatedString.template();
+    var builder = new StringBuilder();
+    var index = 0;
+    for(var i = 0; i < template.length(); i++) {
+      var c = template.charAt(i);
+      if (c == '￼') {
+        builder.append(args[index++]);
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  public static TemplatePolicyResult<Integer> hash(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.intResult(render(templatedString, args).hashCode());
+  }
+
+  public static TemplatePolicyResult<Long> length(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.longResult(render(templatedString, args).length());
+  }
+
+  public static TemplatePolicyResult<Double> sum(TemplatedString templatedString, Object... args) {
+    var sum = 0.0;
+    for(var arg: args) {
+      sum += ((Number) arg).doubleValue();
+    }
+    return TemplatePolicyResult.doubleResult(sum);
+  }
+
+  public static TemplatePolicyResult<Boolean> blank(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.booleanResult(render(templatedString, args).isBlank());
+  }
+
+  public static TemplatePolicyResult<Integer> boxed(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.result(render(templatedString, args).length());
+  }
+
+  private static int textLength(String text, int value) {
+    return text.length() + String.valueOf(value).length();
+  }
+
+  // the policy factory returns a method handle that does not box
+  public static TemplatePolicyResult<Integer> textLength(TemplatedString templatedString, int value) {
+    var text = templatedString.template().replace("￼", "");
+    return TemplatePolicyResult.intResultAndPolicyFactory(textLength(text, value), PrimitiveResultPolicyTest::textLengthFactory);
+  }
+
+  private static MethodHandle textLengthFactory(TemplatedString templatedString, MethodType type) throws ReflectiveOperationException {
+    var textLength = MethodHandles.lookup().findStatic(PrimitiveResultPolicyTest.class, "textLength",
+        methodType(int.class, String.class, int.class));
+    return MethodHandles.insertArguments(textLength, 0, templatedString.template().replace("￼", "")).asType(type);
+  }
+
+  @Test
+  public void testResult() {
+    var template = TemplatedString.parse("hello ￼", String.class);
+    assertAll(
+        () -> assertEquals("hello bob".hashCode(), hash(template, "bob").resultAsInt()),
+        () -> assertEquals("hello bob".hashCode(), hash(template, "bob").result()),
+        () -> assertEquals(int.class, hash(template, "bob").primitiveType()),
+        () -> assertEquals(9L, length(template, "bob").resultAsLong()),
+        () -> assertEquals(9L, length(template, "bob").result()),
+        () -> assertFalse(blank(template, "bob").resultAsBoolean()),
+        () -> assertEquals(false, blank(template, "bob").result()),
+        () -> assertNull(boxed(template, "bob").primitiveType()),
+        () -> assertThrows(IllegalStateException.class, () -> length(template, "bob").resultAsInt()),
+        () -> assertThrows(IllegalStateException.class, () -> boxed(template, "bob").resultAsInt())
+    );
+  }
+
+  @Test
+  public void testDoubleResult() {
+    var template = TemplatedString.parse("￼ + ￼", int.class, double.class);
+    assertAll(
+        () -> assertEquals(4.5, sum(template, 3, 1.5).resultAsDouble()),
+        () -> assertEquals(-0.0, TemplatePolicyResult.doubleResult(-0.0).result()),
+        () -> assertEquals(double.class, sum(template, 3, 1.5).primitiveType())
+    );
+  }
+
+  private static MethodHandle indy(String name, MethodType type, String template) {
+    var lookup = MethodHandles.lookup();
+    try {
+      var templatePolicy = lookup.findStatic(PrimitiveResultPolicyTest.class, name,
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+      return TemplatePolicyMetafactory.boostrap(lookup, "", type, templatePolicy, template).dynamicInvoker();
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final MethodHandle INDY_HASH = indy("hash", methodType(int.class, String.class), "hello ￼");
+
+  @Test
+  public void testIndyHash() throws Throwable {
+    for(var i = 0; i < 3; i++) {
+      assertEquals(("hello " + i).hashCode(), (int) INDY_HASH.invokeExact("" + i));
+    }
+  }
+
+  private static final MethodHandle INDY_SUM = indy("sum", methodType(double.class, int.class, double.class), "￼ + ￼");
+
+  @Test
+  public void testIndySum() throws Throwable {
+    assertEquals(4.5, (double) INDY_SUM.invokeExact(3, 1.5));
+    assertEquals(-1.0, (double) INDY_SUM.invokeExact(-2, 1.0));
+  }
+
+  private static final MethodHandle INDY_BLANK = indy("blank", methodType(boolean.class, String.class), " ￼ ");
+
+  @Test
+  public void testIndyBlank() throws Throwable {
+    assertTrue((boolean) INDY_BLANK.invokeExact(""));
+    assertFalse((boolean) INDY_BLANK.invokeExact("x"));
+  }
+
+  private static final MethodHandle INDY_WIDENED = indy("hash", methodType(long.class, String.class), "hello ￼");
+
+  @Test
+  public void testIndyWidened() throws Throwable {
+    // the result is an int, the call site returns a long, the result is boxed
+    assertEquals("hello bob".hashCode(), (long) INDY_WIDENED.invokeExact("bob"));
+    assertEquals("hello bob".hashCode(), (long) INDY_WIDENED.invokeExact("bob"));
+  }
+
+  private static final MethodHandle INDY_BOXED = indy("boxed", methodType(int.class, String.class), "hello ￼");
+
+  @Test
+  public void testIndyBoxed() throws Throwable {
+    assertEquals(9, (int) INDY_BOXED.invokeExact("bob"));
+    assertEquals(9, (int) INDY_BOXED.invokeExact("bob"));
+  }
+
+  private static final MethodHandle INDY_TEXT_LENGTH;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      INDY_TEXT_LENGTH = TemplatePolicyMetafactory.boostrap(lookup, "", methodType(int.class, int.class),
+          lookup.findStatic(PrimitiveResultPolicyTest.class, "textLength",
+              methodType(TemplatePolicyResult.class, TemplatedString.class, int.class)),
+          "value: ￼").dynamicInvoker();
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Test
+  public void testIndyPolicyFactory() throws Throwable {
+    assertEquals(8, (int) INDY_TEXT_LENGTH.invokeExact(3));
+    assertEquals(10, (int) INDY_TEXT_LENGTH.invokeExact(314));
+  }
+}
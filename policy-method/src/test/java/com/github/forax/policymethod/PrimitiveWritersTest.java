@@ -0,0 +1,222 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.PrimitiveWriters;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrimitiveWritersTest {
+  private static final int[] INTS = {
+      0, 1, -1, 9, -9, 10, -10, 99, -99, 100, -100, 12_345, -12_345, 1_000_000_000, -1_000_000_000,
+      Integer.MAX_VALUE, Integer.MIN_VALUE
+  };
+  private static final long[] LONGS = {
+      0, 1, -1, 99, -100, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE - 1L, 1L << 40, -(1L << 40),
+      1_000_000_000_000_000_000L, Long.MAX_VALUE, Long.MIN_VALUE
+  };
+  private static final double[] DOUBLES = {
+      0.0, -0.0, 1.0, -1.0, 0.1, 0.2, 0.3, 0.5, 1.5, 3.14, -3.14, 19.99, 100.0, 0.001, 0.0015, 9999999.0,
+      1e7, 1.2345678e7, 123456789.0, 0x1p53 - 1, 0x1p53, 1e-4, 1e22, Double.MAX_VALUE, Double.MIN_VALUE,
+      Double.MIN_NORMAL, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Math.PI, Math.E
+  };
+  private static final float[] FLOATS = {
+      0.0f, -0.0f, 1.0f, -1.5f, 0.1f, 0.3f, 3.14f, 19.99f, 0.001f, 1e7f, 1.2345678e7f, 0x1p24f, 1e-4f, 1e10f,
+      Float.MAX_VALUE, Float.MIN_VALUE, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY
+  };
+
+  private static String writeBytes(int value) {
+    var buffer = new byte[PrimitiveWriters.maxLength(int.class) + 2];
+    var end = PrimitiveWriters.write(buffer, 1, value);
+    return new String(buffer, 1, end - 1, ISO_8859_1);
+  }
+  private static String writeBytes(long value) {
+    var buffer = new byte[PrimitiveWriters.maxLength(long.class) + 2];
+    var end = PrimitiveWriters.write(buffer, 1, value);
+    return new String(buffer, 1, end - 1, ISO_8859_1);
+  }
+  private static String writeBytes(double value) {
+    var buffer = new byte[PrimitiveWriters.maxLength(double.class) + 2];
+    var end = PrimitiveWriters.write(buffer, 1, value);
+    return new String(buffer, 1, end - 1, ISO_8859_1);
+  }
+  private static String writeBytes(float value) {
+    var buffer = new byte[PrimitiveWriters.maxLength(float.class) + 2];
+    var end = PrimitiveWriters.write(buffer, 1, value);
+    return new String(buffer, 1, end - 1, ISO_8859_1);
+  }
+
+  private static String writeChars(long value) {
+    var buffer = new char[PrimitiveWriters.maxLength(long.class) + 2];
+    var end = PrimitiveWriters.write(buffer, 1, value);
+    return new String(buffer, 1, end - 1);
+  }
+  private static String writeChars(double value) {
+    var buffer = new char[PrimitiveWriters.maxLength(double.class) + 2];
+    var end = PrimitiveWriters.write(buffer, 1, value);
+    return new String(buffer, 1, end - 1);
+  }
+
+  private static String writeByteBuffer(ByteBuffer buffer, double value) {
+    PrimitiveWriters.write(buffer.clear().position(1), value);
+    return ISO_8859_1.decode(buffer.flip().position(1)).toString();
+  }
+
+  @Test
+  public void testInt() {
+    assertAll(IntStream.of(INTS).mapToObj(value -> () -> {
+      assertEquals(Integer.toString(value), writeBytes(value));
+      assertEquals(Integer.toString(value), writeChars(value));
+      assertEquals(Integer.toString(value).length(), PrimitiveWriters.stringSize(value));
+    }));
+  }
+
+  @Test
+  public void testLong() {
+    assertAll(LongStream.of(LONGS).mapToObj(value -> () -> {
+      assertEquals(Long.toString(value), writeBytes(value));
+      assertEquals(Long.toString(value), writeChars(value));
+      assertEquals(Long.toString(value).length(), PrimitiveWriters.stringSize(value));
+    }));
+  }
+
+  @Test
+  public void testRandomIntsAndLongs() {
+    var random = new Random(0);
+    for (var i = 0; i < 100_000; i++) {
+      var intValue = random.nextInt() >> random.nextInt(32);
+      var longValue = random.nextLong() >> random.nextInt(64);
+      assertEquals(Integer.toString(intValue), writeBytes(intValue));
+      assertEquals(Long.toString(longValue), writeBytes(longValue));
+    }
+  }
+
+  @Test
+  public void testBoolean() {
+    var bytes = new byte[5];
+    var chars = new char[5];
+    assertAll(
+        () -> assertEquals("true", new String(bytes, 0, PrimitiveWriters.write(bytes, 0, true), ISO_8859_1)),
+        () -> assertEquals("false", new String(bytes, 0, PrimitiveWriters.write(bytes, 0, false), ISO_8859_1)),
+        () -> assertEquals("true", new String(chars, 0, PrimitiveWriters.write(chars, 0, true)))
+    );
+  }
+
+  @Test
+  public void testDouble() {
+    assertAll(DoubleStream.of(DOUBLES).mapToObj(value -> () -> {
+      assertEquals(Double.toString(value), writeBytes(value));
+      assertEquals(Double.toString(value), writeChars(value));
+    }));
+  }
+
+  @Test
+  public void testShorterThanJava17() {
+    // Double.toString() of Java 17 does not always return the shortest decimal
+    assertAll(
+        () -> assertEquals("1.0E23", writeBytes(1e23)),
+        () -> assertEquals("2.0E23", writeBytes(2e23)),
+        () -> assertEquals("2.82879384806159E17", writeBytes(2.82879384806159E17)),
+        () -> assertEquals("9.9E-324", writeChars(2 * Double.MIN_VALUE)),
+        () -> assertEquals("1.1754944E-38", writeBytes(Float.MIN_NORMAL))
+    );
+  }
+
+  @Test
+  public void testFloat() {
+    assertAll(IntStream.range(0, FLOATS.length).mapToObj(i -> () -> {
+      var value = FLOATS[i];
+      assertEquals(Float.toString(value), writeBytes(value));
+    }));
+  }
+
+  @Test
+  public void testRandomDoublesRoundTrip() {
+    var random = new Random(0);
+    for (var i = 0; i < 100_000; i++) {
+      var value = switch (i % 3) {
+        case 0 -> random.nextDouble();
+        case 1 -> Math.round(random.nextDouble() * 1_000_000) / 100.0;  // a price
+        default -> Double.longBitsToDouble(random.nextLong());
+      };
+      var text = writeBytes(value);
+      var expected = Double.toString(value);
+      assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(Double.parseDouble(text)), text);
+      assertTrue(text.length() <= expected.length(), text + " " + expected);
+    }
+  }
+
+  @Test
+  public void testRandomFloatsRoundTrip() {
+    var random = new Random(0);
+    for (var i = 0; i < 100_000; i++) {
+      var value = i % 2 == 0? random.nextFloat(): Float.intBitsToFloat(random.nextInt());
+      var text = writeBytes(value);
+      assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(Float.parseFloat(text)), text);
+      assertTrue(text.length() <= Float.toString(value).length(), text);
+    }
+  }
+
+  @Test
+  public void testByteBuffer() {
+    assertAll(
+        () -> assertAll(DoubleStream.of(DOUBLES).mapToObj(value -> () -> {
+          assertEquals(Double.toString(value), writeByteBuffer(ByteBuffer.allocate(32), value));
+          assertEquals(Double.toString(value), writeByteBuffer(ByteBuffer.allocateDirect(32), value));
+        })),
+        () -> assertAll(LongStream.of(LONGS).mapToObj(value -> () -> {
+          var heap = PrimitiveWriters.write(ByteBuffer.allocate(32), value).flip();
+          var direct = PrimitiveWriters.write(ByteBuffer.allocateDirect(32), value).flip();
+          assertEquals(Long.toString(value), ISO_8859_1.decode(heap).toString());
+          assertEquals(Long.toString(value), ISO_8859_1.decode(direct).toString());
+        }))
+    );
+  }
+
+  @Test
+  public void testByteBufferOverflow() {
+    var buffer = ByteBuffer.allocate(4);
+    assertAll(
+        () -> assertThrows(BufferOverflowException.class, () -> PrimitiveWriters.write(buffer, 12_345)),
+        () -> assertThrows(BufferOverflowException.class, () -> PrimitiveWriters.write(buffer, 0.125)),
+        () -> assertThrows(BufferOverflowException.class, () -> PrimitiveWriters.write(buffer, false)),
+        () -> assertEquals(0, buffer.position())
+    );
+  }
+
+  @Test
+  public void testWriter() throws Throwable {
+    var bytes = new byte[32];
+    var chars = new char[32];
+    var intWriter = PrimitiveWriters.writer(int.class, byte[].class);
+    var shortWriter = PrimitiveWriters.writer(short.class, char[].class);
+    var doubleWriter = PrimitiveWriters.writer(double.class, ByteBuffer.class);
+    var intEnd = (int) intWriter.invokeExact(bytes, 0, -42);
+    var shortEnd = (int) shortWriter.invokeExact(chars, 0, (short) 7);
+    var buffer = (ByteBuffer) doubleWriter.invokeExact(ByteBuffer.allocate(32), 2.5);
+    assertAll(
+        () -> assertEquals("-42", new String(bytes, 0, intEnd, ISO_8859_1)),
+        () -> assertEquals("7", new String(chars, 0, shortEnd)),
+        () -> assertEquals("2.5", ISO_8859_1.decode(buffer.flip()).toString())
+    );
+  }
+
+  @Test
+  public void testWriterNotSupported() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> PrimitiveWriters.writer(char.class, byte[].class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> PrimitiveWriters.writer(String.class, byte[].class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> PrimitiveWriters.writer(int.class, int[].class))
+    );
+  }
+}
@@ -0,0 +1,191 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.CallSiteInfo.State;
+import com.github.forax.policymethod.runtime.TemplateCallSiteRegistry;
+import com.github.forax.policymethod.runtime.TemplateCallSites;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedeployTest {
+  // a template method declared by a long-lived library and implemented by the applications
+  public interface SharedPolicy {
+    TemplatePolicyResult<String> render(TemplatedString templatedString, int value);
+  }
+
+  // a call site of a long-lived class (a library shared by the applications)
+  private static final MethodHandle SHARED;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      var templateMethod = lookup.findVirtual(SharedPolicy.class, "render",
+          methodType(TemplatePolicyResult.class, TemplatedString.class, int.class));
+      SHARED = TemplatePolicyMetafactory.boostrap(lookup, "", methodType(String.class, SharedPolicy.class, int.class),
+          templateMethod, "shared ￼").dynamicInvoker();
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // a class loader that loads the application class itself (child first)
+  private static final class AppClassLoader extends ClassLoader {
+    private AppClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.equals(RedeployApp.class.getName())) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        var loadedClass = findLoadedClass(name);
+        if (loadedClass != null) {
+          return loadedClass;
+        }
+        try (var input = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+          var bytecode = input.readAllBytes();
+          return defineClass(name, bytecode, 0, bytecode.length);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  // deploys the application, runs it and returns a weak reference on its class loader
+  @SuppressWarnings("unchecked")
+  private static WeakReference<ClassLoader> deployAndRun() throws ReflectiveOperationException {
+    var loader = new AppClassLoader(RedeployTest.class.getClassLoader());
+    var appClass = loader.loadClass(RedeployApp.class.getName());
+    assertEquals(loader, appClass.getClassLoader());
+    var constructor = appClass.getDeclaredConstructor();
+    constructor.setAccessible(true);  // the class is not public
+    var app = (Function<MethodHandle, String>) constructor.newInstance();
+    System.setProperty(TemplateCallSites.PROPERTY, "true");
+    String result;
+    try {
+      result = app.apply(SHARED);
+    } finally {
+      System.clearProperty(TemplateCallSites.PROPERTY);
+    }
+    assertEquals("redeploy 0, redeploy 1, redeploy 2, shared 42", result);
+    return new WeakReference<>(loader);
+  }
+
+  private static void collect(List<WeakReference<ClassLoader>> references) throws InterruptedException {
+    for (var i = 0; i < 100 && references.stream().anyMatch(reference -> reference.get() != null); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+  }
+
+  private static long metaspaceUsed() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.NON_HEAP && pool.getName().equals("Metaspace"))
+        .mapToLong(pool -> pool.getUsage().getUsed())
+        .sum();
+  }
+
+  @Test
+  public void testRedeployLoop() throws ReflectiveOperationException, InterruptedException {
+    // the shared call site is first linked by the first application, it must not pin its class loader
+    var first = deployAndRun();
+    collect(List.of(first));
+    assertNull(first.get());
+
+    var references = new ArrayList<WeakReference<ClassLoader>>();
+    for (var i = 0; i < 10; i++) {  // warmup
+      references.add(deployAndRun());
+    }
+    collect(references);
+    var metaspaceBefore = metaspaceUsed();
+    for (var i = 0; i < 100; i++) {
+      references.add(deployAndRun());
+    }
+    collect(references);
+    var metaspaceAfter = metaspaceUsed();
+
+    var shared = TemplateCallSiteRegistry.callSites().stream()
+        .filter(info -> info.template().equals("shared ￼"))
+        .findFirst()
+        .orElseThrow();
+    assertAll(
+        () -> assertTrue(references.stream().allMatch(reference -> reference.get() == null)),
+        () -> assertTrue(metaspaceAfter - metaspaceBefore < 1 << 20,
+            "metaspace before " + metaspaceBefore + " after " + metaspaceAfter),
+        () -> assertEquals(State.INDIRECT, shared.state()),  // the shared call site doesn't cache RedeployApp
+        () -> assertTrue(TemplateCallSites.callSites().getCallSites().stream()
+            .noneMatch(statistics -> statistics.getTemplate().equals("redeploy ￼"))),
+        () -> assertTrue(TemplateCallSiteRegistry.callSites().stream()
+            .noneMatch(info -> info.template().equals("redeploy ￼")))
+    );
+  }
+}
+
+// the application with its own template method, loaded by the class loader of the application
+final class RedeployApp implements Function<MethodHandle, String>, RedeployTest.SharedPolicy {
+  public static String render(String template, int value) {
+    return template.replace("￼", "" + value);
+  }
+
+  public static TemplatePolicyResult<String> templateMethod(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.resultAndPolicyFactory(render(templatedString.template(), (Integer) args[0]),
+        RedeployApp::policyFactory);
+  }
+
+  private static MethodHandle policyFactory(TemplatedString templatedString, MethodType type) throws ReflectiveOperationException {
+    var render = MethodHandles.lookup().findStatic(RedeployApp.class, "render", methodType(String.class, String.class, int.class));
+    return insertArguments(render, 0, templatedString.template()).asType(type);
+  }
+
+  @Override
+  public TemplatePolicyResult<String> render(TemplatedString templatedString, int value) {
+    return TemplatePolicyResult.resultAndPolicyFactory(render(templatedString.template(), value), this::sharedPolicyFactory);
+  }
+
+  // the target references the class of the application
+  private MethodHandle sharedPolicyFactory(TemplatedString templatedString, MethodType type) throws ReflectiveOperationException {
+    var render = MethodHandles.lookup().findStatic(RedeployApp.class, "render", methodType(String.class, String.class, int.class));
+    return dropArguments(insertArguments(render, 0, templatedString.template()), 0, type.parameterType(0)).asType(type);
+  }
+
+  @Override
+  public String apply(MethodHandle shared) {
+    var lookup = MethodHandles.lookup();
+    try {
+      var templateMethod = lookup.findStatic(RedeployApp.class, "templateMethod",
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+      var indy = TemplatePolicyMetafactory.boostrap(lookup, "", methodType(String.class, int.class), templateMethod, "redeploy ￼")
+          .dynamicInvoker();
+      var builder = new StringBuilder();
+      for (var i = 0; i < 3; i++) {
+        builder.append(i == 0? "": ", ").append((String) indy.invokeExact(i));
+      }
+      return builder.append(", ").append((String) shared.invokeExact((RedeployTest.SharedPolicy) this, 42)).toString();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.CallSiteInfo;
+import com.github.forax.policymethod.runtime.CallSiteInfo.State;
+import com.github.forax.policymethod.runtime.TemplateCallSiteRegistry;
+import com.github.forax.policymethod.runtime.TemplateCallSites;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateCallSiteRegistryTest {
+  public static TemplatePolicyResult<String> upperCase(TemplatedString templatedString, Object... args) {
+    return TemplatePolicyResult.constantResult(templatedString.template().toUpperCase());
+  }
+
+  private static MethodHandle policyMethod(Class<?> declaringClass, String name) {
+    try {
+      return MethodHandles.lookup().findStatic(declaringClass, name,
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static CallSite callSite(MethodType type, MethodHandle policyMethod, String template) {
+    return TemplatePolicyMetafactory.boostrap(MethodHandles.lookup(), "", type, policyMethod, template);
+  }
+
+  private static CallSiteInfo info(String template) {
+    return TemplateCallSiteRegistry.callSites().stream()
+        .filter(info -> info.template().equals(template))
+        .reduce((info1, info2) -> { throw new AssertionError("several call sites " + info1 + " " + info2); })
+        .orElseThrow();
+  }
+
+  @Test
+  public void testUnlinked() {
+    var callSite = callSite(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "unlinked ￼");
+    var info = info("unlinked ￼");
+    assertAll(
+        () -> assertEquals(TemplateCallSiteRegistryTest.class.getName(), info.callerClass()),
+        () -> assertEquals(StringConcatTemplatePolicyTest.class.getName() + "::stringConcatOptimized", info.policy()),
+        () -> assertEquals(State.UNLINKED, info.state()),
+        () -> assertEquals(List.of(), info.receiverClasses()),
+        () -> assertTrue(info.templateBytes() > 0),
+        () -> assertTrue(info.methodHandleBytes() > 0),
+        () -> assertEquals(0, info.cacheBytes())
+    );
+    assertTrue(callSite.type().parameterCount() > 0);  // keep the call site alive
+  }
+
+  @Test
+  public void testMonomorphic() throws Throwable {
+    var callSite = callSite(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "monomorphic ￼");
+    assertEquals("monomorphic 1", (String) callSite.dynamicInvoker().invokeExact(1));
+    assertEquals(State.MONOMORPHIC, info("monomorphic ￼").state());
+  }
+
+  @Test
+  public void testGeneric() throws Throwable {
+    var callSite = callSite(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), "generic ￼");
+    assertEquals("generic 1", (String) callSite.dynamicInvoker().invokeExact(1));
+    assertEquals(State.GENERIC, info("generic ￼").state());
+  }
+
+  @Test
+  public void testConstant() throws Throwable {
+    var callSite = callSite(methodType(String.class),
+        policyMethod(TemplateCallSiteRegistryTest.class, "upperCase"), "constant");
+    assertEquals("CONSTANT", (String) callSite.dynamicInvoker().invokeExact());
+    var info = info("constant");
+    assertAll(
+        () -> assertEquals(TemplateCallSiteRegistryTest.class.getName() + "::upperCase", info.policy()),
+        () -> assertEquals(State.CONSTANT, info.state())
+    );
+  }
+
+  @Test
+  public void testUnlinkedAfterInvalidation() throws Throwable {
+    ConfigurablePolicyTest.setPrefix("");
+    var callSite = callSite(methodType(String.class, int.class),
+        policyMethod(ConfigurablePolicyTest.class, "prefix"), "invalidated ￼");
+    var text = (String) callSite.dynamicInvoker().invokeExact(1);
+    var linked = info("invalidated ￼");
+    ConfigurablePolicyTest.setPrefix("");
+    var invalidated = info("invalidated ￼");
+    assertAll(
+        () -> assertEquals("invalidated ￼", text),
+        () -> assertEquals(State.MONOMORPHIC, linked.state()),
+        () -> assertEquals(State.UNLINKED, invalidated.state())
+    );
+  }
+
+  @Test
+  public void testInstrumentedCaches() {
+    System.setProperty(TemplateCallSites.PROPERTY, "true");
+    CallSite callSite;
+    try {
+      callSite = callSite(methodType(String.class, int.class),
+          policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), "instrumented ￼");
+    } finally {
+      System.clearProperty(TemplateCallSites.PROPERTY);
+    }
+    var info = info("instrumented ￼");
+    assertAll(
+        () -> assertTrue(info.cacheBytes() > 0),
+        () -> assertEquals(info.templateBytes() + info.methodHandleBytes() + info.cacheBytes(), info.estimatedBytes())
+    );
+    assertTrue(callSite.type().parameterCount() > 0);  // keep the call site alive
+  }
+
+  private static WeakReference<CallSite> unreachableCallSite(String template) {
+    return new WeakReference<>(callSite(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), template));
+  }
+
+  @Test
+  public void testCallSitesAreNotPinned() throws InterruptedException {
+    var reference = unreachableCallSite("not pinned ￼");
+    for (var i = 0; i < 100 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertAll(
+        () -> assertNull(reference.get()),
+        () -> assertTrue(TemplateCallSiteRegistry.callSites().stream().noneMatch(info -> info.template().equals("not pinned ￼")))
+    );
+  }
+
+  @Test
+  public void testDumpBiggestFirst() throws Throwable {
+    var small = callSite(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "small ￼");
+    var big = callSite(methodType(String.class, int.class, int.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "big ￼ ￼ ￼");
+    assertEquals("small 1", (String) small.dynamicInvoker().invokeExact(1));
+    assertEquals("big 1 2 3", (String) big.dynamicInvoker().invokeExact(1, 2, 3));
+    var dump = TemplateCallSiteRegistry.dump();
+    var prefix = TemplateCallSiteRegistryTest.class.getName() + " \"";
+    assertAll(
+        () -> assertTrue(info("big ￼ ￼ ￼").methodHandleBytes() > info("small ￼").methodHandleBytes()),
+        () -> assertTrue(dump.indexOf(prefix + "big ￼ ￼ ￼\"") < dump.indexOf(prefix + "small ￼\"")),
+        () -> assertTrue(dump.indexOf(prefix + "big ￼ ￼ ￼\"") != -1)
+    );
+  }
+
+  @Test
+  public void testDump() throws Throwable {
+    var callSite = callSite(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "dump ￼");
+    assertEquals("dump 42", (String) callSite.dynamicInvoker().invokeExact(42));
+    var dump = TemplateCallSiteRegistry.dump();
+    var lines = dump.lines().toList();
+    assertAll(
+        () -> assertTrue(lines.stream().anyMatch(line ->
+            line.startsWith(TemplateCallSiteRegistryTest.class.getName() + " \"dump ￼\" MONOMORPHIC"))),
+        () -> assertTrue(lines.get(lines.size() - 1).matches("\\d+ call sites, \\d+ bytes"))
+    );
+  }
+
+  @Test
+  public void testDumpMXBean() throws Exception {
+    var callSite = callSite(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), "dump mxbean ￼");
+    TemplateCallSites.callSites();  // registers the MXBean
+    var server = ManagementFactory.getPlatformMBeanServer();
+    var dump = (String) server.invoke(new ObjectName(TemplateCallSites.OBJECT_NAME), "dumpCallSites", null, null);
+    assertAll(
+        () -> assertTrue(dump.contains("\"dump mxbean ￼\" UNLINKED")),
+        () -> assertFalse(callSite.type().parameterList().isEmpty())
+    );
+  }
+}
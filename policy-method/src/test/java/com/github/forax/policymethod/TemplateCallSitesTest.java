@@ -0,0 +1,134 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.CallSiteStatistics;
+import com.github.forax.policymethod.runtime.TemplateCallSites;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateCallSitesTest {
+  private static MethodHandle policyMethod(Class<?> declaringClass, String name) {
+    try {
+      return MethodHandles.lookup().findStatic(declaringClass, name,
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static MethodHandle indy(boolean instrumented, MethodType type, MethodHandle policyMethod, String template) {
+    if (instrumented) {
+      System.setProperty(TemplateCallSites.PROPERTY, "true");
+    }
+    try {
+      return TemplatePolicyMetafactory.boostrap(MethodHandles.lookup(), "", type, policyMethod, template).dynamicInvoker();
+    } finally {
+      System.clearProperty(TemplateCallSites.PROPERTY);
+    }
+  }
+
+  private static CallSiteStatistics statistics(String template) {
+    return TemplateCallSites.callSites().getCallSites().stream()
+        .filter(statistics -> statistics.getTemplate().equals(template))
+        .reduce((s1, s2) -> { throw new AssertionError("several call sites " + s1 + " " + s2); })
+        .orElseThrow();
+  }
+
+  @Test
+  public void testNotInstrumented() throws Throwable {
+    var count = TemplateCallSites.callSites().getCallSiteCount();
+    var indy = indy(false, methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), "not instrumented ￼");
+    assertAll(
+        () -> assertEquals("not instrumented 1", (String) indy.invokeExact(1)),
+        () -> assertEquals(count, TemplateCallSites.callSites().getCallSiteCount())
+    );
+  }
+
+  @Test
+  public void testInvocations() throws Throwable {
+    var indy = indy(true, methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), "invocations ￼");
+    for (var i = 0; i < 10; i++) {
+      assertEquals("invocations " + i, (String) indy.invokeExact(i));
+    }
+    var statistics = statistics("invocations ￼");
+    assertAll(
+        () -> assertTrue(statistics.getId().startsWith(TemplateCallSitesTest.class.getName() + ":")),
+        () -> assertEquals(10, statistics.getInvocations()),
+        () -> assertEquals(1, statistics.getSlowPaths()),
+        () -> assertEquals(0, statistics.getRelinks()),
+        () -> assertEquals(0, statistics.getGuardMisses())
+    );
+  }
+
+  @Test
+  public void testRelinks() throws Throwable {
+    var indy = indy(true, methodType(String.class, int.class),
+        policyMethod(ConfigurablePolicyTest.class, "prefix"), "relinks ￼");
+    ConfigurablePolicyTest.setPrefix("");
+    var text1 = (String) indy.invokeExact(1);
+    ConfigurablePolicyTest.setPrefix("> ");
+    var text2 = (String) indy.invokeExact(2);
+    var text3 = (String) indy.invokeExact(3);
+    ConfigurablePolicyTest.setPrefix("");
+    var statistics = statistics("relinks ￼");
+    assertAll(
+        () -> assertEquals("relinks ￼", text1),
+        () -> assertEquals("> relinks ￼", text2),
+        () -> assertEquals("> relinks ￼", text3),
+        () -> assertEquals(3, statistics.getInvocations()),
+        () -> assertEquals(2, statistics.getSlowPaths()),
+        () -> assertEquals(1, statistics.getRelinks()),
+        () -> assertEquals(1, statistics.getGuardMisses())
+    );
+  }
+
+  @Test
+  public void testStableIds() {
+    var type = methodType(String.class, int.class);
+    var policyMethod = policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat");
+    indy(true, type, policyMethod, "same template ￼");
+    indy(true, type, policyMethod, "same template ￼");
+    var ids = TemplateCallSites.callSites().getCallSites().stream()
+        .filter(statistics -> statistics.getTemplate().equals("same template ￼"))
+        .map(CallSiteStatistics::getId)
+        .toList();
+    var id = TemplateCallSitesTest.class.getName() + ":" + Integer.toHexString((type + "same template ￼").hashCode());
+    assertEquals(List.of(id, id + "-2"), ids);
+  }
+
+  @Test
+  public void testMXBean() throws Throwable {
+    var indy = indy(true, methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), "mxbean ￼");
+    var text = (String) indy.invokeExact(42);
+    var server = ManagementFactory.getPlatformMBeanServer();
+    var name = new ObjectName(TemplateCallSites.OBJECT_NAME);
+    var count = (Integer) server.getAttribute(name, "CallSiteCount");
+    var callSites = (CompositeData[]) server.getAttribute(name, "CallSites");
+    var mxbean = Arrays.stream(callSites)
+        .map(CallSiteStatistics::from)
+        .filter(statistics -> statistics.getTemplate().equals("mxbean ￼"))
+        .findFirst()
+        .orElseThrow();
+    assertAll(
+        () -> assertEquals("mxbean 42", text),
+        () -> assertEquals(TemplateCallSites.callSites().getCallSiteCount(), count),
+        () -> assertEquals(1, mxbean.getInvocations())
+    );
+  }
+}
@@ -0,0 +1,146 @@
+package com.github.forax.policymethod;
+
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateEventsTest {
+  private static final String BOOTSTRAP = "com.github.forax.policymethod.Bootstrap";
+  private static final String LINK = "com.github.forax.policymethod.Link";
+  private static final String RELINK = "com.github.forax.policymethod.Relink";
+  private static final String RENDER = "com.github.forax.policymethod.Render";
+
+  private static MethodHandle policyMethod(Class<?> declaringClass, String name) {
+    try {
+      return MethodHandles.lookup().findStatic(declaringClass, name,
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static MethodHandle indy(MethodType type, MethodHandle policyMethod, String template) {
+    return TemplatePolicyMetafactory.boostrap(MethodHandles.lookup(), "", type, policyMethod, template).dynamicInvoker();
+  }
+
+  private static Recording record(String... eventNames) {
+    var recording = new Recording();
+    for (var eventName : eventNames) {
+      recording.enable(eventName);
+    }
+    recording.start();
+    return recording;
+  }
+
+  // the events are sorted by start time
+  private static List<RecordedEvent> events(Recording recording, List<String> eventNames, String template) throws IOException {
+    recording.stop();
+    var file = Files.createTempFile("template-events", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(event -> eventNames.contains(event.getEventType().getName()))
+          .filter(event -> event.getString("template").equals(template))
+          .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+          .toList();
+    } finally {
+      recording.close();
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testBootstrap() throws Throwable {
+    var recording = record(BOOTSTRAP);
+    var indy = indy(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcat"), "bootstrap ￼");
+    assertEquals("bootstrap 1", (String) indy.invokeExact(1));
+    var events = events(recording, List.of(BOOTSTRAP), "bootstrap ￼");
+    assertAll(
+        () -> assertEquals(1, events.size()),
+        () -> assertEquals(TemplateEventsTest.class.getName(), events.get(0).getClass("callerClass").getName()),
+        () -> assertEquals("(int)String", events.get(0).getString("callSiteType"))
+    );
+  }
+
+  @Test
+  public void testLink() throws Throwable {
+    var recording = record(LINK);
+    var indy = indy(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "link ￼");
+    assertEquals("link 1", (String) indy.invokeExact(1));
+    assertEquals("link 2", (String) indy.invokeExact(2));
+    var events = events(recording, List.of(LINK), "link ￼");
+    assertAll(
+        () -> assertEquals(1, events.size()),
+        () -> assertEquals(StringConcatTemplatePolicyTest.class.getName(), events.get(0).getClass("policyClass").getName()),
+        () -> assertTrue(events.get(0).getInt("methodHandleSize") > 0),
+        () -> assertTrue(!events.get(0).getDuration().isNegative())
+    );
+  }
+
+  @Test
+  public void testRelinkSwitchPoint() throws Throwable {
+    var recording = record(RELINK);
+    var indy = indy(methodType(String.class, int.class),
+        policyMethod(ConfigurablePolicyTest.class, "prefix"), "relink switch point ￼");
+    ConfigurablePolicyTest.setPrefix("");
+    var text1 = (String) indy.invokeExact(1);
+    ConfigurablePolicyTest.setPrefix("> ");
+    var text2 = (String) indy.invokeExact(2);
+    ConfigurablePolicyTest.setPrefix("");
+    var events = events(recording, List.of(RELINK), "relink switch point ￼");
+    assertAll(
+        () -> assertEquals("relink switch point ￼", text1),
+        () -> assertEquals("> relink switch point ￼", text2),
+        () -> assertEquals(1, events.size()),
+        () -> assertEquals("policy switch point invalidated", events.get(0).getString("reason")),
+        () -> assertEquals(ConfigurablePolicyTest.class.getName(), events.get(0).getClass("policyClass").getName())
+    );
+  }
+
+  @Test
+  public void testRenderDisabledByDefault() throws Throwable {
+    var recording = record(BOOTSTRAP);
+    var indy = indy(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "render disabled ￼");
+    for (var i = 0; i < 1_000; i++) {
+      assertEquals("render disabled " + i, (String) indy.invokeExact(i));
+    }
+    assertEquals(List.of(), events(recording, List.of(RENDER), "render disabled ￼"));
+  }
+
+  @Test
+  public void testRenderRelink() throws Throwable {
+    var indy = indy(methodType(String.class, int.class),
+        policyMethod(StringConcatTemplatePolicyTest.class, "stringConcatOptimized"), "render relink ￼");
+    assertEquals("render relink -1", (String) indy.invokeExact(-1));  // linked without the render event
+
+    var recording = record(RENDER, RELINK);
+    // the first call is evaluated by the template method when re-linking, the next 128 calls are sampled
+    for (var i = 0; i < 1 + 128; i++) {
+      assertEquals("render relink " + i, (String) indy.invokeExact(i));
+    }
+    var events = events(recording, List.of(RELINK, RENDER), "render relink ￼");
+    assertAll(
+        () -> assertEquals(List.of(RELINK, RENDER, RENDER), events.stream().map(event -> event.getEventType().getName()).toList()),
+        () -> assertEquals("render event setting changed", events.get(0).getString("reason")),
+        () -> assertEquals(StringConcatTemplatePolicyTest.class.getName(), events.get(1).getClass("policyClass").getName())
+    );
+  }
+}
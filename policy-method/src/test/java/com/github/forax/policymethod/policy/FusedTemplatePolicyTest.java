@@ -0,0 +1,91 @@
+package com.github.forax.policymethod.policy;
+
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.TemplatedString;
+import com.github.forax.policymethod.policy.FusedTemplatePolicy.Assembler;
+import com.github.forax.policymethod.policy.FusedTemplatePolicy.Encoder;
+import com.github.forax.policymethod.policy.FusedTemplatePolicy.Transformer;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FusedTemplatePolicyTest {
+  // escapes '<' and '>'
+  private static final Transformer ESCAPE = (builder, value) -> {
+    var text = String.valueOf(value);
+    for (var i = 0; i < text.length(); i++) {
+      var c = text.charAt(i);
+      switch (c) {
+        case '<' -> builder.append("&lt;");
+        case '>' -> builder.append("&gt;");
+        default -> builder.append(c);
+      }
+    }
+  };
+
+  @Test
+  public void testRender() {
+    var policy = FusedTemplatePolicy.of(ESCAPE, Assembler.none(), Encoder.utf8());
+    var template = TemplatedString.parse("<p>￼ ￼</p>", String.class, int.class);
+    assertArrayEquals("<p>&lt;b&gt;café 42</p>".getBytes(UTF_8), policy.render(template, "<b>café", 42).result());
+  }
+
+  @Test
+  public void testRenderWrongNumberOfArguments() {
+    var policy = FusedTemplatePolicy.of(Transformer.identity(), Assembler.none(), Encoder.string());
+    var template = TemplatedString.parse("<p>￼</p>", String.class);
+    assertThrows(IllegalArgumentException.class, () -> policy.render(template));
+  }
+
+  @Test
+  public void testStages() {
+    var template = TemplatedString.parse("value: ￼", String.class);
+    assertAll(
+        () -> assertEquals("value: 😀", FusedTemplatePolicy.of(Transformer.identity(), Assembler.truncate(9), Encoder.string())
+            .render(template, "😀😀").result()),
+        () -> assertEquals("value: ", FusedTemplatePolicy.of(Transformer.identity(), Assembler.truncate(8), Encoder.string())
+            .render(template, "😀😀").result()),
+        () -> assertEquals(9, FusedTemplatePolicy.of(Transformer.identity(), Assembler.none(), Encoder.utf8().andThen(bytes -> bytes.length))
+            .render(template, "ab").result())
+    );
+  }
+
+  private static final MethodHandle INDY;
+  static {
+    MethodHandle policyMethod;
+    try {
+      policyMethod = MethodHandles.lookup().findVirtual(FusedTemplatePolicy.class, "render",
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    INDY = TemplatePolicyMetafactory.boostrap(
+        MethodHandles.lookup(),
+        "",
+        methodType(byte[].class, FusedTemplatePolicy.class, String.class, int.class),
+        policyMethod,
+        "<li>￼: ￼</li>"
+    ).dynamicInvoker();
+  }
+
+  @Test
+  public void testIndySeveralPolicies() throws Throwable {
+    var escape = FusedTemplatePolicy.of(ESCAPE, Assembler.none(), Encoder.utf8());
+    var raw = FusedTemplatePolicy.of(Transformer.identity(), Assembler.truncate(10), Encoder.utf8());
+    assertAll(
+        () -> assertArrayEquals("<li>&lt;é: 1</li>".getBytes(UTF_8), (byte[]) INDY.invokeExact(escape, "<é", 1)),
+        () -> assertArrayEquals("<li>&lt;é: 2</li>".getBytes(UTF_8), (byte[]) INDY.invokeExact(escape, "<é", 2)),
+        () -> assertArrayEquals("<li><é: 3<".getBytes(UTF_8), (byte[]) INDY.invokeExact(raw, "<é", 3)),
+        () -> assertArrayEquals("<li>&lt;é: 4</li>".getBytes(UTF_8), (byte[]) INDY.invokeExact(escape, "<é", 4))
+    );
+  }
+}
@@ -0,0 +1,152 @@
+package com.github.forax.policymethod.policy;
+
+import com.github.forax.policymethod.TemplatePolicyResult;
+import com.github.forax.policymethod.TemplatedString;
+import com.github.forax.policymethod.runtime.TemplatePolicyMetafactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateLoggerTest {
+  static final class RecordingLogger implements Logger {
+    final List<String> messages = new ArrayList<>();
+
+    @Override
+    public String getName() {
+      return "recording";
+    }
+
+    @Override
+    public boolean isLoggable(Level level) {
+      return true;
+    }
+
+    @Override
+    public void log(Level level, ResourceBundle bundle, String msg, Throwable thrown) {
+      messages.add(level + " " + msg);
+    }
+
+    @Override
+    public void log(Level level, ResourceBundle bundle, String format, Object... params) {
+      messages.add(level + " " + (params == null? format: MessageFormat.format(format, params)));
+    }
+  }
+
+  // count the number of calls to toString()
+  static final class Counter {
+    int count;
+
+    @Override
+    public String toString() {
+      return "counter" + ++count;
+    }
+  }
+
+  @Test
+  public void testIsEnabled() {
+    var logger = TemplateLogger.of(new RecordingLogger(), Level.INFO);
+    assertAll(
+        () -> assertFalse(logger.isEnabled(Level.DEBUG)),
+        () -> assertTrue(logger.isEnabled(Level.INFO)),
+        () -> assertTrue(logger.isEnabled(Level.ERROR)),
+        () -> assertFalse(logger.isEnabled(Level.OFF))
+    );
+  }
+
+  @Test
+  public void testLog() {
+    var sink = new RecordingLogger();
+    var logger = TemplateLogger.of(sink, Level.INFO);
+    var template = TemplatedString.parse("value ￼", int.class);
+    assertNull(logger.debug(template, 1).result());
+    logger.info(template, 2);
+    logger.setLevel(Level.DEBUG);
+    logger.debug(template, 3);
+    assertEquals(List.of("INFO value 2", "DEBUG value 3"), sink.messages);
+  }
+
+  @Test
+  public void testLogWrongNumberOfArguments() {
+    var logger = TemplateLogger.of(new RecordingLogger(), Level.INFO);
+    var template = TemplatedString.parse("value ￼", int.class);
+    assertThrows(IllegalArgumentException.class, () -> logger.info(template));
+  }
+
+  private static MethodHandle indy(String level) {
+    MethodHandle policyMethod;
+    try {
+      policyMethod = MethodHandles.lookup().findVirtual(TemplateLogger.class, level,
+          methodType(TemplatePolicyResult.class, TemplatedString.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    return TemplatePolicyMetafactory.boostrap(
+        MethodHandles.lookup(),
+        "",
+        methodType(void.class, TemplateLogger.class, Object.class, int.class),
+        policyMethod,
+        "object ￼ value ￼"
+    ).dynamicInvoker();
+  }
+
+  @Test
+  public void testIndyDisabledDoesNotFormat() throws Throwable {
+    var indy = indy("debug");
+    var sink = new RecordingLogger();
+    var logger = TemplateLogger.of(sink, Level.INFO);
+    var counter = new Counter();
+    for (var i = 0; i < 10; i++) {
+      indy.invokeExact(logger, (Object) counter, i);
+    }
+    assertAll(
+        () -> assertEquals(0, counter.count),
+        () -> assertEquals(List.of(), sink.messages)
+    );
+  }
+
+  @Test
+  public void testIndyLevelChange() throws Throwable {
+    var indy = indy("debug");
+    var sink = new RecordingLogger();
+    var logger = TemplateLogger.of(sink, Level.INFO);
+    var counter = new Counter();
+    indy.invokeExact(logger, (Object) counter, 1);
+    logger.setLevel(Level.DEBUG);
+    indy.invokeExact(logger, (Object) counter, 2);
+    indy.invokeExact(logger, (Object) counter, 3);
+    logger.setLevel(Level.WARNING);
+    indy.invokeExact(logger, (Object) counter, 4);
+    logger.setLevel(Level.ALL);
+    indy.invokeExact(logger, (Object) counter, 5);
+    assertEquals(List.of("DEBUG object counter1 value 2", "DEBUG object counter2 value 3", "DEBUG object counter3 value 5"),
+        sink.messages);
+  }
+
+  @Test
+  public void testIndySeveralLoggers() throws Throwable {
+    var indy = indy("info");
+    var sink = new RecordingLogger();
+    var logger1 = TemplateLogger.of(sink, Level.INFO);
+    var logger2 = TemplateLogger.of(sink, Level.WARNING);
+    var counter = new Counter();
+    indy.invokeExact(logger1, (Object) counter, 1);
+    indy.invokeExact(logger2, (Object) counter, 2);
+    indy.invokeExact(logger1, (Object) counter, 3);
+    assertEquals(List.of("INFO object counter1 value 1", "INFO object counter2 value 3"), sink.messages);
+  }
+}